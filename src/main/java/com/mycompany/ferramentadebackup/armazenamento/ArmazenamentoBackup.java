@@ -0,0 +1,42 @@
+package com.mycompany.ferramentadebackup.armazenamento;
+
+import java.io.IOException;
+
+/**
+ * Local onde os arquivos de backup são gravados.
+ * <p>
+ * Implementações embutidas: {@link ArmazenamentoLocal}, para um diretório do
+ * sistema de arquivos, e {@link ArmazenamentoS3}, para um bucket de um
+ * armazenamento de objetos compatível com S3. A implementação é escolhida
+ * pelo destino do agendamento em {@link Armazenamentos#obter(String)}.
+ */
+public interface ArmazenamentoBackup {
+
+    /**
+     * Monta a localização de um arquivo neste armazenamento, usada no console
+     * e no histórico de execuções.
+     *
+     * @param nomeArquivo O nome do arquivo de backup.
+     * @return O caminho ou a URI do arquivo.
+     */
+    String getLocalizacao(String nomeArquivo);
+
+    /**
+     * Inicia a gravação de um arquivo. O arquivo só passa a existir com o
+     * nome final depois de {@link GravacaoArmazenamento#concluir()}.
+     *
+     * @param nomeArquivo O nome do arquivo de backup.
+     * @return A gravação iniciada.
+     * @throws IOException Se a gravação não puder ser iniciada.
+     */
+    GravacaoArmazenamento criar(String nomeArquivo) throws IOException;
+
+    /**
+     * Exclui um arquivo do armazenamento. Um arquivo que não existe é
+     * ignorado.
+     *
+     * @param nomeArquivo O nome do arquivo de backup.
+     * @throws IOException Se o arquivo existir e não puder ser excluído.
+     */
+    void excluir(String nomeArquivo) throws IOException;
+}
@@ -0,0 +1,127 @@
+package com.mycompany.ferramentadebackup.armazenamento;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Armazenamento em um diretório do sistema de arquivos.
+ * <p>
+ * O arquivo é gravado em {@code nome.parcial}, sincronizado com o disco e
+ * renomeado para o nome final de forma atômica em
+ * {@link GravacaoArmazenamento#concluir()}.
+ */
+public class ArmazenamentoLocal implements ArmazenamentoBackup {
+
+    /**
+     * Extensão acrescentada ao nome do arquivo enquanto ele é gravado.
+     */
+    public static final String EXTENSAO_PARCIAL = ".parcial";
+
+    private final Path diretorio;
+
+    /**
+     * @param diretorio O diretório onde os arquivos são gravados.
+     */
+    public ArmazenamentoLocal(Path diretorio) {
+        this.diretorio = diretorio;
+    }
+
+    /**
+     * @return O diretório onde os arquivos são gravados.
+     */
+    public Path getDiretorio() {
+        return diretorio;
+    }
+
+    /**
+     * @param nomeArquivo O nome do arquivo de backup.
+     * @return O caminho do arquivo no diretório.
+     */
+    public Path resolver(String nomeArquivo) {
+        return diretorio.resolve(nomeArquivo);
+    }
+
+    @Override
+    public String getLocalizacao(String nomeArquivo) {
+        return resolver(nomeArquivo).toString();
+    }
+
+    @Override
+    public GravacaoArmazenamento criar(String nomeArquivo) throws IOException {
+        Path destino = resolver(nomeArquivo);
+        Path parcial = destino.resolveSibling(destino.getFileName() + EXTENSAO_PARCIAL);
+        FileChannel canal = FileChannel.open(parcial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream saida = new BufferedOutputStream(Channels.newOutputStream(canal), 64 * 1024);
+
+        return new GravacaoArmazenamento() {
+            private boolean concluida;
+
+            @Override
+            public OutputStream getSaida() {
+                return saida;
+            }
+
+            @Override
+            public void concluir() throws IOException {
+                saida.flush();
+                canal.force(true);
+                saida.close();
+                publicar(parcial, destino);
+                concluida = true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                saida.close();
+                if (!concluida) {
+                    Files.deleteIfExists(parcial);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void excluir(String nomeArquivo) throws IOException {
+        Files.deleteIfExists(resolver(nomeArquivo));
+    }
+
+    /**
+     * Renomeia um arquivo temporário para o nome final de forma atômica,
+     * substituindo o destino se ele existir, e sincroniza o diretório.
+     * <p>
+     * Se o sistema de arquivos não suportar a troca atômica, é feita uma
+     * renomeação comum.
+     *
+     * @param temporario O arquivo temporário completo.
+     * @param destino O nome final.
+     * @throws IOException Se ocorrer um erro ao renomear.
+     */
+    public static void publicar(Path temporario, Path destino) throws IOException {
+        try {
+            Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // A renomeação só é durável depois que o diretório é sincronizado.
+        // Nem todo sistema permite abrir um diretório (ex.: Windows); nesse
+        // caso a sincronização é ignorada.
+        Path pasta = destino.toAbsolutePath().getParent();
+        if (pasta != null) {
+            try (FileChannel canal = FileChannel.open(pasta, StandardOpenOption.READ)) {
+                canal.force(true);
+            } catch (IOException e) {
+                // Sem suporte à sincronização de diretórios
+            }
+        }
+    }
+}
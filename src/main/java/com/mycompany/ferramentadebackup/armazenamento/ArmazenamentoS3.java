@@ -0,0 +1,104 @@
+package com.mycompany.ferramentadebackup.armazenamento;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+
+/**
+ * Armazenamento em um bucket de um serviço compatível com S3 (AWS S3, MinIO,
+ * Ceph, etc.).
+ * <p>
+ * O arquivo de backup é enviado em partes, em paralelo, enquanto é produzido
+ * ({@link SaidaMultipartS3}), sem cópia local. O objeto só fica visível
+ * depois de {@link GravacaoArmazenamento#concluir()}; uma gravação fechada
+ * sem conclusão cancela o envio e o servidor descarta as partes recebidas.
+ */
+public class ArmazenamentoS3 implements ArmazenamentoBackup {
+
+    private final URI endpoint;
+    private final String regiao;
+    private final String chaveAcesso;
+    private final String chaveSecreta;
+    private final String bucket;
+    private final String prefixo;
+    private final int tamanhoParte;
+    private final int envios;
+
+    /**
+     * @param endpoint O endereço do serviço, por exemplo
+     * {@code https://s3.us-east-1.amazonaws.com} ou
+     * {@code http://localhost:9000}.
+     * @param regiao A região usada na assinatura das requisições.
+     * @param chaveAcesso O identificador da chave de acesso, ou {@code null}
+     * se não estiver configurado.
+     * @param chaveSecreta A chave secreta, ou {@code null} se não estiver
+     * configurada.
+     * @param bucket O nome do bucket.
+     * @param prefixo O prefixo das chaves dos objetos, sem barra no início.
+     * Pode ser vazio.
+     * @param tamanhoParte O tamanho inicial de cada parte, em bytes.
+     * @param envios A quantidade de partes enviadas em paralelo.
+     */
+    public ArmazenamentoS3(URI endpoint, String regiao, String chaveAcesso, String chaveSecreta,
+            String bucket, String prefixo, int tamanhoParte, int envios) {
+        this.endpoint = endpoint;
+        this.regiao = regiao;
+        this.chaveAcesso = chaveAcesso;
+        this.chaveSecreta = chaveSecreta;
+        this.bucket = bucket;
+        this.prefixo = prefixo.isEmpty() || prefixo.endsWith("/") ? prefixo : prefixo + "/";
+        this.tamanhoParte = Math.max(5 * 1024 * 1024, tamanhoParte);
+        this.envios = Math.max(1, envios);
+    }
+
+    @Override
+    public String getLocalizacao(String nomeArquivo) {
+        return Armazenamentos.ESQUEMA_S3 + bucket + "/" + prefixo + nomeArquivo;
+    }
+
+    @Override
+    public GravacaoArmazenamento criar(String nomeArquivo) throws IOException {
+        SaidaMultipartS3 saida = new SaidaMultipartS3(cliente(nomeArquivo), bucket, prefixo + nomeArquivo, tamanhoParte, envios);
+
+        return new GravacaoArmazenamento() {
+            private boolean concluida;
+
+            @Override
+            public OutputStream getSaida() {
+                return saida;
+            }
+
+            @Override
+            public void concluir() throws IOException {
+                saida.concluir();
+                concluida = true;
+            }
+
+            @Override
+            public void close() {
+                if (!concluida) {
+                    saida.cancelar();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void excluir(String nomeArquivo) throws IOException {
+        cliente(nomeArquivo).excluirObjeto(bucket, prefixo + nomeArquivo);
+    }
+
+    /**
+     * Cria o cliente do serviço, conferindo o bucket e as credenciais.
+     */
+    private ClienteS3 cliente(String nomeArquivo) throws IOException {
+        if (bucket.isEmpty()) {
+            throw new IOException("Destino S3 sem bucket: " + getLocalizacao(nomeArquivo));
+        }
+        if (chaveAcesso == null || chaveSecreta == null) {
+            throw new IOException("Credenciais do S3 não configuradas. Defina AWS_ACCESS_KEY_ID e AWS_SECRET_ACCESS_KEY"
+                    + " ou as propriedades ferramentadebackup.s3.chave e ferramentadebackup.s3.segredo.");
+        }
+        return new ClienteS3(endpoint, regiao, chaveAcesso, chaveSecreta);
+    }
+}
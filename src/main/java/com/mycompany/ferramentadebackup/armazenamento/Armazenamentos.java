@@ -0,0 +1,78 @@
+package com.mycompany.ferramentadebackup.armazenamento;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+/**
+ * Escolhe o {@link ArmazenamentoBackup} a partir do destino de um
+ * agendamento.
+ * <p>
+ * Um destino no formato {@code s3://bucket/prefixo} é gravado em um
+ * armazenamento compatível com S3; qualquer outro valor é tratado como um
+ * diretório local. A conexão com o S3 é configurada pelas propriedades de
+ * sistema (ou pelas variáveis de ambiente equivalentes):
+ * <ul>
+ * <li>{@code ferramentadebackup.s3.endpoint} ({@code AWS_ENDPOINT_URL}) - o
+ * endereço do serviço, por exemplo {@code http://localhost:9000} para um
+ * MinIO; o padrão é o endereço do AWS S3 na região;</li>
+ * <li>{@code ferramentadebackup.s3.regiao} ({@code AWS_REGION}) - padrão
+ * {@code us-east-1};</li>
+ * <li>{@code ferramentadebackup.s3.chave} ({@code AWS_ACCESS_KEY_ID}) e
+ * {@code ferramentadebackup.s3.segredo} ({@code AWS_SECRET_ACCESS_KEY});</li>
+ * <li>{@code ferramentadebackup.s3.parte.mb} - tamanho de cada parte, padrão
+ * 16 MB;</li>
+ * <li>{@code ferramentadebackup.s3.envios} - partes enviadas em paralelo,
+ * padrão 4.</li>
+ * </ul>
+ */
+public class Armazenamentos {
+
+    /**
+     * Prefixo dos destinos gravados em um armazenamento compatível com S3.
+     */
+    public static final String ESQUEMA_S3 = "s3://";
+
+    private Armazenamentos() {
+    }
+
+    /**
+     * Obtém o armazenamento de um destino.
+     *
+     * @param destino O diretório local ou a URI {@code s3://bucket/prefixo}.
+     * @return O armazenamento correspondente.
+     */
+    public static ArmazenamentoBackup obter(String destino) {
+        if (isLocal(destino)) {
+            return new ArmazenamentoLocal(Paths.get(destino));
+        }
+        String caminho = destino.substring(ESQUEMA_S3.length());
+        int barra = caminho.indexOf('/');
+        String bucket = barra >= 0 ? caminho.substring(0, barra) : caminho;
+        String prefixo = barra >= 0 ? caminho.substring(barra + 1) : "";
+
+        String regiao = configuracao("ferramentadebackup.s3.regiao", "AWS_REGION", "us-east-1");
+        String endpoint = configuracao("ferramentadebackup.s3.endpoint", "AWS_ENDPOINT_URL", "https://s3." + regiao + ".amazonaws.com");
+        return new ArmazenamentoS3(URI.create(endpoint), regiao,
+                configuracao("ferramentadebackup.s3.chave", "AWS_ACCESS_KEY_ID", null),
+                configuracao("ferramentadebackup.s3.segredo", "AWS_SECRET_ACCESS_KEY", null),
+                bucket, prefixo,
+                Integer.getInteger("ferramentadebackup.s3.parte.mb", 16) * 1024 * 1024,
+                Integer.getInteger("ferramentadebackup.s3.envios", 4));
+    }
+
+    /**
+     * @param destino O destino do agendamento.
+     * @return {@code true} se o destino for um diretório local.
+     */
+    public static boolean isLocal(String destino) {
+        return destino == null || !destino.regionMatches(true, 0, ESQUEMA_S3, 0, ESQUEMA_S3.length());
+    }
+
+    private static String configuracao(String propriedade, String variavel, String padrao) {
+        String valor = System.getProperty(propriedade);
+        if (valor == null || valor.isEmpty()) {
+            valor = System.getenv(variavel);
+        }
+        return valor == null || valor.isEmpty() ? padrao : valor;
+    }
+}
@@ -0,0 +1,325 @@
+package com.mycompany.ferramentadebackup.armazenamento;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Cliente HTTP mínimo para o envio em partes (multipart upload) de objetos a
+ * um armazenamento compatível com S3, como AWS S3, MinIO ou Ceph.
+ * <p>
+ * As requisições usam o endereçamento por caminho
+ * ({@code endpoint/bucket/chave}) e são assinadas com o AWS Signature
+ * Version 4. Cada parte é enviada com o SHA-256 do conteúdo, de modo que o
+ * servidor rejeita uma parte corrompida no caminho. O envio de uma parte é
+ * repetido algumas vezes em caso de falha de rede ou erro 5xx do servidor.
+ */
+class ClienteS3 {
+
+    private static final String ALGORITMO = "AWS4-HMAC-SHA256";
+    private static final String SERVICO = "s3";
+    private static final int TENTATIVAS = 3;
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+    private static final DateTimeFormatter FORMATO_DATA_HORA = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    private final URI endpoint;
+    private final String regiao;
+    private final String chaveAcesso;
+    private final String chaveSecreta;
+    private final HttpClient http;
+
+    /**
+     * @param endpoint O endereço do serviço, por exemplo
+     * {@code https://s3.us-east-1.amazonaws.com} ou
+     * {@code http://localhost:9000}.
+     * @param regiao A região usada na assinatura.
+     * @param chaveAcesso O identificador da chave de acesso.
+     * @param chaveSecreta A chave secreta.
+     */
+    ClienteS3(URI endpoint, String regiao, String chaveAcesso, String chaveSecreta) {
+        this.endpoint = endpoint;
+        this.regiao = regiao;
+        this.chaveAcesso = chaveAcesso;
+        this.chaveSecreta = chaveSecreta;
+        this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+    }
+
+    /**
+     * Inicia o envio em partes de um objeto.
+     *
+     * @return O identificador do envio.
+     * @throws IOException Se o servidor recusar a requisição.
+     */
+    String iniciarEnvio(String bucket, String chave) throws IOException {
+        Map<String, String> parametros = new TreeMap<>();
+        parametros.put("uploads", "");
+        String resposta = executar("POST", bucket, chave, parametros, new byte[0], 0);
+        Matcher matcher = UPLOAD_ID.matcher(resposta);
+        if (!matcher.find()) {
+            throw new IOException("Resposta inesperada ao iniciar o envio de " + chave + ": " + resposta);
+        }
+        return matcher.group(1);
+    }
+
+    /**
+     * Envia uma parte de um objeto.
+     *
+     * @param numero O número da parte, a partir de 1.
+     * @param dados O buffer com o conteúdo da parte.
+     * @param tamanho A quantidade de bytes do buffer que formam a parte.
+     * @return O ETag da parte, necessário para concluir o envio.
+     * @throws IOException Se a parte não puder ser enviada depois de todas as
+     * tentativas.
+     */
+    String enviarParte(String bucket, String chave, String idEnvio, int numero, byte[] dados, int tamanho) throws IOException {
+        Map<String, String> parametros = new TreeMap<>();
+        parametros.put("partNumber", String.valueOf(numero));
+        parametros.put("uploadId", idEnvio);
+
+        IOException ultimoErro = null;
+        for (int tentativa = 1; tentativa <= TENTATIVAS; tentativa++) {
+            if (tentativa > 1) {
+                esperar(tentativa);
+            }
+            HttpResponse<String> resposta;
+            try {
+                resposta = enviar("PUT", bucket, chave, parametros, dados, tamanho);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                ultimoErro = e;
+                continue;
+            }
+            if (resposta.statusCode() / 100 == 2) {
+                return resposta.headers().firstValue("ETag")
+                        .orElseThrow(() -> new IOException("O servidor não devolveu o ETag da parte " + numero));
+            }
+            ultimoErro = erro(resposta, "PUT", chave);
+            if (resposta.statusCode() < 500) {
+                break;
+            }
+        }
+        throw ultimoErro;
+    }
+
+    /**
+     * Conclui o envio, o que torna o objeto visível com todas as partes.
+     *
+     * @param etags Os ETags das partes, na ordem dos números.
+     * @throws IOException Se o servidor recusar a conclusão.
+     */
+    void concluirEnvio(String bucket, String chave, String idEnvio, List<String> etags) throws IOException {
+        StringBuilder corpo = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            corpo.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                    .append(etags.get(i).replace("&", "&amp;").replace("\"", "&quot;")).append("</ETag></Part>");
+        }
+        corpo.append("</CompleteMultipartUpload>");
+
+        Map<String, String> parametros = new TreeMap<>();
+        parametros.put("uploadId", idEnvio);
+        byte[] dados = corpo.toString().getBytes(StandardCharsets.UTF_8);
+        String resposta = executar("POST", bucket, chave, parametros, dados, dados.length);
+        // O S3 pode devolver 200 com um erro no corpo quando a conclusão falha
+        if (resposta.contains("<Error>")) {
+            throw new IOException("O servidor recusou a conclusão do envio de " + chave + ": " + resposta);
+        }
+    }
+
+    /**
+     * Cancela o envio e descarta as partes já enviadas.
+     *
+     * @throws IOException Se o servidor recusar o cancelamento.
+     */
+    void cancelarEnvio(String bucket, String chave, String idEnvio) throws IOException {
+        Map<String, String> parametros = new TreeMap<>();
+        parametros.put("uploadId", idEnvio);
+        executar("DELETE", bucket, chave, parametros, new byte[0], 0);
+    }
+
+    /**
+     * Exclui um objeto. O S3 responde com sucesso também quando o objeto não
+     * existe.
+     *
+     * @throws IOException Se o servidor recusar a exclusão.
+     */
+    void excluirObjeto(String bucket, String chave) throws IOException {
+        executar("DELETE", bucket, chave, new TreeMap<>(), new byte[0], 0);
+    }
+
+    private String executar(String metodo, String bucket, String chave, Map<String, String> parametros, byte[] dados, int tamanho) throws IOException {
+        HttpResponse<String> resposta = enviar(metodo, bucket, chave, parametros, dados, tamanho);
+        if (resposta.statusCode() / 100 != 2) {
+            throw erro(resposta, metodo, chave);
+        }
+        return resposta.body();
+    }
+
+    private HttpResponse<String> enviar(String metodo, String bucket, String chave, Map<String, String> parametros, byte[] dados, int tamanho) throws IOException {
+        String caminho = codificarCaminho(endpoint.getRawPath().replaceAll("/+$", "") + "/" + bucket + "/" + chave);
+        String consulta = consultaCanonica(parametros);
+        URI uri = URI.create(endpoint.getScheme() + "://" + endpoint.getRawAuthority() + caminho + (consulta.isEmpty() ? "" : "?" + consulta));
+
+        String dataHora = ZonedDateTime.now(ZoneOffset.UTC).format(FORMATO_DATA_HORA);
+        String hashConteudo = hex(sha256(dados, tamanho));
+        Map<String, String> cabecalhos = new TreeMap<>();
+        cabecalhos.put("host", host(uri));
+        cabecalhos.put("x-amz-content-sha256", hashConteudo);
+        cabecalhos.put("x-amz-date", dataHora);
+        String autorizacao = assinar(metodo, caminho, consulta, cabecalhos, hashConteudo, dataHora);
+
+        HttpRequest requisicao = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(10))
+                .header("x-amz-content-sha256", hashConteudo)
+                .header("x-amz-date", dataHora)
+                .header("Authorization", autorizacao)
+                .method(metodo, tamanho > 0
+                        ? HttpRequest.BodyPublishers.ofByteArray(dados, 0, tamanho)
+                        : HttpRequest.BodyPublishers.noBody())
+                .build();
+        try {
+            return http.send(requisicao, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Requisição ao S3 interrompida: " + metodo + " " + chave);
+        }
+    }
+
+    /**
+     * Monta o cabeçalho {@code Authorization} do AWS Signature Version 4.
+     *
+     * @param metodo O método HTTP.
+     * @param caminho O caminho já codificado.
+     * @param consulta A consulta canônica.
+     * @param cabecalhos Os cabeçalhos assinados, com os nomes em minúsculas.
+     * @param hashConteudo O SHA-256 do corpo, em hexadecimal.
+     * @param dataHora O momento da requisição, no formato
+     * {@code yyyyMMdd'T'HHmmss'Z'}.
+     * @return O valor do cabeçalho.
+     */
+    String assinar(String metodo, String caminho, String consulta, Map<String, String> cabecalhos, String hashConteudo, String dataHora) {
+        StringBuilder canonicos = new StringBuilder();
+        for (Map.Entry<String, String> cabecalho : cabecalhos.entrySet()) {
+            canonicos.append(cabecalho.getKey()).append(':').append(cabecalho.getValue().trim()).append('\n');
+        }
+        String assinados = String.join(";", cabecalhos.keySet());
+        String requisicaoCanonica = metodo + '\n' + caminho + '\n' + consulta + '\n' + canonicos + '\n' + assinados + '\n' + hashConteudo;
+
+        String data = dataHora.substring(0, 8);
+        String escopo = data + "/" + regiao + "/" + SERVICO + "/aws4_request";
+        String textoAssinado = ALGORITMO + '\n' + dataHora + '\n' + escopo + '\n'
+                + hex(sha256(requisicaoCanonica.getBytes(StandardCharsets.UTF_8)));
+
+        byte[] chave = hmac(("AWS4" + chaveSecreta).getBytes(StandardCharsets.UTF_8), data);
+        chave = hmac(chave, regiao);
+        chave = hmac(chave, SERVICO);
+        chave = hmac(chave, "aws4_request");
+        String assinatura = hex(hmac(chave, textoAssinado));
+
+        return ALGORITMO + " Credential=" + chaveAcesso + "/" + escopo + ", SignedHeaders=" + assinados + ", Signature=" + assinatura;
+    }
+
+    private static IOException erro(HttpResponse<String> resposta, String metodo, String chave) {
+        return new IOException("HTTP " + resposta.statusCode() + " em " + metodo + " " + chave + ": " + resposta.body());
+    }
+
+    private static void esperar(int tentativa) throws InterruptedIOException {
+        try {
+            Thread.sleep(1000L * (tentativa - 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Envio ao S3 interrompido");
+        }
+    }
+
+    private static String host(URI uri) {
+        int porta = uri.getPort();
+        boolean padrao = porta == -1 || ("http".equals(uri.getScheme()) && porta == 80) || ("https".equals(uri.getScheme()) && porta == 443);
+        return padrao ? uri.getHost() : uri.getHost() + ":" + porta;
+    }
+
+    /**
+     * Codifica cada segmento do caminho conforme a RFC 3986, mantendo as
+     * barras.
+     */
+    private static String codificarCaminho(String caminho) {
+        String[] segmentos = caminho.split("/", -1);
+        for (int i = 0; i < segmentos.length; i++) {
+            segmentos[i] = codificar(segmentos[i]);
+        }
+        return String.join("/", segmentos);
+    }
+
+    private static String consultaCanonica(Map<String, String> parametros) {
+        StringBuilder consulta = new StringBuilder();
+        for (Map.Entry<String, String> parametro : parametros.entrySet()) {
+            if (consulta.length() > 0) {
+                consulta.append('&');
+            }
+            consulta.append(codificar(parametro.getKey())).append('=').append(codificar(parametro.getValue()));
+        }
+        return consulta.toString();
+    }
+
+    private static String codificar(String texto) {
+        StringBuilder codificado = new StringBuilder();
+        for (byte b : texto.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.' || c == '~') {
+                codificado.append(c);
+            } else {
+                codificado.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return codificado.toString();
+    }
+
+    private static byte[] sha256(byte[] dados) {
+        return sha256(dados, dados.length);
+    }
+
+    private static byte[] sha256(byte[] dados, int tamanho) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(dados, 0, tamanho);
+            return digest.digest();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] chave, String texto) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(chave, "HmacSHA256"));
+            return mac.doFinal(texto.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 indisponível", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder texto = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            texto.append(String.format("%02x", b & 0xFF));
+        }
+        return texto.toString();
+    }
+}
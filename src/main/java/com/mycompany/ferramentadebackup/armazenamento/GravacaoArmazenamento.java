@@ -0,0 +1,37 @@
+package com.mycompany.ferramentadebackup.armazenamento;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Gravação de um arquivo de backup em andamento em um
+ * {@link ArmazenamentoBackup}.
+ * <p>
+ * Os bytes são escritos em {@link #getSaida()}. Fechar a saída não publica o
+ * arquivo: isso só acontece em {@link #concluir()}. Um {@link #close()} sem
+ * {@link #concluir()} descarta tudo o que foi gravado.
+ */
+public interface GravacaoArmazenamento extends Closeable {
+
+    /**
+     * @return O fluxo que recebe o conteúdo do arquivo.
+     */
+    OutputStream getSaida();
+
+    /**
+     * Fecha a saída, se necessário, e publica o arquivo com o nome final.
+     *
+     * @throws IOException Se o arquivo não puder ser publicado.
+     */
+    void concluir() throws IOException;
+
+    /**
+     * Libera os recursos da gravação, descartando o arquivo se ele não foi
+     * concluído.
+     *
+     * @throws IOException Se ocorrer um erro ao descartar o arquivo.
+     */
+    @Override
+    void close() throws IOException;
+}
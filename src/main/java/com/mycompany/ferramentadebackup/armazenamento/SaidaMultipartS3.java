@@ -0,0 +1,181 @@
+package com.mycompany.ferramentadebackup.armazenamento;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fluxo de saída que envia o objeto a um armazenamento compatível com S3 em
+ * partes, à medida que os bytes são escritos, sem cópia local.
+ * <p>
+ * Cada parte completa é enviada por uma thread do pool enquanto a próxima é
+ * preenchida. A quantidade de partes em envio é limitada, de modo que a
+ * memória usada não passa de {@code (envios + 1) × tamanho da parte}; quando
+ * todas as vagas estão ocupadas, {@link #write(byte[], int, int)} espera.
+ * Como o S3 aceita no máximo 10.000 partes, o tamanho da parte dobra a cada
+ * 1.000 partes enviadas.
+ * <p>
+ * {@link #close()} envia a última parte e aguarda todas as partes, sem
+ * concluir o envio; o objeto só fica visível em {@link #concluir()}.
+ */
+class SaidaMultipartS3 extends OutputStream {
+
+    private static final int PARTES_POR_DOBRO = 1000;
+    private static final int TAMANHO_MAXIMO_PARTE = 512 * 1024 * 1024;
+
+    private final ClienteS3 cliente;
+    private final String bucket;
+    private final String chave;
+    private final String idEnvio;
+    private final int tamanhoParte;
+    private final ExecutorService pool;
+    private final Semaphore vagas;
+    private final List<Future<String>> partes = new ArrayList<>();
+
+    private byte[] buffer;
+    private int usados;
+    private List<String> etags;
+    private volatile IOException erro;
+
+    /**
+     * Inicia o envio em partes do objeto.
+     *
+     * @param tamanhoParte O tamanho inicial de cada parte, em bytes; o S3
+     * exige pelo menos 5 MB em todas as partes, menos a última.
+     * @param envios A quantidade de partes enviadas em paralelo.
+     * @throws IOException Se o servidor recusar o início do envio.
+     */
+    SaidaMultipartS3(ClienteS3 cliente, String bucket, String chave, int tamanhoParte, int envios) throws IOException {
+        this.cliente = cliente;
+        this.bucket = bucket;
+        this.chave = chave;
+        this.tamanhoParte = tamanhoParte;
+        this.idEnvio = cliente.iniciarEnvio(bucket, chave);
+        this.vagas = new Semaphore(Math.max(1, envios));
+        this.pool = Executors.newFixedThreadPool(Math.max(1, envios), tarefa -> {
+            Thread thread = new Thread(tarefa, "envio-s3");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.buffer = new byte[tamanhoParte];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (etags != null) {
+            throw new IOException("O envio de " + chave + " já foi fechado");
+        }
+        while (len > 0) {
+            int copiar = Math.min(len, buffer.length - usados);
+            System.arraycopy(b, off, buffer, usados, copiar);
+            usados += copiar;
+            off += copiar;
+            len -= copiar;
+            if (usados == buffer.length) {
+                enviarParte();
+            }
+        }
+    }
+
+    /**
+     * Envia a última parte e aguarda o envio de todas. Não conclui o envio.
+     *
+     * @throws IOException Se alguma parte não puder ser enviada.
+     */
+    @Override
+    public void close() throws IOException {
+        if (etags != null) {
+            return;
+        }
+        if (usados > 0 || partes.isEmpty()) {
+            enviarParte();
+        }
+        List<String> enviadas = new ArrayList<>(partes.size());
+        for (Future<String> parte : partes) {
+            try {
+                enviadas.add(parte.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Envio de " + chave + " interrompido");
+            } catch (ExecutionException e) {
+                throw falha(e.getCause());
+            }
+        }
+        etags = enviadas;
+        pool.shutdown();
+    }
+
+    /**
+     * Fecha o fluxo, se necessário, e conclui o envio, tornando o objeto
+     * visível.
+     *
+     * @throws IOException Se alguma parte falhar ou o servidor recusar a
+     * conclusão.
+     */
+    void concluir() throws IOException {
+        close();
+        cliente.concluirEnvio(bucket, chave, idEnvio, etags);
+    }
+
+    /**
+     * Interrompe os envios em andamento e cancela o envio no servidor, que
+     * descarta as partes já recebidas.
+     */
+    void cancelar() {
+        pool.shutdownNow();
+        try {
+            cliente.cancelarEnvio(bucket, chave, idEnvio);
+        } catch (IOException e) {
+            System.out.println("Não foi possível cancelar o envio de " + chave + ": " + e.getMessage());
+        }
+    }
+
+    private void enviarParte() throws IOException {
+        if (erro != null) {
+            throw falha(erro);
+        }
+        try {
+            vagas.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Envio de " + chave + " interrompido");
+        }
+        int numero = partes.size() + 1;
+        byte[] dados = buffer;
+        int tamanho = usados;
+        partes.add(pool.submit(() -> {
+            try {
+                return cliente.enviarParte(bucket, chave, idEnvio, numero, dados, tamanho);
+            } catch (IOException e) {
+                erro = e;
+                throw e;
+            } finally {
+                vagas.release();
+            }
+        }));
+
+        int dobros = Math.min(numero / PARTES_POR_DOBRO, 10);
+        buffer = new byte[(int) Math.min(TAMANHO_MAXIMO_PARTE, (long) tamanhoParte << dobros)];
+        usados = 0;
+    }
+
+    /**
+     * Cria uma nova exceção para a falha de uma parte, pois a mesma falha
+     * pode ser lançada pela escrita e depois pelo fechamento do fluxo.
+     */
+    private IOException falha(Throwable causa) {
+        return new IOException("Falha no envio de " + chave + ": " + causa.getMessage(), causa);
+    }
+}
@@ -0,0 +1,284 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import com.mycompany.ferramentadebackup.armazenamento.ArmazenamentoLocal;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Acréscimo de entradas a um arquivo ZIP existente, sem regravar as que já
+ * estão nele.
+ * <p>
+ * As novas entradas são gravadas a partir do início do diretório central
+ * atual, e só o diretório central é regravado ao final, com os registros
+ * antigos e os novos; os dados e os cabeçalhos locais das entradas existentes
+ * não são tocados. Antes de o arquivo ser alterado, o diretório central atual
+ * (até o fim do arquivo) é copiado para {@code destino.diretorio} e
+ * sincronizado com o disco. Se o acréscimo falhar, ou se a execução for
+ * interrompida e a próxima encontrar essa cópia, o arquivo é truncado de
+ * volta e o diretório central antigo é regravado, de modo que o backup volta
+ * a ser exatamente o de antes.
+ * <p>
+ * O conteúdo antigo das entradas substituídas continua no arquivo, sem
+ * referência. Quando ele passa de um percentual do arquivo, o arquivo é
+ * regravado só com as entradas referenciadas ({@link #compactar}).
+ */
+class AcrescimoZip {
+
+    static final String EXTENSAO_DIRETORIO = ".diretorio";
+
+    private static final int ASSINATURA = 0x46424b41; // "FBKA"
+
+    private static final int TAMANHO_BUFFER = 256 * 1024;
+
+    private final Path destino;
+    private final long posicao;
+    private final List<RegistroZip> registros;
+    private final Map<String, DuplicadosZip.Referencia> referencias;
+
+    private AcrescimoZip(Path destino, long posicao, List<RegistroZip> registros, Map<String, DuplicadosZip.Referencia> referencias) {
+        this.destino = destino;
+        this.posicao = posicao;
+        this.registros = registros;
+        this.referencias = referencias;
+    }
+
+    /**
+     * @param destino O arquivo ZIP.
+     * @return A cópia do diretório central guardada durante um acréscimo.
+     */
+    static Path caminhoDiretorio(Path destino) {
+        return destino.resolveSibling(destino.getFileName() + EXTENSAO_DIRETORIO);
+    }
+
+    /**
+     * Prepara um arquivo ZIP para receber novas entradas.
+     * <p>
+     * Um acréscimo interrompido é desfeito primeiro. Em seguida são lidos os
+     * registros e as referências a arquivos repetidos do arquivo, o diretório
+     * central é copiado e o arquivo é truncado no início dele.
+     *
+     * @param destino O arquivo ZIP existente.
+     * @return O acréscimo, a ser concluído com {@link #concluir()} ou
+     * desfeito com {@link #desfazer()}.
+     * @throws IOException Se o arquivo não for um ZIP válido ou ocorrer um
+     * erro de leitura ou escrita; nesse caso o arquivo não é alterado.
+     */
+    static AcrescimoZip abrir(Path destino) throws IOException {
+        restaurar(destino);
+
+        long inicioCentral;
+        List<RegistroZip> registros;
+        byte[] central;
+        try (FileChannel canal = FileChannel.open(destino, StandardOpenOption.READ)) {
+            inicioCentral = LeitorDiretorioZip.inicioDiretorio(canal);
+            registros = new ArrayList<>(LeitorDiretorioZip.ler(canal));
+            long tamanhoCentral = canal.size() - inicioCentral;
+            if (tamanhoCentral > Integer.MAX_VALUE) {
+                throw new IOException("Diretório central grande demais: " + tamanhoCentral + " bytes");
+            }
+            central = new byte[(int) tamanhoCentral];
+            ByteBuffer buffer = ByteBuffer.wrap(central);
+            while (buffer.hasRemaining()) {
+                if (canal.read(buffer, inicioCentral + buffer.position()) < 0) {
+                    throw new EOFException("Fim inesperado do arquivo ZIP");
+                }
+            }
+        }
+        Map<String, DuplicadosZip.Referencia> referencias = Map.of();
+        if (registros.removeIf(registro -> DuplicadosZip.ENTRADA.equals(registro.nome))) {
+            try (ArquivoZip zip = ArquivoZip.abrir(destino)) {
+                referencias = DuplicadosZip.ler(zip);
+            }
+        }
+
+        // A cópia é montada em um temporário e publicada de uma vez, para que
+        // uma cópia incompleta nunca seja usada para restaurar o arquivo
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(central.length + 24);
+        DataOutputStream saida = new DataOutputStream(bytes);
+        saida.writeInt(ASSINATURA);
+        saida.writeLong(inicioCentral);
+        saida.writeInt(central.length);
+        saida.write(central);
+        CRC32 crc = new CRC32();
+        crc.update(central);
+        saida.writeLong(crc.getValue());
+        Path copia = caminhoDiretorio(destino);
+        Path temporario = copia.resolveSibling(copia.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            gravar(canal, ByteBuffer.wrap(bytes.toByteArray()));
+            canal.force(false);
+        }
+        ArmazenamentoLocal.publicar(temporario, copia);
+
+        try (FileChannel canal = FileChannel.open(destino, StandardOpenOption.WRITE)) {
+            canal.truncate(inicioCentral);
+        }
+        return new AcrescimoZip(destino, inicioCentral, registros, referencias);
+    }
+
+    /**
+     * @return A posição a partir da qual as novas entradas são gravadas.
+     */
+    long getPosicao() {
+        return posicao;
+    }
+
+    /**
+     * @return Os registros das entradas existentes, na ordem do diretório
+     * central, sem a entrada interna de arquivos repetidos.
+     */
+    List<RegistroZip> getRegistros() {
+        return registros;
+    }
+
+    /**
+     * @return As referências a arquivos repetidos já gravadas no arquivo.
+     */
+    Map<String, DuplicadosZip.Referencia> getReferencias() {
+        return referencias;
+    }
+
+    /**
+     * Conclui o acréscimo, descartando a cópia do diretório central antigo.
+     * O arquivo já deve estar completo e sincronizado com o disco.
+     *
+     * @throws IOException Se ocorrer um erro ao excluir a cópia.
+     */
+    void concluir() throws IOException {
+        Files.deleteIfExists(caminhoDiretorio(destino));
+    }
+
+    /**
+     * Devolve o arquivo ao estado de antes do acréscimo.
+     *
+     * @throws IOException Se ocorrer um erro de escrita; a cópia do
+     * diretório central é mantida para a próxima execução.
+     */
+    void desfazer() throws IOException {
+        restaurar(destino);
+    }
+
+    /**
+     * Regrava o diretório central guardado por um acréscimo que não foi
+     * concluído, se houver um, e exclui a cópia.
+     */
+    private static void restaurar(Path destino) throws IOException {
+        Path copia = caminhoDiretorio(destino);
+        if (!Files.exists(copia)) {
+            return;
+        }
+        long inicioCentral;
+        byte[] central;
+        try (DataInputStream entrada = new DataInputStream(Files.newInputStream(copia))) {
+            if (entrada.readInt() != ASSINATURA) {
+                throw new IOException("Cópia do diretório central inválida: " + copia);
+            }
+            inicioCentral = entrada.readLong();
+            central = new byte[entrada.readInt()];
+            entrada.readFully(central);
+            CRC32 crc = new CRC32();
+            crc.update(central);
+            if (crc.getValue() != entrada.readLong()) {
+                throw new IOException("Cópia do diretório central corrompida: " + copia);
+            }
+        }
+        try (FileChannel canal = FileChannel.open(destino, StandardOpenOption.WRITE)) {
+            canal.truncate(inicioCentral);
+            gravar(canal, ByteBuffer.wrap(central), inicioCentral);
+            canal.force(true);
+        }
+        Files.delete(copia);
+        System.out.println("Acréscimo não concluído desfeito: " + destino);
+    }
+
+    /**
+     * Regrava o arquivo só com as entradas do diretório central quando o
+     * conteúdo sem referência, deixado pelas entradas substituídas nos
+     * acréscimos, passa do percentual informado.
+     * <p>
+     * Os dados de cada entrada são copiados como estão
+     * ({@link GravadorZip#copiarEntrada}), sem descompressão, para
+     * {@code destino.parcial}, que substitui o arquivo de uma vez ao final;
+     * uma falha deixa o arquivo como estava.
+     *
+     * @param destino O arquivo ZIP, sem acréscimo pendente.
+     * @param percentualMaximo O percentual do arquivo que pode ficar sem
+     * referência.
+     * @return {@code true} se o arquivo foi regravado.
+     * @throws IOException Se ocorrer um erro de leitura ou de escrita.
+     */
+    static boolean compactar(Path destino, int percentualMaximo) throws IOException {
+        Path parcial = DiarioCompactacao.caminhoParcial(destino);
+        boolean concluido = false;
+        try {
+            long tamanhoAnterior;
+            long naoReferenciados;
+            try (FileChannel canal = FileChannel.open(destino, StandardOpenOption.READ)) {
+                tamanhoAnterior = canal.size();
+                List<RegistroZip> registros = LeitorDiretorioZip.ler(canal);
+                naoReferenciados = LeitorDiretorioZip.inicioDiretorio(canal);
+                for (RegistroZip registro : registros) {
+                    naoReferenciados -= tamanhoGravado(registro);
+                }
+                if (naoReferenciados * 100 < tamanhoAnterior * percentualMaximo) {
+                    return false;
+                }
+                try (GravadorZip gravador = new GravadorZip(new BufferedOutputStream(Files.newOutputStream(parcial), TAMANHO_BUFFER),
+                        Deflater.DEFAULT_COMPRESSION)) {
+                    for (RegistroZip registro : registros) {
+                        gravador.copiarEntrada(registro, canal);
+                    }
+                }
+            }
+            CompactadorZip.sincronizar(parcial);
+            ArmazenamentoLocal.publicar(parcial, destino);
+            concluido = true;
+            System.out.println("Backup compactado: " + destino + " (" + tamanhoAnterior + " para " + Files.size(destino) + " bytes).");
+            return true;
+        } finally {
+            if (!concluido) {
+                Files.deleteIfExists(parcial);
+            }
+        }
+    }
+
+    /**
+     * @return O tamanho de uma entrada no arquivo: cabeçalho local, dados e
+     * descritor de dados.
+     */
+    private static long tamanhoGravado(RegistroZip registro) {
+        long tamanho = registro.tamanhoCabecalhoLocal + registro.tamanhoComprimido;
+        if ((registro.flags & GravadorZip.FLAG_DESCRITOR) != 0) {
+            boolean zip64 = registro.tamanho >= GravadorZip.LIMITE_ZIP32 || registro.tamanhoComprimido >= GravadorZip.LIMITE_ZIP32;
+            tamanho += zip64 ? 24 : 16;
+        }
+        return tamanho;
+    }
+
+    private static void gravar(FileChannel canal, ByteBuffer dados) throws IOException {
+        while (dados.hasRemaining()) {
+            canal.write(dados);
+        }
+    }
+
+    private static void gravar(FileChannel canal, ByteBuffer dados, long posicao) throws IOException {
+        while (dados.hasRemaining()) {
+            canal.write(dados, posicao + dados.position());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Arquivo da origem a ser gravado em um arquivo de backup, com os atributos
+ * lidos durante a varredura e o nome que a entrada terá no arquivo.
+ * <p>
+ * Usado quando a lista de arquivos precisa ser conhecida antes da gravação,
+ * como na divisão em volumes.
+ */
+class ArquivoOrigem {
+
+    final Path caminho;
+    final BasicFileAttributes attrs;
+    final String nomeEntrada;
+
+    ArquivoOrigem(Path caminho, BasicFileAttributes attrs, String nomeEntrada) {
+        this.caminho = caminho;
+        this.attrs = attrs;
+        this.nomeEntrada = nomeEntrada;
+    }
+}
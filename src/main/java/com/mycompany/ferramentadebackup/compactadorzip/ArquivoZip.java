@@ -0,0 +1,208 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Arquivo ZIP aberto para leitura das entradas, no lugar do
+ * {@link java.util.zip.ZipFile}.
+ * <p>
+ * O {@link java.util.zip.ZipFile} recusa o arquivo inteiro quando alguma
+ * entrada usa um método de compressão que ele não conhece, como o das
+ * entradas comprimidas com o dicionário compartilhado
+ * ({@link DicionarioDeflate#METODO}), e só lê arquivos em disco. Aqui o
+ * diretório central é lido por {@link LeitorDiretorioZip} a partir de
+ * qualquer {@link SeekableByteChannel} e cada entrada é lida diretamente da
+ * sua posição, de modo que várias threads podem ler entradas diferentes ao
+ * mesmo tempo.
+ */
+class ArquivoZip implements Closeable {
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private final String nome;
+    private final SeekableByteChannel canal;
+    private final List<RegistroZip> registros;
+    private final Map<String, RegistroZip> porNome;
+
+    /**
+     * Abre um arquivo ZIP em disco.
+     *
+     * @param arquivo O arquivo ZIP.
+     * @return O arquivo aberto.
+     * @throws IOException Se o arquivo não puder ser lido ou não for um ZIP
+     * válido.
+     */
+    static ArquivoZip abrir(Path arquivo) throws IOException {
+        return new ArquivoZip(FileChannel.open(arquivo, StandardOpenOption.READ), arquivo.toString());
+    }
+
+    /**
+     * Lê o diretório central de um arquivo ZIP. O canal passa a pertencer ao
+     * arquivo aberto e é fechado por {@link #close()}, inclusive se a leitura
+     * falhar.
+     *
+     * @param canal O canal com o conteúdo do ZIP.
+     * @param nome O nome do arquivo, usado nas mensagens de erro.
+     * @throws IOException Se o conteúdo não for um ZIP válido.
+     */
+    ArquivoZip(SeekableByteChannel canal, String nome) throws IOException {
+        this.nome = nome;
+        this.canal = canal;
+        try {
+            this.registros = Collections.unmodifiableList(LeitorDiretorioZip.ler(canal));
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+        this.porNome = new HashMap<>();
+        for (RegistroZip registro : registros) {
+            porNome.put(registro.nome, registro);
+        }
+    }
+
+    /**
+     * @return O nome do arquivo.
+     */
+    String getNome() {
+        return nome;
+    }
+
+    /**
+     * @return Os registros das entradas, na ordem do diretório central.
+     */
+    List<RegistroZip> getRegistros() {
+        return registros;
+    }
+
+    /**
+     * @param nomeEntrada O nome da entrada.
+     * @return O registro da entrada, ou {@code null} se ela não existir.
+     */
+    RegistroZip getRegistro(String nomeEntrada) {
+        return porNome.get(nomeEntrada);
+    }
+
+    /**
+     * Abre os dados de uma entrada como estão gravados, sem descompressão.
+     *
+     * @param registro O registro da entrada.
+     * @return Uma stream com os dados gravados da entrada.
+     */
+    InputStream abrirBruto(RegistroZip registro) {
+        return new DadosEntrada(registro.posicaoDados(), registro.tamanhoComprimido, registro.nome);
+    }
+
+    /**
+     * Abre o conteúdo de uma entrada STORED ou DEFLATED.
+     *
+     * @param registro O registro da entrada.
+     * @return Uma stream com o conteúdo descomprimido da entrada.
+     * @throws ZipException Se a entrada usar outro método de compressão.
+     */
+    InputStream abrir(RegistroZip registro) throws ZipException {
+        if (registro.metodo == ZipEntry.STORED) {
+            return abrirBruto(registro);
+        }
+        if (registro.metodo == ZipEntry.DEFLATED) {
+            return inflar(abrirBruto(registro), new Inflater(true));
+        }
+        throw new ZipException("Método de compressão " + registro.metodo + " não suportado na entrada " + registro.nome + " de " + nome);
+    }
+
+    /**
+     * Descomprime o deflate bruto de uma stream, liberando o
+     * {@link Inflater} ao fechar.
+     *
+     * @param dados Os dados comprimidos.
+     * @param inflater O inflater, já preparado (por exemplo, com um
+     * dicionário).
+     * @return Uma stream com o conteúdo descomprimido.
+     */
+    static InputStream inflar(InputStream dados, Inflater inflater) {
+        return new InflaterInputStream(dados, inflater, TAMANHO_BUFFER) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    /**
+     * Os dados gravados de uma entrada, lidos do canal a partir da sua
+     * posição.
+     */
+    private class DadosEntrada extends InputStream {
+
+        private final String nomeEntrada;
+        private long posicao;
+        private long restantes;
+
+        DadosEntrada(long posicao, long tamanho, String nomeEntrada) {
+            this.posicao = posicao;
+            this.restantes = tamanho;
+            this.nomeEntrada = nomeEntrada;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] um = new byte[1];
+            return read(um, 0, 1) < 0 ? -1 : um[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int inicio, int tamanho) throws IOException {
+            if (restantes == 0) {
+                return -1;
+            }
+            if (tamanho == 0) {
+                return 0;
+            }
+            ByteBuffer destino = ByteBuffer.wrap(buffer, inicio, (int) Math.min(tamanho, restantes));
+            int lidos = LeitorDiretorioZip.lerEm(canal, destino, posicao);
+            if (lidos < 0) {
+                throw new EOFException("Fim inesperado dos dados da entrada " + nomeEntrada + " em " + nome);
+            }
+            posicao += lidos;
+            restantes -= lidos;
+            return lidos;
+        }
+
+        @Override
+        public long skip(long quantidade) {
+            long pulados = Math.max(0, Math.min(quantidade, restantes));
+            posicao += pulados;
+            restantes -= pulados;
+            return pulados;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, restantes);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipException;
+
+/**
+ * Assinaturas de blocos dos arquivos grandes gravados em uma execução de
+ * backup, usadas para gravar a execução seguinte como delta
+ * ({@link CodificadorDelta}).
+ * <p>
+ * Cada arquivo é dividido em blocos de tamanho fixo, e cada bloco completo
+ * tem uma soma fraca, que pode ser deslocada byte a byte (como no rsync), e
+ * um MD5. As assinaturas de um job ficam em um arquivo local, fora do
+ * backup, e são substituídas ao final de cada execução concluída com
+ * {@link #gravar}; assim a execução seguinte não precisa ler, nem decifrar,
+ * o backup anterior. Sem o arquivo de assinaturas, os arquivos grandes são
+ * simplesmente gravados inteiros.
+ * <p>
+ * O arquivo registra também a execução descrita e a profundidade da cadeia
+ * de deltas até ela, para que a cadeia possa ser encerrada com um backup
+ * completo a cada tantas execuções.
+ */
+public class AssinaturasDelta {
+
+    // "FBAS"
+    private static final int ASSINATURA = 0x46424153;
+    private static final int VERSAO = 1;
+
+    static final int TAMANHO_FORTE = 16;
+
+    private final Map<String, Assinatura> arquivos = new ConcurrentHashMap<>();
+    private final AtomicInteger entradasDelta = new AtomicInteger();
+    private int idExecucao;
+    private String arquivoBackup;
+    private int profundidade;
+
+    /**
+     * Cria um conjunto vazio, que recebe as assinaturas de uma nova execução.
+     */
+    public AssinaturasDelta() {
+    }
+
+    /**
+     * Lê as assinaturas gravadas por {@link #gravar}.
+     *
+     * @param arquivo O arquivo de assinaturas do job.
+     * @return As assinaturas, ou um conjunto vazio se o arquivo não existir.
+     * @throws IOException Se o arquivo estiver corrompido ou não puder ser
+     * lido.
+     */
+    public static AssinaturasDelta carregar(Path arquivo) throws IOException {
+        AssinaturasDelta assinaturas = new AssinaturasDelta();
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(arquivo), 256 * 1024))) {
+            if (entrada.readInt() != ASSINATURA || entrada.readUnsignedByte() != VERSAO) {
+                throw new ZipException("Arquivo de assinaturas inválido: " + arquivo);
+            }
+            assinaturas.idExecucao = entrada.readInt();
+            assinaturas.arquivoBackup = entrada.readUTF();
+            assinaturas.profundidade = entrada.readInt();
+            int quantidade = entrada.readInt();
+            for (int i = 0; i < quantidade; i++) {
+                String nome = entrada.readUTF();
+                long tamanho = entrada.readLong();
+                long modificado = entrada.readLong();
+                long crc = entrada.readInt() & 0xFFFFFFFFL;
+                int tamanhoBloco = entrada.readInt();
+                int blocos = entrada.readInt();
+                int[] fracas = new int[blocos];
+                byte[] fortes = new byte[blocos * TAMANHO_FORTE];
+                for (int bloco = 0; bloco < blocos; bloco++) {
+                    fracas[bloco] = entrada.readInt();
+                    entrada.readFully(fortes, bloco * TAMANHO_FORTE, TAMANHO_FORTE);
+                }
+                assinaturas.arquivos.put(nome, new Assinatura(tamanho, modificado, crc, tamanhoBloco, fracas, fortes, blocos));
+            }
+        } catch (NoSuchFileException e) {
+            return new AssinaturasDelta();
+        }
+        return assinaturas;
+    }
+
+    /**
+     * Grava as assinaturas de uma execução concluída, substituindo as
+     * anteriores de forma atômica.
+     *
+     * @param arquivo O arquivo de assinaturas do job.
+     * @param idExecucao O ID da execução no histórico.
+     * @param arquivoBackup O nome do arquivo de backup da execução.
+     * @param profundidade A quantidade de execuções delta desde o último
+     * backup completo (0 para um backup completo).
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public void gravar(Path arquivo, int idExecucao, String arquivoBackup, int profundidade) throws IOException {
+        Path absoluto = arquivo.toAbsolutePath();
+        Files.createDirectories(absoluto.getParent());
+        Path temporario = absoluto.resolveSibling(absoluto.getFileName() + ".tmp");
+        try (DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporario), 256 * 1024))) {
+            saida.writeInt(ASSINATURA);
+            saida.writeByte(VERSAO);
+            saida.writeInt(idExecucao);
+            saida.writeUTF(arquivoBackup);
+            saida.writeInt(profundidade);
+            saida.writeInt(arquivos.size());
+            for (Map.Entry<String, Assinatura> registro : arquivos.entrySet()) {
+                Assinatura assinatura = registro.getValue();
+                saida.writeUTF(registro.getKey());
+                saida.writeLong(assinatura.tamanho);
+                saida.writeLong(assinatura.modificado);
+                saida.writeInt((int) assinatura.crc);
+                saida.writeInt(assinatura.tamanhoBloco);
+                saida.writeInt(assinatura.blocos);
+                for (int bloco = 0; bloco < assinatura.blocos; bloco++) {
+                    saida.writeInt(assinatura.fracas[bloco]);
+                    saida.write(assinatura.fortes, bloco * TAMANHO_FORTE, TAMANHO_FORTE);
+                }
+            }
+        }
+        Files.move(temporario, absoluto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return {@code true} se não houver assinaturas.
+     */
+    public boolean isVazia() {
+        return arquivos.isEmpty();
+    }
+
+    /**
+     * @return O ID da execução descrita pelas assinaturas carregadas.
+     */
+    public int getIdExecucao() {
+        return idExecucao;
+    }
+
+    /**
+     * @return O nome do arquivo de backup da execução descrita, ou
+     * {@code null} em um conjunto novo.
+     */
+    public String getArquivoBackup() {
+        return arquivoBackup;
+    }
+
+    /**
+     * @return A quantidade de execuções delta desde o último backup completo,
+     * até a execução descrita.
+     */
+    public int getProfundidade() {
+        return profundidade;
+    }
+
+    /**
+     * @return A quantidade de arquivos gravados como delta na execução que
+     * registrou estas assinaturas. Se for zero, a execução não depende de
+     * nenhum backup anterior.
+     */
+    public int getEntradasDelta() {
+        return entradasDelta.get();
+    }
+
+    Assinatura obter(String nome) {
+        return arquivos.get(nome);
+    }
+
+    void registrar(String nome, Assinatura assinatura) {
+        arquivos.put(nome, assinatura);
+    }
+
+    void contarEntradaDelta() {
+        entradasDelta.incrementAndGet();
+    }
+
+    /**
+     * As assinaturas dos blocos de um arquivo, com o tamanho, a data de
+     * modificação e o CRC-32 do arquivo inteiro.
+     */
+    static class Assinatura {
+
+        final long tamanho;
+        final long modificado;
+        final long crc;
+        final int tamanhoBloco;
+        final int[] fracas;
+        final byte[] fortes;
+        final int blocos;
+
+        // Tabela de espalhamento das somas fracas, montada na primeira busca
+        private int[] cabecas;
+        private int[] proximos;
+
+        Assinatura(long tamanho, long modificado, long crc, int tamanhoBloco, int[] fracas, byte[] fortes, int blocos) {
+            this.tamanho = tamanho;
+            this.modificado = modificado;
+            this.crc = crc;
+            this.tamanhoBloco = tamanhoBloco;
+            this.fracas = fracas;
+            this.fortes = fortes;
+            this.blocos = blocos;
+        }
+
+        /**
+         * Procura um bloco com a soma fraca informada cujo MD5 confira com o
+         * da janela.
+         *
+         * @param fraca A soma fraca da janela.
+         * @param forte O MD5 da janela, calculado somente na primeira
+         * comparação necessária.
+         * @param preferido O bloco testado primeiro (o seguinte ao último
+         * encontrado), ou -1.
+         * @return O índice do bloco, ou -1.
+         */
+        int localizar(int fraca, CalculoForte forte, int preferido) {
+            if (cabecas == null) {
+                montarTabela();
+            }
+            if (preferido >= 0 && preferido < blocos && fracas[preferido] == fraca && confere(preferido, forte.calcular())) {
+                return preferido;
+            }
+            for (int bloco = cabecas[espalhar(fraca) & (cabecas.length - 1)]; bloco >= 0; bloco = proximos[bloco]) {
+                if (fracas[bloco] == fraca && bloco != preferido && confere(bloco, forte.calcular())) {
+                    return bloco;
+                }
+            }
+            return -1;
+        }
+
+        private boolean confere(int bloco, byte[] forte) {
+            return Arrays.equals(fortes, bloco * TAMANHO_FORTE, (bloco + 1) * TAMANHO_FORTE, forte, 0, TAMANHO_FORTE);
+        }
+
+        private void montarTabela() {
+            int tamanhoTabela = Integer.highestOneBit(Math.max(16, blocos * 2 - 1)) << 1;
+            int[] novasCabecas = new int[tamanhoTabela];
+            int[] novosProximos = new int[blocos];
+            Arrays.fill(novasCabecas, -1);
+            // Do último para o primeiro, para que cada cadeia fique em ordem crescente
+            for (int bloco = blocos - 1; bloco >= 0; bloco--) {
+                int posicao = espalhar(fracas[bloco]) & (tamanhoTabela - 1);
+                novosProximos[bloco] = novasCabecas[posicao];
+                novasCabecas[posicao] = bloco;
+            }
+            proximos = novosProximos;
+            cabecas = novasCabecas;
+        }
+
+        private static int espalhar(int fraca) {
+            return fraca * 0x9E3779B1 ^ (fraca >>> 16);
+        }
+    }
+
+    /**
+     * O MD5 da janela atual, calculado sob demanda.
+     */
+    interface CalculoForte {
+
+        byte[] calcular();
+    }
+}
@@ -0,0 +1,151 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipException;
+
+/**
+ * Backups usados como base das entradas delta ({@link DeltaArquivo}) em uma
+ * restauração.
+ * <p>
+ * Cada backup base é procurado pelo nome no diretório do backup restaurado,
+ * aberto (e decifrado, se necessário) uma única vez, e a versão de cada
+ * arquivo nele é reconstruída em um temporário, reaproveitado pelas demais
+ * entradas que dependem dela. Uma base que também é delta é reconstruída a
+ * partir da sua própria base. Os temporários ficam no diretório de
+ * restauração e são excluídos em {@link #close()}.
+ */
+class BasesDelta implements Closeable {
+
+    // Proteção contra receitas que apontam umas para as outras
+    private static final int PROFUNDIDADE_MAXIMA = 64;
+
+    private final Path diretorioBackup;
+    private final Path diretorioTemporario;
+    private final char[] senha;
+    private final Map<String, List<Base>> abertas = new HashMap<>();
+    private final Map<String, Path> reconstruidos = new HashMap<>();
+    private final List<Path> temporarios = new ArrayList<>();
+    private int profundidade;
+
+    /**
+     * @param diretorioBackup O diretório do backup restaurado, onde ficam os
+     * backups base.
+     * @param diretorioTemporario O diretório onde os temporários são criados.
+     * @param senha A senha do job, se os backups forem cifrados, ou
+     * {@code null}.
+     */
+    BasesDelta(Path diretorioBackup, Path diretorioTemporario, char[] senha) {
+        this.diretorioBackup = diretorioBackup;
+        this.diretorioTemporario = diretorioTemporario;
+        this.senha = senha;
+    }
+
+    /**
+     * Reconstrói a versão de um arquivo em um backup base.
+     *
+     * @param arquivoBase O nome do backup base, como gravado na receita.
+     * @param nome O nome da entrada.
+     * @return O temporário com o conteúdo do arquivo, que não deve ser
+     * alterado.
+     * @throws IOException Se o backup base não for encontrado, não tiver a
+     * entrada ou não puder ser restaurado.
+     */
+    synchronized Path materializar(String arquivoBase, String nome) throws IOException {
+        String chave = arquivoBase + '\n' + nome;
+        Path reconstruido = reconstruidos.get(chave);
+        if (reconstruido != null) {
+            return reconstruido;
+        }
+        if (profundidade >= PROFUNDIDADE_MAXIMA) {
+            throw new ZipException("Cadeia de deltas longa demais na entrada " + nome);
+        }
+        for (Base base : abrir(arquivoBase)) {
+            RegistroZip entrada = base.zip.getRegistro(nome);
+            DuplicadosZip.Referencia referencia = entrada == null ? base.duplicados.get(nome) : null;
+            if (referencia != null) {
+                entrada = RestauradorZip.entradaOriginal(base.zip, referencia);
+            }
+            if (entrada == null) {
+                continue;
+            }
+            Path temporario = Files.createTempFile(diretorioTemporario, ".delta-", ".tmp");
+            temporarios.add(temporario);
+            profundidade++;
+            try {
+                RestauradorZip.restaurarEntrada(base.zip, entrada, base.dicionario, temporario, this);
+            } finally {
+                profundidade--;
+            }
+            reconstruidos.put(chave, temporario);
+            return temporario;
+        }
+        throw new IOException("Entrada não encontrada no backup base " + arquivoBase + ": " + nome);
+    }
+
+    private List<Base> abrir(String arquivoBase) throws IOException {
+        List<Base> bases = abertas.get(arquivoBase);
+        if (bases != null) {
+            return bases;
+        }
+        Path arquivo = diretorioBackup.resolve(Paths.get(arquivoBase).getFileName());
+        if (!Files.exists(arquivo)) {
+            // Backup dividido em volumes: a receita guarda o nome nominal
+            arquivo = CompactadorVolumes.nomeVolume(arquivo, ".zip", 1);
+        }
+        if (!Files.exists(arquivo)) {
+            throw new IOException("Backup base não encontrado em " + diretorioBackup + ": " + arquivoBase);
+        }
+        bases = new ArrayList<>();
+        abertas.put(arquivoBase, bases);
+        for (Path volume : RestauradorZip.localizarVolumes(arquivo)) {
+            ArquivoZip zip = RestauradorZip.abrirZip(volume, senha);
+            try {
+                bases.add(new Base(zip, DicionarioDeflate.ler(zip), DuplicadosZip.ler(zip)));
+            } catch (IOException | RuntimeException e) {
+                zip.close();
+                throw e;
+            }
+        }
+        return bases;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            for (List<Base> bases : abertas.values()) {
+                for (Base base : bases) {
+                    base.zip.close();
+                }
+            }
+        } finally {
+            abertas.clear();
+            reconstruidos.clear();
+            RestauradorZip.excluir(temporarios);
+            temporarios.clear();
+        }
+    }
+
+    /**
+     * Um volume aberto de um backup base.
+     */
+    private static class Base {
+
+        final ArquivoZip zip;
+        final byte[] dicionario;
+        final Map<String, DuplicadosZip.Referencia> duplicados;
+
+        Base(ArquivoZip zip, byte[] dicionario, Map<String, DuplicadosZip.Referencia> duplicados) {
+            this.zip = zip;
+            this.dicionario = dicionario;
+            this.duplicados = duplicados;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Ferramenta de linha de comando para comparar os formatos e perfis de
+ * compressão sobre uma mesma origem.
+ * <p>
+ * Cada combinação de formato e perfil é executada pelo mesmo caminho usado
+ * pelos backups agendados ({@link CompactadorZip}), e o resultado mostra a
+ * duração, a vazão sobre os bytes de origem e a razão de compressão.
+ * <p>
+ * Uso:
+ * <pre>
+ * java -cp FerramentaDeBackup.jar com.mycompany.ferramentadebackup.compactadorzip.BenchmarkCompactacao \
+ *      &lt;origem&gt; &lt;diretorio_temporario&gt; [repeticoes] [formatos] [perfis]
+ * </pre>
+ * Os formatos e perfis são listas separadas por vírgula (ex.: {@code ZIP,TAR}
+ * e {@code RAPIDO,ADAPTATIVO}); por padrão todos são medidos. A primeira
+ * repetição de cada combinação serve de aquecimento e é descartada quando há
+ * mais de uma.
+ */
+public class BenchmarkCompactacao {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Uso: BenchmarkCompactacao <origem> <diretorio_temporario> [repeticoes] [formatos] [perfis]");
+            return;
+        }
+        Path origem = Paths.get(args[0]);
+        Path temporario = Paths.get(args[1]);
+        int repeticoes = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        List<ProvedorFormatoArquivo> formatos = args.length > 3 ? formatos(args[3]) : FormatosArquivo.listar();
+        List<PerfilCompressao> perfis = args.length > 4 ? perfis(args[4]) : List.of(PerfilCompressao.values());
+
+        Files.createDirectories(temporario);
+        long bytesOrigem = tamanhoOrigem(origem);
+        System.out.printf(Locale.ROOT, "Origem: %s (%.1f MiB)%n", origem, bytesOrigem / 1048576d);
+        System.out.printf(Locale.ROOT, "%-20s %-14s %10s %10s %8s%n", "formato", "perfil", "segundos", "MiB/s", "razao");
+
+        for (ProvedorFormatoArquivo formato : formatos) {
+            for (PerfilCompressao perfil : perfis) {
+                OpcoesCompactacao opcoes = new OpcoesCompactacao();
+                opcoes.setFormato(formato);
+                opcoes.setPerfilCompressao(perfil);
+                Path destino = temporario.resolve("benchmark-" + formato.getNome() + "-" + perfil.name() + formato.getExtensao());
+
+                long melhor = Long.MAX_VALUE;
+                for (int i = 0; i < repeticoes; i++) {
+                    long inicio = System.nanoTime();
+                    CompactadorZip.compactarParaZip(origem.toString(), destino.toString(), null, opcoes);
+                    long duracao = System.nanoTime() - inicio;
+                    if (repeticoes == 1 || i > 0) {
+                        melhor = Math.min(melhor, duracao);
+                    }
+                }
+
+                double segundos = melhor / 1e9;
+                double razao = bytesOrigem == 0 ? 0 : Files.size(destino) / (double) bytesOrigem;
+                System.out.printf(Locale.ROOT, "%-20s %-14s %10.2f %10.1f %8.3f%n",
+                        formato.getNome(), perfil.name(), segundos, bytesOrigem / 1048576d / segundos, razao);
+                Files.deleteIfExists(destino);
+            }
+        }
+    }
+
+    private static long tamanhoOrigem(Path origem) throws IOException {
+        if (!Files.isDirectory(origem)) {
+            return Files.size(origem);
+        }
+        try (Stream<Path> arquivos = Files.walk(origem)) {
+            return arquivos.map(Path::toFile).filter(File::isFile).mapToLong(File::length).sum();
+        }
+    }
+
+    private static List<ProvedorFormatoArquivo> formatos(String lista) {
+        List<ProvedorFormatoArquivo> formatos = new ArrayList<>();
+        for (String nome : lista.split(",")) {
+            formatos.add(FormatosArquivo.obter(nome));
+        }
+        return formatos;
+    }
+
+    private static List<PerfilCompressao> perfis(String lista) {
+        List<PerfilCompressao> perfis = new ArrayList<>();
+        for (String nome : lista.split(",")) {
+            perfis.add(PerfilCompressao.deNome(nome));
+        }
+        return perfis;
+    }
+}
@@ -0,0 +1,33 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+/**
+ * Cache persistente do hash do conteúdo dos arquivos de origem, consultado
+ * pelo {@link CompactadorZip} para não ler um arquivo inalterado só para
+ * calcular o seu hash.
+ * <p>
+ * A chave identifica a versão do arquivo sem ler o conteúdo (dispositivo,
+ * inode, tamanho e data de modificação) e é montada por
+ * {@link HashConteudo#chave}; o valor é o hash do conteúdo
+ * ({@link HashConteudo#TAMANHO} bytes). As implementações devem aceitar
+ * chamadas de várias threads, pois os volumes de um backup são gravados em
+ * paralelo.
+ */
+public interface CacheHashes {
+
+    /**
+     * Procura o hash de uma versão de arquivo.
+     *
+     * @param chave A chave da versão do arquivo.
+     * @return O hash do conteúdo, ou {@code null} se a versão não estiver no
+     * cache.
+     */
+    byte[] obter(byte[] chave);
+
+    /**
+     * Guarda o hash de uma versão de arquivo.
+     *
+     * @param chave A chave da versão do arquivo.
+     * @param hash O hash do conteúdo.
+     */
+    void registrar(byte[] chave, byte[] hash);
+}
@@ -0,0 +1,186 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.SecretKey;
+
+/**
+ * Canal somente leitura com o conteúdo decifrado de um arquivo de backup
+ * cifrado pela {@link Criptografia}, com acesso a qualquer posição.
+ * <p>
+ * Como os blocos do formato têm tamanho fixo e são autenticados
+ * isoladamente, a leitura de uma posição só decifra os blocos que a contêm;
+ * uma etiqueta que não confere faz a leitura falhar. Assim, o diretório
+ * central de um ZIP cifrado e uma única entrada podem ser lidos sem decifrar
+ * o arquivo inteiro para um temporário. Os blocos decifrados mais recentes
+ * ficam em memória, para que leituras seguidas do mesmo bloco não o decifrem
+ * de novo.
+ * <p>
+ * Além da leitura sequencial de {@link SeekableByteChannel}, o canal oferece
+ * a leitura posicional {@link #read(ByteBuffer, long)}, que pode ser usada
+ * por várias threads ao mesmo tempo, como a de um {@link FileChannel}.
+ */
+class CanalDecifrado implements SeekableByteChannel {
+
+    // Blocos decifrados mantidos em memória por processador
+    private static final int BLOCOS_EM_MEMORIA_POR_PROCESSADOR = 4;
+
+    private final Path arquivo;
+    private final FileChannel entrada;
+    private final Criptografia.Formato formato;
+    private final SecretKey chave;
+    private final long tamanho;
+    private final Map<Long, ByteBuffer> decifrados;
+
+    private long posicao;
+
+    /**
+     * @param arquivo O arquivo cifrado, usado nas mensagens de erro.
+     * @param entrada O arquivo cifrado aberto para leitura, fechado junto com
+     * o canal.
+     * @param formato O cabeçalho do arquivo.
+     * @param chave A chave derivada da senha.
+     */
+    CanalDecifrado(Path arquivo, FileChannel entrada, Criptografia.Formato formato, SecretKey chave) {
+        this.arquivo = arquivo;
+        this.entrada = entrada;
+        this.formato = formato;
+        this.chave = chave;
+        this.tamanho = formato.tamanhoDecifrado();
+        int capacidade = BLOCOS_EM_MEMORIA_POR_PROCESSADOR * Runtime.getRuntime().availableProcessors();
+        this.decifrados = new LinkedHashMap<Long, ByteBuffer>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ByteBuffer> maisAntigo) {
+                return size() > capacidade;
+            }
+        };
+    }
+
+    /**
+     * Lê bytes do conteúdo decifrado a partir de uma posição, sem alterar a
+     * posição do canal.
+     *
+     * @param destino O buffer de destino.
+     * @param inicio A posição no conteúdo decifrado.
+     * @return A quantidade de bytes lidos, ou -1 se a posição estiver no fim
+     * do conteúdo.
+     * @throws IOException Se um bloco não puder ser lido ou não conferir.
+     */
+    int read(ByteBuffer destino, long inicio) throws IOException {
+        if (!entrada.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        if (inicio >= tamanho) {
+            return -1;
+        }
+        int lidos = 0;
+        long atual = inicio;
+        while (destino.hasRemaining() && atual < tamanho) {
+            long indice = atual / formato.tamanhoBloco;
+            ByteBuffer conteudo = bloco(indice).duplicate();
+            int deslocamento = (int) (atual - indice * formato.tamanhoBloco);
+            if (deslocamento >= conteudo.limit()) {
+                throw new IOException("O bloco " + indice + " de " + arquivo + " está incompleto");
+            }
+            conteudo.position(deslocamento);
+            conteudo.limit(deslocamento + Math.min(conteudo.remaining(), destino.remaining()));
+            lidos += conteudo.remaining();
+            atual += conteudo.remaining();
+            destino.put(conteudo);
+        }
+        return lidos;
+    }
+
+    /**
+     * Devolve um bloco decifrado, da memória ou decifrando-o. Duas threads que
+     * peçam o mesmo bloco ao mesmo tempo podem decifrá-lo duas vezes, o que
+     * evita bloquear as demais leituras durante a decifragem.
+     */
+    private ByteBuffer bloco(long indice) throws IOException {
+        synchronized (decifrados) {
+            ByteBuffer bloco = decifrados.get(indice);
+            if (bloco != null) {
+                return bloco;
+            }
+        }
+        long inicio = formato.posicaoBloco(indice);
+        ByteBuffer cifrado = ByteBuffer.allocate((int) Math.min(formato.tamanhoCifrado(), formato.tamanhoArquivo - inicio));
+        Criptografia.lerCompleto(entrada, cifrado, inicio);
+        int quantidade = Criptografia.decifrarBloco(chave, formato.cabecalho, indice, indice == formato.blocos - 1,
+                cifrado.array(), cifrado.limit(), arquivo);
+        ByteBuffer bloco = ByteBuffer.wrap(cifrado.array(), 0, quantidade).asReadOnlyBuffer();
+        synchronized (decifrados) {
+            decifrados.put(indice, bloco);
+        }
+        return bloco;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer destino) throws IOException {
+        int lidos = read(destino, posicao);
+        if (lidos > 0) {
+            posicao += lidos;
+        }
+        return lidos;
+    }
+
+    @Override
+    public int write(ByteBuffer origem) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        if (!entrada.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        return posicao;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long novaPosicao) throws IOException {
+        if (novaPosicao < 0) {
+            throw new IllegalArgumentException("Posição negativa: " + novaPosicao);
+        }
+        if (!entrada.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        posicao = novaPosicao;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        if (!entrada.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        return tamanho;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long novoTamanho) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return entrada.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        entrada.close();
+        synchronized (decifrados) {
+            decifrados.clear();
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Gravação de um arquivo grande como entrada delta ({@link DeltaArquivo}),
+ * a partir das assinaturas de blocos da versão anterior
+ * ({@link AssinaturasDelta}), no esquema do rsync.
+ * <p>
+ * Uma janela do tamanho do bloco percorre o arquivo. Em cada posição, a soma
+ * fraca da janela é atualizada em tempo constante e procurada entre as do
+ * arquivo anterior; só quando ela coincide o MD5 da janela é calculado e
+ * conferido. Um bloco encontrado vira uma cópia da base e a janela salta o
+ * bloco inteiro; caso contrário, a janela anda um byte e o byte que sai dela
+ * entra nos dados novos. Assim, blocos inseridos ou removidos no meio do
+ * arquivo não impedem que o restante seja encontrado.
+ * <p>
+ * Somente os dados novos são comprimidos e gravados no backup. Um arquivo com
+ * o mesmo tamanho e a mesma data de modificação da versão anterior nem chega a
+ * ser lido: a receita é uma única cópia da base. Ao mesmo tempo, são
+ * calculadas as assinaturas da nova versão, reaproveitando as dos blocos que
+ * foram encontrados na mesma posição.
+ */
+class CodificadorDelta {
+
+    static final int BLOCO_MINIMO = 4 * 1024;
+    static final int BLOCO_MAXIMO = 1024 * 1024;
+
+    private static final int CAPACIDADE_MINIMA = 8 * 1024 * 1024;
+    private static final int LITERAL_MAXIMO = 1024 * 1024;
+
+    private final GravadorZip gravador;
+    private final LimitadorTaxa leitura;
+    private final int tamanhoBloco;
+    private final MessageDigest md5;
+    private final CRC32 crc = new CRC32();
+
+    // Assinaturas da nova versão
+    private int[] fracas;
+    private byte[] fortes;
+    private int blocos;
+
+    // Janela sobre o arquivo: buffer[0] corresponde à posição deslocamento
+    private byte[] buffer;
+    private long deslocamento;
+    private int fim;
+    private long assinado;
+    private long lidos;
+
+    // Receita
+    private DataOutputStream receita;
+    private long copiaPosicao = -1;
+    private long copiaTamanho;
+    private long literais;
+
+    private CodificadorDelta(GravadorZip gravador, LimitadorTaxa leitura, int tamanhoBloco, long tamanhoArquivo) {
+        this.gravador = gravador;
+        this.leitura = leitura;
+        this.tamanhoBloco = tamanhoBloco;
+        try {
+            this.md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        int previstos = (int) Math.min(tamanhoArquivo / tamanhoBloco + 1, Integer.MAX_VALUE / AssinaturasDelta.TAMANHO_FORTE);
+        this.fracas = new int[previstos];
+        this.fortes = new byte[previstos * AssinaturasDelta.TAMANHO_FORTE];
+    }
+
+    /**
+     * Escolhe o tamanho do bloco de um arquivo: a potência de 2 mais próxima
+     * abaixo da raiz quadrada do tamanho, entre {@link #BLOCO_MINIMO} e
+     * {@link #BLOCO_MAXIMO}. Um arquivo de 64 MB usa blocos de 8 KB; um de
+     * 30 GB, blocos de 128 KB.
+     */
+    static int tamanhoBloco(long tamanhoArquivo) {
+        int raiz = (int) Math.min(Math.sqrt(Math.max(1, tamanhoArquivo)), BLOCO_MAXIMO);
+        return Math.max(BLOCO_MINIMO, Integer.highestOneBit(raiz));
+    }
+
+    /**
+     * Grava um arquivo grande no ZIP e calcula as suas assinaturas. Com a
+     * assinatura da versão anterior, o arquivo é gravado como entrada delta
+     * do backup base; sem ela, é gravado inteiro.
+     *
+     * @param arquivo O arquivo de origem.
+     * @param attrs Os atributos do arquivo.
+     * @param nome O nome da entrada.
+     * @param gravador O gravador do ZIP.
+     * @param anterior A assinatura da versão do arquivo no backup base, ou
+     * {@code null}.
+     * @param arquivoBase O nome do arquivo de backup base, ou {@code null}.
+     * @param leitura O limitador dos bytes lidos da origem.
+     * @return O resultado da gravação.
+     * @throws IOException Se ocorrer um erro de leitura ou escrita.
+     */
+    static Resultado gravar(Path arquivo, BasicFileAttributes attrs, String nome, GravadorZip gravador,
+            AssinaturasDelta.Assinatura anterior, String arquivoBase, LimitadorTaxa leitura) throws IOException {
+        long modificado = attrs.lastModifiedTime().toMillis();
+        if (anterior == null || arquivoBase == null) {
+            CodificadorDelta codificador = new CodificadorDelta(gravador, leitura, tamanhoBloco(attrs.size()), attrs.size());
+            gravador.iniciarEntrada(nome, modificado);
+            codificador.gravarInteiro(arquivo);
+            gravador.fecharEntrada();
+            return codificador.resultado(modificado, false);
+        }
+
+        gravador.iniciarEntrada(nome, modificado);
+        DataOutputStream receita = new DataOutputStream(new BufferedOutputStream(new SaidaGravador(gravador), 64 * 1024));
+        DeltaArquivo.escreverCabecalho(receita, arquivoBase, anterior.tamanho);
+        if (anterior.tamanho == attrs.size() && anterior.modificado == modificado) {
+            // Arquivo sem alteração: a base inteira, sem ler a origem
+            if (anterior.tamanho > 0) {
+                receita.writeByte(DeltaArquivo.OP_COPIA);
+                receita.writeLong(0);
+                receita.writeLong(anterior.tamanho);
+            }
+            receita.writeByte(DeltaArquivo.OP_FIM);
+            receita.flush();
+            gravador.fecharEntrada(DeltaArquivo.criarExtra(anterior.tamanho, anterior.crc));
+            return new Resultado(anterior, anterior.tamanho, anterior.crc, 0, 0, true);
+        }
+
+        CodificadorDelta codificador = new CodificadorDelta(gravador, leitura, anterior.tamanhoBloco, attrs.size());
+        codificador.receita = receita;
+        codificador.codificar(arquivo, anterior);
+        receita.writeByte(DeltaArquivo.OP_FIM);
+        receita.flush();
+        gravador.fecharEntrada(DeltaArquivo.criarExtra(codificador.lidos, codificador.crc.getValue()));
+        return codificador.resultado(modificado, true);
+    }
+
+    /**
+     * Grava o arquivo inteiro, calculando as assinaturas dos blocos.
+     */
+    private void gravarInteiro(Path arquivo) throws IOException {
+        buffer = new byte[Math.max(tamanhoBloco, 256 * 1024)];
+        try (InputStream entrada = Files.newInputStream(arquivo)) {
+            int quantidade;
+            while ((quantidade = entrada.readNBytes(buffer, 0, buffer.length)) > 0) {
+                leitura.adquirir(quantidade);
+                crc.update(buffer, 0, quantidade);
+                gravador.escrever(buffer, 0, quantidade);
+                lidos += quantidade;
+                fim = quantidade;
+                assinarAte(deslocamento + quantidade);
+                deslocamento += quantidade;
+            }
+        }
+    }
+
+    /**
+     * Percorre o arquivo com a janela deslizante, gravando as cópias e os
+     * dados novos na receita.
+     */
+    private void codificar(Path arquivo, AssinaturasDelta.Assinatura anterior) throws IOException {
+        buffer = new byte[Math.max(CAPACIDADE_MINIMA, 4 * tamanhoBloco)];
+        byte[][] forteJanela = new byte[1][];
+        int[] inicioJanela = new int[1];
+        AssinaturasDelta.CalculoForte calculoForte = () -> {
+            if (forteJanela[0] == null) {
+                md5.update(buffer, inicioJanela[0], tamanhoBloco);
+                forteJanela[0] = md5.digest();
+            }
+            return forteJanela[0];
+        };
+
+        try (InputStream entrada = Files.newInputStream(arquivo)) {
+            boolean terminou = false;
+            boolean somaValida = false;
+            int posicao = 0;
+            int inicioLiteral = 0;
+            int a = 0, b = 0;
+            int preferido = -1;
+            while (true) {
+                if (fim - posicao < tamanhoBloco && !terminou) {
+                    // Descarta o que já foi processado e completa o buffer
+                    assinarAte(deslocamento + posicao);
+                    emitirLiteral(inicioLiteral, posicao);
+                    int manter = (int) Math.min(posicao, assinado - deslocamento);
+                    System.arraycopy(buffer, manter, buffer, 0, fim - manter);
+                    deslocamento += manter;
+                    fim -= manter;
+                    posicao -= manter;
+                    inicioLiteral = posicao;
+                    terminou = preencher(entrada);
+                    somaValida = false;
+                    continue;
+                }
+                if (fim - posicao < tamanhoBloco) {
+                    break;
+                }
+                if (!somaValida) {
+                    a = 0;
+                    b = 0;
+                    for (int i = 0; i < tamanhoBloco; i++) {
+                        int x = buffer[posicao + i] & 0xFF;
+                        a += x;
+                        b += (tamanhoBloco - i) * x;
+                    }
+                    somaValida = true;
+                }
+
+                forteJanela[0] = null;
+                inicioJanela[0] = posicao;
+                int bloco = anterior.localizar((a & 0xFFFF) | (b << 16), calculoForte, preferido);
+                if (bloco >= 0) {
+                    emitirLiteral(inicioLiteral, posicao);
+                    copiar((long) bloco * anterior.tamanhoBloco, tamanhoBloco);
+                    // Um bloco encontrado na posição alinhada tem a mesma assinatura
+                    assinarAte(deslocamento + posicao);
+                    if (deslocamento + posicao == assinado) {
+                        acrescentarAssinatura(anterior.fracas[bloco], anterior.fortes, bloco * AssinaturasDelta.TAMANHO_FORTE);
+                        assinado += tamanhoBloco;
+                    }
+                    posicao += tamanhoBloco;
+                    inicioLiteral = posicao;
+                    preferido = bloco + 1;
+                    somaValida = false;
+                    continue;
+                }
+
+                if (posicao - inicioLiteral >= LITERAL_MAXIMO) {
+                    emitirLiteral(inicioLiteral, posicao);
+                    inicioLiteral = posicao;
+                }
+                if (fim - posicao > tamanhoBloco) {
+                    int sai = buffer[posicao] & 0xFF;
+                    int entra = buffer[posicao + tamanhoBloco] & 0xFF;
+                    a += entra - sai;
+                    b += a - tamanhoBloco * sai;
+                } else {
+                    somaValida = false;
+                }
+                posicao++;
+            }
+            emitirLiteral(inicioLiteral, fim);
+            assinarAte(deslocamento + fim);
+            emitirCopia();
+        }
+    }
+
+    /**
+     * Lê a origem até encher o buffer.
+     *
+     * @return {@code true} se o fim do arquivo foi alcançado.
+     */
+    private boolean preencher(InputStream entrada) throws IOException {
+        while (fim < buffer.length) {
+            int quantidade = entrada.read(buffer, fim, buffer.length - fim);
+            if (quantidade < 0) {
+                return true;
+            }
+            leitura.adquirir(quantidade);
+            crc.update(buffer, fim, quantidade);
+            fim += quantidade;
+            lidos += quantidade;
+        }
+        return false;
+    }
+
+    /**
+     * Calcula as assinaturas dos blocos completos da nova versão que terminam
+     * até a posição informada e ainda não foram assinados.
+     */
+    private void assinarAte(long limite) {
+        while (assinado + tamanhoBloco <= limite) {
+            int inicio = (int) (assinado - deslocamento);
+            int a = 0, b = 0;
+            for (int i = 0; i < tamanhoBloco; i++) {
+                int x = buffer[inicio + i] & 0xFF;
+                a += x;
+                b += (tamanhoBloco - i) * x;
+            }
+            md5.update(buffer, inicio, tamanhoBloco);
+            acrescentarAssinatura((a & 0xFFFF) | (b << 16), md5.digest(), 0);
+            assinado += tamanhoBloco;
+        }
+    }
+
+    private void acrescentarAssinatura(int fraca, byte[] forte, int inicioForte) {
+        if (blocos == fracas.length) {
+            fracas = Arrays.copyOf(fracas, blocos * 2 + 1);
+            fortes = Arrays.copyOf(fortes, fracas.length * AssinaturasDelta.TAMANHO_FORTE);
+        }
+        fracas[blocos] = fraca;
+        System.arraycopy(forte, inicioForte, fortes, blocos * AssinaturasDelta.TAMANHO_FORTE, AssinaturasDelta.TAMANHO_FORTE);
+        blocos++;
+    }
+
+    private void copiar(long posicao, long tamanho) throws IOException {
+        if (copiaPosicao >= 0 && copiaPosicao + copiaTamanho == posicao) {
+            copiaTamanho += tamanho;
+            return;
+        }
+        emitirCopia();
+        copiaPosicao = posicao;
+        copiaTamanho = tamanho;
+    }
+
+    private void emitirCopia() throws IOException {
+        if (copiaPosicao < 0) {
+            return;
+        }
+        receita.writeByte(DeltaArquivo.OP_COPIA);
+        receita.writeLong(copiaPosicao);
+        receita.writeLong(copiaTamanho);
+        copiaPosicao = -1;
+    }
+
+    private void emitirLiteral(int inicio, int fimLiteral) throws IOException {
+        if (fimLiteral <= inicio) {
+            return;
+        }
+        emitirCopia();
+        receita.writeByte(DeltaArquivo.OP_LITERAL);
+        receita.writeInt(fimLiteral - inicio);
+        receita.write(buffer, inicio, fimLiteral - inicio);
+        literais += fimLiteral - inicio;
+    }
+
+    private Resultado resultado(long modificado, boolean delta) {
+        AssinaturasDelta.Assinatura assinatura = new AssinaturasDelta.Assinatura(lidos, modificado, crc.getValue(), tamanhoBloco,
+                Arrays.copyOf(fracas, blocos), Arrays.copyOf(fortes, blocos * AssinaturasDelta.TAMANHO_FORTE), blocos);
+        return new Resultado(assinatura, lidos, crc.getValue(), lidos, delta ? literais : lidos, delta);
+    }
+
+    /**
+     * O resultado da gravação de um arquivo grande.
+     */
+    static class Resultado {
+
+        // A assinatura da versão gravada
+        final AssinaturasDelta.Assinatura assinatura;
+        final long tamanho;
+        final long crc;
+        // Bytes lidos da origem
+        final long lidos;
+        // Bytes gravados como dados novos (o arquivo inteiro, se não for delta)
+        final long literais;
+        final boolean delta;
+
+        Resultado(AssinaturasDelta.Assinatura assinatura, long tamanho, long crc, long lidos, long literais, boolean delta) {
+            this.assinatura = assinatura;
+            this.tamanho = tamanho;
+            this.crc = crc;
+            this.lidos = lidos;
+            this.literais = literais;
+            this.delta = delta;
+        }
+    }
+
+    /**
+     * Entrega a receita ao deflate da entrada atual.
+     */
+    private static class SaidaGravador extends OutputStream {
+
+        private final GravadorZip gravador;
+
+        SaidaGravador(GravadorZip gravador) {
+            this.gravador = gravador;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            gravador.escrever(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            gravador.escrever(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compactação dividida em volumes de tamanho limitado.
+ * <p>
+ * A origem é percorrida uma vez para listar os arquivos e os seus tamanhos.
+ * Os arquivos são então distribuídos, na ordem da varredura, em volumes cujo
+ * tamanho estimado no pior caso (conteúdo sem compressão mais cabeçalhos) não
+ * ultrapassa o limite. Como o tamanho gravado nunca excede essa estimativa, o
+ * limite é respeitado mesmo antes de a compressão acontecer, o que permite
+ * gravar todos os volumes ao mesmo tempo.
+ * <p>
+ * Cada volume é um arquivo completo e independente
+ * ({@code nome.part001.zip}, {@code nome.part002.zip}, ...). Assim que um
+ * volume termina de ser gravado, a verificação do CRC-32 das suas entradas é
+ * iniciada no mesmo pool, em paralelo com a gravação dos volumes seguintes.
+ * A quantidade de volumes lidos e comprimidos ao mesmo tempo é ajustada
+ * durante a gravação pelo {@link ControleConcorrencia} das opções, conforme a
+ * vazão medida; sem ele, é um volume por processador.
+ * Um arquivo maior que o limite ocupa um volume sozinho e gera um aviso, pois
+ * as entradas não são divididas entre volumes. Nos volumes cifrados, a
+ * verificação confere a autenticação dos blocos, e o acréscimo da
+ * criptografia é descontado do limite.
+ * <p>
+ * Se a gravação ou a verificação de um volume falhar, os volumes ainda em
+ * gravação são interrompidos e todos os volumes do backup, inclusive as
+ * cópias nos destinos adicionais, são excluídos, para que uma execução com
+ * falha não deixe volumes avulsos no destino.
+ */
+class CompactadorVolumes {
+
+    // Estimativa de cabeçalhos por entrada (local, diretório central, descritor ou cabeçalho TAR/PAX)
+    private static final long CABECALHOS_POR_ENTRADA = 2048;
+
+    // Estimativa dos dados de fechamento do arquivo e do dicionário compartilhado
+    private static final long CABECALHOS_POR_VOLUME = 64 * 1024;
+
+    // Espera máxima pela interrupção dos volumes em gravação após uma falha
+    private static final long ESPERA_INTERRUPCAO_SEGUNDOS = 60;
+
+    private CompactadorVolumes() {
+    }
+
+    /**
+     * Compacta o diretório de origem em volumes.
+     *
+     * @param origem O diretório de origem.
+     * @param destino O caminho do arquivo de destino, usado como base para os
+     * nomes dos volumes.
+     * @param opcoes As opções da compactação, incluindo o tamanho do volume.
+     * @return Os caminhos dos volumes gravados, em ordem.
+     * @throws IOException Se ocorrer um erro na gravação ou se a verificação
+     * de algum volume falhar; nesse caso, nenhum volume é mantido.
+     */
+    static List<Path> compactar(Path origem, Path destino, OpcoesCompactacao opcoes) throws IOException {
+        long inicio = System.nanoTime();
+        long limite = opcoes.getTamanhoVolume();
+        if (opcoes.getCriptografia() != null) {
+            limite -= Criptografia.tamanhoCifrado(limite) - limite;
+        }
+        List<List<ArquivoOrigem>> volumes = planejar(listar(origem), limite);
+        byte[] dicionario = CompactadorZip.montarDicionario(origem, opcoes);
+        boolean verificar = FormatosArquivo.PADRAO.equals(opcoes.getFormato().getNome())
+                || "ZIP_SEM_COMPRESSAO".equals(opcoes.getFormato().getNome());
+
+        List<Path> caminhos = new ArrayList<>();
+        for (int i = 0; i < volumes.size(); i++) {
+            caminhos.add(nomeVolume(destino, opcoes.getFormato().getExtensao(), i + 1));
+        }
+        System.out.println("Backup dividido em " + volumes.size() + " volume(s).");
+
+        ControleConcorrencia concorrencia = opcoes.getConcorrencia();
+        if (concorrencia == null) {
+            int processadores = Runtime.getRuntime().availableProcessors();
+            concorrencia = new ControleConcorrencia(processadores, processadores, processadores);
+        }
+        concorrencia.limitarMaximo(volumes.size());
+        MetricasBackup.concorrenciaAjustada(concorrencia.getLimite());
+        if (concorrencia.getMaximo() > 1) {
+            System.out.println("Volumes gravados ao mesmo tempo: " + concorrencia.getLimite() + " (até " + concorrencia.getMaximo() + ").");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(concorrencia.getMaximo());
+        ControleConcorrencia controle = concorrencia;
+        AtomicLong arquivos = new AtomicLong();
+        try {
+            // Completada com o erro do primeiro volume que falhar, sem esperar os demais
+            CompletableFuture<Void> falha = new CompletableFuture<>();
+            List<CompletableFuture<Void>> tarefas = new ArrayList<>();
+            for (int i = 0; i < volumes.size(); i++) {
+                List<ArquivoOrigem> volume = volumes.get(i);
+                Path caminho = caminhos.get(i);
+                CompletableFuture<Void> tarefa = CompletableFuture
+                        .runAsync(() -> arquivos.addAndGet(gravar(volume, caminho, opcoes, dicionario, controle)), pool);
+                if (verificar) {
+                    tarefa = tarefa.thenRunAsync(() -> verificarVolume(caminho, opcoes), pool);
+                }
+                tarefa.whenComplete((resultado, erro) -> {
+                    if (erro != null) {
+                        falha.completeExceptionally(erro);
+                    }
+                });
+                tarefas.add(tarefa);
+            }
+            CompletableFuture.anyOf(CompletableFuture.allOf(tarefas.toArray(new CompletableFuture<?>[0])), falha).join();
+        } catch (CompletionException e) {
+            descartar(pool, caminhos, opcoes);
+            Throwable causa = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            throw causa instanceof IOException ? (IOException) causa : new IOException(causa);
+        } finally {
+            pool.shutdownNow();
+            MetricasBackup.compactacaoFinalizada(arquivos.get(), System.nanoTime() - inicio);
+        }
+        return caminhos;
+    }
+
+    /**
+     * Interrompe os volumes ainda em gravação e exclui todos os volumes do
+     * backup, no destino e nos destinos adicionais. Os volumes interrompidos
+     * excluem os seus próprios arquivos parciais.
+     */
+    private static void descartar(ExecutorService pool, List<Path> caminhos, OpcoesCompactacao opcoes) {
+        pool.shutdownNow();
+        try {
+            if (!pool.awaitTermination(ESPERA_INTERRUPCAO_SEGUNDOS, TimeUnit.SECONDS)) {
+                System.out.println("Aviso: a gravação de algum volume não foi interrompida a tempo.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Set<Path> diretorios = new LinkedHashSet<>();
+        for (Path adicional : opcoes.getDestinosAdicionais()) {
+            diretorios.add(adicional.toAbsolutePath().normalize());
+        }
+        for (Path caminho : caminhos) {
+            excluir(caminho);
+            for (Path diretorio : diretorios) {
+                excluir(diretorio.resolve(caminho.getFileName()));
+            }
+        }
+        System.out.println("Backup em volumes com falha: " + caminhos.size() + " volume(s) descartado(s).");
+    }
+
+    private static void excluir(Path volume) {
+        try {
+            Files.deleteIfExists(volume);
+        } catch (IOException e) {
+            System.out.println("Não foi possível excluir o volume " + volume + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Calcula o nome de um volume: {@code base.part001.zip}.
+     *
+     * @param destino O caminho do arquivo de destino.
+     * @param extensao A extensão do formato (ex.: ".zip" ou ".tar.gz").
+     * @param numero O número do volume, a partir de 1.
+     * @return O caminho do volume.
+     */
+    static Path nomeVolume(Path destino, String extensao, int numero) {
+        String nome = destino.getFileName().toString();
+        String base = nome.endsWith(extensao) ? nome.substring(0, nome.length() - extensao.length()) : nome;
+        return destino.resolveSibling(String.format("%s.part%03d%s", base, numero, extensao));
+    }
+
+    private static List<ArquivoOrigem> listar(Path origem) throws IOException {
+        List<ArquivoOrigem> arquivos = new ArrayList<>();
+        Files.walkFileTree(origem, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path arquivo, BasicFileAttributes attrs) {
+                arquivos.add(new ArquivoOrigem(arquivo, attrs, origem.relativize(arquivo).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return arquivos;
+    }
+
+    private static List<List<ArquivoOrigem>> planejar(List<ArquivoOrigem> arquivos, long limite) {
+        List<List<ArquivoOrigem>> volumes = new ArrayList<>();
+        List<ArquivoOrigem> atual = new ArrayList<>();
+        long tamanhoAtual = CABECALHOS_POR_VOLUME;
+
+        for (ArquivoOrigem arquivo : arquivos) {
+            // Pior caso do deflate: ~5 bytes a cada bloco armazenado de 16 KiB
+            long estimativa = arquivo.attrs.size() + arquivo.attrs.size() / 3000 + CABECALHOS_POR_ENTRADA
+                    + 2L * arquivo.nomeEntrada.length();
+            if (!atual.isEmpty() && tamanhoAtual + estimativa > limite) {
+                volumes.add(atual);
+                atual = new ArrayList<>();
+                tamanhoAtual = CABECALHOS_POR_VOLUME;
+            }
+            if (CABECALHOS_POR_VOLUME + estimativa > limite) {
+                System.out.println("Aviso: " + arquivo.nomeEntrada + " é maior que o tamanho do volume e ocupará um volume sozinho.");
+            }
+            atual.add(arquivo);
+            tamanhoAtual += estimativa;
+        }
+        if (!atual.isEmpty() || volumes.isEmpty()) {
+            volumes.add(atual);
+        }
+        return volumes;
+    }
+
+    private static long gravar(List<ArquivoOrigem> volume, Path caminho, OpcoesCompactacao opcoes, byte[] dicionario,
+            ControleConcorrencia concorrencia) {
+        try {
+            return CompactadorZip.compactarArquivos(volume, caminho, opcoes, dicionario, concorrencia);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void verificarVolume(Path caminho, OpcoesCompactacao opcoes) {
+        try {
+            if (opcoes.getCriptografia() != null) {
+                long blocos = opcoes.getCriptografia().verificar(caminho, 1, opcoes.getLimites().getLeitura());
+                System.out.println("Volume verificado: " + caminho.getFileName() + " (" + blocos + " blocos)");
+                return;
+            }
+            long entradas = VerificadorZip.verificar(caminho, opcoes.getLimites().getLeitura());
+            System.out.println("Volume verificado: " + caminho.getFileName() + " (" + entradas + " entradas)");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,21 +1,113 @@
 package com.mycompany.ferramentadebackup.compactadorzip;
 
+import com.mycompany.ferramentadebackup.armazenamento.ArmazenamentoBackup;
+import com.mycompany.ferramentadebackup.armazenamento.ArmazenamentoLocal;
+import com.mycompany.ferramentadebackup.armazenamento.GravacaoArmazenamento;
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.zip.*;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 /**
  * Classe para compactação de arquivos e diretórios em formato ZIP.
  * <p>
  * Esta classe fornece funcionalidades para compactar um único arquivo ou todos
  * os arquivos em um diretório para o formato ZIP. A compactação inclui a
- * possibilidade de definir um nome personalizado para o arquivo ZIP resultante.
+ * possibilidade de definir um nome personalizado para o arquivo ZIP resultante
+ * e de escolher o perfil de compressão ({@link PerfilCompressao}).
+ * <p>
+ * O formato do arquivo gerado é definido pelas opções da compactação. Além do
+ * ZIP, podem ser usados os demais formatos registrados em
+ * {@link FormatosArquivo}, como TAR e TAR.GZ. No formato ZIP, as entradas
+ * pequenas podem ser comprimidas com um dicionário compartilhado
+ * ({@link DicionarioDeflate}), montado a partir de uma amostra da origem.
+ * Quando um tamanho de volume é definido, a compactação é delegada ao
+ * {@link CompactadorVolumes}, que divide o backup em vários arquivos.
+ * <p>
+ * O arquivo é sempre gravado em um temporário ({@code destino.parcial}),
+ * sincronizado com o disco e só então renomeado para o nome final, de modo
+ * que o destino nunca contém um backup incompleto. No formato ZIP com origem
+ * em diretório, pontos de controle periódicos são registrados em um
+ * {@link DiarioCompactacao}; se a compactação for interrompida, a próxima
+ * execução para o mesmo destino continua a partir do último ponto, sem
+ * comprimir de novo as entradas já gravadas.
+ * <p>
+ * Com {@link OpcoesCompactacao#getDestinosAdicionais()}, os bytes de cada
+ * arquivo gravado são enviados também para os outros diretórios
+ * ({@link EspelhoDestino}), sem ler e comprimir a origem de novo. Uma cópia
+ * que falha é descartada e registrada, sem interromper o backup principal.
+ * <p>
+ * O backup pode ser gravado também fora do sistema de arquivos local, como em
+ * um bucket S3, com
+ * {@link #compactar(String, ArmazenamentoBackup, String, OpcoesCompactacao)}.
+ * <p>
+ * Com {@link OpcoesCompactacao#getCriptografia()}, o arquivo é cifrado à
+ * medida que é gravado ({@link Criptografia}), sem uma segunda passada pelo
+ * disco; nesse caso a compactação não é retomável.
+ * <p>
+ * Com {@link OpcoesCompactacao#getAssinaturasDelta()}, os arquivos grandes
+ * passam pelo {@link CodificadorDelta}: havendo as assinaturas do backup
+ * anterior ({@link OpcoesCompactacao#getBaseDelta()}), só os blocos alterados
+ * são gravados, junto com a receita para reconstruir o arquivo a partir do
+ * backup anterior.
+ * <p>
+ * Com {@link OpcoesCompactacao#getCacheHashes()}, o hash do conteúdo de cada
+ * arquivo que ainda não está no cache é calculado na mesma leitura da
+ * compressão; os arquivos inalterados não têm o hash calculado de novo.
+ * <p>
+ * Com {@link OpcoesCompactacao#isDeduplicar()}, um arquivo com o mesmo
+ * conteúdo de outro já gravado no mesmo arquivo ZIP é registrado como
+ * referência a ele ({@link DuplicadosZip}), em vez de ser comprimido de novo.
+ * <p>
+ * Com {@link OpcoesCompactacao#isOrdenarLeitura()}, os arquivos da varredura
+ * são lidos em lotes na ordem do disco ({@link LeituraOrdenada}), o que reduz
+ * os saltos da cabeça de leitura em discos rotativos.
+ * <p>
+ * Com {@link OpcoesCompactacao#isAcrescentar()}, um arquivo ZIP de destino
+ * que já existe não é regravado: as entradas dele são mantidas, e só os
+ * arquivos novos ou alterados são gravados ao final ({@link AcrescimoZip}).
+ * Com o {@link DiarioAlteracoes} mantido por um {@link MonitorAlteracoes},
+ * {@link #compactarAlteracoes} acrescenta só os arquivos registrados no
+ * diário, sem percorrer a origem.
  */
 public class CompactadorZip {
 
     /**
-     * Compacta um arquivo ou diretório para um arquivo ZIP.
+     * Extensão acrescentada ao nome do arquivo de backup enquanto ele é
+     * gravado.
+     */
+    public static final String EXTENSAO_PARCIAL = DiarioCompactacao.EXTENSAO_PARCIAL;
+
+    // Tamanho do buffer usado na cópia dos arquivos para o ZIP; os arquivos menores são lidos de uma vez
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    // Intervalo, em arquivos pequenos, entre as linhas de progresso do log
+    private static final int PEQUENOS_POR_LINHA_LOG = 1000;
+
+    // Intervalo entre os pontos de controle da compactação retomável
+    private static final long BYTES_ENTRE_PONTOS = 64L * 1024 * 1024;
+    private static final long NANOS_ENTRE_PONTOS = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Compacta um arquivo ou diretório para um arquivo ZIP usando as opções
+     * padrão.
      * <p>
      * Se o caminho de origem for um diretório, todos os arquivos e subdiretórios serão adicionados
      * ao arquivo ZIP. Se for um arquivo, somente este será adicionado. O nome do arquivo ZIP pode
@@ -27,13 +119,714 @@ public class CompactadorZip {
      * @throws IOException Se ocorrer um erro durante a compactação.
      */
     public static void compactarParaZip(String origem, String destinoZip, String nomeArquivoZip) throws IOException {
+        compactarParaZip(origem, destinoZip, nomeArquivoZip, new OpcoesCompactacao());
+    }
+
+    /**
+     * Compacta um arquivo ou diretório para um arquivo de backup com as opções
+     * informadas.
+     * <p>
+     * O arquivo é gravado no formato definido em
+     * {@link OpcoesCompactacao#getFormato()}. O nível do deflate de cada entrada é definido pelo perfil de compressão
+     * das opções. No perfil {@link PerfilCompressao#ADAPTATIVO}, o nível é
+     * reavaliado durante a compactação pelo {@link SeletorNivelAdaptativo}.
+     * Se {@link OpcoesCompactacao#getTamanhoVolume()} for maior que zero e a
+     * origem for um diretório, o backup é dividido em volumes
+     * ({@code destino.part001.zip}, {@code destino.part002.zip}, ...).
+     * Com {@link OpcoesCompactacao#isVerificar()}, o diretório central do
+     * arquivo gravado é conferido com o CRC-32 e o tamanho calculados na
+     * leitura da origem; qualquer divergência faz a compactação falhar.
+     *
+     * @param origem         O caminho do arquivo ou diretório a ser compactado.
+     * @param destinoZip     O caminho do arquivo de destino.
+     * @param nomeArquivoZip O nome personalizado para a entrada do arquivo ZIP. Pode ser {@code null} ou vazio.
+     * @param opcoes         As opções da compactação.
+     * @throws IOException Se ocorrer um erro durante a compactação.
+     */
+    public static void compactarParaZip(String origem, String destinoZip, String nomeArquivoZip, OpcoesCompactacao opcoes) throws IOException {
+        Path caminhoOrigem = Paths.get(origem);
+        if (isAcrescimo(caminhoOrigem, Paths.get(destinoZip), opcoes)) {
+            acrescentarAoZip(caminhoOrigem, Paths.get(destinoZip), null, opcoes);
+            return;
+        }
+        if (opcoes.getTamanhoVolume() > 0 && Files.isDirectory(caminhoOrigem)) {
+            CompactadorVolumes.compactar(caminhoOrigem, Paths.get(destinoZip), opcoes);
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        Path destino = Paths.get(destinoZip);
+        Path parcial = DiarioCompactacao.caminhoParcial(destino);
+        boolean retomavel = FormatosArquivo.PADRAO.equals(opcoes.getFormato().getNome()) && Files.isDirectory(caminhoOrigem)
+                && opcoes.getCriptografia() == null;
+        DiarioCompactacao diario = retomavel ? DiarioCompactacao.abrir(destino, identificacao(caminhoOrigem, opcoes)) : null;
+
+        boolean concluido = false;
+        boolean descartar = diario == null;
+        List<EspelhoDestino> espelhos = Collections.emptyList();
+        try {
+            long posicao = diario != null ? diario.getPosicao() : 0;
+            List<RegistroZip> anteriores = diario != null ? validarAnteriores(diario.getRegistros(), caminhoOrigem, false) : Collections.emptyList();
+            byte[] dicionario = anteriores.isEmpty() ? montarDicionario(caminhoOrigem, opcoes) : lerDicionario(parcial, anteriores);
+
+            // O escritor fecha o canal; o try fecha quando ele não chega a ser criado
+            Contexto contexto;
+            try (FileChannel canal = FileChannel.open(parcial, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                canal.truncate(posicao);
+                canal.position(posicao);
+                if (posicao > 0) {
+                    System.out.println("Retomando backup interrompido: " + (anteriores.size() - (dicionario != null ? 1 : 0))
+                            + " entrada(s) já gravada(s).");
+                }
+
+                espelhos = abrirEspelhos(destino.toAbsolutePath().normalize().getParent(), destino.getFileName().toString(), opcoes, parcial, posicao);
+                SaidaContadora saida = new SaidaContadora(new BufferedOutputStream(cifrar(espelhar(Channels.newOutputStream(canal), espelhos), opcoes), TAMANHO_BUFFER),
+                        posicao, opcoes.getLimites().getEscrita());
+                try (EscritorArquivo escritor = criarEscritor(saida, opcoes, dicionario, posicao, anteriores)) {
+                    contexto = new Contexto(escritor, saida, opcoes, destinoZip);
+                    contexto.iniciarDiario(diario, canal, anteriores);
+                    try {
+                        adicionarOrigem(caminhoOrigem, contexto, nomeArquivoZip);
+                        finalizarEntradas(contexto);
+                    } finally {
+                        MetricasBackup.compactacaoFinalizada(contexto.arquivos, System.nanoTime() - inicio);
+                    }
+                }
+            }
+            sincronizar(parcial);
+
+            // A partir daqui o arquivo está completo: uma falha não é retomável
+            descartar = true;
+            conferir(parcial, contexto);
+            ArmazenamentoLocal.publicar(parcial, destino);
+            concluido = true;
+            publicarEspelhos(espelhos, contexto);
+        } finally {
+            if (!concluido) {
+                abortarEspelhos(espelhos);
+            }
+            if (diario != null) {
+                diario.close();
+            }
+            if (concluido || descartar) {
+                DiarioCompactacao.excluir(destino, !concluido);
+            }
+        }
+    }
+
+    /**
+     * Grava em um arquivo ZIP as alterações da origem registradas em um
+     * {@link DiarioAlteracoes}.
+     * <p>
+     * Com {@link OpcoesCompactacao#isAcrescentar()} e o arquivo já existente,
+     * só os arquivos do lote são lidos e acrescentados; os demais, inclusive
+     * os removidos da origem, continuam no arquivo sem que a origem seja
+     * percorrida. Se o lote pedir uma varredura completa, por eventos
+     * perdidos, ou se o acréscimo não for possível, a compactação é a de
+     * {@link #compactarParaZip(String, String, String, OpcoesCompactacao)}.
+     *
+     * @param origem O diretório de origem.
+     * @param destinoZip O caminho do arquivo ZIP.
+     * @param lote As alterações retiradas do diário.
+     * @param opcoes As opções da compactação.
+     * @throws IOException Se ocorrer um erro durante a compactação.
+     */
+    public static void compactarAlteracoes(String origem, String destinoZip, DiarioAlteracoes.Lote lote, OpcoesCompactacao opcoes) throws IOException {
+        Path caminhoOrigem = Paths.get(origem);
+        Path destino = Paths.get(destinoZip);
+        if (lote.isReescanear() || !isAcrescimo(caminhoOrigem, destino, opcoes)) {
+            compactarParaZip(origem, destinoZip, null, opcoes);
+            return;
+        }
+        acrescentarAoZip(caminhoOrigem, destino, lote.getAlteracoes().keySet(), opcoes);
+    }
+
+    /**
+     * Verifica se as opções pedem o acréscimo a um arquivo existente e se ele
+     * é possível; quando não é, o motivo é informado no log e o arquivo é
+     * gravado por inteiro.
+     */
+    private static boolean isAcrescimo(Path origem, Path destino, OpcoesCompactacao opcoes) {
+        if (!opcoes.isAcrescentar() || !Files.isRegularFile(destino)) {
+            return false;
+        }
+        if (!FormatosArquivo.PADRAO.equals(opcoes.getFormato().getNome()) || !Files.isDirectory(origem)
+                || opcoes.getCriptografia() != null || opcoes.getTamanhoVolume() > 0) {
+            System.out.println("O acréscimo ao arquivo existente só está disponível no formato ZIP, com origem em diretório, "
+                    + "sem criptografia e sem volumes; o backup será gravado por inteiro.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Acrescenta a um arquivo ZIP existente os arquivos da origem que não
+     * estão nele ou que foram alterados desde a gravação.
+     * <p>
+     * As entradas cujo arquivo de origem continua com o mesmo tamanho e a
+     * mesma data de modificação são mantidas sem serem lidas, assim como as
+     * de arquivos removidos da origem. As de arquivos alterados são retiradas
+     * do diretório central e gravadas de novo ao final; o conteúdo antigo
+     * permanece no arquivo, mas deixa de ser referenciado, até passar de
+     * {@link OpcoesCompactacao#getPercentualNaoReferenciado()} do arquivo,
+     * quando o arquivo é regravado só com as entradas referenciadas
+     * ({@link AcrescimoZip#compactar}). Se a compactação ou a conferência
+     * falhar, o arquivo volta ao estado anterior; uma falha ao regravar
+     * apenas mantém o conteúdo sem referência até o próximo acréscimo.
+     *
+     * @param origem O diretório de origem.
+     * @param destino O arquivo ZIP existente.
+     * @param alterados Os caminhos alterados, relativos à origem, ou
+     * {@code null} para percorrer a origem inteira.
+     * @param opcoes As opções da compactação.
+     * @throws IOException Se ocorrer um erro durante a compactação.
+     */
+    private static void acrescentarAoZip(Path origem, Path destino, Set<String> alterados, OpcoesCompactacao opcoes) throws IOException {
+        long inicio = System.nanoTime();
+        AcrescimoZip acrescimo = AcrescimoZip.abrir(destino);
+        boolean concluido = false;
+        List<EspelhoDestino> espelhos = Collections.emptyList();
+        try {
+            long posicao = acrescimo.getPosicao();
+            List<RegistroZip> anteriores = alterados == null ? validarAnteriores(acrescimo.getRegistros(), origem, true)
+                    : semAlterados(acrescimo.getRegistros(), alterados, origem);
+            byte[] dicionario = anteriores.isEmpty() ? null : lerDicionario(destino, anteriores);
+            System.out.println("Acrescentando ao backup existente: " + anteriores.size() + " entrada(s) mantida(s), "
+                    + (acrescimo.getRegistros().size() - anteriores.size()) + " substituída(s).");
+
+            Contexto contexto;
+            try (FileChannel canal = FileChannel.open(destino, StandardOpenOption.WRITE)) {
+                canal.position(posicao);
+                espelhos = abrirEspelhos(destino.toAbsolutePath().normalize().getParent(), destino.getFileName().toString(), opcoes, destino, posicao);
+                SaidaContadora saida = new SaidaContadora(new BufferedOutputStream(espelhar(Channels.newOutputStream(canal), espelhos), TAMANHO_BUFFER),
+                        posicao, opcoes.getLimites().getEscrita());
+                try (EscritorArquivo escritor = criarEscritor(saida, opcoes, dicionario, posicao, anteriores)) {
+                    contexto = new Contexto(escritor, saida, opcoes, destino.toString());
+                    contexto.inicioConferencia = posicao;
+                    contexto.manterAnteriores(anteriores, validarReferencias(acrescimo.getReferencias(), anteriores, origem));
+                    try {
+                        if (alterados == null) {
+                            adicionarOrigem(origem, contexto, null);
+                        } else {
+                            adicionarAlterados(origem, alterados, contexto);
+                        }
+                        manterRestantes(contexto);
+                        finalizarEntradas(contexto);
+                    } finally {
+                        MetricasBackup.compactacaoFinalizada(contexto.arquivos, System.nanoTime() - inicio);
+                    }
+                }
+            }
+            sincronizar(destino);
+            conferir(destino, contexto);
+            acrescimo.concluir();
+            concluido = true;
+            publicarEspelhos(espelhos, contexto);
+        } finally {
+            if (!concluido) {
+                abortarEspelhos(espelhos);
+                acrescimo.desfazer();
+            }
+        }
+        try {
+            AcrescimoZip.compactar(destino, opcoes.getPercentualNaoReferenciado());
+        } catch (IOException e) {
+            System.out.println("Não foi possível compactar o backup " + destino + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Verifica se há uma compactação interrompida que pode ser retomada para
+     * o destino informado.
+     *
+     * @param destinoZip O caminho do arquivo de backup final.
+     * @return {@code true} se existirem o arquivo parcial e o diário do
+     * destino.
+     */
+    public static boolean isRetomavel(String destinoZip) {
+        return DiarioCompactacao.existe(Paths.get(destinoZip));
+    }
+
+    /**
+     * Compacta um arquivo ou diretório para um arquivo de backup gravado no
+     * armazenamento informado.
+     * <p>
+     * Em um {@link ArmazenamentoLocal}, a compactação é a mesma de
+     * {@link #compactarParaZip(String, String, String, OpcoesCompactacao)},
+     * com retomada, conferência e volumes. Nos demais armazenamentos, o
+     * arquivo é enviado em fluxo contínuo diretamente ao destino, sem cópia
+     * local; nesse caso não há retomada nem divisão em volumes, e somente as
+     * cópias nos destinos adicionais são conferidas com a origem, pois a
+     * conferência do arquivo remoto exigiria lê-lo de volta.
+     *
+     * @param origem        O caminho do arquivo ou diretório a ser compactado.
+     * @param armazenamento O armazenamento de destino.
+     * @param nomeArquivo   O nome do arquivo de backup no armazenamento.
+     * @param opcoes        As opções da compactação.
+     * @throws IOException Se ocorrer um erro durante a compactação ou a
+     * gravação.
+     */
+    public static void compactar(String origem, ArmazenamentoBackup armazenamento, String nomeArquivo, OpcoesCompactacao opcoes) throws IOException {
+        if (armazenamento instanceof ArmazenamentoLocal) {
+            compactarParaZip(origem, ((ArmazenamentoLocal) armazenamento).resolver(nomeArquivo).toString(), null, opcoes);
+            return;
+        }
+        if (opcoes.getTamanhoVolume() > 0) {
+            System.out.println("A divisão em volumes só está disponível em destinos locais; o backup será gravado em um único arquivo.");
+        }
+
+        long inicio = System.nanoTime();
         Path caminhoOrigem = Paths.get(origem);
-        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(destinoZip))) {
-            if (Files.isDirectory(caminhoOrigem)) {
-                adicionarDiretorioAoZip(caminhoOrigem, caminhoOrigem, zipOutputStream);
-            } else {
-                adicionarArquivoAoZip(caminhoOrigem, zipOutputStream, nomeArquivoZip);
+        byte[] dicionario = montarDicionario(caminhoOrigem, opcoes);
+        boolean concluido = false;
+        List<EspelhoDestino> espelhos = Collections.emptyList();
+        try (GravacaoArmazenamento gravacao = armazenamento.criar(nomeArquivo)) {
+            espelhos = abrirEspelhos(null, nomeArquivo, opcoes, null, 0);
+            SaidaContadora saida = new SaidaContadora(new BufferedOutputStream(cifrar(espelhar(gravacao.getSaida(), espelhos), opcoes), TAMANHO_BUFFER),
+                    0, opcoes.getLimites().getEscrita());
+            Contexto contexto;
+            try (EscritorArquivo escritor = criarEscritor(saida, opcoes, dicionario, 0, Collections.emptyList())) {
+                contexto = new Contexto(escritor, saida, opcoes, armazenamento.getLocalizacao(nomeArquivo));
+                try {
+                    adicionarOrigem(caminhoOrigem, contexto, null);
+                    finalizarEntradas(contexto);
+                } finally {
+                    MetricasBackup.compactacaoFinalizada(contexto.arquivos, System.nanoTime() - inicio);
+                }
+            }
+            gravacao.concluir();
+            concluido = true;
+            publicarEspelhos(espelhos, contexto);
+        } finally {
+            if (!concluido) {
+                abortarEspelhos(espelhos);
+            }
+        }
+    }
+
+    /**
+     * Grava uma lista de arquivos, na ordem recebida, em um único arquivo de
+     * backup.
+     * <p>
+     * O volume é gravado em um arquivo temporário e renomeado para o nome
+     * final somente depois de completo e sincronizado com o disco. Cada
+     * arquivo, ou lote da leitura ordenada, ocupa uma vaga do controle de
+     * concorrência enquanto é lido e comprimido.
+     *
+     * @param arquivos     Os arquivos da origem e os nomes das entradas.
+     * @param destino      O arquivo de backup a ser criado.
+     * @param opcoes       As opções da compactação.
+     * @param dicionario   O dicionário compartilhado, ou {@code null}.
+     * @param concorrencia O controle dos volumes processados ao mesmo tempo.
+     * @return A quantidade de arquivos gravados.
+     * @throws IOException Se ocorrer um erro durante a compactação.
+     */
+    static long compactarArquivos(List<ArquivoOrigem> arquivos, Path destino, OpcoesCompactacao opcoes, byte[] dicionario,
+            ControleConcorrencia concorrencia) throws IOException {
+        Path parcial = DiarioCompactacao.caminhoParcial(destino);
+        boolean concluido = false;
+        List<EspelhoDestino> espelhos = Collections.emptyList();
+        try {
+            espelhos = abrirEspelhos(destino.toAbsolutePath().normalize().getParent(), destino.getFileName().toString(), opcoes, null, 0);
+            SaidaContadora saida = new SaidaContadora(new BufferedOutputStream(cifrar(espelhar(Files.newOutputStream(parcial), espelhos), opcoes), TAMANHO_BUFFER),
+                    0, opcoes.getLimites().getEscrita());
+            Contexto contexto;
+            try (EscritorArquivo escritor = criarEscritor(saida, opcoes, dicionario, 0, Collections.emptyList())) {
+                contexto = new Contexto(escritor, saida, opcoes, destino.toString());
+                long bytesLote = 0;
+                for (ArquivoOrigem arquivo : arquivos) {
+                    if (contexto.leituraOrdenada == null) {
+                        long inicio = concorrencia.entrar();
+                        try {
+                            registrarNoLog("Adicionando ao volume " + destino.getFileName() + ": ", arquivo.nomeEntrada, arquivo.attrs, contexto);
+                            adicionarEntrada(arquivo.caminho, arquivo.attrs, arquivo.nomeEntrada, contexto);
+                        } finally {
+                            concorrencia.sair(inicio, arquivo.attrs.size());
+                        }
+                        continue;
+                    }
+                    bytesLote += arquivo.attrs.size();
+                    if (contexto.leituraOrdenada.adicionar(arquivo)) {
+                        adicionarLote(contexto, concorrencia, bytesLote);
+                        bytesLote = 0;
+                    }
+                }
+                if (contexto.leituraOrdenada != null) {
+                    adicionarLote(contexto, concorrencia, bytesLote);
+                }
+                finalizarEntradas(contexto);
+            }
+            sincronizar(parcial);
+            conferir(parcial, contexto);
+            ArmazenamentoLocal.publicar(parcial, destino);
+            concluido = true;
+            publicarEspelhos(espelhos, contexto);
+            return contexto.arquivos;
+        } finally {
+            if (!concluido) {
+                abortarEspelhos(espelhos);
+                Files.deleteIfExists(parcial);
+            }
+        }
+    }
+
+    private static void adicionarLote(Contexto contexto, ControleConcorrencia concorrencia, long bytes) throws IOException {
+        long inicio = concorrencia.entrar();
+        try {
+            adicionarLote(contexto);
+        } finally {
+            concorrencia.sair(inicio, bytes);
+        }
+    }
+
+    /**
+     * Inicia as cópias de um arquivo de backup nos destinos adicionais. Os
+     * diretórios repetidos e o próprio diretório do destino são ignorados.
+     *
+     * @param diretorio O diretório do arquivo principal, ou {@code null} se ele
+     * não for gravado em um diretório local.
+     * @param nomeArquivo O nome do arquivo de backup.
+     * @param opcoes As opções da compactação.
+     * @param parcial O arquivo parcial principal, cujo início já gravado deve
+     * ser copiado, ou {@code null}.
+     * @param posicao O tamanho da parte já gravada do arquivo parcial.
+     * @return As cópias iniciadas.
+     */
+    private static List<EspelhoDestino> abrirEspelhos(Path diretorio, String nomeArquivo, OpcoesCompactacao opcoes, Path parcial, long posicao) {
+        if (opcoes.getDestinosAdicionais().isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<Path> diretorios = new LinkedHashSet<>();
+        for (Path adicional : opcoes.getDestinosAdicionais()) {
+            diretorios.add(adicional.toAbsolutePath().normalize());
+        }
+        diretorios.remove(diretorio);
+
+        List<EspelhoDestino> espelhos = new ArrayList<>();
+        for (Path adicional : diretorios) {
+            espelhos.add(new EspelhoDestino(adicional.resolve(nomeArquivo), opcoes.getAtrasoMaximoDestinos(), parcial, posicao));
+        }
+        return espelhos;
+    }
+
+    private static OutputStream espelhar(OutputStream principal, List<EspelhoDestino> espelhos) {
+        return espelhos.isEmpty() ? principal : new SaidaEspelhada(principal, espelhos);
+    }
+
+    /**
+     * Insere a criptografia na saída, quando ela está habilitada. Fica abaixo
+     * do contador, que continua medindo as posições do arquivo decifrado, e
+     * acima das cópias, que recebem os bytes já cifrados.
+     */
+    static OutputStream cifrar(OutputStream saida, OpcoesCompactacao opcoes) throws IOException {
+        return opcoes.getCriptografia() != null ? opcoes.getCriptografia().cifrar(saida) : saida;
+    }
+
+    /**
+     * Conclui as cópias depois que o arquivo principal foi publicado, na
+     * ordem em que terminam de ser gravadas, de modo que uma cópia lenta não
+     * atrasa a publicação das demais. Cada cópia é conferida, quando a
+     * conferência está ativa, e renomeada para o nome final. Uma cópia que
+     * falha é excluída e registrada nas métricas.
+     *
+     * @param espelhos As cópias do arquivo.
+     * @param contexto O contexto da compactação.
+     * @throws InterruptedIOException Se a espera pelas cópias for
+     * interrompida; as cópias ainda não concluídas são descartadas.
+     */
+    private static void publicarEspelhos(List<EspelhoDestino> espelhos, Contexto contexto) throws InterruptedIOException {
+        List<EspelhoDestino> pendentes = new ArrayList<>(espelhos);
+        for (EspelhoDestino espelho : pendentes) {
+            espelho.finalizar();
+        }
+        try {
+            while (!pendentes.isEmpty()) {
+                for (Iterator<EspelhoDestino> iterador = pendentes.iterator(); iterador.hasNext();) {
+                    EspelhoDestino espelho = iterador.next();
+                    if (espelho.aguardar(100)) {
+                        iterador.remove();
+                        publicarEspelho(espelho, contexto);
+                    }
+                }
+            }
+        } finally {
+            abortarEspelhos(pendentes);
+        }
+    }
+
+    private static void publicarEspelho(EspelhoDestino espelho, Contexto contexto) {
+        try {
+            espelho.concluir();
+            conferir(espelho.parcial, contexto);
+            ArmazenamentoLocal.publicar(espelho.parcial, espelho.destino);
+            System.out.println("Cópia do backup gravada em: " + espelho.destino);
+            MetricasBackup.copiaConcluida(true);
+        } catch (IOException e) {
+            System.out.println("A cópia do backup para " + espelho.destino + " não foi gravada: " + e.getMessage());
+            espelho.abortar();
+            MetricasBackup.copiaConcluida(false);
+        }
+    }
+
+    private static void abortarEspelhos(List<EspelhoDestino> espelhos) {
+        for (EspelhoDestino espelho : espelhos) {
+            espelho.abortar();
+        }
+    }
+
+    /**
+     * Grava no disco o conteúdo e os metadados de um arquivo já fechado.
+     *
+     * @param arquivo O arquivo a ser sincronizado.
+     * @throws IOException Se ocorrer um erro na sincronização.
+     */
+    static void sincronizar(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.WRITE)) {
+            canal.force(true);
+        }
+    }
+
+    /**
+     * Adiciona a origem ao arquivo de backup: todo o conteúdo, se for um
+     * diretório, ou somente o arquivo.
+     *
+     * @param origem O caminho de origem.
+     * @param contexto O contexto da compactação.
+     * @param nomeArquivoZip O nome personalizado da entrada de um arquivo
+     * único. Pode ser {@code null} ou vazio.
+     * @throws IOException Se ocorrer um erro de leitura ou de escrita.
+     */
+    private static void adicionarOrigem(Path origem, Contexto contexto, String nomeArquivoZip) throws IOException {
+        if (Files.isDirectory(origem)) {
+            adicionarDiretorioAoZip(origem, origem, contexto);
+        } else {
+            BasicFileAttributes attrs = Files.readAttributes(origem, BasicFileAttributes.class);
+            adicionarArquivoAoZip(origem, attrs, contexto, nomeArquivoZip);
+        }
+    }
+
+    /**
+     * Monta a identificação gravada no diário, que impede a retomada de um
+     * arquivo criado a partir de outra origem ou com outras opções.
+     */
+    private static String identificacao(Path origem, OpcoesCompactacao opcoes) {
+        return origem.toAbsolutePath().normalize() + "|" + opcoes.getFormato().getNome()
+                + "|" + (opcoes.isUsarDicionario() ? "dicionario" : "");
+    }
+
+    /**
+     * Seleciona, entre as entradas já gravadas, as que podem ser
+     * reaproveitadas: as internas da ferramenta e as cujo arquivo de origem
+     * continua com o mesmo tamanho e a mesma data de modificação (em
+     * segundos, a precisão guardada no ZIP). As demais são retiradas do
+     * diretório central e gravadas de novo; o conteúdo antigo permanece no
+     * arquivo, mas deixa de ser referenciado.
+     *
+     * @param registros As entradas registradas no diário ou no diretório
+     * central.
+     * @param origem O diretório de origem.
+     * @param manterRemovidos Se as entradas de arquivos removidos da origem
+     * devem ser mantidas.
+     * @return As entradas a manter.
+     * @throws IOException Se ocorrer um erro ao ler os atributos da origem.
+     */
+    private static List<RegistroZip> validarAnteriores(List<RegistroZip> registros, Path origem, boolean manterRemovidos) throws IOException {
+        List<RegistroZip> validos = new ArrayList<>(registros.size());
+        for (RegistroZip registro : registros) {
+            if (registro.nome.startsWith(RestauradorZip.PREFIXO_INTERNO)) {
+                validos.add(registro);
+                continue;
+            }
+            Path arquivo = origem.resolve(registro.nome);
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(arquivo, BasicFileAttributes.class);
+                if (attrs.isRegularFile() && attrs.size() == valoresOriginais(registro)[0]
+                        && Math.floorDiv(attrs.lastModifiedTime().toMillis(), 1000) == Math.floorDiv(registro.modificado, 1000)) {
+                    validos.add(registro);
+                }
+            } catch (NoSuchFileException e) {
+                // O arquivo foi removido da origem depois da gravação
+                if (manterRemovidos) {
+                    validos.add(registro);
+                }
+            }
+        }
+        return validos;
+    }
+
+    /**
+     * Retira das entradas de um arquivo existente as dos arquivos alterados
+     * que ainda existem na origem, que serão gravadas de novo. As demais
+     * são mantidas sem consultar a origem.
+     *
+     * @param registros As entradas do arquivo.
+     * @param alterados Os caminhos alterados, relativos à origem.
+     * @param origem O diretório de origem.
+     * @return As entradas a manter.
+     */
+    private static List<RegistroZip> semAlterados(List<RegistroZip> registros, Set<String> alterados, Path origem) {
+        List<RegistroZip> mantidos = new ArrayList<>(registros.size());
+        for (RegistroZip registro : registros) {
+            if (!alterados.contains(registro.nome) || !Files.exists(origem.resolve(registro.nome), LinkOption.NOFOLLOW_LINKS)) {
+                mantidos.add(registro);
+            }
+        }
+        return mantidos;
+    }
+
+    /**
+     * Seleciona, entre as referências a arquivos repetidos de um arquivo
+     * existente, as que continuam válidas: a entrada original foi mantida e
+     * o arquivo de origem não foi alterado nem é agora um arquivo diferente.
+     * Os arquivos das demais são gravados de novo, se ainda existirem.
+     *
+     * @param referencias As referências gravadas no arquivo.
+     * @param anteriores As entradas mantidas.
+     * @param origem O diretório de origem.
+     * @return As referências a manter, pelo nome do arquivo.
+     * @throws IOException Se ocorrer um erro ao ler os atributos da origem.
+     */
+    private static Map<String, DuplicadosZip.Referencia> validarReferencias(Map<String, DuplicadosZip.Referencia> referencias,
+            List<RegistroZip> anteriores, Path origem) throws IOException {
+        if (referencias.isEmpty()) {
+            return referencias;
+        }
+        Set<String> originais = new HashSet<>();
+        for (RegistroZip registro : anteriores) {
+            originais.add(registro.nome);
+        }
+        Map<String, DuplicadosZip.Referencia> validas = new LinkedHashMap<>();
+        for (DuplicadosZip.Referencia referencia : referencias.values()) {
+            if (!originais.contains(referencia.original)) {
+                continue;
+            }
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(origem.resolve(referencia.nome), BasicFileAttributes.class);
+                if (!attrs.isRegularFile() || attrs.lastModifiedTime().toMillis() != referencia.modificado) {
+                    continue;
+                }
+            } catch (NoSuchFileException e) {
+                // O arquivo foi removido da origem, mas continua no backup
+            }
+            validas.put(referencia.nome, referencia);
+        }
+        return validas;
+    }
+
+    /**
+     * @return O tamanho e o CRC-32 do conteúdo original de uma entrada, que
+     * nas entradas com dicionário ou delta vêm do campo extra.
+     */
+    private static long[] valoresOriginais(RegistroZip registro) {
+        long[] extra = DicionarioDeflate.lerExtra(registro.metodo, registro.extra);
+        if (extra == null) {
+            extra = DeltaArquivo.lerExtra(registro.metodo, registro.extra);
+        }
+        return extra != null ? extra : new long[]{registro.tamanho, registro.crc};
+    }
+
+    /**
+     * Lê o dicionário compartilhado de um arquivo parcial, se a primeira
+     * entrada for o dicionário.
+     *
+     * @param parcial O arquivo parcial.
+     * @param anteriores As entradas já gravadas.
+     * @return O dicionário, ou {@code null} se o arquivo não tiver um.
+     * @throws IOException Se ocorrer um erro de leitura.
+     */
+    private static byte[] lerDicionario(Path parcial, List<RegistroZip> anteriores) throws IOException {
+        RegistroZip primeiro = anteriores.get(0);
+        if (!DicionarioDeflate.NOME_ENTRADA.equals(primeiro.nome)) {
+            return null;
+        }
+        byte[] dicionario = new byte[(int) primeiro.tamanhoComprimido];
+        try (RandomAccessFile arquivo = new RandomAccessFile(parcial.toFile(), "r")) {
+            arquivo.seek(primeiro.posicaoDados());
+            arquivo.readFully(dicionario);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(dicionario);
+        if (crc.getValue() != primeiro.crc) {
+            throw new IOException("O dicionário do backup interrompido está corrompido: " + parcial);
+        }
+        return dicionario;
+    }
+
+    /**
+     * Confere o arquivo gravado com os valores calculados na leitura da
+     * origem, quando a conferência está habilitada: as entradas gravadas são
+     * lidas de volta e descomprimidas ({@link VerificadorZip#conferir}).
+     *
+     * @param destino O arquivo gravado.
+     * @param contexto O estado da compactação finalizada.
+     * @throws IOException Se alguma entrada divergir da origem.
+     */
+    private static void conferir(Path destino, Contexto contexto) throws IOException {
+        if (contexto.conferencia == null) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        long descomprimidas = VerificadorZip.conferir(destino, contexto.conferencia, contexto.inicioConferencia,
+                Runtime.getRuntime().availableProcessors());
+        System.out.println("Backup conferido com a origem: " + contexto.conferencia.size() + " entrada(s), "
+                + descomprimidas + " lida(s) de volta, em " + (System.nanoTime() - inicio) / 1_000_000 + " ms.");
+    }
+
+    /**
+     * Monta o dicionário compartilhado quando ele está habilitado, o formato
+     * é ZIP e a origem é um diretório.
+     *
+     * @param origem O caminho de origem.
+     * @param opcoes As opções da compactação.
+     * @return O dicionário, ou {@code null} se ele não se aplicar.
+     * @throws IOException Se ocorrer um erro ao amostrar a origem.
+     */
+    static byte[] montarDicionario(Path origem, OpcoesCompactacao opcoes) throws IOException {
+        if (!opcoes.isUsarDicionario()) {
+            return null;
+        }
+        if (!FormatosArquivo.PADRAO.equals(opcoes.getFormato().getNome()) || !Files.isDirectory(origem)) {
+            System.out.println("O dicionário de compressão só é usado no formato ZIP com origem em diretório.");
+            return null;
+        }
+        byte[] dicionario = DicionarioDeflate.construir(origem);
+        if (dicionario.length == 0) {
+            return null;
+        }
+        System.out.println("Dicionário de compressão montado com " + dicionario.length + " bytes.");
+        return dicionario;
+    }
+
+    /**
+     * Cria o escritor do formato escolhido nas opções.
+     * <p>
+     * Quando há um dicionário compartilhado, é usado um
+     * {@link EscritorZipDicionario}. Ao retomar um arquivo interrompido, o
+     * escritor ZIP continua a partir das entradas já gravadas. Se a criação
+     * falhar, a stream de destino é fechada.
+     *
+     * @param saida A stream de destino.
+     * @param opcoes As opções da compactação.
+     * @param dicionario O dicionário compartilhado, ou {@code null}.
+     * @param posicao A posição da stream no arquivo, ou 0.
+     * @param anteriores As entradas já gravadas no arquivo.
+     * @return O escritor do arquivo de backup.
+     * @throws IOException Se ocorrer um erro ao iniciar o arquivo.
+     */
+    private static EscritorArquivo criarEscritor(OutputStream saida, OpcoesCompactacao opcoes, byte[] dicionario,
+            long posicao, List<RegistroZip> anteriores) throws IOException {
+        int nivel = opcoes.getPerfilCompressao().getNivel();
+        try {
+            if (dicionario != null) {
+                return new EscritorZipDicionario(saida, nivel, dicionario, posicao, anteriores);
             }
+            if (posicao > 0) {
+                return new EscritorZip(saida, nivel, posicao, anteriores);
+            }
+            return opcoes.getFormato().criarEscritor(saida, nivel);
+        } catch (IOException | RuntimeException e) {
+            saida.close();
+            throw e;
         }
     }
 
@@ -44,17 +837,85 @@ public class CompactadorZip {
      *
      * @param diretorio        O caminho do diretório a ser adicionado ao ZIP.
      * @param caminhoBase      O caminho base para calcular os nomes relativos das entradas no ZIP.
-     * @param zipOutputStream  A stream de saída do arquivo ZIP.
+     * @param contexto         O estado da compactação em andamento.
      * @throws IOException Se ocorrer um erro durante a adição do diretório ao ZIP.
      */
-    private static void adicionarDiretorioAoZip(Path diretorio, Path caminhoBase, ZipOutputStream zipOutputStream) throws IOException {
+    private static void adicionarDiretorioAoZip(Path diretorio, Path caminhoBase, Contexto contexto) throws IOException {
         Files.walkFileTree(diretorio, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path arquivo, BasicFileAttributes attrs) throws IOException {
-                adicionarArquivoAoZip(arquivo, caminhoBase, zipOutputStream);
+                if (contexto.leituraOrdenada == null) {
+                    adicionarArquivoAoZip(arquivo, attrs, caminhoBase, contexto);
+                } else if (contexto.leituraOrdenada.adicionar(new ArquivoOrigem(arquivo, attrs, caminhoBase.relativize(arquivo).toString()))) {
+                    adicionarLote(contexto);
+                }
                 return FileVisitResult.CONTINUE;
             }
         });
+        if (contexto.leituraOrdenada != null) {
+            adicionarLote(contexto);
+        }
+    }
+
+    /**
+     * Adiciona ao arquivo ZIP os arquivos alterados registrados no diário,
+     * com os mesmos atributos que a varredura da origem usaria. Os caminhos
+     * que não existem mais e os diretórios são ignorados.
+     *
+     * @param origem O diretório de origem.
+     * @param alterados Os caminhos alterados, relativos à origem.
+     * @param contexto O estado da compactação em andamento.
+     * @throws IOException Se ocorrer um erro de leitura ou escrita.
+     */
+    private static void adicionarAlterados(Path origem, Set<String> alterados, Contexto contexto) throws IOException {
+        for (String nome : alterados) {
+            Path arquivo = origem.resolve(nome);
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(arquivo, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException e) {
+                // Removido da origem: a entrada anterior, se houver, é mantida
+                continue;
+            }
+            if (attrs.isDirectory()) {
+                continue;
+            }
+            if (contexto.leituraOrdenada == null) {
+                adicionarArquivoAoZip(arquivo, attrs, origem, contexto);
+            } else if (contexto.leituraOrdenada.adicionar(new ArquivoOrigem(arquivo, attrs, nome))) {
+                adicionarLote(contexto);
+            }
+        }
+        if (contexto.leituraOrdenada != null) {
+            adicionarLote(contexto);
+        }
+    }
+
+    /**
+     * Grava o lote de arquivos acumulado pela {@link LeituraOrdenada}, lendo
+     * os arquivos na ordem do disco. No formato ZIP, as entradas do lote
+     * voltam à ordem da varredura no diretório central; as que já foram
+     * registradas no diário da compactação retomável ficam onde estão.
+     *
+     * @param contexto O estado da compactação em andamento.
+     * @throws IOException Se ocorrer um erro de leitura ou escrita.
+     */
+    private static void adicionarLote(Contexto contexto) throws IOException {
+        List<ArquivoOrigem> lote = contexto.leituraOrdenada.retirarLote();
+        GravadorZip gravador = contexto.escritor instanceof EscritorZip ? ((EscritorZip) contexto.escritor).gravador : null;
+        int inicio = gravador != null ? gravador.getRegistros().size() : 0;
+        for (ArquivoOrigem arquivo : LeituraOrdenada.ordenar(lote)) {
+            registrarNoLog("Adicionando ao ZIP: ", arquivo.nomeEntrada, arquivo.attrs, contexto);
+            adicionarEntrada(arquivo.caminho, arquivo.attrs, arquivo.nomeEntrada, contexto);
+        }
+        if (gravador != null) {
+            Map<String, Integer> ordem = new HashMap<>();
+            for (int i = 0; i < lote.size(); i++) {
+                ordem.put(lote.get(i).nomeEntrada, i);
+            }
+            gravador.reordenar(Math.max(inicio, contexto.registrados),
+                    Comparator.comparingInt(registro -> ordem.getOrDefault(registro.nome, Integer.MAX_VALUE)));
+        }
     }
 
     /**
@@ -64,17 +925,15 @@ public class CompactadorZip {
      * Caso contrário, o nome do arquivo original será usado.
      *
      * @param arquivo         O caminho do arquivo a ser adicionado ao ZIP.
-     * @param zipOutputStream A stream de saída do arquivo ZIP.
+     * @param attrs           Os atributos do arquivo.
+     * @param contexto        O estado da compactação em andamento.
      * @param nomeArquivoZip  O nome personalizado para a entrada do arquivo ZIP.
      * @throws IOException Se ocorrer um erro durante a adição do arquivo ao ZIP.
      */
-    private static void adicionarArquivoAoZip(Path arquivo, ZipOutputStream zipOutputStream, String nomeArquivoZip) throws IOException {
+    private static void adicionarArquivoAoZip(Path arquivo, BasicFileAttributes attrs, Contexto contexto, String nomeArquivoZip) throws IOException {
         String nomeEntradaZip = nomeArquivoZip != null && !nomeArquivoZip.isEmpty() ? nomeArquivoZip : arquivo.getFileName().toString();
         System.out.println("Adicionando arquivo: " + nomeEntradaZip);
-        ZipEntry zipEntry = new ZipEntry(nomeEntradaZip);
-        zipOutputStream.putNextEntry(zipEntry);
-        Files.copy(arquivo, zipOutputStream);
-        zipOutputStream.closeEntry();
+        adicionarEntrada(arquivo, attrs, nomeEntradaZip, contexto);
     }
 
     /**
@@ -83,16 +942,487 @@ public class CompactadorZip {
      * O nome da entrada no ZIP é calculado relativamente ao caminho base fornecido.
      *
      * @param arquivo          O caminho do arquivo a ser adicionado ao ZIP.
+     * @param attrs            Os atributos do arquivo, já lidos pelo visitante.
      * @param caminhoBase      O caminho base para calcular o nome relativo da entrada no ZIP.
-     * @param zipOutputStream  A stream de saída do arquivo ZIP.
+     * @param contexto         O estado da compactação em andamento.
      * @throws IOException Se ocorrer um erro durante a adição do arquivo ao ZIP.
      */
-    private static void adicionarArquivoAoZip(Path arquivo, Path caminhoBase, ZipOutputStream zipOutputStream) throws IOException {
+    private static void adicionarArquivoAoZip(Path arquivo, BasicFileAttributes attrs, Path caminhoBase, Contexto contexto) throws IOException {
         String nomeEntradaZip = caminhoBase.relativize(arquivo).toString();
-        System.out.println("Adicionando ao ZIP: " + nomeEntradaZip);
-        ZipEntry zipEntry = new ZipEntry(nomeEntradaZip);
-        zipOutputStream.putNextEntry(zipEntry);
-        Files.copy(arquivo, zipOutputStream);
-        zipOutputStream.closeEntry();
+        registrarNoLog("Adicionando ao ZIP: ", nomeEntradaZip, attrs, contexto);
+        adicionarEntrada(arquivo, attrs, nomeEntradaZip, contexto);
+    }
+
+    /**
+     * Grava uma entrada no arquivo de backup com o nível de compressão
+     * definido pelo contexto e registra as medições da entrada.
+     * <p>
+     * Havendo um {@link ObservadorEntradas} ou com a conferência habilitada,
+     * o CRC-32 do conteúdo é calculado na mesma leitura; a entrada é então
+     * informada ao observador e guardada para a conferência. Ao retomar um
+     * arquivo interrompido, uma entrada já gravada não é lida de novo: os
+     * seus valores vêm do registro do diário.
+     * <p>
+     * A abertura de cada arquivo e os bytes lidos respeitam os
+     * {@link LimitesTaxa} das opções; a espera no limitador fica fora do tempo
+     * de leitura medido para o perfil adaptativo.
+     *
+     * @param arquivo        O arquivo de origem.
+     * @param attrs          Os atributos do arquivo de origem.
+     * @param nomeEntradaZip O nome da entrada no arquivo.
+     * @param contexto       O estado da compactação em andamento.
+     * @throws IOException Se ocorrer um erro de leitura ou escrita.
+     */
+    private static void adicionarEntrada(Path arquivo, BasicFileAttributes attrs, String nomeEntradaZip, Contexto contexto) throws IOException {
+        RegistroZip anterior = contexto.concluidas.remove(nomeEntradaZip);
+        if (anterior != null) {
+            reaproveitarEntrada(anterior, contexto);
+            return;
+        }
+        if (contexto.referenciasMantidas.containsKey(nomeEntradaZip)) {
+            // Informada ao final, com as demais referências mantidas
+            return;
+        }
+        if (contexto.isDelta(attrs)) {
+            adicionarEntradaDelta(arquivo, attrs, nomeEntradaZip, contexto);
+            return;
+        }
+        contexto.limites.getArquivos().adquirir(1);
+        byte[] chaveHash = contexto.cacheHashes != null ? HashConteudo.chave(arquivo, attrs) : null;
+        byte[] hashConhecido = chaveHash != null ? contexto.cacheHashes.obter(chaveHash) : null;
+        DuplicadosZip duplicados = contexto.duplicados != null && DuplicadosZip.isCandidato(nomeEntradaZip, attrs.size())
+                ? contexto.duplicados : null;
+        if (duplicados != null && duplicados.temMesmoTamanho(attrs.size())) {
+            if (hashConhecido == null) {
+                hashConhecido = HashConteudo.calcular(arquivo, contexto.buffer, contexto.limites.getLeitura());
+                if (chaveHash != null) {
+                    registrarHash(arquivo, attrs, chaveHash, hashConhecido, attrs.size(), contexto.cacheHashes);
+                }
+            }
+            DuplicadosZip.Gravada original = duplicados.procurar(attrs.size(), hashConhecido);
+            if (original != null) {
+                adicionarReferencia(attrs, nomeEntradaZip, original, contexto);
+                return;
+            }
+        }
+        EscritorArquivo escritor = contexto.escritor;
+        escritor.definirNivel(contexto.nivelAtual());
+
+        long inicioEntrada = System.nanoTime();
+        long escritaAntes = contexto.saida.getNanosEscrita();
+        long posicao = contexto.acessoAleatorio ? contexto.saida.getBytesEscritos() : -1;
+        CRC32 crc = contexto.observador != null || contexto.conferencia != null || duplicados != null ? new CRC32() : null;
+        MessageDigest hash = hashConhecido == null && (chaveHash != null || duplicados != null) ? HashConteudo.novoCalculo() : null;
+
+        escritor.iniciarEntrada(nomeEntradaZip, attrs.size(), attrs.lastModifiedTime().toMillis());
+        long nanosLeitura = 0;
+        long bytesLidos = 0;
+        int pequeno = -1;
+        if (attrs.size() < TAMANHO_BUFFER) {
+            long inicioLeitura = System.nanoTime();
+            pequeno = lerPequeno(arquivo, attrs.size(), contexto.buffer);
+            nanosLeitura += System.nanoTime() - inicioLeitura;
+        }
+        if (pequeno >= 0) {
+            contexto.limites.getLeitura().adquirir(pequeno);
+            gravarBloco(pequeno, escritor, crc, hash, contexto);
+            bytesLidos = pequeno;
+        } else {
+            try (InputStream entrada = Files.newInputStream(arquivo)) {
+                while (true) {
+                    long inicioLeitura = System.nanoTime();
+                    int lidos = entrada.read(contexto.buffer);
+                    nanosLeitura += System.nanoTime() - inicioLeitura;
+                    if (lidos < 0) {
+                        break;
+                    }
+                    contexto.limites.getLeitura().adquirir(lidos);
+                    gravarBloco(lidos, escritor, crc, hash, contexto);
+                    bytesLidos += lidos;
+                }
+            }
+        }
+        escritor.fecharEntrada();
+        byte[] hashConteudo = hash != null ? HashConteudo.finalizar(hash) : hashConhecido;
+        if (hash != null && chaveHash != null) {
+            registrarHash(arquivo, attrs, chaveHash, hashConteudo, bytesLidos, contexto.cacheHashes);
+        }
+        if (duplicados != null && bytesLidos == attrs.size()) {
+            duplicados.gravada(nomeEntradaZip, bytesLidos, hashConteudo, crc.getValue(), posicao);
+        }
+
+        contexto.arquivos++;
+        MetricasBackup.arquivoAdicionado(bytesLidos);
+        if (contexto.conferencia != null) {
+            contexto.conferencia.put(nomeEntradaZip, new long[]{bytesLidos, crc.getValue()});
+        }
+        if (contexto.observador != null) {
+            contexto.observador.entradaGravada(contexto.destino, nomeEntradaZip.replace('\\', '/'), bytesLidos,
+                    attrs.lastModifiedTime().toMillis(), crc.getValue(), posicao);
+        }
+        if (contexto.seletor != null) {
+            contexto.seletor.registrar(bytesLidos, nanosLeitura,
+                    contexto.saida.getNanosEscrita() - escritaAntes, System.nanoTime() - inicioEntrada);
+        }
+        contexto.registrarPontoDeControle();
+    }
+
+    /**
+     * Lê por inteiro um arquivo pequeno, com uma única leitura posicional no
+     * buffer do contexto, sem a stream e as leituras adicionais até o fim do
+     * arquivo da leitura comum.
+     *
+     * @param arquivo O arquivo de origem.
+     * @param tamanho O tamanho do arquivo informado pela varredura, menor que
+     * o buffer.
+     * @param buffer O buffer que recebe o conteúdo.
+     * @return A quantidade de bytes lidos, ou {@code -1} se o arquivo cresceu
+     * além do buffer desde a varredura e precisa da leitura comum.
+     * @throws IOException Se ocorrer um erro de leitura.
+     */
+    private static int lerPequeno(Path arquivo, long tamanho, byte[] buffer) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            // Um byte além do tamanho esperado revela um arquivo que cresceu
+            ByteBuffer destino = ByteBuffer.wrap(buffer, 0, (int) tamanho + 1);
+            do {
+                if (canal.read(destino, destino.position()) < 0) {
+                    break;
+                }
+            } while (destino.hasRemaining() && destino.position() != tamanho);
+            return destino.hasRemaining() ? destino.position() : -1;
+        }
+    }
+
+    /**
+     * Grava um bloco lido do arquivo de origem no buffer do contexto e o
+     * acrescenta ao CRC-32 e ao hash do conteúdo, quando calculados.
+     */
+    private static void gravarBloco(int tamanho, EscritorArquivo escritor, CRC32 crc, MessageDigest hash, Contexto contexto) throws IOException {
+        escritor.escrever(contexto.buffer, 0, tamanho);
+        if (crc != null) {
+            crc.update(contexto.buffer, 0, tamanho);
+        }
+        if (hash != null) {
+            hash.update(contexto.buffer, 0, tamanho);
+        }
+    }
+
+    /**
+     * Registra um arquivo repetido como referência a uma entrada já gravada
+     * com o mesmo conteúdo, sem gravá-lo de novo.
+     *
+     * @param attrs          Os atributos do arquivo de origem.
+     * @param nomeEntradaZip O nome da entrada no arquivo.
+     * @param original       A entrada com o mesmo conteúdo.
+     * @param contexto       O estado da compactação em andamento.
+     */
+    private static void adicionarReferencia(BasicFileAttributes attrs, String nomeEntradaZip, DuplicadosZip.Gravada original, Contexto contexto) {
+        contexto.duplicados.referenciar(nomeEntradaZip, original.nome, attrs.lastModifiedTime().toMillis());
+        contexto.arquivos++;
+        MetricasBackup.arquivoDuplicado(original.tamanho);
+        if (contexto.observador != null) {
+            contexto.observador.entradaGravada(contexto.destino, nomeEntradaZip.replace('\\', '/'), original.tamanho,
+                    attrs.lastModifiedTime().toMillis(), original.crc, original.posicao);
+        }
+        System.out.println("Duplicado de " + original.nome + ": " + nomeEntradaZip);
+    }
+
+    /**
+     * Conclui a gravação das entradas: informa no log os últimos arquivos
+     * pequenos e grava as referências aos arquivos repetidos, antes do
+     * diretório central.
+     */
+    private static void finalizarEntradas(Contexto contexto) throws IOException {
+        if (contexto.pequenosSemLog > 0) {
+            System.out.println("Adicionados " + contexto.pequenosSemLog + " arquivo(s) pequeno(s).");
+            contexto.pequenosSemLog = 0;
+        }
+        DuplicadosZip duplicados = contexto.duplicados;
+        if (duplicados == null && !contexto.referenciasMantidas.isEmpty()) {
+            duplicados = new DuplicadosZip();
+        }
+        for (DuplicadosZip.Referencia referencia : contexto.referenciasMantidas.values()) {
+            duplicados.referenciar(referencia.nome, referencia.original, referencia.modificado);
+        }
+        if (duplicados != null) {
+            duplicados.gravar(((EscritorZip) contexto.escritor).gravador);
+        }
+    }
+
+    /**
+     * Informa ao observador e à conferência as entradas mantidas de um
+     * arquivo existente que não foram encontradas na varredura, por terem
+     * sido removidas da origem, e as referências a arquivos repetidos
+     * mantidas.
+     *
+     * @param contexto O estado da compactação em andamento.
+     */
+    private static void manterRestantes(Contexto contexto) {
+        for (RegistroZip registro : contexto.concluidas.values()) {
+            if (!registro.nome.startsWith(RestauradorZip.PREFIXO_INTERNO)) {
+                reaproveitarEntrada(registro, contexto);
+            }
+        }
+        contexto.concluidas.clear();
+        for (DuplicadosZip.Referencia referencia : contexto.referenciasMantidas.values()) {
+            RegistroZip original = contexto.originaisMantidos.get(referencia.original);
+            long[] valores = valoresOriginais(original);
+            contexto.arquivos++;
+            if (contexto.observador != null) {
+                contexto.observador.entradaGravada(contexto.destino, referencia.nome.replace('\\', '/'), valores[0],
+                        referencia.modificado, valores[1], original.posicaoCabecalho);
+            }
+        }
+    }
+
+    /**
+     * Informa no log o arquivo que vai ser adicionado. Os arquivos pequenos
+     * são informados em conjunto, a cada {@link #PEQUENOS_POR_LINHA_LOG}, pois
+     * em árvores com muitos deles a escrita no console limita a quantidade de
+     * arquivos por segundo.
+     */
+    private static void registrarNoLog(String mensagem, String nomeEntrada, BasicFileAttributes attrs, Contexto contexto) {
+        if (attrs.size() >= TAMANHO_BUFFER) {
+            System.out.println(mensagem + nomeEntrada);
+        } else if (++contexto.pequenosSemLog == PEQUENOS_POR_LINHA_LOG) {
+            System.out.println("Adicionados " + contexto.pequenosSemLog + " arquivo(s) pequeno(s), até: " + nomeEntrada);
+            contexto.pequenosSemLog = 0;
+        }
+    }
+
+    /**
+     * Guarda no cache o hash calculado na leitura de um arquivo, desde que o
+     * arquivo não tenha sido alterado durante a leitura: nesse caso o hash
+     * pode não corresponder à chave, montada com os atributos de antes.
+     */
+    private static void registrarHash(Path arquivo, BasicFileAttributes attrs, byte[] chave, byte[] hash, long bytesLidos, CacheHashes cache) {
+        try {
+            BasicFileAttributes depois = Files.readAttributes(arquivo, BasicFileAttributes.class);
+            if (bytesLidos == attrs.size() && depois.size() == attrs.size() && depois.lastModifiedTime().equals(attrs.lastModifiedTime())) {
+                cache.registrar(chave, hash);
+            }
+        } catch (IOException e) {
+            System.out.println("Hash não guardado para " + arquivo + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Grava um arquivo grande pelo {@link CodificadorDelta}: como delta do
+     * backup anterior, se houver a assinatura da versão anterior do arquivo,
+     * ou inteiro. A assinatura da nova versão é guardada para a próxima
+     * execução.
+     *
+     * @param arquivo        O arquivo de origem.
+     * @param attrs          Os atributos do arquivo de origem.
+     * @param nomeEntradaZip O nome da entrada no arquivo.
+     * @param contexto       O estado da compactação em andamento.
+     * @throws IOException Se ocorrer um erro de leitura ou escrita.
+     */
+    private static void adicionarEntradaDelta(Path arquivo, BasicFileAttributes attrs, String nomeEntradaZip, Contexto contexto) throws IOException {
+        contexto.limites.getArquivos().adquirir(1);
+        GravadorZip gravador = ((EscritorZip) contexto.escritor).gravador;
+        contexto.escritor.definirNivel(contexto.nivelAtual());
+        long posicao = contexto.acessoAleatorio ? contexto.saida.getBytesEscritos() : -1;
+
+        AssinaturasDelta base = contexto.baseDelta;
+        AssinaturasDelta.Assinatura versaoAnterior = base != null ? base.obter(nomeEntradaZip) : null;
+        CodificadorDelta.Resultado resultado = CodificadorDelta.gravar(arquivo, attrs, nomeEntradaZip, gravador, versaoAnterior,
+                base != null ? base.getArquivoBackup() : null, contexto.limites.getLeitura());
+        contexto.assinaturasDelta.registrar(nomeEntradaZip, resultado.assinatura);
+        if (resultado.delta) {
+            contexto.assinaturasDelta.contarEntradaDelta();
+            MetricasBackup.arquivoDelta(resultado.tamanho, resultado.literais);
+            System.out.println("Gravado como delta: " + nomeEntradaZip + " (" + resultado.literais + " de " + resultado.tamanho + " bytes novos)");
+        }
+
+        contexto.arquivos++;
+        MetricasBackup.arquivoAdicionado(resultado.lidos);
+        if (contexto.conferencia != null) {
+            contexto.conferencia.put(nomeEntradaZip, new long[]{resultado.tamanho, resultado.crc});
+        }
+        if (contexto.observador != null) {
+            contexto.observador.entradaGravada(contexto.destino, nomeEntradaZip.replace('\\', '/'), resultado.tamanho,
+                    attrs.lastModifiedTime().toMillis(), resultado.crc, posicao);
+        }
+        contexto.registrarPontoDeControle();
+    }
+
+    /**
+     * Informa ao observador e à conferência uma entrada gravada antes da
+     * interrupção da compactação.
+     *
+     * @param registro O registro da entrada no diário.
+     * @param contexto O estado da compactação em andamento.
+     */
+    private static void reaproveitarEntrada(RegistroZip registro, Contexto contexto) {
+        if (DeltaArquivo.lerExtra(registro.metodo, registro.extra) != null && contexto.assinaturasDelta != null) {
+            // A assinatura se perdeu com a interrupção; a próxima execução grava o arquivo inteiro
+            contexto.assinaturasDelta.contarEntradaDelta();
+        }
+        long[] valores = valoresOriginais(registro);
+        long tamanho = valores[0];
+        long crc = valores[1];
+
+        contexto.arquivos++;
+        if (contexto.conferencia != null) {
+            contexto.conferencia.put(registro.nome, new long[]{tamanho, crc});
+        }
+        if (contexto.observador != null) {
+            contexto.observador.entradaGravada(contexto.destino, registro.nome.replace('\\', '/'), tamanho,
+                    registro.modificado, crc, registro.posicaoCabecalho);
+        }
+    }
+
+    /**
+     * Estado de uma compactação em andamento, compartilhado pelos métodos que
+     * adicionam entradas ao arquivo de backup.
+     */
+    private static class Contexto {
+
+        final EscritorArquivo escritor;
+        final SaidaContadora saida;
+        final PerfilCompressao perfil;
+        final SeletorNivelAdaptativo seletor;
+        final ObservadorEntradas observador;
+        final boolean acessoAleatorio;
+        final String destino;
+        final Map<String, long[]> conferencia;
+        // As entradas antes desta posição foram mantidas de um arquivo existente, sem serem regravadas
+        long inicioConferencia;
+        final LimitesTaxa limites;
+        final AssinaturasDelta assinaturasDelta;
+        final AssinaturasDelta baseDelta;
+        final long tamanhoMinimoDelta;
+        final CacheHashes cacheHashes;
+        final DuplicadosZip duplicados;
+        final LeituraOrdenada leituraOrdenada;
+        final byte[] buffer = new byte[TAMANHO_BUFFER];
+        long arquivos;
+        int pequenosSemLog;
+
+        // Pontos de controle da compactação retomável
+        DiarioCompactacao diario;
+        FileChannel canal;
+        GravadorZip gravador;
+        Map<String, RegistroZip> concluidas = Collections.emptyMap();
+        int registrados;
+
+        // Referências a arquivos repetidos mantidas de um arquivo existente
+        Map<String, DuplicadosZip.Referencia> referenciasMantidas = Collections.emptyMap();
+        Map<String, RegistroZip> originaisMantidos = Collections.emptyMap();
+        long posicaoPonto;
+        long momentoPonto;
+
+        Contexto(EscritorArquivo escritor, SaidaContadora saida, OpcoesCompactacao opcoes, String destino) {
+            this.escritor = escritor;
+            this.saida = saida;
+            this.perfil = opcoes.getPerfilCompressao();
+            this.observador = opcoes.getObservador();
+            this.acessoAleatorio = opcoes.getFormato().isAcessoAleatorio();
+            this.destino = destino;
+            this.limites = opcoes.getLimites();
+            this.assinaturasDelta = opcoes.getAssinaturasDelta();
+            this.baseDelta = opcoes.getBaseDelta();
+            this.tamanhoMinimoDelta = opcoes.getTamanhoMinimoDelta();
+            this.cacheHashes = opcoes.getCacheHashes();
+            this.duplicados = opcoes.isDeduplicar() && escritor instanceof EscritorZip ? new DuplicadosZip() : null;
+            this.leituraOrdenada = opcoes.isOrdenarLeitura() ? new LeituraOrdenada(opcoes.getLoteLeitura()) : null;
+            this.conferencia = opcoes.isVerificar() && permiteConferencia(opcoes) ? new HashMap<>() : null;
+            this.seletor = perfil == PerfilCompressao.ADAPTATIVO ? new SeletorNivelAdaptativo(perfil.getNivel()) : null;
+        }
+
+        private static boolean permiteConferencia(OpcoesCompactacao opcoes) {
+            if (!".zip".equalsIgnoreCase(opcoes.getFormato().getExtensao())) {
+                System.out.println("A conferência do backup só está disponível nos formatos ZIP.");
+                return false;
+            }
+            if (opcoes.getCriptografia() != null) {
+                System.out.println("A conferência com a origem não está disponível em backups criptografados; "
+                        + "cada bloco do arquivo é autenticado pela criptografia.");
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return {@code true} se o arquivo deve passar pelo
+         * {@link CodificadorDelta}: a gravação delta está ativa, o arquivo
+         * é grande e o formato é ZIP.
+         */
+        boolean isDelta(BasicFileAttributes attrs) {
+            return assinaturasDelta != null && attrs.size() >= tamanhoMinimoDelta && escritor instanceof EscritorZip;
+        }
+
+        int nivelAtual() {
+            return seletor != null ? seletor.getNivel() : perfil.getNivel();
+        }
+
+        /**
+         * Ativa os pontos de controle no diário, quando há um.
+         *
+         * @param diario O diário da compactação, ou {@code null}.
+         * @param canal O canal do arquivo parcial.
+         * @param anteriores As entradas gravadas antes da interrupção.
+         */
+        void iniciarDiario(DiarioCompactacao diario, FileChannel canal, List<RegistroZip> anteriores) {
+            if (diario == null || !(escritor instanceof EscritorZip)) {
+                return;
+            }
+            this.diario = diario;
+            this.canal = canal;
+            this.gravador = ((EscritorZip) escritor).gravador;
+            this.concluidas = new HashMap<>();
+            for (RegistroZip registro : anteriores) {
+                concluidas.put(registro.nome, registro);
+            }
+            this.registrados = anteriores.size();
+            this.posicaoPonto = gravador.getPosicao();
+            this.momentoPonto = System.nanoTime();
+        }
+
+        /**
+         * Mantém as entradas de um arquivo existente, ao qual as novas são
+         * acrescentadas: elas não são lidas de novo quando o arquivo de origem
+         * é encontrado na varredura.
+         *
+         * @param anteriores As entradas mantidas.
+         * @param referencias As referências a arquivos repetidos mantidas.
+         */
+        void manterAnteriores(List<RegistroZip> anteriores, Map<String, DuplicadosZip.Referencia> referencias) {
+            this.concluidas = new HashMap<>();
+            for (RegistroZip registro : anteriores) {
+                concluidas.put(registro.nome, registro);
+            }
+            this.registrados = anteriores.size();
+            this.referenciasMantidas = referencias;
+            this.originaisMantidos = new HashMap<>();
+            for (DuplicadosZip.Referencia referencia : referencias.values()) {
+                originaisMantidos.put(referencia.original, concluidas.get(referencia.original));
+            }
+        }
+
+        /**
+         * Registra um ponto de controle quando o intervalo em bytes ou em
+         * tempo desde o anterior é atingido. O arquivo parcial é sincronizado
+         * com o disco antes de o ponto ser gravado no diário.
+         *
+         * @throws IOException Se ocorrer um erro de escrita.
+         */
+        void registrarPontoDeControle() throws IOException {
+            if (diario == null) {
+                return;
+            }
+            long posicao = gravador.getPosicao();
+            if (posicao - posicaoPonto < BYTES_ENTRE_PONTOS && System.nanoTime() - momentoPonto < NANOS_ENTRE_PONTOS) {
+                return;
+            }
+            saida.flush();
+            canal.force(false);
+            List<RegistroZip> registros = gravador.getRegistros();
+            diario.registrar(posicao, registros.subList(registrados, registros.size()));
+            registrados = registros.size();
+            posicaoPonto = posicao;
+            momentoPonto = System.nanoTime();
+        }
     }
 }
@@ -0,0 +1,352 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import com.mycompany.ferramentadebackup.armazenamento.ArmazenamentoLocal;
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipException;
+
+/**
+ * Consolidação de uma cadeia de backups ZIP em um novo backup completo
+ * (backup completo sintético), sem ler a origem.
+ * <p>
+ * A cadeia vai do backup completo até a execução mais recente que depende
+ * dele. O resultado tem a versão mais recente de cada entrada: as execuções
+ * são percorridas da mais nova para a mais antiga e cada nome entra uma única
+ * vez. Uma execução pode listar, na entrada interna {@link #ENTRADA_REMOVIDOS}
+ * (um nome por linha), os arquivos excluídos da origem desde a execução
+ * anterior; essas entradas não são trazidas das execuções mais antigas.
+ * Uma execução com entradas delta ({@link DeltaArquivo}) tem todos os
+ * arquivos da origem, de modo que as execuções anteriores a ela só servem de
+ * base para reconstruir essas entradas.
+ * Os arquivos repetidos gravados como referência ({@link DuplicadosZip})
+ * continuam como referência quando a entrada original vem do mesmo arquivo;
+ * senão, os dados da original são copiados com o nome do arquivo.
+ * <p>
+ * Os dados comprimidos são copiados como estão
+ * ({@link GravadorZip#copiarEntrada}), sem descompressão nem novo deflate, de
+ * modo que o custo é basicamente o de ler e gravar os arquivos no destino. A
+ * única exceção são as entradas comprimidas com um dicionário compartilhado
+ * ({@link DicionarioDeflate}) diferente do dicionário do novo arquivo, que é
+ * o usado pelo maior número de entradas: essas são descomprimidas e gravadas
+ * com deflate comum, assim como as entradas delta, reconstruídas a partir dos
+ * seus backups base para que o novo arquivo não dependa deles. Backups
+ * cifrados são lidos por um {@link CanalDecifrado}, sem temporários, e o novo
+ * arquivo é cifrado com a criptografia das opções.
+ * <p>
+ * Como na compactação, o arquivo é gravado com a extensão de arquivo parcial
+ * e publicado com o nome final somente depois de completo e, com
+ * {@link OpcoesCompactacao#isVerificar()}, conferido.
+ */
+public class ConsolidadorZip {
+
+    /**
+     * Entrada interna com os nomes excluídos da origem desde a execução base.
+     */
+    public static final String ENTRADA_REMOVIDOS = RestauradorZip.PREFIXO_INTERNO + "removidos.txt";
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private ConsolidadorZip() {
+    }
+
+    /**
+     * Consolida uma cadeia de backups em um novo arquivo ZIP.
+     *
+     * @param cadeia Os arquivos de backup da cadeia (ou um volume de cada),
+     * do backup completo para o mais recente.
+     * @param senha A senha dos backups cifrados da cadeia, ou {@code null}.
+     * @param destino O arquivo ZIP a ser criado.
+     * @param opcoes As opções de gravação: nível do deflate, criptografia,
+     * verificação, limites de taxa e observador das entradas.
+     * @return A quantidade de entradas do novo arquivo.
+     * @throws IOException Se algum backup da cadeia não for ZIP, não puder ser
+     * lido ou decifrado, ou se ocorrer um erro de gravação.
+     */
+    public static long consolidar(List<Path> cadeia, char[] senha, Path destino, OpcoesCompactacao opcoes) throws IOException {
+        long inicio = System.nanoTime();
+        Path diretorio = destino.toAbsolutePath().normalize().getParent();
+        Path parcial = DiarioCompactacao.caminhoParcial(destino);
+        List<Fonte> fontes = new ArrayList<>();
+        BasesDelta bases = new BasesDelta(cadeia.get(cadeia.size() - 1).toAbsolutePath().getParent(), diretorio, senha);
+        boolean concluido = false;
+        long entradas = 0;
+        try {
+            // Da execução mais recente para a mais antiga
+            Map<String, Selecionada> selecionadas = new LinkedHashMap<>();
+            Set<String> removidos = new HashSet<>();
+            boolean completa = false;
+            for (int i = cadeia.size() - 1; i >= 0 && !completa; i--) {
+                List<Fonte> daExecucao = new ArrayList<>();
+                for (Path volume : RestauradorZip.localizarVolumes(cadeia.get(i))) {
+                    Fonte fonte = abrir(volume, senha);
+                    fontes.add(fonte);
+                    daExecucao.add(fonte);
+                    for (RegistroZip registro : fonte.registros) {
+                        if (!registro.nome.startsWith(RestauradorZip.PREFIXO_INTERNO) && !removidos.contains(registro.nome)) {
+                            selecionadas.putIfAbsent(registro.nome, new Selecionada(fonte, registro, null));
+                        }
+                        completa |= DeltaArquivo.lerExtra(registro.metodo, registro.extra) != null;
+                    }
+                    for (DuplicadosZip.Referencia referencia : fonte.lerDuplicados().values()) {
+                        if (!removidos.contains(referencia.nome)) {
+                            selecionadas.putIfAbsent(referencia.nome, new Selecionada(fonte, fonte.registro(referencia.original), referencia));
+                        }
+                    }
+                }
+                for (Fonte fonte : daExecucao) {
+                    removidos.addAll(fonte.lerRemovidos());
+                }
+            }
+
+            byte[] dicionario = escolherDicionario(selecionadas.values());
+            Integer idDicionario = dicionario != null ? DicionarioDeflate.identificador(dicionario) : null;
+
+            SaidaContadora saida = new SaidaContadora(new BufferedOutputStream(CompactadorZip.cifrar(Files.newOutputStream(parcial), opcoes), TAMANHO_BUFFER),
+                    0, opcoes.getLimites().getEscrita());
+            try (GravadorZip gravador = new GravadorZip(saida, opcoes.getPerfilCompressao().getNivel())) {
+                if (dicionario != null) {
+                    gravador.gravarEntradaArmazenada(DicionarioDeflate.NOME_ENTRADA, -1, dicionario, null);
+                }
+                DuplicadosZip duplicados = new DuplicadosZip();
+                for (Selecionada selecionada : selecionadas.values()) {
+                    RegistroZip original = selecionada.saida();
+                    long[] extra = DicionarioDeflate.lerExtra(original.metodo, original.extra);
+                    if (selecionada.isReferenciaMantida(selecionadas)) {
+                        DuplicadosZip.Referencia referencia = selecionada.referencia;
+                        duplicados.referenciar(referencia.nome, referencia.original, referencia.modificado);
+                        entradas++;
+                        if (opcoes.getObservador() != null) {
+                            opcoes.getObservador().entradaGravada(destino.toString(), referencia.nome, extra != null ? extra[0] : original.tamanho,
+                                    referencia.modificado, extra != null ? extra[1] : original.crc, -1);
+                        }
+                        continue;
+                    }
+                    RegistroZip gravado;
+                    long tamanho, crc;
+                    if (DeltaArquivo.lerExtra(original.metodo, original.extra) != null) {
+                        gravado = reconstruir(selecionada, gravador, bases, diretorio);
+                        tamanho = gravado.tamanho;
+                        crc = gravado.crc;
+                    } else if (extra != null && (idDicionario == null || (int) extra[2] != idDicionario)) {
+                        gravado = recomprimir(selecionada, gravador);
+                        tamanho = gravado.tamanho;
+                        crc = gravado.crc;
+                    } else {
+                        gravado = gravador.copiarEntrada(original, selecionada.fonte.canal);
+                        tamanho = extra != null ? extra[0] : original.tamanho;
+                        crc = extra != null ? extra[1] : original.crc;
+                    }
+                    entradas++;
+                    if (opcoes.getObservador() != null) {
+                        opcoes.getObservador().entradaGravada(destino.toString(), gravado.nome, tamanho, gravado.modificado, crc,
+                                gravado.posicaoCabecalho);
+                    }
+                }
+                duplicados.gravar(gravador);
+            }
+            CompactadorZip.sincronizar(parcial);
+            if (opcoes.isVerificar() && opcoes.getCriptografia() == null) {
+                VerificadorZip.verificar(parcial, opcoes.getLimites().getLeitura());
+            }
+            ArmazenamentoLocal.publicar(parcial, destino);
+            concluido = true;
+            System.out.println("Backup consolidado: " + destino + " (" + entradas + " entrada(s) de " + cadeia.size() + " execução(ões)).");
+            return entradas;
+        } finally {
+            for (Fonte fonte : fontes) {
+                fonte.close();
+            }
+            bases.close();
+            if (!concluido) {
+                Files.deleteIfExists(parcial);
+            }
+            MetricasBackup.compactacaoFinalizada(entradas, System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Escolhe o dicionário usado pelo maior número de entradas selecionadas,
+     * o que minimiza as entradas que precisam ser comprimidas de novo.
+     *
+     * @return O dicionário, ou {@code null} se nenhuma entrada usar um.
+     */
+    private static byte[] escolherDicionario(Collection<Selecionada> selecionadas) {
+        Map<Integer, Integer> usos = new HashMap<>();
+        Map<Integer, byte[]> dicionarios = new HashMap<>();
+        Integer escolhido = null;
+        for (Selecionada selecionada : selecionadas) {
+            long[] extra = DicionarioDeflate.lerExtra(selecionada.registro.metodo, selecionada.registro.extra);
+            byte[] dicionario = selecionada.fonte.dicionario;
+            if (extra == null || dicionario == null || (int) extra[2] != DicionarioDeflate.identificador(dicionario)) {
+                continue;
+            }
+            int id = (int) extra[2];
+            dicionarios.putIfAbsent(id, dicionario);
+            int quantidade = usos.merge(id, 1, Integer::sum);
+            if (escolhido == null || quantidade > usos.get(escolhido)) {
+                escolhido = id;
+            }
+        }
+        return escolhido != null ? dicionarios.get(escolhido) : null;
+    }
+
+    /**
+     * Abre um volume da cadeia, pelo canal decifrado se necessário, e lê o
+     * seu diretório central.
+     */
+    private static Fonte abrir(Path volume, char[] senha) throws IOException {
+        if (!volume.getFileName().toString().toLowerCase().endsWith(".zip")) {
+            throw new IOException("A consolidação só está disponível para backups ZIP: " + volume);
+        }
+        return new Fonte(volume, RestauradorZip.abrirCanal(volume, senha));
+    }
+
+    /**
+     * Grava com deflate comum uma entrada comprimida com outro dicionário.
+     */
+    private static RegistroZip recomprimir(Selecionada selecionada, GravadorZip gravador) throws IOException {
+        try (InputStream conteudo = DicionarioDeflate.abrirEntrada(selecionada.fonte.zip, selecionada.registro, selecionada.fonte.dicionario)) {
+            return gravar(selecionada.saida(), conteudo, gravador);
+        }
+    }
+
+    /**
+     * Reconstrói uma entrada delta em um temporário e a grava com deflate
+     * comum.
+     */
+    private static RegistroZip reconstruir(Selecionada selecionada, GravadorZip gravador, BasesDelta bases, Path diretorio) throws IOException {
+        Path temporario = Files.createTempFile(diretorio, ".consolidando-", ".tmp");
+        try {
+            RestauradorZip.restaurarEntrada(selecionada.fonte.zip, selecionada.registro, selecionada.fonte.dicionario, temporario, bases);
+            try (InputStream conteudo = Files.newInputStream(temporario)) {
+                return gravar(selecionada.saida(), conteudo, gravador);
+            }
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    private static RegistroZip gravar(RegistroZip registro, InputStream conteudo, GravadorZip gravador) throws IOException {
+        byte[] buffer = new byte[TAMANHO_BUFFER];
+        gravador.iniciarEntrada(registro.nome, registro.modificado);
+        int lidos;
+        while ((lidos = conteudo.read(buffer)) > 0) {
+            gravador.escrever(buffer, 0, lidos);
+        }
+        return gravador.fecharEntrada();
+    }
+
+    /**
+     * Um arquivo ZIP da cadeia, aberto para a cópia das entradas.
+     */
+    private static class Fonte implements Closeable {
+
+        final Path arquivo;
+        final SeekableByteChannel canal;
+        final ArquivoZip zip;
+        final List<RegistroZip> registros;
+        final byte[] dicionario;
+
+        Fonte(Path arquivo, SeekableByteChannel canal) throws IOException {
+            this.arquivo = arquivo;
+            this.canal = canal;
+            // O ArquivoZip fecha o canal, inclusive se a leitura falhar
+            this.zip = new ArquivoZip(canal, arquivo.toString());
+            try {
+                this.registros = zip.getRegistros();
+                this.dicionario = DicionarioDeflate.ler(zip);
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        RegistroZip registro(String nome) throws ZipException {
+            RegistroZip registro = zip.getRegistro(nome);
+            if (registro == null) {
+                throw new ZipException("Entrada original de arquivo duplicado não encontrada em " + arquivo + ": " + nome);
+            }
+            return registro;
+        }
+
+        Map<String, DuplicadosZip.Referencia> lerDuplicados() throws IOException {
+            return DuplicadosZip.ler(zip);
+        }
+
+        List<String> lerRemovidos() throws IOException {
+            List<String> removidos = new ArrayList<>();
+            RegistroZip registro = zip.getRegistro(ENTRADA_REMOVIDOS);
+            if (registro == null) {
+                return removidos;
+            }
+            try (InputStream conteudo = zip.abrir(registro)) {
+                for (String linha : new String(conteudo.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                    if (!linha.isEmpty()) {
+                        removidos.add(linha);
+                    }
+                }
+            }
+            return removidos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+
+    /**
+     * A versão escolhida de uma entrada e o arquivo de onde ela é copiada.
+     * Um arquivo repetido ({@link DuplicadosZip}) aponta para a entrada
+     * original.
+     */
+    private static class Selecionada {
+
+        final Fonte fonte;
+        final RegistroZip registro;
+        final DuplicadosZip.Referencia referencia;
+
+        Selecionada(Fonte fonte, RegistroZip registro, DuplicadosZip.Referencia referencia) {
+            this.fonte = fonte;
+            this.registro = registro;
+            this.referencia = referencia;
+        }
+
+        /**
+         * @return O registro com o nome e a data de modificação da entrada a
+         * ser gravada, que é o da entrada original renomeado no caso de um
+         * arquivo repetido.
+         */
+        RegistroZip saida() {
+            return referencia != null ? registro.renomear(referencia.nome, referencia.modificado) : registro;
+        }
+
+        /**
+         * @return Se o arquivo repetido continua como referência no novo
+         * arquivo: a entrada original foi escolhida da mesma execução. Caso
+         * contrário, ele é gravado por inteiro.
+         */
+        boolean isReferenciaMantida(Map<String, Selecionada> selecionadas) {
+            if (referencia == null) {
+                return false;
+            }
+            Selecionada original = selecionadas.get(referencia.original);
+            return original != null && original.referencia == null && original.registro == registro;
+        }
+    }
+}
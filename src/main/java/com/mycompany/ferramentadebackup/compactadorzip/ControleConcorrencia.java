@@ -0,0 +1,225 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controle adaptativo da quantidade de volumes lidos e comprimidos ao mesmo
+ * tempo.
+ * <p>
+ * Cada arquivo (ou lote da leitura ordenada) de um volume só é processado
+ * com uma vaga do controle ({@link #entrar()} e {@link #sair(long, long)}).
+ * A cada janela de pelo menos um segundo, o controle mede a vazão (bytes de
+ * origem processados por segundo) e a latência (nanossegundos por byte em
+ * cada vaga) e ajusta o limite de vagas por subida de encosta, com aumento
+ * aditivo e redução multiplicativa:
+ * <ul>
+ * <li>se a vazão melhorou, o limite continua na direção da última
+ * mudança;</li>
+ * <li>se a vazão piorou depois de um aumento, o limite é reduzido para três
+ * quartos; depois de uma redução, volta a subir uma vaga;</li>
+ * <li>se a vazão ficou estável mas a latência subiu depois de um aumento, a
+ * vaga a mais é devolvida; após algumas janelas estáveis, uma vaga a mais é
+ * experimentada de novo.</li>
+ * </ul>
+ * Assim, um disco NVMe recebe mais volumes em paralelo enquanto a vazão
+ * cresce, e um disco rígido USB fica com poucos, sem ultrapassar os limites
+ * configurados. Variações de até 5% são consideradas ruído.
+ * <p>
+ * A vazão média observada em cada limite é guardada, e o melhor deles
+ * ({@link #getRecomendado()}) pode ser usado como limite inicial da próxima
+ * execução com a mesma origem e o mesmo destino. Com o mínimo igual ao
+ * máximo, o limite é fixo.
+ */
+public class ControleConcorrencia {
+
+    // Duração mínima de uma janela de medição
+    private static final long JANELA_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // Quantidade mínima de arquivos de uma janela de medição
+    private static final int ARQUIVOS_JANELA = 4;
+
+    // Variação relativa da vazão e da latência considerada ruído
+    private static final double TOLERANCIA = 0.05;
+
+    // Fator da redução multiplicativa do limite
+    private static final double REDUCAO = 0.75;
+
+    // Janelas estáveis até uma nova tentativa de aumento
+    private static final int JANELAS_SONDAGEM = 5;
+
+    // Peso de cada janela na média da vazão de um limite
+    private static final double PESO_JANELA = 0.5;
+
+    private final int minimo;
+    private int maximo;
+    private int limite;
+    private int ativos;
+
+    private long inicioJanela = System.nanoTime();
+    private long bytesJanela;
+    private long nanosJanela;
+    private int arquivosJanela;
+
+    private double vazaoAnterior;
+    private double latenciaAnterior;
+    // +1 depois de um aumento, -1 depois de uma redução, 0 sem mudança
+    private int direcao;
+    private int janelasEstaveis;
+    private int janelas;
+    private final double[] vazaoPorLimite;
+
+    /**
+     * Cria o controle.
+     *
+     * @param minimo A quantidade mínima de volumes ao mesmo tempo.
+     * @param maximo A quantidade máxima de volumes ao mesmo tempo.
+     * @param inicial O limite inicial, como o recomendado na execução
+     * anterior, ou 0 para começar do mínimo.
+     */
+    public ControleConcorrencia(int minimo, int maximo, int inicial) {
+        this.minimo = Math.max(1, minimo);
+        this.maximo = Math.max(this.minimo, maximo);
+        this.limite = limitar(inicial > 0 ? inicial : this.minimo);
+        this.vazaoPorLimite = new double[this.maximo + 1];
+    }
+
+    /**
+     * @return O limite atual de volumes processados ao mesmo tempo.
+     */
+    public synchronized int getLimite() {
+        return limite;
+    }
+
+    /**
+     * @return O limite máximo.
+     */
+    public synchronized int getMaximo() {
+        return maximo;
+    }
+
+    /**
+     * @return A quantidade de janelas de medição avaliadas.
+     */
+    public synchronized int getJanelas() {
+        return janelas;
+    }
+
+    /**
+     * @return O limite com a maior vazão média observada; sem medições, o
+     * limite atual. Em caso de empate, o menor.
+     */
+    public synchronized int getRecomendado() {
+        int recomendado = limite;
+        double melhor = 0;
+        for (int i = minimo; i <= maximo; i++) {
+            if (vazaoPorLimite[i] > melhor * (1 + TOLERANCIA)) {
+                melhor = vazaoPorLimite[i];
+                recomendado = i;
+            }
+        }
+        return recomendado;
+    }
+
+    /**
+     * @return A vazão média, em bytes por segundo, do limite recomendado.
+     */
+    public synchronized double getVazaoRecomendado() {
+        return vazaoPorLimite[getRecomendado()];
+    }
+
+    /**
+     * Reduz o máximo, por exemplo à quantidade de volumes do backup.
+     *
+     * @param maximo O novo máximo, nunca abaixo do mínimo.
+     */
+    synchronized void limitarMaximo(int maximo) {
+        this.maximo = Math.max(minimo, Math.min(this.maximo, maximo));
+        this.limite = limitar(limite);
+    }
+
+    /**
+     * Aguarda uma vaga para processar um arquivo.
+     *
+     * @return O momento da entrada, a ser passado para
+     * {@link #sair(long, long)}.
+     * @throws InterruptedIOException Se a thread for interrompida durante a
+     * espera.
+     */
+    synchronized long entrar() throws InterruptedIOException {
+        while (ativos >= limite) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Compactação interrompida");
+            }
+        }
+        ativos++;
+        return System.nanoTime();
+    }
+
+    /**
+     * Libera a vaga de um arquivo processado e registra a medição.
+     *
+     * @param inicio O momento devolvido por {@link #entrar()}.
+     * @param bytes Os bytes de origem processados.
+     */
+    synchronized void sair(long inicio, long bytes) {
+        long agora = System.nanoTime();
+        ativos--;
+        bytesJanela += bytes;
+        nanosJanela += agora - inicio;
+        arquivosJanela++;
+        if (agora - inicioJanela >= JANELA_NANOS && arquivosJanela >= ARQUIVOS_JANELA) {
+            avaliar(agora - inicioJanela);
+            inicioJanela = agora;
+            bytesJanela = 0;
+            nanosJanela = 0;
+            arquivosJanela = 0;
+        }
+        notifyAll();
+    }
+
+    private void avaliar(long duracao) {
+        janelas++;
+        double vazao = bytesJanela * 1e9 / duracao;
+        double latencia = (double) nanosJanela / Math.max(1, bytesJanela);
+        vazaoPorLimite[limite] = vazaoPorLimite[limite] == 0 ? vazao
+                : vazaoPorLimite[limite] * (1 - PESO_JANELA) + vazao * PESO_JANELA;
+
+        int novo = limite;
+        if (vazaoAnterior == 0) {
+            // Primeira janela: experimenta uma vaga a mais
+            novo = limite + 1;
+        } else if (vazao > vazaoAnterior * (1 + TOLERANCIA)) {
+            novo = direcao < 0 ? limite - 1 : limite + 1;
+        } else if (vazao < vazaoAnterior * (1 - TOLERANCIA)) {
+            if (direcao > 0) {
+                novo = Math.min(limite - 1, (int) (limite * REDUCAO));
+            } else if (direcao < 0) {
+                novo = limite + 1;
+            }
+        } else if (direcao > 0 && latencia > latenciaAnterior * (1 + TOLERANCIA)) {
+            // A vaga a mais só aumentou a espera de cada arquivo
+            novo = limite - 1;
+        } else if (++janelasEstaveis >= JANELAS_SONDAGEM) {
+            novo = limite + 1;
+        }
+        novo = limitar(novo);
+
+        direcao = Integer.signum(novo - limite);
+        if (direcao != 0) {
+            janelasEstaveis = 0;
+            limite = novo;
+            MetricasBackup.concorrenciaAjustada(limite);
+        }
+        vazaoAnterior = vazao;
+        latenciaAnterior = latencia;
+    }
+
+    private int limitar(int valor) {
+        return Math.max(minimo, Math.min(maximo, valor));
+    }
+}
@@ -0,0 +1,494 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Criptografia autenticada dos arquivos de backup com AES-256-GCM.
+ * <p>
+ * O arquivo de backup é cifrado à medida que é gravado, em blocos de tamanho
+ * fixo, cada um com a sua própria etiqueta de autenticação. Os blocos são
+ * cifrados em paralelo pela {@link SaidaCifrada} e, como cada um pode ser
+ * decifrado isoladamente, a restauração também decifra em paralelo. O
+ * arquivo cifrado tem o formato:
+ * <pre>
+ * cabeçalho (40 bytes): "FBKC", versão (1 byte), 3 bytes reservados,
+ *                       iterações do PBKDF2 (int), tamanho do bloco (int),
+ *                       sal (16 bytes), prefixo do nonce (8 bytes)
+ * blocos:               texto cifrado + etiqueta (16 bytes)
+ * </pre>
+ * O nonce de cada bloco é o prefixo do arquivo seguido do número do bloco, e
+ * o cabeçalho e a marca de último bloco entram como dados autenticados: um
+ * bloco alterado, trocado de lugar ou removido do final faz a decifragem
+ * falhar.
+ * <p>
+ * A chave é derivada da senha do job com PBKDF2-HMAC-SHA256 uma única vez
+ * por instância, de modo que os volumes e as cópias de uma execução não
+ * repetem a derivação; cada arquivo recebe um prefixo de nonce aleatório.
+ */
+public class Criptografia {
+
+    static final int TAMANHO_CABECALHO = 40;
+    static final int TAMANHO_ETIQUETA = 16;
+
+    private static final byte[] MAGICO = {'F', 'B', 'K', 'C'};
+    private static final int VERSAO = 1;
+    private static final int ITERACOES = 600_000;
+    private static final int ITERACOES_MAXIMAS = 10_000_000;
+    // Com blocos muito maiores, o AES-GCM do JDK 17 fica várias vezes mais lento
+    private static final int TAMANHO_BLOCO = 64 * 1024;
+    private static final int TAMANHO_BLOCO_MAXIMO = 64 * 1024 * 1024;
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+    private static final String PREFIXO_VERIFICADOR = "pbkdf2-sha256$";
+
+    private final char[] senha;
+    private byte[] sal;
+    private SecretKey chave;
+
+    /**
+     * @param senha A senha do job, da qual a chave é derivada.
+     * @throws IllegalArgumentException Se a senha for vazia.
+     */
+    public Criptografia(char[] senha) {
+        if (senha == null || senha.length == 0) {
+            throw new IllegalArgumentException("A senha de criptografia não pode ser vazia");
+        }
+        this.senha = senha.clone();
+    }
+
+    /**
+     * Cria o fluxo que cifra os bytes escritos e os grava no destino,
+     * começando pelo cabeçalho.
+     *
+     * @param destino O fluxo que recebe o arquivo cifrado.
+     * @return O fluxo onde o arquivo de backup deve ser escrito.
+     * @throws IOException Se a chave não puder ser derivada ou o cabeçalho não
+     * puder ser gravado.
+     */
+    OutputStream cifrar(OutputStream destino) throws IOException {
+        SecretKey chaveArquivo;
+        byte[] salArquivo;
+        synchronized (this) {
+            if (chave == null) {
+                sal = new byte[16];
+                ALEATORIO.nextBytes(sal);
+                chave = derivarChave(senha, sal, ITERACOES);
+            }
+            chaveArquivo = chave;
+            salArquivo = sal;
+        }
+        ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO);
+        cabecalho.put(MAGICO).put((byte) VERSAO).put(new byte[3]).putInt(ITERACOES).putInt(TAMANHO_BLOCO).put(salArquivo);
+        byte[] prefixo = new byte[8];
+        ALEATORIO.nextBytes(prefixo);
+        cabecalho.put(prefixo);
+        return new SaidaCifrada(destino, chaveArquivo, cabecalho.array(), TAMANHO_BLOCO, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Confere a autenticação de todos os blocos de um arquivo cifrado com a
+     * senha desta instância.
+     *
+     * @param arquivo O arquivo cifrado.
+     * @param threads A quantidade de threads.
+     * @param limitador O limitador de bytes lidos por segundo, ou
+     * {@code null}.
+     * @return A quantidade de blocos conferidos.
+     * @throws IOException Se o arquivo não puder ser lido ou algum bloco não
+     * conferir.
+     */
+    long verificar(Path arquivo, int threads, LimitadorTaxa limitador) throws IOException {
+        return verificar(arquivo, senha, threads, limitador);
+    }
+
+    /**
+     * Calcula o tamanho do arquivo cifrado a partir do tamanho do original.
+     *
+     * @param tamanho O tamanho do arquivo original.
+     * @return O tamanho com o cabeçalho e as etiquetas dos blocos.
+     */
+    static long tamanhoCifrado(long tamanho) {
+        long blocos = Math.max(1, (tamanho + TAMANHO_BLOCO - 1) / TAMANHO_BLOCO);
+        return TAMANHO_CABECALHO + tamanho + blocos * TAMANHO_ETIQUETA;
+    }
+
+    /**
+     * Verifica se um arquivo foi gravado com criptografia, pelo início do
+     * cabeçalho.
+     *
+     * @param arquivo O arquivo de backup.
+     * @return {@code true} se o arquivo começar com o cabeçalho da
+     * criptografia; {@code false} também se ele não puder ser lido.
+     */
+    public static boolean isCifrado(Path arquivo) {
+        byte[] inicio = new byte[MAGICO.length];
+        try (InputStream entrada = Files.newInputStream(arquivo)) {
+            return entrada.readNBytes(inicio, 0, inicio.length) == inicio.length && Arrays.equals(inicio, MAGICO);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Cria o verificador de uma senha: o sal e o resultado do PBKDF2 da
+     * senha, no formato {@code pbkdf2-sha256$iterações$sal$hash} (sal e hash
+     * em Base64). O verificador permite conferir uma senha digitada
+     * ({@link #conferirVerificador(char[], String)}), mas não recuperá-la,
+     * e é o que o agendamento guarda no lugar da senha.
+     *
+     * @param senha A senha do job.
+     * @return O verificador da senha.
+     * @throws IllegalArgumentException Se a senha for vazia.
+     */
+    public static String criarVerificador(char[] senha) {
+        if (senha == null || senha.length == 0) {
+            throw new IllegalArgumentException("A senha de criptografia não pode ser vazia");
+        }
+        byte[] salVerificador = new byte[16];
+        ALEATORIO.nextBytes(salVerificador);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return PREFIXO_VERIFICADOR + ITERACOES + "$" + base64.encodeToString(salVerificador) + "$"
+                + base64.encodeToString(derivarVerificador(senha, salVerificador, ITERACOES));
+    }
+
+    /**
+     * Confere uma senha com o verificador criado por
+     * {@link #criarVerificador(char[])}.
+     *
+     * @param senha A senha digitada.
+     * @param verificador O verificador guardado no agendamento.
+     * @return {@code true} se a senha for a do verificador; {@code false}
+     * também se o verificador for inválido.
+     */
+    public static boolean conferirVerificador(char[] senha, String verificador) {
+        if (senha == null || senha.length == 0 || verificador == null || !verificador.startsWith(PREFIXO_VERIFICADOR)) {
+            return false;
+        }
+        String[] partes = verificador.substring(PREFIXO_VERIFICADOR.length()).split("\\$");
+        try {
+            int iteracoes = Integer.parseInt(partes[0]);
+            if (partes.length != 3 || iteracoes <= 0 || iteracoes > ITERACOES_MAXIMAS) {
+                return false;
+            }
+            Base64.Decoder base64 = Base64.getDecoder();
+            byte[] esperado = base64.decode(partes[2]);
+            return MessageDigest.isEqual(esperado, derivarVerificador(senha, base64.decode(partes[1]), iteracoes));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static byte[] derivarVerificador(char[] senha, byte[] sal, int iteracoes) {
+        try {
+            return derivarChave(senha, sal, iteracoes).getEncoded();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decifra um arquivo de backup, em paralelo, para outro arquivo.
+     *
+     * @param origem O arquivo cifrado.
+     * @param destino O arquivo decifrado a ser criado ou substituído.
+     * @param senha A senha do job.
+     * @param threads A quantidade de threads.
+     * @throws IOException Se o arquivo não puder ser lido ou gravado, se a
+     * senha estiver incorreta ou se algum bloco tiver sido alterado.
+     */
+    public static void decifrar(Path origem, Path destino, char[] senha, int threads) throws IOException {
+        try (FileChannel saida = FileChannel.open(destino, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            processar(origem, saida, senha, threads, null);
+            saida.force(false);
+        }
+    }
+
+    /**
+     * Abre um arquivo de backup cifrado para leitura em qualquer posição do
+     * conteúdo decifrado, sem decifrar o arquivo inteiro: cada bloco lido é
+     * decifrado e autenticado isoladamente ({@link CanalDecifrado}).
+     *
+     * @param arquivo O arquivo cifrado.
+     * @param senha A senha do job.
+     * @return O canal com o conteúdo decifrado.
+     * @throws IOException Se o arquivo não puder ser lido ou o cabeçalho for
+     * inválido; uma senha incorreta só é detectada na primeira leitura.
+     */
+    static CanalDecifrado abrirDecifrado(Path arquivo, char[] senha) throws IOException {
+        FileChannel entrada = FileChannel.open(arquivo, StandardOpenOption.READ);
+        try {
+            Formato formato = Formato.ler(entrada, arquivo);
+            return new CanalDecifrado(arquivo, entrada, formato, derivarChave(senha, formato.sal(), formato.iteracoes));
+        } catch (IOException | RuntimeException e) {
+            entrada.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Confere a etiqueta de autenticação de todos os blocos de um arquivo
+     * cifrado, sem gravar o conteúdo decifrado.
+     *
+     * @param arquivo O arquivo cifrado.
+     * @param senha A senha do job.
+     * @param threads A quantidade de threads.
+     * @param limitador O limitador de bytes lidos por segundo, ou
+     * {@code null}.
+     * @return A quantidade de blocos conferidos.
+     * @throws IOException Se o arquivo não puder ser lido, se a senha estiver
+     * incorreta ou se algum bloco tiver sido alterado.
+     */
+    public static long verificar(Path arquivo, char[] senha, int threads, LimitadorTaxa limitador) throws IOException {
+        return processar(arquivo, null, senha, threads, limitador);
+    }
+
+    /**
+     * Decifra todos os blocos de um arquivo. Cada thread pega o próximo bloco
+     * ainda não processado, lê e decifra no mesmo buffer e, se houver saída,
+     * grava o resultado na posição correspondente.
+     */
+    private static long processar(Path origem, FileChannel saida, char[] senha, int threads, LimitadorTaxa limitador) throws IOException {
+        try (FileChannel entrada = FileChannel.open(origem, StandardOpenOption.READ)) {
+            Formato formato = Formato.ler(entrada, origem);
+            byte[] cabecalho = formato.cabecalho;
+            int tamanhoBloco = formato.tamanhoBloco;
+            long tamanhoCifrado = formato.tamanhoCifrado();
+            long blocos = formato.blocos;
+            SecretKey chave = derivarChave(senha, formato.sal(), formato.iteracoes);
+
+            AtomicLong proximo = new AtomicLong();
+            AtomicBoolean falhou = new AtomicBoolean();
+            int quantidade = Math.max(1, threads);
+            ExecutorService pool = Executors.newFixedThreadPool(quantidade, tarefa -> {
+                Thread thread = new Thread(tarefa, "decifrador");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<?>> futuros = new ArrayList<>();
+                for (int i = 0; i < quantidade; i++) {
+                    futuros.add(pool.submit(() -> {
+                        ByteBuffer buffer = ByteBuffer.allocate((int) tamanhoCifrado);
+                        long indice;
+                        while (!falhou.get() && (indice = proximo.getAndIncrement()) < blocos) {
+                            try {
+                                long posicao = TAMANHO_CABECALHO + indice * tamanhoCifrado;
+                                buffer.clear().limit((int) Math.min(tamanhoCifrado, entrada.size() - posicao));
+                                lerCompleto(entrada, buffer, posicao);
+                                if (limitador != null) {
+                                    limitador.adquirir(buffer.limit());
+                                }
+                                int decifrados = decifrarBloco(chave, cabecalho, indice, indice == blocos - 1,
+                                        buffer.array(), buffer.limit(), origem);
+                                if (saida != null) {
+                                    ByteBuffer conteudo = ByteBuffer.wrap(buffer.array(), 0, decifrados);
+                                    long destino = indice * tamanhoBloco;
+                                    while (conteudo.hasRemaining()) {
+                                        destino += saida.write(conteudo, destino);
+                                    }
+                                }
+                            } catch (IOException e) {
+                                falhou.set(true);
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> futuro : futuros) {
+                    try {
+                        futuro.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Decifragem interrompida");
+                    } catch (ExecutionException e) {
+                        Throwable causa = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                        throw causa instanceof IOException ? (IOException) causa : new IOException(causa);
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            return blocos;
+        }
+    }
+
+    /**
+     * Cifra um bloco no próprio buffer, que deve ter espaço para a etiqueta
+     * depois dos dados.
+     *
+     * @return O tamanho do bloco cifrado, com a etiqueta.
+     */
+    static int cifrarBloco(SecretKey chave, byte[] cabecalho, long indice, boolean ultimo, byte[] dados, int tamanho) throws IOException {
+        try {
+            return iniciarCifra(Cipher.ENCRYPT_MODE, chave, cabecalho, indice, ultimo).doFinal(dados, 0, tamanho, dados, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Falha ao cifrar o bloco " + indice + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decifra um bloco no próprio buffer.
+     *
+     * @return O tamanho do conteúdo decifrado.
+     */
+    static int decifrarBloco(SecretKey chave, byte[] cabecalho, long indice, boolean ultimo, byte[] dados, int tamanho, Path origem)
+            throws IOException {
+        try {
+            return iniciarCifra(Cipher.DECRYPT_MODE, chave, cabecalho, indice, ultimo).doFinal(dados, 0, tamanho, dados, 0);
+        } catch (AEADBadTagException e) {
+            throw new IOException("O bloco " + indice + " de " + origem
+                    + " não confere: a senha está incorreta ou o arquivo foi alterado", e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Falha ao decifrar o bloco " + indice + " de " + origem + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Prepara a cifra de um bloco: o nonce é o prefixo do arquivo seguido do
+     * número do bloco, e os dados autenticados são o cabeçalho e a marca de
+     * último bloco.
+     */
+    private static Cipher iniciarCifra(int modo, SecretKey chave, byte[] cabecalho, long indice, boolean ultimo)
+            throws GeneralSecurityException {
+        if (indice > 0xFFFFFFFFL) {
+            throw new GeneralSecurityException("Arquivo com blocos demais para a criptografia");
+        }
+        byte[] nonce = ByteBuffer.allocate(12).put(cabecalho, 32, 8).putInt((int) indice).array();
+        Cipher cifra = Cipher.getInstance("AES/GCM/NoPadding");
+        cifra.init(modo, chave, new GCMParameterSpec(TAMANHO_ETIQUETA * 8, nonce));
+        cifra.updateAAD(cabecalho);
+        cifra.updateAAD(new byte[]{(byte) (ultimo ? 1 : 0)});
+        return cifra;
+    }
+
+    private static SecretKey derivarChave(char[] senha, byte[] sal, int iteracoes) throws IOException {
+        PBEKeySpec especificacao = new PBEKeySpec(senha, sal, iteracoes, 256);
+        try {
+            byte[] bytes = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(especificacao).getEncoded();
+            return new SecretKeySpec(bytes, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Não foi possível derivar a chave de criptografia: " + e.getMessage(), e);
+        } finally {
+            especificacao.clearPassword();
+        }
+    }
+
+    static void lerCompleto(FileChannel canal, ByteBuffer buffer, long posicao) throws IOException {
+        while (buffer.hasRemaining()) {
+            int lidos = canal.read(buffer, posicao + buffer.position());
+            if (lidos < 0) {
+                throw new IOException("Fim inesperado do arquivo cifrado");
+            }
+        }
+    }
+
+    /**
+     * O cabeçalho de um arquivo cifrado e a quantidade de blocos calculada
+     * pelo tamanho do arquivo.
+     */
+    static class Formato {
+
+        final byte[] cabecalho;
+        final int iteracoes;
+        final int tamanhoBloco;
+        final long blocos;
+        final long tamanhoArquivo;
+
+        private Formato(byte[] cabecalho, int iteracoes, int tamanhoBloco, long blocos, long tamanhoArquivo) {
+            this.cabecalho = cabecalho;
+            this.iteracoes = iteracoes;
+            this.tamanhoBloco = tamanhoBloco;
+            this.blocos = blocos;
+            this.tamanhoArquivo = tamanhoArquivo;
+        }
+
+        /**
+         * Lê e valida o cabeçalho de um arquivo cifrado.
+         *
+         * @param entrada O arquivo cifrado aberto para leitura.
+         * @param origem O caminho do arquivo, usado nas mensagens de erro.
+         * @return O formato do arquivo.
+         * @throws IOException Se o cabeçalho for inválido ou o arquivo estiver
+         * incompleto.
+         */
+        static Formato ler(FileChannel entrada, Path origem) throws IOException {
+            ByteBuffer lido = ByteBuffer.allocate(TAMANHO_CABECALHO);
+            lerCompleto(entrada, lido, 0);
+            byte[] cabecalho = lido.array();
+            ByteBuffer campos = ByteBuffer.wrap(cabecalho);
+            byte[] magico = new byte[MAGICO.length];
+            campos.get(magico);
+            int versao = campos.get();
+            campos.position(8);
+            int iteracoes = campos.getInt();
+            int tamanhoBloco = campos.getInt();
+            if (!Arrays.equals(magico, MAGICO) || versao != VERSAO || iteracoes <= 0 || iteracoes > ITERACOES_MAXIMAS
+                    || tamanhoBloco <= 0 || tamanhoBloco > TAMANHO_BLOCO_MAXIMO) {
+                throw new IOException("Cabeçalho de criptografia inválido em " + origem);
+            }
+
+            long tamanhoArquivo = entrada.size();
+            long corpo = tamanhoArquivo - TAMANHO_CABECALHO;
+            long tamanhoCifrado = (long) tamanhoBloco + TAMANHO_ETIQUETA;
+            long blocos = (corpo + tamanhoCifrado - 1) / tamanhoCifrado;
+            if (blocos == 0 || corpo - (blocos - 1) * tamanhoCifrado < TAMANHO_ETIQUETA) {
+                throw new IOException("Arquivo cifrado incompleto: " + origem);
+            }
+            return new Formato(cabecalho, iteracoes, tamanhoBloco, blocos, tamanhoArquivo);
+        }
+
+        byte[] sal() {
+            return Arrays.copyOfRange(cabecalho, 16, 32);
+        }
+
+        /**
+         * @return O tamanho de um bloco cifrado, com a etiqueta.
+         */
+        long tamanhoCifrado() {
+            return (long) tamanhoBloco + TAMANHO_ETIQUETA;
+        }
+
+        /**
+         * @return A posição do bloco no arquivo cifrado.
+         */
+        long posicaoBloco(long indice) {
+            return TAMANHO_CABECALHO + indice * tamanhoCifrado();
+        }
+
+        /**
+         * @return O tamanho do conteúdo decifrado.
+         */
+        long tamanhoDecifrado() {
+            return tamanhoArquivo - TAMANHO_CABECALHO - blocos * TAMANHO_ETIQUETA;
+        }
+    }
+}
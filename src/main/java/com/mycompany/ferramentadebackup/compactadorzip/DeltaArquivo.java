@@ -0,0 +1,211 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Formato das entradas delta, que guardam um arquivo grande como as
+ * diferenças em relação à versão do mesmo arquivo no backup anterior.
+ * <p>
+ * O conteúdo da entrada (comprimido com deflate, como as demais) é uma
+ * receita: um cabeçalho com o nome do arquivo de backup que serve de base e o
+ * tamanho do arquivo nessa base, seguido de operações que copiam um trecho da
+ * base ({@link #OP_COPIA}) ou trazem bytes novos ({@link #OP_LITERAL}), até
+ * {@link #OP_FIM}. O arquivo de backup base fica no mesmo diretório da
+ * entrada delta e é indicado só pelo nome, para que as cópias nos destinos
+ * adicionais continuem válidas.
+ * <p>
+ * A entrada é marcada, no diretório central, com o campo extra
+ * {@link #ID_EXTRA}, que guarda o tamanho e o CRC-32 do arquivo original.
+ * Ferramentas comuns de ZIP extraem a receita; a restauração do arquivo é
+ * feita por {@link RestauradorZip}, que reconstrói a base (que também pode
+ * ser uma entrada delta) e aplica a receita com {@link #aplicar}.
+ */
+class DeltaArquivo {
+
+    // Identificador do campo extra das entradas delta ("DL")
+    static final int ID_EXTRA = 0x4C44;
+
+    static final int OP_FIM = 0;
+    static final int OP_COPIA = 1;
+    static final int OP_LITERAL = 2;
+
+    // "FBDL"
+    private static final int ASSINATURA = 0x4642444C;
+    private static final int VERSAO = 1;
+
+    private DeltaArquivo() {
+    }
+
+    /**
+     * Monta o campo extra que marca uma entrada delta.
+     *
+     * @param tamanhoOriginal O tamanho do arquivo reconstruído.
+     * @param crcOriginal O CRC-32 do arquivo reconstruído.
+     * @return O campo extra no formato ZIP (id, tamanho, dados).
+     */
+    static byte[] criarExtra(long tamanhoOriginal, long crcOriginal) {
+        ByteBuffer extra = ByteBuffer.allocate(4 + 12).order(ByteOrder.LITTLE_ENDIAN);
+        extra.putShort((short) ID_EXTRA);
+        extra.putShort((short) 12);
+        extra.putLong(tamanhoOriginal);
+        extra.putInt((int) crcOriginal);
+        return extra.array();
+    }
+
+    /**
+     * Lê o campo extra de uma entrada delta.
+     *
+     * @param registro O registro da entrada.
+     * @return Um array com {tamanho original, CRC-32 original}, ou
+     * {@code null} se a entrada não for delta.
+     */
+    static long[] lerExtra(RegistroZip registro) {
+        return lerExtra(registro.metodo, registro.extra);
+    }
+
+    /**
+     * Lê o campo extra delta a partir do método e dos campos extras de uma
+     * entrada.
+     *
+     * @param metodo O método de compressão da entrada.
+     * @param extra Os campos extras da entrada, ou {@code null}.
+     * @return Um array com {tamanho original, CRC-32 original}, ou
+     * {@code null} se a entrada não for delta.
+     */
+    static long[] lerExtra(int metodo, byte[] extra) {
+        if (extra == null || metodo != ZipEntry.DEFLATED) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.remaining() >= 4) {
+            int id = buffer.getShort() & 0xFFFF;
+            int tamanho = buffer.getShort() & 0xFFFF;
+            if (tamanho > buffer.remaining()) {
+                return null;
+            }
+            if (id == ID_EXTRA && tamanho == 12) {
+                return new long[]{buffer.getLong(), buffer.getInt() & 0xFFFFFFFFL};
+            }
+            buffer.position(buffer.position() + tamanho);
+        }
+        return null;
+    }
+
+    /**
+     * Grava o cabeçalho da receita.
+     *
+     * @param receita A saída da receita.
+     * @param arquivoBase O nome do arquivo de backup base.
+     * @param tamanhoBase O tamanho do arquivo na base.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    static void escreverCabecalho(DataOutputStream receita, String arquivoBase, long tamanhoBase) throws IOException {
+        receita.writeInt(ASSINATURA);
+        receita.writeByte(VERSAO);
+        receita.writeUTF(arquivoBase);
+        receita.writeLong(tamanhoBase);
+    }
+
+    /**
+     * Lê o cabeçalho da receita.
+     *
+     * @param receita A receita, posicionada no início.
+     * @return O cabeçalho.
+     * @throws IOException Se a receita não tiver um cabeçalho válido.
+     */
+    static Cabecalho lerCabecalho(DataInputStream receita) throws IOException {
+        if (receita.readInt() != ASSINATURA || receita.readUnsignedByte() != VERSAO) {
+            throw new ZipException("Receita delta inválida");
+        }
+        return new Cabecalho(receita.readUTF(), receita.readLong());
+    }
+
+    /**
+     * Aplica as operações da receita, gravando o arquivo reconstruído.
+     *
+     * @param receita A receita, posicionada logo após o cabeçalho.
+     * @param base O arquivo base, já reconstruído.
+     * @param saida O arquivo de destino, gravado a partir da posição 0.
+     * @param crc O CRC-32 a ser atualizado com o conteúdo reconstruído.
+     * @param buffer O buffer da cópia.
+     * @return O tamanho do arquivo reconstruído.
+     * @throws IOException Se a receita for inválida, se uma cópia sair da
+     * base ou se ocorrer um erro de leitura ou escrita.
+     */
+    static long aplicar(DataInputStream receita, FileChannel base, FileChannel saida, CRC32 crc, byte[] buffer) throws IOException {
+        ByteBuffer envelope = ByteBuffer.wrap(buffer);
+        long tamanhoBase = base.size();
+        long escritos = 0;
+        while (true) {
+            int operacao = receita.readUnsignedByte();
+            if (operacao == OP_FIM) {
+                return escritos;
+            }
+            if (operacao == OP_COPIA) {
+                long posicao = receita.readLong();
+                long tamanho = receita.readLong();
+                if (posicao < 0 || tamanho < 0 || posicao + tamanho > tamanhoBase) {
+                    throw new ZipException("Cópia fora do arquivo base na receita delta");
+                }
+                for (long copiados = 0; copiados < tamanho;) {
+                    envelope.clear().limit((int) Math.min(buffer.length, tamanho - copiados));
+                    while (envelope.hasRemaining()) {
+                        if (base.read(envelope, posicao + copiados + envelope.position()) < 0) {
+                            throw new EOFException("Fim inesperado do arquivo base");
+                        }
+                    }
+                    escritos += gravar(saida, envelope, escritos, crc);
+                    copiados += envelope.limit();
+                }
+            } else if (operacao == OP_LITERAL) {
+                int tamanho = receita.readInt();
+                for (int copiados = 0; copiados < tamanho;) {
+                    int parte = Math.min(buffer.length, tamanho - copiados);
+                    receita.readFully(buffer, 0, parte);
+                    envelope.clear().position(parte);
+                    escritos += gravar(saida, envelope, escritos, crc);
+                    copiados += parte;
+                }
+            } else {
+                throw new ZipException("Operação desconhecida na receita delta: " + operacao);
+            }
+        }
+    }
+
+    /**
+     * Grava os bytes já colocados no buffer (da posição 0 até a posição
+     * atual) e atualiza o CRC-32.
+     */
+    private static int gravar(FileChannel saida, ByteBuffer envelope, long posicao, CRC32 crc) throws IOException {
+        envelope.flip();
+        crc.update(envelope.array(), 0, envelope.limit());
+        int tamanho = envelope.limit();
+        while (envelope.hasRemaining()) {
+            saida.write(envelope, posicao + envelope.position());
+        }
+        return tamanho;
+    }
+
+    /**
+     * Cabeçalho de uma receita delta.
+     */
+    static class Cabecalho {
+
+        final String arquivoBase;
+        final long tamanhoBase;
+
+        Cabecalho(String arquivoBase, long tamanhoBase) {
+            this.arquivoBase = arquivoBase;
+            this.tamanhoBase = tamanhoBase;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import com.mycompany.ferramentadebackup.armazenamento.ArmazenamentoLocal;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Diário persistente das alterações observadas em um diretório de origem.
+ * <p>
+ * Cada alteração é acrescentada ao arquivo do diário como uma linha com o
+ * tipo ({@link #CRIADO}, {@link #MODIFICADO} ou {@link #REMOVIDO}), uma
+ * tabulação e o caminho relativo à origem; a linha {@code *} indica que
+ * eventos foram perdidos e que a origem precisa ser percorrida por inteiro.
+ * Ao abrir o diário, as linhas são lidas de volta, de modo que as alterações
+ * ainda não gravadas em backup sobrevivem ao fechamento do programa. Uma
+ * última linha incompleta, deixada por uma queda, é ignorada.
+ * <p>
+ * As alterações pendentes são retiradas em lotes ({@link #retirar()}). O
+ * arquivo só é regravado, sem as alterações do lote, quando o backup dele é
+ * confirmado ({@link #confirmar()}); se o backup falhar, o lote é devolvido
+ * ({@link #devolver(Lote)}) e entra no próximo.
+ */
+public class DiarioAlteracoes implements Closeable {
+
+    public static final char CRIADO = 'C';
+    public static final char MODIFICADO = 'M';
+    public static final char REMOVIDO = 'D';
+
+    private static final String ESTOURO = "*";
+
+    private final Path arquivo;
+    private Map<String, Character> pendentes = new LinkedHashMap<>();
+    private boolean reescanear;
+    private BufferedWriter saida;
+
+    private DiarioAlteracoes(Path arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    /**
+     * Abre o diário, carregando as alterações que ficaram pendentes.
+     *
+     * @param arquivo O arquivo do diário, criado se não existir.
+     * @return O diário aberto.
+     * @throws IOException Se ocorrer um erro ao ler ou abrir o arquivo.
+     */
+    public static DiarioAlteracoes abrir(Path arquivo) throws IOException {
+        DiarioAlteracoes diario = new DiarioAlteracoes(arquivo);
+        if (Files.exists(arquivo)) {
+            String conteudo = new String(Files.readAllBytes(arquivo), StandardCharsets.UTF_8);
+            int fim = conteudo.lastIndexOf('\n') + 1;
+            for (String linha : conteudo.substring(0, fim).split("\n")) {
+                if (ESTOURO.equals(linha)) {
+                    diario.reescanear = true;
+                } else if (linha.length() > 2 && linha.charAt(1) == '\t') {
+                    diario.pendentes.remove(linha.substring(2));
+                    diario.pendentes.put(linha.substring(2), linha.charAt(0));
+                }
+            }
+            // Regrava sem a linha incompleta e sem as repetições
+            diario.regravar();
+        } else if (arquivo.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(arquivo.toAbsolutePath().getParent());
+        }
+        diario.saida = Files.newBufferedWriter(arquivo, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return diario;
+    }
+
+    /**
+     * Registra uma alteração. A linha fica no buffer até
+     * {@link #descarregar()}.
+     *
+     * @param tipo O tipo da alteração.
+     * @param nome O caminho do arquivo, relativo à origem.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public synchronized void registrar(char tipo, String nome) throws IOException {
+        if (nome.indexOf('\n') >= 0) {
+            // Não cabe no diário: a próxima gravação percorre a origem inteira
+            registrarEstouro();
+            return;
+        }
+        // A ordem segue a última alteração de cada arquivo
+        pendentes.remove(nome);
+        pendentes.put(nome, tipo);
+        saida.write(tipo);
+        saida.write('\t');
+        saida.write(nome);
+        saida.write('\n');
+    }
+
+    /**
+     * Registra que eventos foram perdidos: a próxima gravação percorre a
+     * origem inteira.
+     *
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public synchronized void registrarEstouro() throws IOException {
+        if (!reescanear) {
+            reescanear = true;
+            saida.write(ESTOURO);
+            saida.write('\n');
+        }
+    }
+
+    /**
+     * Grava no arquivo as alterações registradas desde a última chamada.
+     *
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public synchronized void descarregar() throws IOException {
+        saida.flush();
+    }
+
+    /**
+     * @return Se não há alterações pendentes.
+     */
+    public synchronized boolean isVazio() {
+        return pendentes.isEmpty() && !reescanear;
+    }
+
+    /**
+     * Retira as alterações pendentes para gravação. Elas continuam no arquivo
+     * até {@link #confirmar()}.
+     *
+     * @return O lote com as alterações.
+     */
+    public synchronized Lote retirar() {
+        Lote lote = new Lote(pendentes, reescanear);
+        pendentes = new LinkedHashMap<>();
+        reescanear = false;
+        return lote;
+    }
+
+    /**
+     * Confirma a gravação do último lote retirado: o arquivo é regravado só
+     * com as alterações registradas depois dele.
+     *
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    public synchronized void confirmar() throws IOException {
+        saida.close();
+        regravar();
+        saida = Files.newBufferedWriter(arquivo, StandardCharsets.UTF_8, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Devolve um lote cuja gravação falhou. As alterações registradas depois
+     * da retirada prevalecem sobre as do lote.
+     *
+     * @param lote O lote retirado.
+     */
+    public synchronized void devolver(Lote lote) {
+        Map<String, Character> juntas = new LinkedHashMap<>(lote.alteracoes);
+        for (Map.Entry<String, Character> alteracao : pendentes.entrySet()) {
+            juntas.remove(alteracao.getKey());
+            juntas.put(alteracao.getKey(), alteracao.getValue());
+        }
+        pendentes = juntas;
+        reescanear |= lote.reescanear;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        saida.close();
+    }
+
+    /**
+     * Regrava o arquivo com as alterações pendentes, em um temporário trocado
+     * de uma vez.
+     */
+    private void regravar() throws IOException {
+        StringBuilder conteudo = new StringBuilder();
+        if (reescanear) {
+            conteudo.append(ESTOURO).append('\n');
+        }
+        for (Map.Entry<String, Character> alteracao : pendentes.entrySet()) {
+            conteudo.append(alteracao.getValue()).append('\t').append(alteracao.getKey()).append('\n');
+        }
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        Files.write(temporario, conteudo.toString().getBytes(StandardCharsets.UTF_8));
+        ArmazenamentoLocal.publicar(temporario, arquivo);
+    }
+
+    /**
+     * Alterações retiradas do diário para uma gravação.
+     */
+    public static class Lote {
+
+        private final Map<String, Character> alteracoes;
+        private final boolean reescanear;
+
+        Lote(Map<String, Character> alteracoes, boolean reescanear) {
+            this.alteracoes = alteracoes;
+            this.reescanear = reescanear;
+        }
+
+        /**
+         * @return O tipo da última alteração de cada arquivo, pelo caminho
+         * relativo à origem, na ordem em que foram observadas.
+         */
+        public Map<String, Character> getAlteracoes() {
+            return Collections.unmodifiableMap(alteracoes);
+        }
+
+        /**
+         * @return Se eventos foram perdidos e a origem deve ser percorrida
+         * por inteiro.
+         */
+        public boolean isReescanear() {
+            return reescanear;
+        }
+    }
+}
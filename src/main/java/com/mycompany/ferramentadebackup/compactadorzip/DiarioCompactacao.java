@@ -0,0 +1,259 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import com.mycompany.ferramentadebackup.armazenamento.ArmazenamentoLocal;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Diário de pontos de controle de uma compactação ZIP.
+ * <p>
+ * Enquanto o arquivo {@code destino.parcial} é gravado, o diário
+ * {@code destino.diario} recebe, a cada ponto de controle, a posição até a
+ * qual o arquivo parcial já foi sincronizado com o disco e os
+ * {@link RegistroZip} das entradas concluídas desde o ponto anterior. Cada
+ * ponto de controle leva o próprio tamanho, termina com um CRC-32 e é
+ * sincronizado antes de a gravação continuar; um ponto incompleto, deixado
+ * por uma queda no meio da escrita, é descartado na leitura.
+ * <p>
+ * O cabeçalho do diário identifica a compactação (origem, formato e uso de
+ * dicionário), para que uma execução com outras opções não retome um arquivo
+ * incompatível.
+ */
+class DiarioCompactacao implements Closeable {
+
+    static final String EXTENSAO_PARCIAL = ArmazenamentoLocal.EXTENSAO_PARCIAL;
+    static final String EXTENSAO_DIARIO = ".diario";
+
+    private static final int ASSINATURA = 0x46424b44; // "FBKD"
+    private static final int VERSAO = 1;
+    private static final int ASSINATURA_PONTO = 0x50435446;
+
+    private final FileChannel canal;
+    private final long posicao;
+    private final List<RegistroZip> registros;
+
+    private DiarioCompactacao(FileChannel canal, long posicao, List<RegistroZip> registros) {
+        this.canal = canal;
+        this.posicao = posicao;
+        this.registros = registros;
+    }
+
+    /**
+     * @param destino O arquivo de backup final.
+     * @return O arquivo temporário em que o backup é gravado.
+     */
+    static Path caminhoParcial(Path destino) {
+        return destino.resolveSibling(destino.getFileName() + EXTENSAO_PARCIAL);
+    }
+
+    /**
+     * @param destino O arquivo de backup final.
+     * @return O diário da compactação do destino.
+     */
+    static Path caminhoDiario(Path destino) {
+        return destino.resolveSibling(destino.getFileName() + EXTENSAO_DIARIO);
+    }
+
+    /**
+     * Abre o diário de um destino.
+     * <p>
+     * Se já houver um diário compatível com a identificação e o arquivo
+     * parcial tiver ao menos o tamanho do último ponto de controle válido, o
+     * estado desse ponto é carregado para a retomada. Em qualquer caso o
+     * diário é regravado de forma compacta, apenas com o cabeçalho e o estado
+     * carregado.
+     *
+     * @param destino O arquivo de backup final.
+     * @param identificacao A identificação da compactação.
+     * @return O diário aberto.
+     * @throws IOException Se ocorrer um erro ao ler ou gravar o diário.
+     */
+    static DiarioCompactacao abrir(Path destino, String identificacao) throws IOException {
+        Path diario = caminhoDiario(destino);
+        Path parcial = caminhoParcial(destino);
+
+        long posicao = 0;
+        List<RegistroZip> registros = new ArrayList<>();
+        if (Files.exists(diario) && Files.exists(parcial)) {
+            try (DataInputStream entrada = new DataInputStream(Files.newInputStream(diario))) {
+                if (lerCabecalho(entrada, identificacao)) {
+                    posicao = lerPontos(entrada, registros);
+                }
+            }
+            if (posicao == 0 || Files.size(parcial) < posicao) {
+                posicao = 0;
+                registros.clear();
+            }
+        }
+
+        // O diário compacto é montado em um arquivo temporário e trocado de
+        // uma vez, para que uma queda nesse momento não perca o estado lido
+        Path temporario = diario.resolveSibling(diario.getFileName() + ".tmp");
+        try (DiarioCompactacao novo = new DiarioCompactacao(FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), posicao, registros)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream saida = new DataOutputStream(bytes);
+            saida.writeInt(ASSINATURA);
+            saida.writeInt(VERSAO);
+            saida.writeUTF(identificacao);
+            gravar(novo.canal, bytes.toByteArray());
+            if (posicao > 0) {
+                novo.registrar(posicao, registros);
+            } else {
+                novo.canal.force(false);
+            }
+        }
+        ArmazenamentoLocal.publicar(temporario, diario);
+        return new DiarioCompactacao(FileChannel.open(diario, StandardOpenOption.WRITE, StandardOpenOption.APPEND),
+                posicao, Collections.unmodifiableList(registros));
+    }
+
+    /**
+     * Verifica se existe uma compactação interrompida para o destino, isto é,
+     * um arquivo parcial acompanhado de um diário.
+     *
+     * @param destino O arquivo de backup final.
+     * @return {@code true} se a compactação do destino pode ser retomada.
+     */
+    static boolean existe(Path destino) {
+        return Files.exists(caminhoDiario(destino)) && Files.exists(caminhoParcial(destino));
+    }
+
+    /**
+     * Exclui o diário e, opcionalmente, o arquivo parcial do destino.
+     *
+     * @param destino O arquivo de backup final.
+     * @param incluirParcial {@code true} para excluir também o arquivo
+     * parcial.
+     * @throws IOException Se ocorrer um erro ao excluir os arquivos.
+     */
+    static void excluir(Path destino, boolean incluirParcial) throws IOException {
+        Files.deleteIfExists(caminhoDiario(destino));
+        if (incluirParcial) {
+            Files.deleteIfExists(caminhoParcial(destino));
+        }
+    }
+
+    /**
+     * @return A posição do arquivo parcial no último ponto de controle válido,
+     * ou 0 se a compactação começa do início.
+     */
+    long getPosicao() {
+        return posicao;
+    }
+
+    /**
+     * @return Os registros das entradas gravadas até o último ponto de
+     * controle válido.
+     */
+    List<RegistroZip> getRegistros() {
+        return registros;
+    }
+
+    /**
+     * Acrescenta um ponto de controle ao diário e o sincroniza com o disco.
+     * O arquivo parcial já deve estar sincronizado até a posição informada.
+     *
+     * @param posicao A posição do arquivo parcial após a última entrada.
+     * @param novos Os registros das entradas concluídas desde o ponto
+     * anterior.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    void registrar(long posicao, List<RegistroZip> novos) throws IOException {
+        ByteArrayOutputStream corpo = new ByteArrayOutputStream();
+        DataOutputStream saidaCorpo = new DataOutputStream(corpo);
+        saidaCorpo.writeLong(posicao);
+        saidaCorpo.writeInt(novos.size());
+        for (RegistroZip registro : novos) {
+            registro.escrever(saidaCorpo);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(corpo.toByteArray());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(corpo.size() + 16);
+        DataOutputStream saida = new DataOutputStream(bytes);
+        saida.writeInt(ASSINATURA_PONTO);
+        saida.writeInt(corpo.size());
+        corpo.writeTo(saida);
+        saida.writeLong(crc.getValue());
+
+        gravar(canal, bytes.toByteArray());
+        canal.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    private static boolean lerCabecalho(DataInputStream entrada, String identificacao) throws IOException {
+        try {
+            return entrada.readInt() == ASSINATURA && entrada.readInt() == VERSAO
+                    && identificacao.equals(entrada.readUTF());
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Lê os pontos de controle até o fim do diário ou até o primeiro ponto
+     * incompleto ou corrompido.
+     *
+     * @return A posição do último ponto válido, ou 0 se não houver nenhum.
+     */
+    private static long lerPontos(DataInputStream entrada, List<RegistroZip> registros) throws IOException {
+        long posicao = 0;
+        while (true) {
+            byte[] corpo;
+            long crcGravado;
+            try {
+                if (entrada.readInt() != ASSINATURA_PONTO) {
+                    return posicao;
+                }
+                int tamanho = entrada.readInt();
+                if (tamanho < 12) {
+                    return posicao;
+                }
+                corpo = new byte[tamanho];
+                entrada.readFully(corpo);
+                crcGravado = entrada.readLong();
+            } catch (EOFException e) {
+                return posicao;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(corpo);
+            if (crc.getValue() != crcGravado) {
+                return posicao;
+            }
+
+            DataInputStream ponto = new DataInputStream(new ByteArrayInputStream(corpo));
+            long posicaoPonto = ponto.readLong();
+            int quantidade = ponto.readInt();
+            for (int i = 0; i < quantidade; i++) {
+                registros.add(RegistroZip.ler(ponto));
+            }
+            posicao = posicaoPonto;
+        }
+    }
+
+    private static void gravar(FileChannel canal, byte[] dados) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(dados);
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+    }
+}
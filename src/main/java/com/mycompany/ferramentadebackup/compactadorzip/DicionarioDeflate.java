@@ -0,0 +1,305 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Dicionário pré-definido do deflate, compartilhado pelas entradas pequenas
+ * de um mesmo arquivo ZIP.
+ * <p>
+ * Cada entrada do ZIP é comprimida isoladamente, então arquivos pequenos
+ * (JSON, XML, logs) quase não aproveitam a janela de histórico do deflate. O
+ * dicionário é montado a partir de uma amostra dos arquivos da origem, gravado
+ * no próprio ZIP como a entrada {@link #NOME_ENTRADA} e usado com
+ * {@link java.util.zip.Deflater#setDictionary(byte[])} em cada entrada
+ * pequena.
+ * <p>
+ * As entradas comprimidas com o dicionário são gravadas com o método de
+ * compressão próprio {@link #METODO} (o conteúdo gravado é o deflate bruto),
+ * fora da faixa de métodos atribuídos pela especificação do ZIP, e marcadas
+ * com o campo extra {@link #ID_EXTRA}, que guarda o tamanho original, o
+ * CRC-32 original e o identificador Adler-32 do dicionário. Ferramentas comuns
+ * de ZIP recusam essas entradas por não conhecerem o método, em vez de
+ * extraí-las ainda comprimidas; a restauração é feita por
+ * {@link RestauradorZip}, que usa {@link #abrirEntrada}. As entradas gravadas
+ * por versões anteriores, com o método STORED e o mesmo campo extra,
+ * continuam sendo lidas.
+ */
+public class DicionarioDeflate {
+
+    // Nome da entrada do ZIP que guarda o dicionário
+    public static final String NOME_ENTRADA = ".ferramentadebackup/dicionario.deflate";
+
+    // Identificador do campo extra das entradas comprimidas com o dicionário ("FD")
+    static final int ID_EXTRA = 0x4446;
+
+    // Método de compressão das entradas comprimidas com o dicionário, não atribuído no ZIP ("FD")
+    static final int METODO = 0x4446;
+
+    // Tamanho máximo do dicionário, igual à janela do deflate
+    static final int TAMANHO_MAXIMO = 32 * 1024;
+
+    // Arquivos maiores que este limite não entram na amostra nem usam o dicionário
+    static final long LIMITE_ARQUIVO_PEQUENO = 256 * 1024;
+
+    private static final int MAXIMO_AMOSTRAS = 1000;
+    private static final int BYTES_POR_AMOSTRA = 64 * 1024;
+    private static final int MAXIMO_LINHAS_DISTINTAS = 200_000;
+
+    private DicionarioDeflate() {
+    }
+
+    /**
+     * Monta um dicionário a partir de uma amostra dos arquivos pequenos da
+     * origem.
+     * <p>
+     * A amostra é escolhida por reservatório (uniforme e com semente fixa).
+     * As linhas que se repetem entre os arquivos são pontuadas por
+     * {@code (ocorrências - 1) * tamanho} e as de maior pontuação ficam no
+     * fim do dicionário, mais perto dos dados e portanto com distâncias
+     * menores. Se a amostra não tiver linhas repetidas (arquivos binários), o
+     * dicionário é formado pelo início de cada arquivo amostrado.
+     *
+     * @param origem O diretório de origem do backup.
+     * @return O dicionário, ou um array vazio se não houver arquivos pequenos.
+     * @throws IOException Se ocorrer um erro ao percorrer ou ler a origem.
+     */
+    public static byte[] construir(Path origem) throws IOException {
+        List<Path> amostra = amostrar(origem);
+        if (amostra.isEmpty()) {
+            return new byte[0];
+        }
+
+        Map<String, Integer> frequencias = new HashMap<>();
+        List<byte[]> inicios = new ArrayList<>();
+        for (Path arquivo : amostra) {
+            byte[] conteudo = lerInicio(arquivo);
+            inicios.add(Arrays.copyOf(conteudo, Math.min(conteudo.length, 1024)));
+            contarLinhas(conteudo, frequencias);
+        }
+
+        List<Map.Entry<String, Integer>> repetidas = new ArrayList<>();
+        for (Map.Entry<String, Integer> linha : frequencias.entrySet()) {
+            if (linha.getValue() > 1) {
+                repetidas.add(linha);
+            }
+        }
+
+        ByteArrayOutputStream dicionario = new ByteArrayOutputStream(TAMANHO_MAXIMO);
+        if (!repetidas.isEmpty()) {
+            // Maior pontuação primeiro; o dicionário é invertido no final
+            repetidas.sort((a, b) -> Long.compare(pontuacao(b), pontuacao(a)));
+            List<byte[]> escolhidas = new ArrayList<>();
+            int total = 0;
+            for (Map.Entry<String, Integer> linha : repetidas) {
+                byte[] bytes = linha.getKey().getBytes(StandardCharsets.ISO_8859_1);
+                if (total + bytes.length > TAMANHO_MAXIMO) {
+                    continue;
+                }
+                escolhidas.add(bytes);
+                total += bytes.length;
+            }
+            for (int i = escolhidas.size() - 1; i >= 0; i--) {
+                dicionario.write(escolhidas.get(i));
+            }
+        } else {
+            for (byte[] inicio : inicios) {
+                if (dicionario.size() + inicio.length > TAMANHO_MAXIMO) {
+                    break;
+                }
+                dicionario.write(inicio);
+            }
+        }
+        return dicionario.toByteArray();
+    }
+
+    /**
+     * Calcula o identificador do dicionário (Adler-32, como no zlib).
+     *
+     * @param dicionario O dicionário.
+     * @return O identificador.
+     */
+    static int identificador(byte[] dicionario) {
+        Adler32 adler = new Adler32();
+        adler.update(dicionario);
+        return (int) adler.getValue();
+    }
+
+    /**
+     * Monta o campo extra que marca uma entrada comprimida com o dicionário.
+     *
+     * @param tamanhoOriginal O tamanho do conteúdo original.
+     * @param crcOriginal O CRC-32 do conteúdo original.
+     * @param idDicionario O identificador do dicionário.
+     * @return O campo extra no formato ZIP (id, tamanho, dados).
+     */
+    static byte[] criarExtra(long tamanhoOriginal, long crcOriginal, int idDicionario) {
+        ByteBuffer extra = ByteBuffer.allocate(4 + 16).order(ByteOrder.LITTLE_ENDIAN);
+        extra.putShort((short) ID_EXTRA);
+        extra.putShort((short) 16);
+        extra.putLong(tamanhoOriginal);
+        extra.putInt((int) crcOriginal);
+        extra.putInt(idDicionario);
+        return extra.array();
+    }
+
+    /**
+     * Lê o campo extra de uma entrada comprimida com o dicionário.
+     *
+     * @param registro O registro da entrada.
+     * @return Um array com {tamanho original, CRC-32 original, id do
+     * dicionário}, ou {@code null} se a entrada não usar o dicionário.
+     */
+    static long[] lerExtra(RegistroZip registro) {
+        return lerExtra(registro.metodo, registro.extra);
+    }
+
+    /**
+     * Lê o campo extra do dicionário a partir do método e dos campos extras
+     * de uma entrada.
+     *
+     * @param metodo O método de compressão da entrada.
+     * @param extra Os campos extras da entrada, ou {@code null}.
+     * @return Um array com {tamanho original, CRC-32 original, id do
+     * dicionário}, ou {@code null} se a entrada não usar o dicionário.
+     */
+    static long[] lerExtra(int metodo, byte[] extra) {
+        // STORED: entradas gravadas antes do método próprio
+        if (extra == null || (metodo != METODO && metodo != ZipEntry.STORED)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.remaining() >= 4) {
+            int id = buffer.getShort() & 0xFFFF;
+            int tamanho = buffer.getShort() & 0xFFFF;
+            if (tamanho > buffer.remaining()) {
+                return null;
+            }
+            if (id == ID_EXTRA && tamanho == 16) {
+                return new long[]{buffer.getLong(), buffer.getInt() & 0xFFFFFFFFL, buffer.getInt()};
+            }
+            buffer.position(buffer.position() + tamanho);
+        }
+        return null;
+    }
+
+    /**
+     * Lê o dicionário gravado no ZIP, se houver.
+     *
+     * @param arquivoZip O arquivo ZIP aberto.
+     * @return O dicionário, ou {@code null} se o ZIP não tiver dicionário.
+     * @throws IOException Se ocorrer um erro de leitura.
+     */
+    static byte[] ler(ArquivoZip arquivoZip) throws IOException {
+        RegistroZip registro = arquivoZip.getRegistro(NOME_ENTRADA);
+        if (registro == null) {
+            return null;
+        }
+        try (InputStream entradaDicionario = arquivoZip.abrir(registro)) {
+            return entradaDicionario.readAllBytes();
+        }
+    }
+
+    /**
+     * Abre o conteúdo original de uma entrada, descomprimindo com o dicionário
+     * quando a entrada estiver marcada com {@link #ID_EXTRA}.
+     *
+     * @param arquivoZip O arquivo ZIP aberto.
+     * @param registro A entrada a ser lida.
+     * @param dicionario O dicionário do ZIP (pode ser {@code null} se o ZIP
+     * não tiver dicionário).
+     * @return Uma stream com o conteúdo original da entrada.
+     * @throws IOException Se a entrada exigir um dicionário ausente ou
+     * diferente do gravado no ZIP.
+     */
+    static InputStream abrirEntrada(ArquivoZip arquivoZip, RegistroZip registro, byte[] dicionario) throws IOException {
+        long[] extra = lerExtra(registro);
+        if (extra == null) {
+            return arquivoZip.abrir(registro);
+        }
+        if (dicionario == null || identificador(dicionario) != (int) extra[2]) {
+            throw new IOException("A entrada " + registro.nome + " exige um dicionário que não foi encontrado no arquivo.");
+        }
+        Inflater inflater = new Inflater(true);
+        inflater.setDictionary(dicionario);
+        return ArquivoZip.inflar(arquivoZip.abrirBruto(registro), inflater);
+    }
+
+    private static long pontuacao(Map.Entry<String, Integer> linha) {
+        return (long) (linha.getValue() - 1) * linha.getKey().length();
+    }
+
+    private static List<Path> amostrar(Path origem) throws IOException {
+        List<Path> amostra = new ArrayList<>();
+        Random aleatorio = new Random(42);
+        long[] vistos = {0};
+        Files.walkFileTree(origem, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path arquivo, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && attrs.size() > 0 && attrs.size() <= LIMITE_ARQUIVO_PEQUENO) {
+                    vistos[0]++;
+                    if (amostra.size() < MAXIMO_AMOSTRAS) {
+                        amostra.add(arquivo);
+                    } else {
+                        long posicao = (long) (aleatorio.nextDouble() * vistos[0]);
+                        if (posicao < MAXIMO_AMOSTRAS) {
+                            amostra.set((int) posicao, arquivo);
+                        }
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path arquivo, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return amostra;
+    }
+
+    private static byte[] lerInicio(Path arquivo) {
+        try (InputStream entrada = Files.newInputStream(arquivo)) {
+            return entrada.readNBytes(BYTES_POR_AMOSTRA);
+        } catch (IOException e) {
+            return new byte[0];
+        }
+    }
+
+    private static void contarLinhas(byte[] conteudo, Map<String, Integer> frequencias) {
+        int inicio = 0;
+        for (int i = 0; i < conteudo.length; i++) {
+            if (conteudo[i] == '\n') {
+                int tamanho = i + 1 - inicio;
+                if (tamanho >= 4 && tamanho <= 256) {
+                    // ISO-8859-1 preserva os bytes originais de qualquer codificação
+                    String linha = new String(conteudo, inicio, tamanho, StandardCharsets.ISO_8859_1);
+                    if (frequencias.size() < MAXIMO_LINHAS_DISTINTAS) {
+                        frequencias.merge(linha, 1, Integer::sum);
+                    } else {
+                        frequencias.computeIfPresent(linha, (chave, valor) -> valor + 1);
+                    }
+                }
+                inicio = i + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipException;
+
+/**
+ * Arquivos repetidos dentro de um backup ZIP.
+ * <p>
+ * Durante a compactação, as entradas gravadas são indexadas pelo tamanho. Um
+ * arquivo com o mesmo tamanho de uma entrada já gravada tem o hash do conteúdo
+ * ({@link HashConteudo}) comparado com o dela (obtido do {@link CacheHashes}
+ * ou, na falta dele, lendo o arquivo); sendo igual, o conteúdo não é
+ * comprimido de novo e o nome é registrado como referência à entrada
+ * original. Como só arquivos do mesmo tamanho são comparados, os demais não
+ * são lidos duas vezes.
+ * <p>
+ * As referências são gravadas ao final, na entrada interna {@link #ENTRADA}
+ * (uma linha por arquivo, com o nome, a entrada original e a data de
+ * modificação em milissegundos, separados por tabulação), que a restauração
+ * ({@link RestauradorZip}) e a consolidação ({@link ConsolidadorZip})
+ * entendem. Ferramentas comuns de ZIP extraem apenas a entrada original. Em
+ * um backup dividido, cada volume tem as próprias referências, que só apontam
+ * para entradas do mesmo volume.
+ */
+class DuplicadosZip {
+
+    /**
+     * O nome da entrada interna com as referências.
+     */
+    static final String ENTRADA = RestauradorZip.PREFIXO_INTERNO + "duplicados.txt";
+
+    // Abaixo disso a entrada comprimida custa pouco mais que a referência
+    static final long TAMANHO_MINIMO = 4 * 1024;
+
+    private final Map<Long, List<Gravada>> porTamanho = new HashMap<>();
+    private final StringBuilder referencias = new StringBuilder();
+    private int quantidade;
+
+    /**
+     * @param nome O nome da entrada.
+     * @param tamanho O tamanho do arquivo.
+     * @return Se o arquivo pode ser gravado como referência ou servir de
+     * original: nomes com tabulação ou quebra de linha não cabem no
+     * manifesto.
+     */
+    static boolean isCandidato(String nome, long tamanho) {
+        return tamanho >= TAMANHO_MINIMO && nome.indexOf('\t') < 0 && nome.indexOf('\n') < 0 && nome.indexOf('\r') < 0;
+    }
+
+    /**
+     * @param tamanho O tamanho de um arquivo.
+     * @return Se já há uma entrada gravada com esse tamanho.
+     */
+    boolean temMesmoTamanho(long tamanho) {
+        return porTamanho.containsKey(tamanho);
+    }
+
+    /**
+     * Procura uma entrada gravada com o mesmo conteúdo.
+     *
+     * @param tamanho O tamanho do arquivo.
+     * @param hash O hash do conteúdo do arquivo.
+     * @return A entrada, ou {@code null} se não houver.
+     */
+    Gravada procurar(long tamanho, byte[] hash) {
+        for (Gravada gravada : porTamanho.getOrDefault(tamanho, List.of())) {
+            if (Arrays.equals(gravada.hash, hash)) {
+                return gravada;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indexa uma entrada gravada por inteiro.
+     */
+    void gravada(String nome, long tamanho, byte[] hash, long crc, long posicao) {
+        porTamanho.computeIfAbsent(tamanho, t -> new ArrayList<>(1)).add(new Gravada(nome, tamanho, hash, crc, posicao));
+    }
+
+    /**
+     * Registra um arquivo gravado como referência a outra entrada.
+     *
+     * @param nome O nome do arquivo.
+     * @param original O nome da entrada com o conteúdo.
+     * @param modificado A data de modificação do arquivo.
+     */
+    void referenciar(String nome, String original, long modificado) {
+        referencias.append(nome).append('\t').append(original).append('\t').append(modificado).append('\n');
+        quantidade++;
+    }
+
+    /**
+     * @return A quantidade de referências registradas.
+     */
+    int getQuantidade() {
+        return quantidade;
+    }
+
+    /**
+     * Grava as referências registradas na entrada {@link #ENTRADA}, se houver
+     * alguma.
+     *
+     * @param gravador O gravador do arquivo ZIP, antes do diretório central.
+     * @throws IOException Se ocorrer um erro de gravação.
+     */
+    void gravar(GravadorZip gravador) throws IOException {
+        if (quantidade == 0) {
+            return;
+        }
+        byte[] conteudo = referencias.toString().getBytes(StandardCharsets.UTF_8);
+        gravador.iniciarEntrada(ENTRADA, System.currentTimeMillis());
+        gravador.escrever(conteudo, 0, conteudo.length);
+        gravador.fecharEntrada();
+    }
+
+    /**
+     * Lê as referências de um arquivo ZIP.
+     *
+     * @param zip O arquivo ZIP aberto.
+     * @return As referências pelo nome do arquivo, na ordem de gravação
+     * (vazio se o ZIP não tiver a entrada {@link #ENTRADA}).
+     * @throws IOException Se a entrada não puder ser lida ou estiver
+     * corrompida.
+     */
+    static Map<String, Referencia> ler(ArquivoZip zip) throws IOException {
+        RegistroZip entrada = zip.getRegistro(ENTRADA);
+        if (entrada == null) {
+            return Map.of();
+        }
+        try (InputStream conteudo = zip.abrir(entrada)) {
+            return ler(conteudo);
+        }
+    }
+
+    /**
+     * Lê as referências do conteúdo da entrada {@link #ENTRADA}.
+     */
+    static Map<String, Referencia> ler(InputStream conteudo) throws IOException {
+        Map<String, Referencia> referencias = new LinkedHashMap<>();
+        for (String linha : new String(conteudo.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+            if (linha.isEmpty()) {
+                continue;
+            }
+            String[] campos = linha.split("\t", -1);
+            if (campos.length != 3) {
+                throw new ZipException("Referência de arquivo duplicado inválida: " + linha);
+            }
+            try {
+                referencias.put(campos[0], new Referencia(campos[0], campos[1], Long.parseLong(campos[2])));
+            } catch (NumberFormatException e) {
+                throw new ZipException("Referência de arquivo duplicado inválida: " + linha);
+            }
+        }
+        return referencias;
+    }
+
+    /**
+     * Uma entrada gravada por inteiro, que pode ser referenciada.
+     */
+    static class Gravada {
+
+        final String nome;
+        final long tamanho;
+        final byte[] hash;
+        final long crc;
+        final long posicao;
+
+        Gravada(String nome, long tamanho, byte[] hash, long crc, long posicao) {
+            this.nome = nome;
+            this.tamanho = tamanho;
+            this.hash = hash;
+            this.crc = crc;
+            this.posicao = posicao;
+        }
+    }
+
+    /**
+     * Um arquivo gravado como referência a outra entrada.
+     */
+    static class Referencia {
+
+        final String nome;
+        final String original;
+        final long modificado;
+
+        Referencia(String nome, String original, long modificado) {
+            this.nome = nome;
+            this.original = original;
+            this.modificado = modificado;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Escritor de um formato de arquivo de backup (ZIP, TAR, TAR.GZ, ...).
+ * <p>
+ * O {@link CompactadorZip} percorre a origem e entrega cada arquivo ao
+ * escritor na forma de uma entrada: {@link #iniciarEntrada}, uma ou mais
+ * chamadas a {@link #escrever} e {@link #fecharEntrada()}. O fechamento do
+ * escritor grava os dados finais do formato (diretório central, blocos de
+ * término etc.) e fecha a stream de destino.
+ * <p>
+ * Novos formatos são disponibilizados implementando
+ * {@link ProvedorFormatoArquivo}.
+ */
+public interface EscritorArquivo extends Closeable {
+
+    /**
+     * Inicia uma nova entrada no arquivo.
+     *
+     * @param nome O nome relativo da entrada, com "/" ou o separador do
+     * sistema.
+     * @param tamanho O tamanho esperado do conteúdo, em bytes. Formatos que
+     * gravam o tamanho no cabeçalho (como o TAR) dependem deste valor.
+     * @param modificado O momento da última modificação, em milissegundos
+     * desde a época.
+     * @throws IOException Se ocorrer um erro ao escrever o cabeçalho.
+     */
+    void iniciarEntrada(String nome, long tamanho, long modificado) throws IOException;
+
+    /**
+     * Escreve parte do conteúdo da entrada atual.
+     *
+     * @param buffer Os dados.
+     * @param inicio A posição inicial no buffer.
+     * @param tamanho A quantidade de bytes.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    void escrever(byte[] buffer, int inicio, int tamanho) throws IOException;
+
+    /**
+     * Finaliza a entrada atual.
+     *
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    void fecharEntrada() throws IOException;
+
+    /**
+     * Define o nível de compressão das próximas entradas. Formatos sem
+     * compressão ignoram a chamada.
+     *
+     * @param nivel O nível de 0 a 9, ou -1 para o padrão do codec.
+     */
+    default void definirNivel(int nivel) {
+    }
+}
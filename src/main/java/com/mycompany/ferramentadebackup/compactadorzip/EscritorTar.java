@@ -0,0 +1,188 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Escritor do formato TAR (POSIX ustar), opcionalmente comprimido com gzip.
+ * <p>
+ * O TAR apenas concatena cabeçalhos de 512 bytes e o conteúdo dos arquivos,
+ * sem compressão por entrada, o que o torna o formato de menor custo de CPU.
+ * Quando a compressão gzip está ativa, ela é aplicada ao fluxo inteiro, de
+ * forma contínua, e o nível pode ser alterado entre as entradas.
+ * <p>
+ * Nomes com mais de 100 bytes e arquivos a partir de 8 GiB são gravados com
+ * um cabeçalho estendido PAX, como faz o GNU tar.
+ */
+class EscritorTar implements EscritorArquivo {
+
+    private static final int BLOCO = 512;
+
+    // Maior tamanho representável nos 11 dígitos octais do cabeçalho ustar
+    private static final long TAMANHO_MAXIMO_USTAR = 077777777777L;
+
+    private final OutputStream saida;
+    private final GzipNivelAjustavel gzip;
+    private final byte[] cabecalho = new byte[BLOCO];
+
+    private long tamanhoDeclarado;
+    private long escritosNaEntrada;
+    private String nomeAtual;
+
+    EscritorTar(OutputStream destino, boolean comprimir, int nivel) throws IOException {
+        if (comprimir) {
+            this.gzip = new GzipNivelAjustavel(destino, nivel);
+            this.saida = gzip;
+        } else {
+            this.gzip = null;
+            this.saida = destino;
+        }
+    }
+
+    @Override
+    public void iniciarEntrada(String nome, long tamanho, long modificado) throws IOException {
+        String nomeTar = nome.replace(File.separatorChar, '/');
+        byte[] nomeBytes = nomeTar.getBytes(StandardCharsets.UTF_8);
+
+        if (nomeBytes.length > 100 || tamanho > TAMANHO_MAXIMO_USTAR) {
+            escreverCabecalhoPax(nomeTar, nomeBytes.length > 100, tamanho, modificado);
+        }
+
+        preencherCabecalho(nomeBytes, tamanho > TAMANHO_MAXIMO_USTAR ? 0 : tamanho, modificado, (byte) '0');
+        saida.write(cabecalho);
+
+        nomeAtual = nomeTar;
+        tamanhoDeclarado = tamanho;
+        escritosNaEntrada = 0;
+    }
+
+    @Override
+    public void escrever(byte[] buffer, int inicio, int tamanho) throws IOException {
+        // O tamanho já foi gravado no cabeçalho: bytes além dele são descartados
+        long restante = tamanhoDeclarado - escritosNaEntrada;
+        int aEscrever = (int) Math.min(tamanho, restante);
+        if (aEscrever > 0) {
+            saida.write(buffer, inicio, aEscrever);
+            escritosNaEntrada += aEscrever;
+        }
+        if (aEscrever < tamanho) {
+            System.out.println("Aviso: o arquivo " + nomeAtual + " cresceu durante o backup; o excedente foi ignorado.");
+        }
+    }
+
+    @Override
+    public void fecharEntrada() throws IOException {
+        if (escritosNaEntrada < tamanhoDeclarado) {
+            // O arquivo diminuiu durante a leitura: completa com zeros para manter o alinhamento
+            System.out.println("Aviso: o arquivo " + nomeAtual + " diminuiu durante o backup; o restante foi preenchido com zeros.");
+            byte[] zeros = new byte[BLOCO];
+            while (escritosNaEntrada < tamanhoDeclarado) {
+                int quantidade = (int) Math.min(zeros.length, tamanhoDeclarado - escritosNaEntrada);
+                saida.write(zeros, 0, quantidade);
+                escritosNaEntrada += quantidade;
+            }
+        }
+        int resto = (int) (tamanhoDeclarado % BLOCO);
+        if (resto != 0) {
+            saida.write(new byte[BLOCO - resto]);
+        }
+    }
+
+    @Override
+    public void definirNivel(int nivel) {
+        if (gzip != null) {
+            gzip.definirNivel(nivel);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Dois blocos zerados marcam o fim do arquivo TAR
+        saida.write(new byte[BLOCO * 2]);
+        saida.close();
+    }
+
+    private void escreverCabecalhoPax(String nome, boolean incluirNome, long tamanho, long modificado) throws IOException {
+        StringBuilder registros = new StringBuilder();
+        if (incluirNome) {
+            registros.append(registroPax("path", nome));
+        }
+        if (tamanho > TAMANHO_MAXIMO_USTAR) {
+            registros.append(registroPax("size", Long.toString(tamanho)));
+        }
+        byte[] conteudo = registros.toString().getBytes(StandardCharsets.UTF_8);
+
+        preencherCabecalho("././@PaxHeader".getBytes(StandardCharsets.UTF_8), conteudo.length, modificado, (byte) 'x');
+        saida.write(cabecalho);
+        saida.write(conteudo);
+        int resto = conteudo.length % BLOCO;
+        if (resto != 0) {
+            saida.write(new byte[BLOCO - resto]);
+        }
+    }
+
+    /**
+     * Monta um registro PAX no formato "tamanho chave=valor\n", em que o
+     * tamanho inclui os próprios dígitos.
+     */
+    private static String registroPax(String chave, String valor) {
+        int semTamanho = chave.length() + valor.getBytes(StandardCharsets.UTF_8).length + 3;
+        int tamanho = semTamanho + Integer.toString(semTamanho).length();
+        if (Integer.toString(tamanho).length() != Integer.toString(semTamanho).length()) {
+            tamanho++;
+        }
+        return tamanho + " " + chave + "=" + valor + "\n";
+    }
+
+    private void preencherCabecalho(byte[] nome, long tamanho, long modificado, byte tipo) {
+        Arrays.fill(cabecalho, (byte) 0);
+        System.arraycopy(nome, 0, cabecalho, 0, Math.min(nome.length, 100));
+        octal(0644, 100, 8);
+        octal(0, 108, 8);
+        octal(0, 116, 8);
+        octal(tamanho, 124, 12);
+        octal(Math.max(0, modificado / 1000), 136, 12);
+        cabecalho[156] = tipo;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, cabecalho, 257, 8);
+
+        // O checksum é calculado com o próprio campo preenchido por espaços
+        Arrays.fill(cabecalho, 148, 156, (byte) ' ');
+        long soma = 0;
+        for (byte b : cabecalho) {
+            soma += b & 0xFF;
+        }
+        octal(soma, 148, 7);
+        cabecalho[155] = ' ';
+    }
+
+    private void octal(long valor, int posicao, int tamanho) {
+        String texto = Long.toOctalString(valor);
+        int digitos = tamanho - 1;
+        int preenchimento = digitos - texto.length();
+        for (int i = 0; i < digitos; i++) {
+            cabecalho[posicao + i] = (byte) (i < preenchimento ? '0' : texto.charAt(i - preenchimento));
+        }
+        cabecalho[posicao + digitos] = 0;
+    }
+
+    /**
+     * {@link GZIPOutputStream} que permite alterar o nível do deflate durante
+     * a gravação.
+     */
+    private static class GzipNivelAjustavel extends GZIPOutputStream {
+
+        GzipNivelAjustavel(OutputStream destino, int nivel) throws IOException {
+            super(destino, 64 * 1024);
+            definirNivel(nivel);
+        }
+
+        void definirNivel(int nivel) {
+            def.setLevel(nivel < 0 ? Deflater.DEFAULT_COMPRESSION : nivel);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Escritor do formato ZIP baseado no {@link GravadorZip}.
+ * <p>
+ * O nível do deflate pode ser alterado entre as entradas, o que permite ao
+ * perfil adaptativo escolher o nível de cada arquivo. Um escritor pode também
+ * continuar um arquivo interrompido a partir dos registros das entradas já
+ * gravadas.
+ * <p>
+ * As entradas menores que {@link #LIMITE_ENTRADA_PEQUENA} são acumuladas em
+ * memória e gravadas de uma vez ({@link GravadorZip#gravarEntradaPequena}),
+ * sem o descritor de dados; se o conteúdo passar do tamanho informado, a
+ * entrada volta a ser comprimida à medida que é escrita.
+ */
+class EscritorZip implements EscritorArquivo {
+
+    /**
+     * Tamanho, em bytes, a partir do qual as entradas são comprimidas à
+     * medida que são escritas.
+     */
+    static final int LIMITE_ENTRADA_PEQUENA = 64 * 1024;
+
+    final GravadorZip gravador;
+
+    private final byte[] pendente = new byte[LIMITE_ENTRADA_PEQUENA];
+    private String nomePendente;
+    private long modificadoPendente;
+    private int tamanhoPendente;
+
+    EscritorZip(OutputStream destino, int nivel) {
+        this(destino, nivel, 0, Collections.emptyList());
+    }
+
+    /**
+     * @param destino A stream de destino.
+     * @param nivel O nível inicial do deflate.
+     * @param posicao A posição da stream no arquivo, ao continuar um arquivo
+     * interrompido, ou 0.
+     * @param anteriores Os registros das entradas já gravadas no arquivo.
+     */
+    EscritorZip(OutputStream destino, int nivel, long posicao, List<RegistroZip> anteriores) {
+        this.gravador = new GravadorZip(destino, nivel, posicao, anteriores);
+    }
+
+    @Override
+    public void iniciarEntrada(String nome, long tamanho, long modificado) throws IOException {
+        if (tamanho >= LIMITE_ENTRADA_PEQUENA) {
+            gravador.iniciarEntrada(nome, modificado);
+            return;
+        }
+        nomePendente = nome;
+        modificadoPendente = modificado;
+        tamanhoPendente = 0;
+    }
+
+    @Override
+    public void escrever(byte[] buffer, int inicio, int tamanho) throws IOException {
+        if (nomePendente == null) {
+            gravador.escrever(buffer, inicio, tamanho);
+        } else if (tamanhoPendente + tamanho < LIMITE_ENTRADA_PEQUENA) {
+            System.arraycopy(buffer, inicio, pendente, tamanhoPendente, tamanho);
+            tamanhoPendente += tamanho;
+        } else {
+            // O arquivo cresceu desde a varredura: segue com a compressão comum
+            gravador.iniciarEntrada(nomePendente, modificadoPendente);
+            gravador.escrever(pendente, 0, tamanhoPendente);
+            gravador.escrever(buffer, inicio, tamanho);
+            nomePendente = null;
+        }
+    }
+
+    @Override
+    public void fecharEntrada() throws IOException {
+        if (nomePendente == null) {
+            gravador.fecharEntrada();
+            return;
+        }
+        String nome = nomePendente;
+        nomePendente = null;
+        gravador.gravarEntradaPequena(nome, modificadoPendente, pendente, tamanhoPendente);
+    }
+
+    @Override
+    public void definirNivel(int nivel) {
+        gravador.definirNivel(nivel);
+    }
+
+    @Override
+    public void close() throws IOException {
+        gravador.close();
+    }
+}
@@ -0,0 +1,136 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Escritor ZIP que comprime as entradas pequenas com um dicionário
+ * compartilhado ({@link DicionarioDeflate}).
+ * <p>
+ * O dicionário é gravado como a primeira entrada do arquivo, sem compressão,
+ * para que possa ser lido diretamente ao retomar um arquivo interrompido.
+ * Entradas até {@link DicionarioDeflate#LIMITE_ARQUIVO_PEQUENO} bytes são
+ * acumuladas em memória, comprimidas com um {@link Deflater} preparado com
+ * {@link Deflater#setDictionary(byte[])} e gravadas com o método próprio
+ * {@link DicionarioDeflate#METODO} e o campo extra do dicionário. Se o resultado não for menor que o original, ou se a
+ * entrada for grande, ela é gravada normalmente pelo {@link EscritorZip}.
+ */
+class EscritorZipDicionario extends EscritorZip {
+
+    private final byte[] dicionario;
+    private final int idDicionario;
+    private final Deflater deflater;
+    private final ByteArrayOutputStream conteudo = new ByteArrayOutputStream();
+    private final byte[] bufferDeflate = new byte[64 * 1024];
+
+    private int nivel;
+    private String nomePendente;
+    private long modificadoPendente;
+
+    EscritorZipDicionario(OutputStream destino, int nivel, byte[] dicionario) throws IOException {
+        this(destino, nivel, dicionario, 0, Collections.emptyList());
+    }
+
+    /**
+     * @param destino A stream de destino.
+     * @param nivel O nível inicial do deflate.
+     * @param dicionario O dicionário compartilhado.
+     * @param posicao A posição da stream no arquivo, ao continuar um arquivo
+     * interrompido, ou 0.
+     * @param anteriores Os registros das entradas já gravadas; se houver, o
+     * dicionário já está no arquivo e não é gravado de novo.
+     * @throws IOException Se ocorrer um erro ao gravar o dicionário.
+     */
+    EscritorZipDicionario(OutputStream destino, int nivel, byte[] dicionario, long posicao, List<RegistroZip> anteriores) throws IOException {
+        super(destino, nivel, posicao, anteriores);
+        this.dicionario = dicionario;
+        this.idDicionario = DicionarioDeflate.identificador(dicionario);
+        this.nivel = nivel;
+        this.deflater = new Deflater(nivel, true);
+
+        if (anteriores.isEmpty()) {
+            gravador.gravarEntradaArmazenada(DicionarioDeflate.NOME_ENTRADA, -1, dicionario, null);
+        }
+    }
+
+    @Override
+    public void iniciarEntrada(String nome, long tamanho, long modificado) throws IOException {
+        if (tamanho > DicionarioDeflate.LIMITE_ARQUIVO_PEQUENO) {
+            super.iniciarEntrada(nome, tamanho, modificado);
+            return;
+        }
+        nomePendente = nome;
+        modificadoPendente = modificado;
+        conteudo.reset();
+    }
+
+    @Override
+    public void escrever(byte[] buffer, int inicio, int tamanho) throws IOException {
+        if (nomePendente == null) {
+            super.escrever(buffer, inicio, tamanho);
+        } else {
+            conteudo.write(buffer, inicio, tamanho);
+        }
+    }
+
+    @Override
+    public void fecharEntrada() throws IOException {
+        if (nomePendente == null) {
+            super.fecharEntrada();
+            return;
+        }
+        String nome = nomePendente;
+        nomePendente = null;
+
+        byte[] original = conteudo.toByteArray();
+        byte[] comprimido = comprimir(original);
+
+        if (comprimido.length >= original.length) {
+            // O dicionário não ajudou: grava a entrada de forma convencional
+            gravador.iniciarEntrada(nome, modificadoPendente);
+            gravador.escrever(original, 0, original.length);
+            gravador.fecharEntrada();
+            return;
+        }
+
+        CRC32 crcOriginal = new CRC32();
+        crcOriginal.update(original);
+        gravador.gravarEntradaComprimida(nome, modificadoPendente, DicionarioDeflate.METODO, comprimido, crcOriginal.getValue(),
+                original.length, DicionarioDeflate.criarExtra(original.length, crcOriginal.getValue(), idDicionario));
+    }
+
+    @Override
+    public void definirNivel(int nivel) {
+        super.definirNivel(nivel);
+        this.nivel = nivel;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] comprimir(byte[] original) {
+        deflater.reset();
+        deflater.setLevel(nivel);
+        deflater.setDictionary(dicionario);
+        deflater.setInput(original);
+        deflater.finish();
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(original.length / 2 + 64);
+        while (!deflater.finished()) {
+            int gerados = deflater.deflate(bufferDeflate);
+            saida.write(bufferDeflate, 0, gerados);
+        }
+        return saida.toByteArray();
+    }
+}
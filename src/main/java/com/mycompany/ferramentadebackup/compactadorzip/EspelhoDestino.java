@@ -0,0 +1,211 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+/**
+ * Cópia de um arquivo de backup gravada em outro destino a partir do mesmo
+ * fluxo de bytes do arquivo principal.
+ * <p>
+ * Os blocos recebidos com {@link #enviar(byte[])} são enfileirados e
+ * gravados por uma thread própria, de modo que um destino lento não atrasa a
+ * gravação principal nem as demais cópias enquanto a sua fila não
+ * ultrapassar o atraso máximo; a partir daí, {@link #enviar(byte[])} espera.
+ * Uma falha de escrita desativa a cópia sem interromper a gravação
+ * principal; o erro é lançado por {@link #concluir()}.
+ * <p>
+ * Como o arquivo principal, a cópia é gravada em {@code destino.parcial}. Ao
+ * retomar uma compactação interrompida, a parte já gravada do arquivo
+ * principal é copiada antes dos novos blocos.
+ */
+class EspelhoDestino {
+
+    private static final byte[] FIM = new byte[0];
+
+    final Path destino;
+    final Path parcial;
+
+    private final long atrasoMaximo;
+    private final Path prefixo;
+    private final long tamanhoPrefixo;
+    private final ArrayDeque<byte[]> fila = new ArrayDeque<>();
+    private final Thread thread;
+
+    private long pendentes;
+    private boolean finalizada;
+    private volatile IOException erro;
+
+    /**
+     * Cria a cópia e inicia a thread de gravação.
+     *
+     * @param destino O caminho final da cópia.
+     * @param atrasoMaximo O máximo de bytes na fila antes de
+     * {@link #enviar(byte[])} esperar.
+     * @param prefixo O arquivo parcial principal, cujo início deve ser copiado
+     * primeiro, ou {@code null}.
+     * @param tamanhoPrefixo A quantidade de bytes do início do arquivo
+     * principal a copiar.
+     */
+    EspelhoDestino(Path destino, long atrasoMaximo, Path prefixo, long tamanhoPrefixo) {
+        this.destino = destino;
+        this.parcial = DiarioCompactacao.caminhoParcial(destino);
+        this.atrasoMaximo = Math.max(1, atrasoMaximo);
+        this.prefixo = prefixo;
+        this.tamanhoPrefixo = tamanhoPrefixo;
+        this.thread = new Thread(this::gravar, "copia-" + destino);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Enfileira um bloco para gravação. O bloco não pode ser alterado depois
+     * de enviado. Se a cópia já falhou, o bloco é descartado.
+     *
+     * @param bloco Os bytes a gravar.
+     * @throws InterruptedIOException Se a thread for interrompida enquanto
+     * espera a fila esvaziar.
+     */
+    void enviar(byte[] bloco) throws InterruptedIOException {
+        synchronized (this) {
+            try {
+                while (erro == null && pendentes > 0 && pendentes + bloco.length > atrasoMaximo) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Cópia para " + destino + " interrompida");
+            }
+            if (erro != null) {
+                return;
+            }
+            fila.add(bloco);
+            pendentes += bloco.length;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Indica que não há mais blocos a enviar. A thread termina depois de
+     * gravar os blocos pendentes.
+     */
+    synchronized void finalizar() {
+        if (!finalizada) {
+            finalizada = true;
+            fila.add(FIM);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Aguarda o fim da gravação por até o tempo informado.
+     *
+     * @param millis O tempo máximo de espera em milissegundos.
+     * @return {@code true} se a thread de gravação terminou.
+     * @throws InterruptedIOException Se a espera for interrompida.
+     */
+    boolean aguardar(long millis) throws InterruptedIOException {
+        try {
+            thread.join(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Espera da cópia para " + destino + " interrompida");
+        }
+        return !thread.isAlive();
+    }
+
+    /**
+     * Aguarda a gravação dos blocos pendentes e sincroniza a cópia com o
+     * disco.
+     *
+     * @throws IOException Se a gravação da cópia tiver falhado.
+     */
+    void concluir() throws IOException {
+        finalizar();
+        aguardar(0);
+        if (erro != null) {
+            throw erro;
+        }
+        try (FileChannel canal = FileChannel.open(parcial, StandardOpenOption.WRITE)) {
+            canal.force(true);
+        }
+    }
+
+    /**
+     * Interrompe a cópia e exclui o arquivo parcial.
+     */
+    void abortar() {
+        falhar(new IOException("Cópia cancelada"));
+        thread.interrupt();
+        try {
+            aguardar(0);
+            Files.deleteIfExists(parcial);
+        } catch (IOException e) {
+            System.out.println("Não foi possível excluir " + parcial + ": " + e.getMessage());
+        }
+    }
+
+    private void gravar() {
+        try (OutputStream saida = new BufferedOutputStream(Files.newOutputStream(parcial), 64 * 1024)) {
+            copiarPrefixo(saida);
+            while (true) {
+                byte[] bloco;
+                synchronized (this) {
+                    while (fila.isEmpty() && erro == null) {
+                        wait();
+                    }
+                    if (erro != null) {
+                        return;
+                    }
+                    bloco = fila.poll();
+                }
+                if (bloco == FIM) {
+                    return;
+                }
+                saida.write(bloco);
+                synchronized (this) {
+                    pendentes -= bloco.length;
+                    notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            falhar(e);
+        } catch (InterruptedException e) {
+            falhar(new InterruptedIOException("Cópia para " + destino + " interrompida"));
+        }
+    }
+
+    private void copiarPrefixo(OutputStream saida) throws IOException {
+        if (prefixo == null || tamanhoPrefixo <= 0) {
+            return;
+        }
+        byte[] buffer = new byte[64 * 1024];
+        long restante = tamanhoPrefixo;
+        try (InputStream entrada = Files.newInputStream(prefixo)) {
+            while (restante > 0) {
+                int lidos = entrada.read(buffer, 0, (int) Math.min(buffer.length, restante));
+                if (lidos < 0) {
+                    throw new IOException("O arquivo parcial terminou antes do esperado: " + prefixo);
+                }
+                saida.write(buffer, 0, lidos);
+                restante -= lidos;
+            }
+        }
+    }
+
+    private synchronized void falhar(IOException e) {
+        if (erro == null) {
+            erro = e;
+        }
+        fila.clear();
+        pendentes = 0;
+        notifyAll();
+    }
+}
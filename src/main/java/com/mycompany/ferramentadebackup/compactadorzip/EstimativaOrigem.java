@@ -0,0 +1,296 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * Estimativa rápida do tamanho de uma origem de backup, feita só com os
+ * metadados dos arquivos.
+ * <p>
+ * A árvore é percorrida em paralelo por um {@link ForkJoinPool}, um
+ * diretório por tarefa, lendo apenas os atributos dos arquivos. Se a
+ * varredura não terminar dentro do prazo, ela é abandonada e a árvore é
+ * estimada por amostragem: cada sondagem desce da raiz escolhendo um
+ * subdiretório ao acaso em cada nível e soma os arquivos de cada diretório
+ * multiplicados pelo produto das quantidades de subdiretórios no caminho
+ * (estimador de Knuth para o tamanho de árvores). A média das sondagens é um
+ * estimador sem viés do total; as listagens já lidas são reaproveitadas
+ * pelas sondagens seguintes.
+ * <p>
+ * Uma pequena amostra dos arquivos encontrados também é comprimida com o
+ * {@link Deflater} (no máximo {@value #BYTES_AMOSTRA} bytes do início de
+ * cada um) para estimar a taxa de compressão e a vazão da compressão quando
+ * não há execuções anteriores com que comparar.
+ */
+public class EstimativaOrigem {
+
+    // Quantidade de arquivos comprimidos na amostra
+    private static final int ARQUIVOS_AMOSTRA = 32;
+
+    // Bytes lidos do início de cada arquivo da amostra
+    private static final int BYTES_AMOSTRA = 256 * 1024;
+
+    // Quantidade máxima de sondagens da amostragem
+    private static final int SONDAGENS_MAXIMAS = 2000;
+
+    private long arquivos;
+    private long bytes;
+    private boolean amostrada;
+    private long bytesAmostra;
+    private long bytesAmostraComprimidos;
+    private long nanosAmostra;
+
+    private EstimativaOrigem() {
+    }
+
+    /**
+     * Estima a quantidade e o tamanho dos arquivos de uma origem.
+     *
+     * @param origem O diretório ou arquivo de origem.
+     * @param prazoMillis O tempo máximo da varredura completa; a amostragem,
+     * se necessária, usa no máximo o mesmo tempo.
+     * @param nivel O nível de compressão usado na amostra.
+     * @return A estimativa.
+     * @throws IOException Se a origem não puder ser lida.
+     */
+    public static EstimativaOrigem calcular(Path origem, long prazoMillis, int nivel) throws IOException {
+        EstimativaOrigem estimativa = new EstimativaOrigem();
+        List<Path> amostra = new ArrayList<>();
+        BasicFileAttributes attrs = Files.readAttributes(origem, BasicFileAttributes.class);
+        if (!attrs.isDirectory()) {
+            estimativa.arquivos = 1;
+            estimativa.bytes = attrs.size();
+            amostra.add(origem);
+        } else {
+            Varredura varredura = new Varredura(origem, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(prazoMillis));
+            ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            try {
+                pool.invoke(varredura.new Tarefa(origem));
+            } finally {
+                pool.shutdownNow();
+            }
+            estimativa.arquivos = varredura.arquivos.sum();
+            estimativa.bytes = varredura.bytes.sum();
+            amostra.addAll(varredura.amostra);
+            if (varredura.interrompida.get()) {
+                estimativa.amostrar(origem, prazoMillis);
+            }
+        }
+        estimativa.comprimirAmostra(amostra, nivel);
+        return estimativa;
+    }
+
+    /**
+     * @return A quantidade de arquivos.
+     */
+    public long getArquivos() {
+        return arquivos;
+    }
+
+    /**
+     * @return O tamanho total dos arquivos, em bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Se a origem era grande demais para o prazo e os totais foram
+     * estimados por amostragem.
+     */
+    public boolean isAmostrada() {
+        return amostrada;
+    }
+
+    /**
+     * @return A razão entre o tamanho comprimido e o original na amostra, ou
+     * 0 se não houve amostra.
+     */
+    public double getTaxaCompressao() {
+        return bytesAmostra == 0 ? 0 : (double) bytesAmostraComprimidos / bytesAmostra;
+    }
+
+    /**
+     * @return A vazão da compressão da amostra em uma thread, em bytes por
+     * segundo, ou 0 se não houve amostra.
+     */
+    public double getVazaoCompressao() {
+        return nanosAmostra == 0 ? 0 : bytesAmostra * 1e9 / nanosAmostra;
+    }
+
+    /**
+     * Estima os totais da árvore por sondagens aleatórias a partir da raiz.
+     * Os totais já contados pela varredura interrompida servem de mínimo.
+     */
+    private void amostrar(Path raiz, long prazoMillis) {
+        long prazo = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(prazoMillis);
+        Map<Path, Listagem> listagens = new HashMap<>();
+        Random aleatorio = new Random();
+        double somaArquivos = 0;
+        double somaBytes = 0;
+        int sondagens = 0;
+        do {
+            double peso = 1;
+            Path diretorio = raiz;
+            while (true) {
+                Listagem listagem = listagens.computeIfAbsent(diretorio, Listagem::new);
+                somaArquivos += peso * listagem.arquivos;
+                somaBytes += peso * listagem.bytes;
+                if (listagem.subdiretorios.isEmpty()) {
+                    break;
+                }
+                peso *= listagem.subdiretorios.size();
+                diretorio = listagem.subdiretorios.get(aleatorio.nextInt(listagem.subdiretorios.size()));
+            }
+            sondagens++;
+        } while (sondagens < SONDAGENS_MAXIMAS && System.nanoTime() < prazo);
+
+        amostrada = true;
+        arquivos = Math.max(arquivos, Math.round(somaArquivos / sondagens));
+        bytes = Math.max(bytes, Math.round(somaBytes / sondagens));
+    }
+
+    private void comprimirAmostra(List<Path> amostra, int nivel) {
+        byte[] entrada = new byte[BYTES_AMOSTRA];
+        byte[] saida = new byte[BYTES_AMOSTRA];
+        Deflater deflater = new Deflater(nivel, true);
+        try {
+            for (Path arquivo : amostra) {
+                int lidos;
+                try (InputStream in = Files.newInputStream(arquivo)) {
+                    lidos = in.readNBytes(entrada, 0, entrada.length);
+                } catch (IOException e) {
+                    // Arquivo removido ou sem permissão: fica fora da amostra
+                    continue;
+                }
+                long inicio = System.nanoTime();
+                deflater.reset();
+                deflater.setInput(entrada, 0, lidos);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    bytesAmostraComprimidos += deflater.deflate(saida);
+                }
+                nanosAmostra += System.nanoTime() - inicio;
+                bytesAmostra += lidos;
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Estado compartilhado da varredura paralela.
+     */
+    private static class Varredura {
+
+        final Path raiz;
+        final long prazo;
+        final LongAdder arquivos = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final AtomicBoolean interrompida = new AtomicBoolean();
+        final List<Path> amostra = new ArrayList<>();
+        final Random aleatorio = new Random();
+        long vistos;
+
+        Varredura(Path raiz, long prazo) {
+            this.raiz = raiz;
+            this.prazo = prazo;
+        }
+
+        /**
+         * Mantém uma amostra uniforme dos arquivos não vazios (amostragem de
+         * reservatório).
+         */
+        synchronized void oferecer(Path arquivo) {
+            vistos++;
+            if (amostra.size() < ARQUIVOS_AMOSTRA) {
+                amostra.add(arquivo);
+            } else {
+                long posicao = (long) (aleatorio.nextDouble() * vistos);
+                if (posicao < ARQUIVOS_AMOSTRA) {
+                    amostra.set((int) posicao, arquivo);
+                }
+            }
+        }
+
+        class Tarefa extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final Path diretorio;
+
+            Tarefa(Path diretorio) {
+                this.diretorio = diretorio;
+            }
+
+            @Override
+            protected void compute() {
+                if (interrompida.get() || System.nanoTime() > prazo) {
+                    interrompida.set(true);
+                    return;
+                }
+                List<Tarefa> subdiretorios = new ArrayList<>();
+                try (DirectoryStream<Path> itens = Files.newDirectoryStream(diretorio)) {
+                    for (Path item : itens) {
+                        BasicFileAttributes attrs = Files.readAttributes(item, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        if (attrs.isDirectory()) {
+                            subdiretorios.add(new Tarefa(item));
+                        } else {
+                            arquivos.increment();
+                            bytes.add(attrs.size());
+                            if (attrs.isRegularFile() && attrs.size() > 0) {
+                                oferecer(item);
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    // Diretório sem permissão ou removido: também ficaria fora do backup
+                }
+                invokeAll(subdiretorios);
+            }
+        }
+    }
+
+    /**
+     * Arquivos e subdiretórios de um diretório, lidos uma vez pela
+     * amostragem.
+     */
+    private static class Listagem {
+
+        final List<Path> subdiretorios = new ArrayList<>();
+        long arquivos;
+        long bytes;
+
+        Listagem(Path diretorio) {
+            try (DirectoryStream<Path> itens = Files.newDirectoryStream(diretorio)) {
+                for (Path item : itens) {
+                    BasicFileAttributes attrs = Files.readAttributes(item, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        subdiretorios.add(item);
+                    } else {
+                        arquivos++;
+                        bytes += attrs.size();
+                    }
+                }
+            } catch (IOException e) {
+                // Conta como diretório vazio, como na varredura
+            }
+        }
+    }
+}
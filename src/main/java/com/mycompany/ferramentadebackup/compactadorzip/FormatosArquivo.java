@@ -0,0 +1,139 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.zip.Deflater;
+
+/**
+ * Registro dos formatos de arquivo de backup disponíveis.
+ * <p>
+ * Formatos embutidos:
+ * <ul>
+ * <li><b>ZIP</b> - ZIP com deflate por entrada (padrão, compatível com o
+ * comportamento original);</li>
+ * <li><b>ZIP_SEM_COMPRESSAO</b> - ZIP com deflate no nível 0, para quando a
+ * origem já está comprimida;</li>
+ * <li><b>TAR</b> - TAR sem compressão, o de menor custo de CPU;</li>
+ * <li><b>TAR_GZ</b> - TAR comprimido com gzip em fluxo contínuo, que aproveita
+ * a redundância entre arquivos vizinhos.</li>
+ * </ul>
+ * Formatos adicionais são descobertos via {@link ServiceLoader} a partir de
+ * implementações de {@link ProvedorFormatoArquivo}.
+ */
+public class FormatosArquivo {
+
+    // Nome do formato usado quando o agendamento não define nenhum
+    public static final String PADRAO = "ZIP";
+
+    private static final Map<String, ProvedorFormatoArquivo> FORMATOS = carregar();
+
+    private FormatosArquivo() {
+    }
+
+    /**
+     * Obtém o formato pelo nome gravado no agendamento.
+     *
+     * @param nome O nome do formato. Pode ser {@code null}.
+     * @return O formato correspondente, ou o formato ZIP se o nome for nulo
+     * ou desconhecido.
+     */
+    public static ProvedorFormatoArquivo obter(String nome) {
+        ProvedorFormatoArquivo formato = nome != null ? FORMATOS.get(nome.trim().toUpperCase()) : null;
+        return formato != null ? formato : FORMATOS.get(PADRAO);
+    }
+
+    /**
+     * @return Todos os formatos disponíveis, na ordem de registro.
+     */
+    public static List<ProvedorFormatoArquivo> listar() {
+        return Collections.unmodifiableList(new ArrayList<>(FORMATOS.values()));
+    }
+
+    private static Map<String, ProvedorFormatoArquivo> carregar() {
+        Map<String, ProvedorFormatoArquivo> formatos = new LinkedHashMap<>();
+        registrar(formatos, new Embutido("ZIP", "ZIP (deflate)", ".zip") {
+            @Override
+            public EscritorArquivo criarEscritor(OutputStream destino, int nivel) {
+                return new EscritorZip(destino, nivel);
+            }
+        });
+        registrar(formatos, new Embutido("ZIP_SEM_COMPRESSAO", "ZIP sem compressão", ".zip") {
+            @Override
+            public EscritorArquivo criarEscritor(OutputStream destino, int nivel) {
+                return new EscritorZip(destino, Deflater.NO_COMPRESSION) {
+                    @Override
+                    public void definirNivel(int novoNivel) {
+                        // O nível é sempre 0 neste formato
+                    }
+                };
+            }
+        });
+        registrar(formatos, new Embutido("TAR", "TAR sem compressão", ".tar") {
+            @Override
+            public EscritorArquivo criarEscritor(OutputStream destino, int nivel) throws IOException {
+                return new EscritorTar(destino, false, nivel);
+            }
+        });
+        registrar(formatos, new Embutido("TAR_GZ", "TAR com gzip", ".tar.gz") {
+            @Override
+            public EscritorArquivo criarEscritor(OutputStream destino, int nivel) throws IOException {
+                return new EscritorTar(destino, true, nivel);
+            }
+
+            @Override
+            public boolean isAcessoAleatorio() {
+                return false;
+            }
+        });
+        for (ProvedorFormatoArquivo provedor : ServiceLoader.load(ProvedorFormatoArquivo.class)) {
+            registrar(formatos, provedor);
+        }
+        return formatos;
+    }
+
+    private static void registrar(Map<String, ProvedorFormatoArquivo> formatos, ProvedorFormatoArquivo provedor) {
+        formatos.put(provedor.getNome().toUpperCase(), provedor);
+    }
+
+    /**
+     * Base dos formatos embutidos, que só diferem na criação do escritor.
+     */
+    private abstract static class Embutido implements ProvedorFormatoArquivo {
+
+        private final String nome;
+        private final String descricao;
+        private final String extensao;
+
+        Embutido(String nome, String descricao, String extensao) {
+            this.nome = nome;
+            this.descricao = descricao;
+            this.extensao = extensao;
+        }
+
+        @Override
+        public String getNome() {
+            return nome;
+        }
+
+        @Override
+        public String getDescricao() {
+            return descricao;
+        }
+
+        @Override
+        public String getExtensao() {
+            return extensao;
+        }
+
+        @Override
+        public String toString() {
+            return descricao;
+        }
+    }
+}
@@ -0,0 +1,559 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.EOFException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Gravador do formato ZIP usado pelos escritores ZIP da ferramenta.
+ * <p>
+ * Produz o mesmo formato do {@link java.util.zip.ZipOutputStream} (entradas
+ * deflate com descritor de dados, carimbo de tempo estendido e ZIP64 quando
+ * os limites de 4 GiB ou 65535 entradas são ultrapassados), mas guarda um
+ * {@link RegistroZip} de cada entrada concluída. Com esses registros, um
+ * gravador pode continuar um arquivo a partir do fim da última entrada válida
+ * de uma gravação anterior, reescrevendo apenas o diretório central.
+ * Entradas de outro ZIP podem ser copiadas já comprimidas, sem passar pelo
+ * deflate ({@link #copiarEntrada(RegistroZip, SeekableByteChannel)}).
+ */
+class GravadorZip implements Closeable {
+
+    static final long LIMITE_ZIP32 = 0xFFFFFFFFL;
+    static final int FLAG_DESCRITOR = 0x0008;
+
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int LIMITE_ENTRADAS_ZIP32 = 0xFFFF;
+    private static final int VERSAO_PADRAO = 20;
+    private static final int VERSAO_ZIP64 = 45;
+    private static final int ID_ZIP64 = 0x0001;
+    private static final int ID_TEMPO_ESTENDIDO = 0x5455;
+    private static final int HORA_DOS_ANTES_1980 = (1 << 21) | (1 << 16);
+
+    private final OutputStream saida;
+    private final List<RegistroZip> registros;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] bufferDeflate = new byte[64 * 1024];
+    private final ByteBuffer cabecalho = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+
+    private long posicao;
+    private int nivel;
+
+    // Entrada em gravação
+    private String nomeAtual;
+    private long modificadoAtual;
+    private int horaDosAtual;
+    private long posicaoAtual;
+    private int cabecalhoLocalAtual;
+    private long tamanhoAtual;
+    private long comprimidoAtual;
+
+    /**
+     * Cria um gravador para um arquivo novo.
+     *
+     * @param saida A stream de destino, posicionada no início do arquivo.
+     * @param nivel O nível inicial do deflate.
+     */
+    GravadorZip(OutputStream saida, int nivel) {
+        this(saida, nivel, 0, Collections.emptyList());
+    }
+
+    /**
+     * Cria um gravador que continua um arquivo já iniciado.
+     *
+     * @param saida A stream de destino, posicionada logo após a última
+     * entrada válida.
+     * @param nivel O nível inicial do deflate.
+     * @param posicao A posição atual da stream no arquivo.
+     * @param anteriores Os registros das entradas já gravadas.
+     */
+    GravadorZip(OutputStream saida, int nivel, long posicao, List<RegistroZip> anteriores) {
+        this.saida = saida;
+        this.nivel = nivel;
+        this.posicao = posicao;
+        this.registros = new ArrayList<>(anteriores);
+        this.deflater = new Deflater(nivel, true);
+    }
+
+    /**
+     * Define o nível do deflate das próximas entradas.
+     *
+     * @param nivel O nível de 0 a 9, ou -1 para o padrão.
+     */
+    void definirNivel(int nivel) {
+        this.nivel = nivel;
+    }
+
+    /**
+     * Inicia uma entrada comprimida com deflate. O CRC-32 e os tamanhos são
+     * gravados no descritor de dados, ao final da entrada.
+     * <p>
+     * Como no ZipOutputStream, o cabeçalho local não leva o campo ZIP64: o
+     * descritor passa a usar tamanhos de 8 bytes quando o conteúdo ou os
+     * dados comprimidos ultrapassam 4 GiB.
+     *
+     * @param nome O nome da entrada.
+     * @param modificado O momento da última modificação, em milissegundos.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    void iniciarEntrada(String nome, long modificado) throws IOException {
+        if (nomeAtual != null) {
+            throw new IllegalStateException("A entrada anterior não foi finalizada: " + nomeAtual);
+        }
+        nomeAtual = nome;
+        modificadoAtual = modificado;
+        horaDosAtual = horaDos(modificado);
+        posicaoAtual = posicao;
+        tamanhoAtual = 0;
+        comprimidoAtual = 0;
+        crc.reset();
+        deflater.reset();
+        deflater.setLevel(nivel);
+
+        cabecalhoLocalAtual = escreverCabecalhoLocal(nome, flags(nome) | FLAG_DESCRITOR, ZipEntry.DEFLATED, horaDosAtual,
+                0, 0, 0, extraLocal(modificado, null));
+    }
+
+    /**
+     * Comprime e grava parte do conteúdo da entrada atual.
+     */
+    void escrever(byte[] buffer, int inicio, int tamanho) throws IOException {
+        if (tamanho == 0) {
+            return;
+        }
+        crc.update(buffer, inicio, tamanho);
+        tamanhoAtual += tamanho;
+        deflater.setInput(buffer, inicio, tamanho);
+        while (!deflater.needsInput()) {
+            descarregarDeflater();
+        }
+    }
+
+    /**
+     * Finaliza a entrada atual, gravando o descritor de dados.
+     *
+     * @return O registro da entrada gravada.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    RegistroZip fecharEntrada() throws IOException {
+        return fecharEntrada(null);
+    }
+
+    /**
+     * Finaliza a entrada atual com campos extras adicionais no diretório
+     * central. Serve para os valores que só são conhecidos depois de todo o
+     * conteúdo gravado, como o tamanho e o CRC-32 originais de uma entrada
+     * delta ({@link DeltaArquivo}); o cabeçalho local não os leva.
+     *
+     * @param extra Campos extras adicionais, ou {@code null}.
+     * @return O registro da entrada gravada.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    RegistroZip fecharEntrada(byte[] extra) throws IOException {
+        deflater.finish();
+        while (!deflater.finished()) {
+            descarregarDeflater();
+        }
+
+        escreverDescritor(crc.getValue(), comprimidoAtual, tamanhoAtual);
+
+        RegistroZip registro = new RegistroZip(nomeAtual, flags(nomeAtual) | FLAG_DESCRITOR, ZipEntry.DEFLATED, horaDosAtual,
+                modificadoAtual, crc.getValue(), comprimidoAtual, tamanhoAtual, posicaoAtual, cabecalhoLocalAtual, extra);
+        registros.add(registro);
+        nomeAtual = null;
+        return registro;
+    }
+
+    /**
+     * Grava uma entrada STORED cujo conteúdo já está em memória.
+     *
+     * @param nome O nome da entrada.
+     * @param modificado O momento da última modificação, em milissegundos, ou
+     * {@code -1} para usar o momento atual.
+     * @param dados O conteúdo armazenado.
+     * @param extra Campos extras adicionais, ou {@code null}.
+     * @return O registro da entrada gravada.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    RegistroZip gravarEntradaArmazenada(String nome, long modificado, byte[] dados, byte[] extra) throws IOException {
+        CRC32 crcDados = new CRC32();
+        crcDados.update(dados);
+        return gravarEntradaComprimida(nome, modificado, ZipEntry.STORED, dados, crcDados.getValue(), dados.length, extra);
+    }
+
+    /**
+     * Grava uma entrada cujo conteúdo já foi comprimido em memória com o
+     * método informado, como as entradas com dicionário
+     * ({@link DicionarioDeflate#METODO}).
+     *
+     * @param nome O nome da entrada.
+     * @param modificado O momento da última modificação, em milissegundos, ou
+     * {@code -1} para usar o momento atual.
+     * @param metodo O método de compressão gravado no cabeçalho.
+     * @param dados O conteúdo comprimido.
+     * @param crcOriginal O CRC-32 do conteúdo original.
+     * @param tamanhoOriginal O tamanho do conteúdo original.
+     * @param extra Campos extras adicionais, ou {@code null}.
+     * @return O registro da entrada gravada.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    RegistroZip gravarEntradaComprimida(String nome, long modificado, int metodo, byte[] dados, long crcOriginal, long tamanhoOriginal,
+            byte[] extra) throws IOException {
+        if (nomeAtual != null) {
+            throw new IllegalStateException("A entrada anterior não foi finalizada: " + nomeAtual);
+        }
+        long momento = modificado >= 0 ? modificado : System.currentTimeMillis();
+
+        long posicaoCabecalho = posicao;
+        int hora = horaDos(momento);
+        int tamanhoCabecalho = escreverCabecalhoLocal(nome, flags(nome), metodo, hora, crcOriginal,
+                dados.length, tamanhoOriginal, extraLocal(momento, extra));
+        saida.write(dados);
+        posicao += dados.length;
+
+        RegistroZip registro = new RegistroZip(nome, flags(nome), metodo, hora, momento, crcOriginal,
+                dados.length, tamanhoOriginal, posicaoCabecalho, tamanhoCabecalho, extra);
+        registros.add(registro);
+        return registro;
+    }
+
+    /**
+     * Grava de uma vez uma entrada pequena cujo conteúdo já está em memória.
+     * Comprimida por inteiro antes do cabeçalho local, a entrada já tem o
+     * CRC-32 e os tamanhos no cabeçalho e dispensa o descritor de dados; se o
+     * deflate não reduzir o conteúdo, ela é gravada como STORED.
+     *
+     * @param nome O nome da entrada.
+     * @param modificado O momento da última modificação, em milissegundos.
+     * @param dados O buffer com o conteúdo.
+     * @param tamanho O tamanho do conteúdo, menor que o buffer do deflate.
+     * @return O registro da entrada gravada.
+     * @throws IOException Se ocorrer um erro de escrita.
+     */
+    RegistroZip gravarEntradaPequena(String nome, long modificado, byte[] dados, int tamanho) throws IOException {
+        if (nomeAtual != null) {
+            throw new IllegalStateException("A entrada anterior não foi finalizada: " + nomeAtual);
+        }
+        crc.reset();
+        crc.update(dados, 0, tamanho);
+        deflater.reset();
+        deflater.setLevel(nivel);
+        deflater.setInput(dados, 0, tamanho);
+        deflater.finish();
+        int comprimido = 0;
+        while (!deflater.finished() && comprimido < tamanho) {
+            comprimido += deflater.deflate(bufferDeflate, comprimido, bufferDeflate.length - comprimido);
+        }
+        boolean armazenar = !deflater.finished() || comprimido >= tamanho;
+        int metodo = armazenar ? ZipEntry.STORED : ZipEntry.DEFLATED;
+        int gravados = armazenar ? tamanho : comprimido;
+
+        long posicaoCabecalho = posicao;
+        int hora = horaDos(modificado);
+        int tamanhoCabecalho = escreverCabecalhoLocal(nome, flags(nome), metodo, hora, crc.getValue(), gravados, tamanho,
+                extraLocal(modificado, null));
+        saida.write(armazenar ? dados : bufferDeflate, 0, gravados);
+        posicao += gravados;
+
+        RegistroZip registro = new RegistroZip(nome, flags(nome), metodo, hora, modificado, crc.getValue(),
+                gravados, tamanho, posicaoCabecalho, tamanhoCabecalho, null);
+        registros.add(registro);
+        return registro;
+    }
+
+    /**
+     * Copia uma entrada de outro ZIP sem descomprimir os dados: o cabeçalho
+     * local é regravado a partir do registro e os dados comprimidos são
+     * copiados como estão, mantendo o CRC-32, os tamanhos e os campos extras
+     * adicionais da entrada original.
+     *
+     * @param original O registro da entrada no ZIP de origem, como lido por
+     * {@link LeitorDiretorioZip}.
+     * @param origem O ZIP de origem aberto para leitura (um arquivo ou o
+     * conteúdo decifrado de um backup cifrado).
+     * @return O registro da entrada gravada.
+     * @throws IOException Se ocorrer um erro de leitura ou de escrita.
+     */
+    RegistroZip copiarEntrada(RegistroZip original, SeekableByteChannel origem) throws IOException {
+        if (nomeAtual != null) {
+            throw new IllegalStateException("A entrada anterior não foi finalizada: " + nomeAtual);
+        }
+        // O cabeçalho local não leva o campo ZIP64: entradas grandes usam o descritor
+        boolean descritor = (original.flags & FLAG_DESCRITOR) != 0
+                || original.tamanho >= LIMITE_ZIP32 || original.tamanhoComprimido >= LIMITE_ZIP32;
+        int flagsCopia = flags(original.nome) | (descritor ? FLAG_DESCRITOR : 0);
+
+        long posicaoCabecalho = posicao;
+        int tamanhoCabecalho = escreverCabecalhoLocal(original.nome, flagsCopia, original.metodo, original.horaDos,
+                descritor ? 0 : original.crc, descritor ? 0 : original.tamanhoComprimido, descritor ? 0 : original.tamanho,
+                extraLocal(original.modificado, original.extra));
+
+        ByteBuffer buffer = ByteBuffer.wrap(bufferDeflate);
+        long inicio = original.posicaoDados();
+        long copiados = 0;
+        while (copiados < original.tamanhoComprimido) {
+            buffer.clear().limit((int) Math.min(bufferDeflate.length, original.tamanhoComprimido - copiados));
+            int lidos = LeitorDiretorioZip.lerEm(origem, buffer, inicio + copiados);
+            if (lidos < 0) {
+                throw new EOFException("Fim inesperado dos dados da entrada " + original.nome);
+            }
+            saida.write(bufferDeflate, 0, lidos);
+            copiados += lidos;
+        }
+        posicao += copiados;
+        if (descritor) {
+            escreverDescritor(original.crc, original.tamanhoComprimido, original.tamanho);
+        }
+
+        RegistroZip registro = new RegistroZip(original.nome, flagsCopia, original.metodo, original.horaDos, original.modificado,
+                original.crc, original.tamanhoComprimido, original.tamanho, posicaoCabecalho, tamanhoCabecalho, original.extra);
+        registros.add(registro);
+        return registro;
+    }
+
+    /**
+     * @return A posição atual no arquivo, em bytes.
+     */
+    long getPosicao() {
+        return posicao;
+    }
+
+    /**
+     * @return Os registros das entradas concluídas, na ordem do diretório
+     * central (a de gravação, salvo com {@link #reordenar}).
+     */
+    List<RegistroZip> getRegistros() {
+        return registros;
+    }
+
+    /**
+     * Reordena no diretório central as últimas entradas concluídas, sem mover
+     * os dados já gravados.
+     *
+     * @param inicio O índice da primeira entrada a reordenar.
+     * @param ordem A nova ordem das entradas.
+     */
+    void reordenar(int inicio, Comparator<RegistroZip> ordem) {
+        registros.subList(inicio, registros.size()).sort(ordem);
+    }
+
+    /**
+     * Grava o diretório central e fecha a stream de destino.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            long inicioCentral = posicao;
+            for (RegistroZip registro : registros) {
+                escreverRegistroCentral(registro);
+            }
+            escreverFimDiretorio(inicioCentral, posicao - inicioCentral);
+            saida.flush();
+        } finally {
+            deflater.end();
+            saida.close();
+        }
+    }
+
+    private void descarregarDeflater() throws IOException {
+        int gerados = deflater.deflate(bufferDeflate);
+        if (gerados > 0) {
+            saida.write(bufferDeflate, 0, gerados);
+            posicao += gerados;
+            comprimidoAtual += gerados;
+        }
+    }
+
+    /**
+     * Grava o descritor de dados, com tamanhos de 8 bytes quando o conteúdo
+     * ou os dados comprimidos ultrapassam 4 GiB.
+     */
+    private void escreverDescritor(long crcEntrada, long comprimido, long tamanho) throws IOException {
+        boolean zip64 = tamanho >= LIMITE_ZIP32 || comprimido >= LIMITE_ZIP32;
+        cabecalho.clear();
+        cabecalho.putInt(0x08074b50);
+        cabecalho.putInt((int) crcEntrada);
+        if (zip64) {
+            cabecalho.putLong(comprimido);
+            cabecalho.putLong(tamanho);
+        } else {
+            cabecalho.putInt((int) comprimido);
+            cabecalho.putInt((int) tamanho);
+        }
+        escreverCabecalho();
+    }
+
+    private int escreverCabecalhoLocal(String nome, int flags, int metodo, int hora, long crcEntrada,
+            long comprimido, long tamanho, byte[] extra) throws IOException {
+        byte[] nomeBytes = nome.getBytes(StandardCharsets.UTF_8);
+        cabecalho.clear();
+        cabecalho.putInt(0x04034b50);
+        cabecalho.putShort((short) VERSAO_PADRAO);
+        cabecalho.putShort((short) flags);
+        cabecalho.putShort((short) metodo);
+        cabecalho.putInt(hora);
+        cabecalho.putInt((int) crcEntrada);
+        cabecalho.putInt((int) comprimido);
+        cabecalho.putInt((int) tamanho);
+        cabecalho.putShort((short) nomeBytes.length);
+        cabecalho.putShort((short) extra.length);
+        escreverCabecalho();
+        saida.write(nomeBytes);
+        saida.write(extra);
+        posicao += nomeBytes.length + extra.length;
+        return 30 + nomeBytes.length + extra.length;
+    }
+
+    private void escreverRegistroCentral(RegistroZip registro) throws IOException {
+        boolean tamanho64 = registro.tamanho >= LIMITE_ZIP32;
+        boolean comprimido64 = registro.tamanhoComprimido >= LIMITE_ZIP32;
+        boolean posicao64 = registro.posicaoCabecalho >= LIMITE_ZIP32;
+        boolean zip64 = tamanho64 || comprimido64 || posicao64;
+
+        ByteBuffer extra = ByteBuffer.allocate(4 + 24 + 9 + registro.extra.length).order(ByteOrder.LITTLE_ENDIAN);
+        if (zip64) {
+            extra.putShort((short) ID_ZIP64);
+            extra.putShort((short) ((tamanho64 ? 8 : 0) + (comprimido64 ? 8 : 0) + (posicao64 ? 8 : 0)));
+            if (tamanho64) {
+                extra.putLong(registro.tamanho);
+            }
+            if (comprimido64) {
+                extra.putLong(registro.tamanhoComprimido);
+            }
+            if (posicao64) {
+                extra.putLong(registro.posicaoCabecalho);
+            }
+        }
+        colocarTempoEstendido(extra, registro.modificado);
+        extra.put(registro.extra);
+
+        byte[] nomeBytes = registro.nomeBytes();
+        int versao = zip64 ? VERSAO_ZIP64 : VERSAO_PADRAO;
+        cabecalho.clear();
+        cabecalho.putInt(0x02014b50);
+        cabecalho.putShort((short) versao);
+        cabecalho.putShort((short) versao);
+        cabecalho.putShort((short) registro.flags);
+        cabecalho.putShort((short) registro.metodo);
+        cabecalho.putInt(registro.horaDos);
+        cabecalho.putInt((int) registro.crc);
+        cabecalho.putInt(comprimido64 ? (int) LIMITE_ZIP32 : (int) registro.tamanhoComprimido);
+        cabecalho.putInt(tamanho64 ? (int) LIMITE_ZIP32 : (int) registro.tamanho);
+        cabecalho.putShort((short) nomeBytes.length);
+        cabecalho.putShort((short) extra.position());
+        cabecalho.putShort((short) 0);
+        cabecalho.putShort((short) 0);
+        cabecalho.putShort((short) 0);
+        cabecalho.putInt(0);
+        cabecalho.putInt(posicao64 ? (int) LIMITE_ZIP32 : (int) registro.posicaoCabecalho);
+        escreverCabecalho();
+        saida.write(nomeBytes);
+        saida.write(extra.array(), 0, extra.position());
+        posicao += nomeBytes.length + extra.position();
+    }
+
+    private void escreverFimDiretorio(long inicioCentral, long tamanhoCentral) throws IOException {
+        int quantidade = registros.size();
+        boolean zip64 = quantidade >= LIMITE_ENTRADAS_ZIP32 || inicioCentral >= LIMITE_ZIP32 || tamanhoCentral >= LIMITE_ZIP32;
+        if (zip64) {
+            long posicaoFim64 = posicao;
+            cabecalho.clear();
+            cabecalho.putInt(0x06064b50);
+            cabecalho.putLong(44);
+            cabecalho.putShort((short) VERSAO_ZIP64);
+            cabecalho.putShort((short) VERSAO_ZIP64);
+            cabecalho.putInt(0);
+            cabecalho.putInt(0);
+            cabecalho.putLong(quantidade);
+            cabecalho.putLong(quantidade);
+            cabecalho.putLong(tamanhoCentral);
+            cabecalho.putLong(inicioCentral);
+            escreverCabecalho();
+
+            cabecalho.clear();
+            cabecalho.putInt(0x07064b50);
+            cabecalho.putInt(0);
+            cabecalho.putLong(posicaoFim64);
+            cabecalho.putInt(1);
+            escreverCabecalho();
+        }
+        cabecalho.clear();
+        cabecalho.putInt(0x06054b50);
+        cabecalho.putShort((short) 0);
+        cabecalho.putShort((short) 0);
+        cabecalho.putShort((short) Math.min(quantidade, LIMITE_ENTRADAS_ZIP32));
+        cabecalho.putShort((short) Math.min(quantidade, LIMITE_ENTRADAS_ZIP32));
+        cabecalho.putInt((int) Math.min(tamanhoCentral, LIMITE_ZIP32));
+        cabecalho.putInt((int) Math.min(inicioCentral, LIMITE_ZIP32));
+        cabecalho.putShort((short) 0);
+        escreverCabecalho();
+    }
+
+    private void escreverCabecalho() throws IOException {
+        saida.write(cabecalho.array(), 0, cabecalho.position());
+        posicao += cabecalho.position();
+    }
+
+    private static byte[] extraLocal(long modificado, byte[] adicional) {
+        int tamanhoAdicional = adicional != null ? adicional.length : 0;
+        ByteBuffer extra = ByteBuffer.allocate(9 + tamanhoAdicional).order(ByteOrder.LITTLE_ENDIAN);
+        colocarTempoEstendido(extra, modificado);
+        if (adicional != null) {
+            extra.put(adicional);
+        }
+        byte[] resultado = new byte[extra.position()];
+        System.arraycopy(extra.array(), 0, resultado, 0, resultado.length);
+        return resultado;
+    }
+
+    /**
+     * Acrescenta o campo de carimbo de tempo estendido (0x5455), que guarda a
+     * modificação com precisão de segundos, como faz o ZipOutputStream.
+     */
+    private static void colocarTempoEstendido(ByteBuffer extra, long modificado) {
+        long segundos = Math.floorDiv(modificado, 1000);
+        if (segundos >= Integer.MIN_VALUE && segundos <= Integer.MAX_VALUE) {
+            extra.putShort((short) ID_TEMPO_ESTENDIDO);
+            extra.putShort((short) 5);
+            extra.put((byte) 1);
+            extra.putInt((int) segundos);
+        }
+    }
+
+    private static int flags(String nome) {
+        for (int i = 0; i < nome.length(); i++) {
+            if (nome.charAt(i) > 0x7F) {
+                return FLAG_UTF8;
+            }
+        }
+        return 0;
+    }
+
+    static int horaDos(long modificado) {
+        LocalDateTime data = LocalDateTime.ofInstant(Instant.ofEpochMilli(modificado), ZoneId.systemDefault());
+        int ano = data.getYear();
+        if (ano < 1980) {
+            return HORA_DOS_ANTES_1980;
+        }
+        if (ano > 2107) {
+            ano = 2107;
+        }
+        return (ano - 1980) << 25 | data.getMonthValue() << 21 | data.getDayOfMonth() << 16
+                | data.getHour() << 11 | data.getMinute() << 5 | data.getSecond() >> 1;
+    }
+}
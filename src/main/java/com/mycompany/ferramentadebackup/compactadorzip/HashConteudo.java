@@ -0,0 +1,97 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chaves e hashes usados pelo {@link CacheHashes}.
+ * <p>
+ * O hash do conteúdo são os primeiros {@link #TAMANHO} bytes do SHA-256. A
+ * chave é o MD5 da identificação do arquivo no sistema de arquivos
+ * ({@link BasicFileAttributes#fileKey()}, que inclui o dispositivo e o inode;
+ * no Windows, onde ela não existe, o caminho absoluto), do tamanho e da data
+ * de modificação em nanossegundos. Qualquer alteração do arquivo muda a
+ * chave, de modo que uma versão antiga nunca é confundida com a atual.
+ */
+public final class HashConteudo {
+
+    /**
+     * Tamanho, em bytes, das chaves e dos hashes.
+     */
+    public static final int TAMANHO = 16;
+
+    private HashConteudo() {
+    }
+
+    /**
+     * Monta a chave da versão atual de um arquivo, sem ler o conteúdo.
+     *
+     * @param arquivo O arquivo.
+     * @param attrs Os atributos do arquivo.
+     * @return A chave.
+     */
+    static byte[] chave(Path arquivo, BasicFileAttributes attrs) {
+        Object identificacao = attrs.fileKey() != null ? attrs.fileKey() : arquivo.toAbsolutePath();
+        MessageDigest md5 = digest("MD5");
+        md5.update(identificacao.toString().getBytes(StandardCharsets.UTF_8));
+        md5.update(ByteBuffer.allocate(16).putLong(attrs.size()).putLong(attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS)).array());
+        return md5.digest();
+    }
+
+    /**
+     * @return Um novo cálculo do hash do conteúdo, a ser finalizado com
+     * {@link #finalizar}.
+     */
+    static MessageDigest novoCalculo() {
+        return digest("SHA-256");
+    }
+
+    /**
+     * Finaliza o cálculo do hash do conteúdo.
+     *
+     * @param calculo O cálculo criado por {@link #novoCalculo()}.
+     * @return O hash do conteúdo.
+     */
+    static byte[] finalizar(MessageDigest calculo) {
+        return Arrays.copyOf(calculo.digest(), TAMANHO);
+    }
+
+    /**
+     * Lê um arquivo para calcular o hash do conteúdo.
+     *
+     * @param arquivo O arquivo.
+     * @param buffer O buffer de leitura.
+     * @param leitura O limitador da leitura.
+     * @return O hash do conteúdo.
+     * @throws IOException Se ocorrer um erro de leitura.
+     */
+    static byte[] calcular(Path arquivo, byte[] buffer, LimitadorTaxa leitura) throws IOException {
+        MessageDigest calculo = novoCalculo();
+        try (InputStream entrada = Files.newInputStream(arquivo)) {
+            int lidos;
+            while ((lidos = entrada.read(buffer)) >= 0) {
+                leitura.adquirir(lidos);
+                calculo.update(buffer, 0, lidos);
+            }
+        }
+        return finalizar(calculo);
+    }
+
+    private static MessageDigest digest(String algoritmo) {
+        try {
+            return MessageDigest.getInstance(algoritmo);
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 e SHA-256 são obrigatórios em toda implementação do Java
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Leitura do diretório central de um arquivo ZIP, com a posição e o tamanho
+ * do cabeçalho local de cada entrada.
+ * <p>
+ * O {@link java.util.zip.ZipFile} não informa onde cada entrada está no
+ * arquivo; com essa informação, os dados comprimidos de uma entrada podem ser
+ * copiados para outro ZIP sem descompressão
+ * ({@link GravadorZip#copiarEntrada(RegistroZip, SeekableByteChannel)}). Os campos
+ * ZIP64 e de carimbo de tempo estendido são interpretados e retirados do
+ * {@link RegistroZip#extra}, que fica apenas com os campos adicionais (como o
+ * do {@link DicionarioDeflate}), pois o {@link GravadorZip} grava os seus.
+ */
+class LeitorDiretorioZip {
+
+    private static final int ASSINATURA_CENTRAL = 0x02014b50;
+    private static final int ASSINATURA_LOCAL = 0x04034b50;
+    private static final int ASSINATURA_FIM = 0x06054b50;
+    private static final int ASSINATURA_LOCALIZADOR_ZIP64 = 0x07064b50;
+    private static final int ASSINATURA_FIM_ZIP64 = 0x06064b50;
+    private static final int TAMANHO_FIM = 22;
+    private static final int TAMANHO_MAXIMO_COMENTARIO = 0xFFFF;
+    private static final int ID_ZIP64 = 0x0001;
+    private static final int ID_TEMPO_ESTENDIDO = 0x5455;
+
+    private LeitorDiretorioZip() {
+    }
+
+    /**
+     * Lê os registros de todas as entradas, na ordem do diretório central.
+     *
+     * @param canal O arquivo ZIP aberto para leitura.
+     * @return Os registros das entradas.
+     * @throws IOException Se ocorrer um erro de leitura ou o arquivo não for
+     * um ZIP válido.
+     */
+    static List<RegistroZip> ler(SeekableByteChannel canal) throws IOException {
+        long[] fim = lerFim(canal);
+        long quantidade = fim[0];
+        long tamanhoCentral = fim[1];
+        long inicioCentral = fim[2];
+        if (tamanhoCentral > Integer.MAX_VALUE) {
+            throw new ZipException("Diretório central grande demais: " + tamanhoCentral + " bytes");
+        }
+
+        ByteBuffer central = lerCompleto(canal, inicioCentral, (int) tamanhoCentral);
+        List<RegistroZip> registros = new ArrayList<>((int) Math.min(quantidade, 1 << 20));
+        for (long i = 0; i < quantidade; i++) {
+            registros.add(lerRegistro(canal, central));
+        }
+        return registros;
+    }
+
+    /**
+     * Localiza o diretório central, que começa logo após os dados da última
+     * entrada.
+     *
+     * @param canal O arquivo ZIP aberto para leitura.
+     * @return A posição do início do diretório central.
+     * @throws IOException Se ocorrer um erro de leitura ou o arquivo não for
+     * um ZIP válido.
+     */
+    static long inicioDiretorio(SeekableByteChannel canal) throws IOException {
+        return lerFim(canal)[2];
+    }
+
+    /**
+     * Lê o fim do diretório central, com os valores ZIP64 quando houver.
+     *
+     * @return A quantidade de entradas, o tamanho e a posição do diretório
+     * central.
+     */
+    private static long[] lerFim(SeekableByteChannel canal) throws IOException {
+        long tamanhoArquivo = canal.size();
+        int tamanhoFim = (int) Math.min(tamanhoArquivo, TAMANHO_FIM + TAMANHO_MAXIMO_COMENTARIO);
+        ByteBuffer fim = lerCompleto(canal, tamanhoArquivo - tamanhoFim, tamanhoFim);
+        int posicaoFim = -1;
+        for (int i = tamanhoFim - TAMANHO_FIM; i >= 0; i--) {
+            if (fim.getInt(i) == ASSINATURA_FIM) {
+                posicaoFim = i;
+                break;
+            }
+        }
+        if (posicaoFim < 0) {
+            throw new ZipException("Fim do diretório central não encontrado");
+        }
+
+        long quantidade = fim.getShort(posicaoFim + 10) & 0xFFFF;
+        long tamanhoCentral = fim.getInt(posicaoFim + 12) & 0xFFFFFFFFL;
+        long inicioCentral = fim.getInt(posicaoFim + 16) & 0xFFFFFFFFL;
+        long posicaoLocalizador = tamanhoArquivo - tamanhoFim + posicaoFim - 20;
+        if (posicaoLocalizador >= 0 && lerCompleto(canal, posicaoLocalizador, 4).getInt(0) == ASSINATURA_LOCALIZADOR_ZIP64) {
+            long posicaoFim64 = lerCompleto(canal, posicaoLocalizador + 8, 8).getLong(0);
+            ByteBuffer fim64 = lerCompleto(canal, posicaoFim64, 56);
+            if (fim64.getInt(0) != ASSINATURA_FIM_ZIP64) {
+                throw new ZipException("Fim ZIP64 do diretório central inválido");
+            }
+            quantidade = fim64.getLong(32);
+            tamanhoCentral = fim64.getLong(40);
+            inicioCentral = fim64.getLong(48);
+        }
+        return new long[]{quantidade, tamanhoCentral, inicioCentral};
+    }
+
+    private static RegistroZip lerRegistro(SeekableByteChannel canal, ByteBuffer central) throws IOException {
+        int inicio = central.position();
+        if (central.remaining() < 46 || central.getInt(inicio) != ASSINATURA_CENTRAL) {
+            throw new ZipException("Registro do diretório central inválido na posição " + inicio);
+        }
+        int flags = central.getShort(inicio + 8) & 0xFFFF;
+        int metodo = central.getShort(inicio + 10) & 0xFFFF;
+        int horaDos = central.getInt(inicio + 12);
+        long crc = central.getInt(inicio + 16) & 0xFFFFFFFFL;
+        long comprimido = central.getInt(inicio + 20) & 0xFFFFFFFFL;
+        long tamanho = central.getInt(inicio + 24) & 0xFFFFFFFFL;
+        int tamanhoNome = central.getShort(inicio + 28) & 0xFFFF;
+        int tamanhoExtra = central.getShort(inicio + 30) & 0xFFFF;
+        int tamanhoComentario = central.getShort(inicio + 32) & 0xFFFF;
+        long posicaoCabecalho = central.getInt(inicio + 42) & 0xFFFFFFFFL;
+
+        byte[] nome = new byte[tamanhoNome];
+        central.position(inicio + 46);
+        central.get(nome);
+
+        // Separa os campos ZIP64 e de tempo dos campos adicionais
+        long modificado = Long.MIN_VALUE;
+        ByteBuffer adicionais = ByteBuffer.allocate(tamanhoExtra).order(ByteOrder.LITTLE_ENDIAN);
+        int fimExtra = central.position() + tamanhoExtra;
+        while (central.position() + 4 <= fimExtra) {
+            int id = central.getShort() & 0xFFFF;
+            int tamanhoCampo = central.getShort() & 0xFFFF;
+            int dados = central.position();
+            if (dados + tamanhoCampo > fimExtra) {
+                break;
+            }
+            if (id == ID_ZIP64) {
+                if (tamanho == GravadorZip.LIMITE_ZIP32) {
+                    tamanho = central.getLong();
+                }
+                if (comprimido == GravadorZip.LIMITE_ZIP32) {
+                    comprimido = central.getLong();
+                }
+                if (posicaoCabecalho == GravadorZip.LIMITE_ZIP32) {
+                    posicaoCabecalho = central.getLong();
+                }
+            } else if (id == ID_TEMPO_ESTENDIDO) {
+                if (tamanhoCampo >= 5 && (central.get() & 1) != 0) {
+                    modificado = central.getInt() * 1000L;
+                }
+            } else {
+                adicionais.putShort((short) id).putShort((short) tamanhoCampo);
+                adicionais.put(central.array(), central.arrayOffset() + dados, tamanhoCampo);
+            }
+            central.position(dados + tamanhoCampo);
+        }
+        central.position(fimExtra + tamanhoComentario);
+
+        if (modificado == Long.MIN_VALUE) {
+            modificado = deHoraDos(horaDos);
+        }
+        byte[] extra = new byte[adicionais.position()];
+        System.arraycopy(adicionais.array(), 0, extra, 0, extra.length);
+
+        ByteBuffer local = lerCompleto(canal, posicaoCabecalho, 30);
+        if (local.getInt(0) != ASSINATURA_LOCAL) {
+            throw new ZipException("Cabeçalho local inválido na posição " + posicaoCabecalho);
+        }
+        int tamanhoCabecalhoLocal = 30 + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF);
+
+        return new RegistroZip(new String(nome, StandardCharsets.UTF_8), flags, metodo, horaDos, modificado, crc,
+                comprimido, tamanho, posicaoCabecalho, tamanhoCabecalhoLocal, extra);
+    }
+
+    private static long deHoraDos(int horaDos) {
+        try {
+            LocalDateTime data = LocalDateTime.of(((horaDos >> 25) & 0x7F) + 1980, (horaDos >> 21) & 0x0F, (horaDos >> 16) & 0x1F,
+                    (horaDos >> 11) & 0x1F, (horaDos >> 5) & 0x3F, (horaDos << 1) & 0x3E);
+            return data.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Lê bytes de uma posição do canal. Um {@link FileChannel} ou um
+     * {@link CanalDecifrado} é lido sem alterar a sua posição; os demais
+     * canais são posicionados e lidos com o canal bloqueado, para que várias
+     * threads possam ler o mesmo arquivo.
+     *
+     * @param canal O canal.
+     * @param buffer O buffer de destino.
+     * @param posicao A posição do primeiro byte.
+     * @return A quantidade de bytes lidos, ou -1 no fim do canal.
+     * @throws IOException Se ocorrer um erro de leitura.
+     */
+    static int lerEm(SeekableByteChannel canal, ByteBuffer buffer, long posicao) throws IOException {
+        if (canal instanceof FileChannel) {
+            return ((FileChannel) canal).read(buffer, posicao);
+        }
+        if (canal instanceof CanalDecifrado) {
+            return ((CanalDecifrado) canal).read(buffer, posicao);
+        }
+        synchronized (canal) {
+            canal.position(posicao);
+            return canal.read(buffer);
+        }
+    }
+
+    private static ByteBuffer lerCompleto(SeekableByteChannel canal, long posicao, int tamanho) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(tamanho).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (lerEm(canal, buffer, posicao + buffer.position()) < 0) {
+                throw new EOFException("Fim inesperado do arquivo ZIP");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
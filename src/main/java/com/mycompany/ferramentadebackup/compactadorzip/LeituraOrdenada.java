@@ -0,0 +1,111 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lotes de arquivos de origem lidos na ordem da sua localização no disco.
+ * <p>
+ * A varredura visita os arquivos na ordem das entradas de cada diretório, que
+ * em um disco rotativo obriga a cabeça de leitura a saltar entre regiões
+ * distantes a cada arquivo. Os arquivos encontrados são acumulados em lotes,
+ * e cada lote é lido na ordem do dispositivo e do número do inode
+ * ({@link BasicFileAttributes#fileKey()}): nos sistemas de arquivos Unix os
+ * inodes próximos ficam no mesmo grupo de blocos que os seus dados, de modo
+ * que essa ordem aproxima a leitura sequencial sem acesso ao mapa de blocos.
+ * <p>
+ * Onde não há identificação do arquivo (Windows), o lote é lido na ordem da
+ * varredura. Em SSDs a ordem não faz diferença, por isso a ordenação é
+ * opcional ({@link OpcoesCompactacao#isOrdenarLeitura()}).
+ */
+class LeituraOrdenada {
+
+    // Formato de UnixFileKey.toString(): (dev=803,ino=1234), com o dispositivo em hexadecimal
+    private static final Pattern CHAVE_UNIX = Pattern.compile("dev=([0-9a-fA-F]+),ino=(\\d+)");
+
+    private static final Comparator<long[]> ORDEM_FISICA = Comparator.<long[]>comparingLong(chave -> chave[0])
+            .thenComparingLong(chave -> chave[1]);
+
+    private final int tamanhoLote;
+    private final List<ArquivoOrigem> lote = new ArrayList<>();
+
+    /**
+     * @param tamanhoLote A quantidade de arquivos acumulados antes de cada
+     * leitura.
+     */
+    LeituraOrdenada(int tamanhoLote) {
+        this.tamanhoLote = Math.max(1, tamanhoLote);
+    }
+
+    /**
+     * Acumula um arquivo no lote atual.
+     *
+     * @param arquivo O arquivo encontrado pela varredura.
+     * @return {@code true} se o lote ficou completo e deve ser lido.
+     */
+    boolean adicionar(ArquivoOrigem arquivo) {
+        lote.add(arquivo);
+        return lote.size() >= tamanhoLote;
+    }
+
+    /**
+     * Retira o lote atual, que volta a ficar vazio.
+     *
+     * @return Os arquivos do lote, na ordem da varredura.
+     */
+    List<ArquivoOrigem> retirarLote() {
+        List<ArquivoOrigem> retirado = new ArrayList<>(lote);
+        lote.clear();
+        return retirado;
+    }
+
+    /**
+     * Ordena os arquivos pela localização no disco.
+     *
+     * @param arquivos Os arquivos, na ordem da varredura.
+     * @return Os arquivos na ordem de leitura, ou na ordem original se algum
+     * não tiver identificação no sistema de arquivos.
+     */
+    static List<ArquivoOrigem> ordenar(List<ArquivoOrigem> arquivos) {
+        List<long[]> chaves = new ArrayList<>(arquivos.size());
+        List<Integer> indices = new ArrayList<>(arquivos.size());
+        for (int i = 0; i < arquivos.size(); i++) {
+            long[] chave = chaveFisica(arquivos.get(i).attrs);
+            if (chave == null) {
+                return arquivos;
+            }
+            chaves.add(chave);
+            indices.add(i);
+        }
+        indices.sort((a, b) -> ORDEM_FISICA.compare(chaves.get(a), chaves.get(b)));
+        List<ArquivoOrigem> ordenados = new ArrayList<>(arquivos.size());
+        for (int indice : indices) {
+            ordenados.add(arquivos.get(indice));
+        }
+        return ordenados;
+    }
+
+    /**
+     * @return O dispositivo e o número do inode do arquivo, ou {@code null}
+     * se o sistema de arquivos não os informar.
+     */
+    static long[] chaveFisica(BasicFileAttributes attrs) {
+        Object chave = attrs.fileKey();
+        if (chave == null) {
+            return null;
+        }
+        Matcher matcher = CHAVE_UNIX.matcher(chave.toString());
+        if (!matcher.find()) {
+            return null;
+        }
+        try {
+            return new long[]{Long.parseUnsignedLong(matcher.group(1), 16), Long.parseUnsignedLong(matcher.group(2))};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
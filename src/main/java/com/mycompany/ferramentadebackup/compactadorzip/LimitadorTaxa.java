@@ -0,0 +1,87 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limitador de taxa no modelo de balde de fichas (token bucket).
+ * <p>
+ * O balde é reabastecido continuamente na taxa configurada e comporta até um
+ * segundo de fichas, o que permite rajadas curtas. Cada chamada a
+ * {@link #adquirir(long)} retira a quantidade pedida; se o saldo ficar
+ * negativo, a thread espera o tempo necessário para quitá-lo. O limitador pode
+ * ser compartilhado por várias threads, e a taxa pode ser alterada a qualquer
+ * momento.
+ */
+public class LimitadorTaxa {
+
+    private double taxa;
+    private double disponivel;
+    private long ultimaReposicao = System.nanoTime();
+
+    /**
+     * Cria o limitador.
+     *
+     * @param taxaPorSegundo A quantidade de fichas por segundo. Valores menores
+     * ou iguais a zero desativam a limitação.
+     */
+    public LimitadorTaxa(double taxaPorSegundo) {
+        this.taxa = taxaPorSegundo;
+        this.disponivel = Math.max(0, taxaPorSegundo);
+    }
+
+    /**
+     * @return A quantidade de fichas por segundo, ou um valor menor ou igual a
+     * zero se a limitação estiver desativada.
+     */
+    public synchronized double getTaxa() {
+        return taxa;
+    }
+
+    /**
+     * Altera a taxa. A nova taxa vale para as próximas aquisições.
+     *
+     * @param taxaPorSegundo A quantidade de fichas por segundo. Valores menores
+     * ou iguais a zero desativam a limitação.
+     */
+    public synchronized void setTaxa(double taxaPorSegundo) {
+        repor();
+        this.taxa = taxaPorSegundo;
+        this.disponivel = Math.min(disponivel, Math.max(0, taxaPorSegundo));
+    }
+
+    /**
+     * Retira fichas do balde, esperando se o saldo não for suficiente.
+     *
+     * @param quantidade A quantidade de fichas (bytes, arquivos, ...).
+     * @throws InterruptedIOException Se a thread for interrompida durante a
+     * espera.
+     */
+    public void adquirir(long quantidade) throws InterruptedIOException {
+        long esperaNanos;
+        synchronized (this) {
+            if (taxa <= 0 || quantidade <= 0) {
+                return;
+            }
+            repor();
+            disponivel -= quantidade;
+            esperaNanos = disponivel >= 0 ? 0 : (long) (-disponivel / taxa * 1_000_000_000L);
+        }
+        if (esperaNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(esperaNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Espera do limitador de taxa interrompida");
+            }
+        }
+    }
+
+    private void repor() {
+        long agora = System.nanoTime();
+        if (taxa > 0) {
+            disponivel = Math.min(taxa, disponivel + (agora - ultimaReposicao) * taxa / 1_000_000_000L);
+        }
+        ultimaReposicao = agora;
+    }
+}
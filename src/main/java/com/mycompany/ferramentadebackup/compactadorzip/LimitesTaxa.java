@@ -0,0 +1,70 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+/**
+ * Limites de taxa de uma compactação: bytes por segundo lidos da origem,
+ * bytes por segundo gravados no destino e arquivos lidos por segundo.
+ * <p>
+ * Cada limite é um {@link LimitadorTaxa}. A leitura e a escrita têm baldes
+ * separados, ambos na taxa de bytes configurada, de modo que nenhum dos dois
+ * discos ultrapasse o limite. Os limites podem ser alterados a qualquer
+ * momento com {@link #definir(long, double)} e passam a valer imediatamente
+ * para a compactação em andamento, inclusive para os volumes gravados em
+ * paralelo.
+ */
+public class LimitesTaxa {
+
+    private final LimitadorTaxa leitura = new LimitadorTaxa(0);
+    private final LimitadorTaxa escrita = new LimitadorTaxa(0);
+    private final LimitadorTaxa arquivos = new LimitadorTaxa(0);
+
+    /**
+     * Define os limites.
+     *
+     * @param bytesPorSegundo O limite de leitura e de escrita em bytes por
+     * segundo, ou 0 para não limitar.
+     * @param arquivosPorSegundo O limite de arquivos lidos por segundo, ou 0
+     * para não limitar.
+     */
+    public void definir(long bytesPorSegundo, double arquivosPorSegundo) {
+        leitura.setTaxa(bytesPorSegundo);
+        escrita.setTaxa(bytesPorSegundo);
+        arquivos.setTaxa(arquivosPorSegundo);
+    }
+
+    /**
+     * @return O limite de leitura e de escrita em bytes por segundo, ou 0 se
+     * não houver limite.
+     */
+    public long getBytesPorSegundo() {
+        return (long) Math.max(0, leitura.getTaxa());
+    }
+
+    /**
+     * @return O limite de arquivos lidos por segundo, ou 0 se não houver
+     * limite.
+     */
+    public double getArquivosPorSegundo() {
+        return Math.max(0, arquivos.getTaxa());
+    }
+
+    /**
+     * @return O limitador dos bytes lidos da origem.
+     */
+    LimitadorTaxa getLeitura() {
+        return leitura;
+    }
+
+    /**
+     * @return O limitador dos bytes gravados no destino.
+     */
+    LimitadorTaxa getEscrita() {
+        return escrita;
+    }
+
+    /**
+     * @return O limitador dos arquivos lidos da origem.
+     */
+    LimitadorTaxa getArquivos() {
+        return arquivos;
+    }
+}
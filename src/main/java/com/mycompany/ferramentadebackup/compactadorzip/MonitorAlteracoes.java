@@ -0,0 +1,195 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Observação contínua de um diretório de origem, que registra no
+ * {@link DiarioAlteracoes} os arquivos criados, modificados e removidos.
+ * <p>
+ * Cada diretório da árvore é registrado no {@link WatchService} do sistema
+ * de arquivos (inotify no Linux), e uma thread própria passa os eventos para
+ * o diário. Um diretório criado é registrado e percorrido na hora, e os
+ * arquivos encontrados nele são registrados como criados, pois podem ter
+ * surgido antes do registro. Quando o sistema descarta eventos
+ * ({@link StandardWatchEventKinds#OVERFLOW}) ou um diretório não pode ser
+ * registrado, o diário passa a pedir uma varredura completa.
+ * <p>
+ * Os eventos ocorridos enquanto o monitor não estava em execução não são
+ * conhecidos; por isso, ao iniciar, o monitor também pede uma varredura
+ * completa, que no modo de acréscimo só lê os arquivos alterados.
+ */
+public class MonitorAlteracoes implements Closeable {
+
+    // Intervalo máximo entre as gravações do diário no arquivo
+    private static final long ESPERA_DESCARGA_MILLIS = 500;
+
+    private final Path origem;
+    private final Path ignorado;
+    private final DiarioAlteracoes diario;
+    private final WatchService servico;
+    private final Map<WatchKey, Path> diretorios = new HashMap<>();
+    private final Thread thread;
+
+    /**
+     * Registra a árvore da origem e inicia a thread do monitor.
+     *
+     * @param origem O diretório de origem.
+     * @param ignorado Um diretório cujas alterações não são registradas,
+     * como o de destino dentro da origem, ou {@code null}.
+     * @param diario O diário que recebe as alterações.
+     * @throws IOException Se o serviço de observação não puder ser criado.
+     */
+    public MonitorAlteracoes(Path origem, Path ignorado, DiarioAlteracoes diario) throws IOException {
+        this.origem = origem.toAbsolutePath().normalize();
+        this.ignorado = ignorado != null ? ignorado.toAbsolutePath().normalize() : null;
+        this.diario = diario;
+        this.servico = this.origem.getFileSystem().newWatchService();
+        diario.registrarEstouro();
+        registrarArvore(this.origem, false);
+        diario.descarregar();
+        this.thread = new Thread(this::executar, "monitor-" + this.origem);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * @return A quantidade de diretórios observados.
+     */
+    public synchronized int getDiretorios() {
+        return diretorios.size();
+    }
+
+    /**
+     * Para o monitor. As alterações já registradas continuam no diário.
+     */
+    @Override
+    public void close() throws IOException {
+        servico.close();
+        thread.interrupt();
+    }
+
+    private void executar() {
+        try {
+            while (true) {
+                WatchKey chave = servico.poll(ESPERA_DESCARGA_MILLIS, TimeUnit.MILLISECONDS);
+                if (chave == null) {
+                    diario.descarregar();
+                    continue;
+                }
+                processar(chave);
+                // Junta os eventos que chegaram em rajada antes de gravar o diário
+                while ((chave = servico.poll()) != null) {
+                    processar(chave);
+                }
+                diario.descarregar();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Monitor encerrado
+        } catch (IOException e) {
+            System.out.println("Monitor de alterações de " + origem + " interrompido: " + e.getMessage());
+        }
+    }
+
+    private void processar(WatchKey chave) throws IOException {
+        Path diretorio;
+        synchronized (this) {
+            diretorio = diretorios.get(chave);
+        }
+        for (WatchEvent<?> evento : chave.pollEvents()) {
+            if (evento.kind() == StandardWatchEventKinds.OVERFLOW || diretorio == null) {
+                diario.registrarEstouro();
+                continue;
+            }
+            Path caminho = diretorio.resolve((Path) evento.context());
+            if (isIgnorado(caminho)) {
+                continue;
+            }
+            if (evento.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                diario.registrar(DiarioAlteracoes.REMOVIDO, nome(caminho));
+            } else if (Files.isDirectory(caminho)) {
+                if (evento.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    registrarArvore(caminho, true);
+                }
+            } else {
+                diario.registrar(evento.kind() == StandardWatchEventKinds.ENTRY_CREATE ? DiarioAlteracoes.CRIADO
+                        : DiarioAlteracoes.MODIFICADO, nome(caminho));
+            }
+        }
+        if (!chave.reset()) {
+            synchronized (this) {
+                diretorios.remove(chave);
+            }
+        }
+    }
+
+    /**
+     * Registra um diretório e os seus subdiretórios no serviço de
+     * observação.
+     *
+     * @param raiz O diretório.
+     * @param novo Se o diretório acabou de ser criado: os arquivos dentro
+     * dele são registrados no diário.
+     */
+    private void registrarArvore(Path raiz, boolean novo) throws IOException {
+        try {
+            Files.walkFileTree(raiz, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path diretorio, BasicFileAttributes attrs) throws IOException {
+                    if (isIgnorado(diretorio)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    WatchKey chave = diretorio.register(servico, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    synchronized (MonitorAlteracoes.this) {
+                        diretorios.put(chave, diretorio);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes attrs) throws IOException {
+                    if (novo) {
+                        diario.registrar(DiarioAlteracoes.CRIADO, nome(arquivo));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path arquivo, IOException e) throws IOException {
+                    // Removido durante a varredura ou sem permissão: a próxima varredura completa o encontra
+                    diario.registrarEstouro();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            if (!Files.exists(raiz)) {
+                return;
+            }
+            // Por exemplo, o limite de diretórios observados do inotify
+            System.out.println("Não foi possível observar " + raiz + ": " + e.getMessage());
+            diario.registrarEstouro();
+        }
+    }
+
+    private boolean isIgnorado(Path caminho) {
+        return ignorado != null && caminho.startsWith(ignorado);
+    }
+
+    private String nome(Path caminho) {
+        return origem.relativize(caminho).toString();
+    }
+}
@@ -0,0 +1,26 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+/**
+ * Recebe os dados de cada entrada gravada pelo {@link CompactadorZip}.
+ * <p>
+ * É usado para montar o catálogo de arquivos dos backups. A chamada acontece
+ * na thread da compactação, logo depois de cada entrada ser finalizada, por
+ * isso as implementações devem apenas enfileirar os dados e retornar.
+ */
+public interface ObservadorEntradas {
+
+    /**
+     * Informa uma entrada gravada.
+     *
+     * @param arquivo O caminho do arquivo de backup (ou volume) que contém a
+     * entrada.
+     * @param nome O nome relativo da entrada.
+     * @param tamanho O tamanho original do conteúdo, em bytes.
+     * @param modificado O momento da última modificação, em milissegundos
+     * desde a época.
+     * @param crc O CRC-32 do conteúdo original.
+     * @param posicao A posição do cabeçalho da entrada no arquivo de backup, ou
+     * {@code -1} se o formato não permite ler a entrada diretamente.
+     */
+    void entradaGravada(String arquivo, String nome, long tamanho, long modificado, long crc, long posicao);
+}
@@ -0,0 +1,375 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Opções que controlam a execução de uma compactação.
+ * <p>
+ * Os valores padrão reproduzem o comportamento original do
+ * {@link CompactadorZip}, de modo que uma instância criada sem alterações
+ * produz o mesmo arquivo ZIP de antes.
+ */
+public class OpcoesCompactacao {
+
+    private PerfilCompressao perfilCompressao = PerfilCompressao.BALANCEADO;
+    private ProvedorFormatoArquivo formato = FormatosArquivo.obter(FormatosArquivo.PADRAO);
+    private boolean usarDicionario;
+    private long tamanhoVolume;
+    private ObservadorEntradas observador;
+    private boolean verificar;
+    private LimitesTaxa limites = new LimitesTaxa();
+    private List<Path> destinosAdicionais = Collections.emptyList();
+    private long atrasoMaximoDestinos = 64L * 1024 * 1024;
+    private Criptografia criptografia;
+    private AssinaturasDelta assinaturasDelta;
+    private AssinaturasDelta baseDelta;
+    private long tamanhoMinimoDelta = 64L * 1024 * 1024;
+    private CacheHashes cacheHashes;
+    private boolean deduplicar;
+    private boolean ordenarLeitura;
+    private int loteLeitura = 4096;
+    private boolean acrescentar;
+    private int percentualNaoReferenciado = 50;
+    private ControleConcorrencia concorrencia;
+
+    /**
+     * @return O perfil de compressão a ser usado nas entradas.
+     */
+    public PerfilCompressao getPerfilCompressao() {
+        return perfilCompressao;
+    }
+
+    /**
+     * @param perfilCompressao O perfil de compressão a ser usado. Se for
+     * {@code null}, é usado o perfil {@link PerfilCompressao#BALANCEADO}.
+     */
+    public void setPerfilCompressao(PerfilCompressao perfilCompressao) {
+        this.perfilCompressao = perfilCompressao != null ? perfilCompressao : PerfilCompressao.BALANCEADO;
+    }
+
+    /**
+     * @return O formato do arquivo de backup a ser gerado.
+     */
+    public ProvedorFormatoArquivo getFormato() {
+        return formato;
+    }
+
+    /**
+     * @param formato O formato do arquivo de backup. Se for {@code null}, é
+     * usado o formato ZIP.
+     */
+    public void setFormato(ProvedorFormatoArquivo formato) {
+        this.formato = formato != null ? formato : FormatosArquivo.obter(FormatosArquivo.PADRAO);
+    }
+
+    /**
+     * @return {@code true} se as entradas pequenas devem ser comprimidas com
+     * um dicionário compartilhado ({@link DicionarioDeflate}). Só tem efeito
+     * no formato ZIP com origem em diretório.
+     */
+    public boolean isUsarDicionario() {
+        return usarDicionario;
+    }
+
+    /**
+     * @param usarDicionario Define se o dicionário compartilhado deve ser
+     * usado.
+     */
+    public void setUsarDicionario(boolean usarDicionario) {
+        this.usarDicionario = usarDicionario;
+    }
+
+    /**
+     * @return O tamanho máximo de cada volume em bytes, ou {@code 0} para
+     * gravar um único arquivo.
+     */
+    public long getTamanhoVolume() {
+        return tamanhoVolume;
+    }
+
+    /**
+     * @param tamanhoVolume O tamanho máximo de cada volume em bytes. Valores
+     * menores ou iguais a zero desativam a divisão em volumes.
+     */
+    public void setTamanhoVolume(long tamanhoVolume) {
+        this.tamanhoVolume = Math.max(0, tamanhoVolume);
+    }
+
+    /**
+     * @return O observador que recebe as entradas gravadas, ou {@code null}.
+     */
+    public ObservadorEntradas getObservador() {
+        return observador;
+    }
+
+    /**
+     * @param observador O observador que recebe as entradas gravadas, usado
+     * para montar o catálogo de arquivos. Pode ser {@code null}.
+     */
+    public void setObservador(ObservadorEntradas observador) {
+        this.observador = observador;
+    }
+
+    /**
+     * @return {@code true} se o arquivo gravado deve ser conferido com a
+     * origem ao final da compactação. Só tem efeito nos formatos ZIP.
+     */
+    public boolean isVerificar() {
+        return verificar;
+    }
+
+    /**
+     * @param verificar Define se o CRC-32 e o tamanho de cada entrada gravada
+     * devem ser conferidos com os valores calculados na leitura da origem.
+     */
+    public void setVerificar(boolean verificar) {
+        this.verificar = verificar;
+    }
+
+    /**
+     * @return Os limites de taxa da compactação. Sem alterações, não há
+     * limite.
+     */
+    public LimitesTaxa getLimites() {
+        return limites;
+    }
+
+    /**
+     * @param limites Os limites de taxa da compactação, que podem ser
+     * alterados durante a execução. Se for {@code null}, não há limite.
+     */
+    public void setLimites(LimitesTaxa limites) {
+        this.limites = limites != null ? limites : new LimitesTaxa();
+    }
+
+    /**
+     * @return Os diretórios que recebem uma cópia de cada arquivo gravado,
+     * além do destino principal.
+     */
+    public List<Path> getDestinosAdicionais() {
+        return destinosAdicionais;
+    }
+
+    /**
+     * @param destinosAdicionais Os diretórios que recebem uma cópia de cada
+     * arquivo gravado. A origem é lida e comprimida uma única vez, e os bytes
+     * são gravados em todos os destinos em paralelo. Pode ser {@code null}.
+     */
+    public void setDestinosAdicionais(List<Path> destinosAdicionais) {
+        this.destinosAdicionais = destinosAdicionais != null
+                ? Collections.unmodifiableList(new ArrayList<>(destinosAdicionais)) : Collections.<Path>emptyList();
+    }
+
+    /**
+     * @return O máximo de bytes que a cópia de um destino adicional pode
+     * acumular atrás da gravação principal.
+     */
+    public long getAtrasoMaximoDestinos() {
+        return atrasoMaximoDestinos;
+    }
+
+    /**
+     * @param atrasoMaximoDestinos O máximo de bytes que a cópia de um destino
+     * adicional pode acumular atrás da gravação principal antes de a
+     * compactação esperar por ela. Valores menores que 1 MB são ajustados
+     * para 1 MB.
+     */
+    public void setAtrasoMaximoDestinos(long atrasoMaximoDestinos) {
+        this.atrasoMaximoDestinos = Math.max(1024L * 1024, atrasoMaximoDestinos);
+    }
+
+    /**
+     * @return A criptografia aplicada aos arquivos gravados, ou {@code null}
+     * se eles não forem cifrados.
+     */
+    public Criptografia getCriptografia() {
+        return criptografia;
+    }
+
+    /**
+     * @param criptografia A criptografia aplicada aos arquivos gravados, ou
+     * {@code null} para gravá-los sem criptografia. Com criptografia, a
+     * compactação não pode ser retomada e não há conferência com a origem,
+     * pois cada bloco do arquivo já é autenticado.
+     */
+    public void setCriptografia(Criptografia criptografia) {
+        this.criptografia = criptografia;
+    }
+
+    /**
+     * @return As assinaturas que recebem os arquivos grandes gravados, ou
+     * {@code null} se a gravação delta estiver desativada.
+     */
+    public AssinaturasDelta getAssinaturasDelta() {
+        return assinaturasDelta;
+    }
+
+    /**
+     * @param assinaturasDelta Um conjunto vazio que recebe as assinaturas de
+     * blocos dos arquivos grandes gravados, para que a próxima execução possa
+     * gravá-los como delta. Com {@code null}, a gravação delta fica
+     * desativada. Só tem efeito no formato ZIP.
+     */
+    public void setAssinaturasDelta(AssinaturasDelta assinaturasDelta) {
+        this.assinaturasDelta = assinaturasDelta;
+    }
+
+    /**
+     * @return As assinaturas do backup anterior, usado como base das entradas
+     * delta, ou {@code null}.
+     */
+    public AssinaturasDelta getBaseDelta() {
+        return baseDelta;
+    }
+
+    /**
+     * @param baseDelta As assinaturas do backup anterior, carregadas com
+     * {@link AssinaturasDelta#carregar}. O arquivo de backup indicado nelas
+     * precisa estar no mesmo diretório do novo backup. Com {@code null} ou sem
+     * assinaturas, os arquivos grandes são gravados inteiros.
+     */
+    public void setBaseDelta(AssinaturasDelta baseDelta) {
+        this.baseDelta = baseDelta;
+    }
+
+    /**
+     * @return O tamanho a partir do qual um arquivo é gravado como delta.
+     */
+    public long getTamanhoMinimoDelta() {
+        return tamanhoMinimoDelta;
+    }
+
+    /**
+     * @param tamanhoMinimoDelta O tamanho, em bytes, a partir do qual um
+     * arquivo é gravado como delta. Valores menores que 1 MB são ajustados
+     * para 1 MB.
+     */
+    public void setTamanhoMinimoDelta(long tamanhoMinimoDelta) {
+        this.tamanhoMinimoDelta = Math.max(1024L * 1024, tamanhoMinimoDelta);
+    }
+
+    /**
+     * @return O cache de hashes do conteúdo dos arquivos de origem, ou
+     * {@code null}.
+     */
+    public CacheHashes getCacheHashes() {
+        return cacheHashes;
+    }
+
+    /**
+     * @param cacheHashes O cache que recebe o hash do conteúdo de cada
+     * arquivo lido que ainda não estiver nele. O hash é calculado na mesma
+     * leitura da compressão, e um arquivo já presente no cache não tem o hash
+     * calculado de novo. Pode ser {@code null}.
+     */
+    public void setCacheHashes(CacheHashes cacheHashes) {
+        this.cacheHashes = cacheHashes;
+    }
+
+    /**
+     * @return Se os arquivos repetidos são gravados uma única vez.
+     */
+    public boolean isDeduplicar() {
+        return deduplicar;
+    }
+
+    /**
+     * @param deduplicar Se os arquivos repetidos dentro de um mesmo arquivo
+     * de backup devem ser gravados uma única vez ({@link DuplicadosZip}).
+     * Só tem efeito no formato ZIP; com um cache de hashes, os arquivos
+     * inalterados não precisam ser lidos para a comparação.
+     */
+    public void setDeduplicar(boolean deduplicar) {
+        this.deduplicar = deduplicar;
+    }
+
+    /**
+     * @return Se os arquivos de origem são lidos em lotes na ordem do disco.
+     */
+    public boolean isOrdenarLeitura() {
+        return ordenarLeitura;
+    }
+
+    /**
+     * @param ordenarLeitura Se os arquivos encontrados na varredura devem ser
+     * lidos em lotes, na ordem da sua localização no disco
+     * ({@link LeituraOrdenada}). Indicado para origens em discos rotativos.
+     */
+    public void setOrdenarLeitura(boolean ordenarLeitura) {
+        this.ordenarLeitura = ordenarLeitura;
+    }
+
+    /**
+     * @return A quantidade de arquivos de cada lote da leitura ordenada.
+     */
+    public int getLoteLeitura() {
+        return loteLeitura;
+    }
+
+    /**
+     * @param loteLeitura A quantidade de arquivos de cada lote da leitura
+     * ordenada. Lotes maiores aproximam mais a leitura sequencial, ao custo
+     * de guardar os atributos de mais arquivos em memória.
+     */
+    public void setLoteLeitura(int loteLeitura) {
+        this.loteLeitura = Math.max(1, loteLeitura);
+    }
+
+    /**
+     * @return Se as novas entradas são acrescentadas ao arquivo de destino
+     * existente.
+     */
+    public boolean isAcrescentar() {
+        return acrescentar;
+    }
+
+    /**
+     * @param acrescentar Se, quando o arquivo de destino já existe, as
+     * entradas dele devem ser mantidas e só os arquivos novos ou alterados
+     * gravados ao final, regravando apenas o diretório central
+     * ({@link AcrescimoZip}). Só tem efeito no formato ZIP, sem criptografia
+     * nem volumes, com origem em diretório.
+     */
+    public void setAcrescentar(boolean acrescentar) {
+        this.acrescentar = acrescentar;
+    }
+
+    /**
+     * @return O percentual do arquivo acrescentado que pode ficar sem
+     * referência antes de ele ser compactado.
+     */
+    public int getPercentualNaoReferenciado() {
+        return percentualNaoReferenciado;
+    }
+
+    /**
+     * @param percentualNaoReferenciado O percentual do arquivo, de 1 a 100,
+     * ocupado pelo conteúdo antigo dos arquivos substituídos nos acréscimos a
+     * partir do qual o arquivo é regravado só com as entradas referenciadas
+     * ({@link AcrescimoZip#compactar}). Com 100, o arquivo nunca é
+     * compactado.
+     */
+    public void setPercentualNaoReferenciado(int percentualNaoReferenciado) {
+        this.percentualNaoReferenciado = Math.max(1, Math.min(100, percentualNaoReferenciado));
+    }
+
+    /**
+     * @return O controle da quantidade de volumes gravados ao mesmo tempo,
+     * ou {@code null} para um volume por processador.
+     */
+    public ControleConcorrencia getConcorrencia() {
+        return concorrencia;
+    }
+
+    /**
+     * @param concorrencia O controle adaptativo da quantidade de volumes
+     * lidos e comprimidos ao mesmo tempo. Só tem efeito em backups divididos
+     * em volumes. Pode ser {@code null}.
+     */
+    public void setConcorrencia(ControleConcorrencia concorrencia) {
+        this.concorrencia = concorrencia;
+    }
+}
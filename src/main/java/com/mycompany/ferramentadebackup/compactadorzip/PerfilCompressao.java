@@ -0,0 +1,77 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.util.zip.Deflater;
+
+/**
+ * Perfis de compressão disponíveis para um agendamento de backup.
+ * <p>
+ * Cada perfil define o nível inicial do {@link Deflater}. O perfil
+ * {@link #ADAPTATIVO} começa no nível balanceado e ajusta o nível a cada
+ * entrada com base na velocidade medida de compressão e de escrita no
+ * destino (ver {@link SeletorNivelAdaptativo}).
+ */
+public enum PerfilCompressao {
+
+    /**
+     * Prioriza a velocidade; indicado quando a CPU é o gargalo (SSD para SSD).
+     */
+    RAPIDO("Mais rápido", Deflater.BEST_SPEED),
+    /**
+     * Nível padrão do deflate, equilíbrio entre tamanho e velocidade.
+     */
+    BALANCEADO("Balanceado", Deflater.DEFAULT_COMPRESSION),
+    /**
+     * Prioriza o menor tamanho; indicado para destinos lentos (discos USB).
+     */
+    MENOR("Menor tamanho", Deflater.BEST_COMPRESSION),
+    /**
+     * Ajusta o nível durante a execução para maximizar a vazão de ponta a
+     * ponta.
+     */
+    ADAPTATIVO("Adaptativo", 6);
+
+    private final String descricao;
+    private final int nivel;
+
+    PerfilCompressao(String descricao, int nivel) {
+        this.descricao = descricao;
+        this.nivel = nivel;
+    }
+
+    /**
+     * @return O nível inicial do deflate para o perfil.
+     */
+    public int getNivel() {
+        return nivel;
+    }
+
+    /**
+     * @return A descrição do perfil exibida na interface.
+     */
+    public String getDescricao() {
+        return descricao;
+    }
+
+    @Override
+    public String toString() {
+        return descricao;
+    }
+
+    /**
+     * Converte o nome gravado no banco de dados para o perfil correspondente.
+     *
+     * @param nome O nome do perfil (ex.: "RAPIDO"). Pode ser {@code null}.
+     * @return O perfil correspondente, ou {@link #BALANCEADO} se o nome for
+     * nulo ou desconhecido.
+     */
+    public static PerfilCompressao deNome(String nome) {
+        if (nome != null) {
+            for (PerfilCompressao perfil : values()) {
+                if (perfil.name().equalsIgnoreCase(nome.trim())) {
+                    return perfil;
+                }
+            }
+        }
+        return BALANCEADO;
+    }
+}
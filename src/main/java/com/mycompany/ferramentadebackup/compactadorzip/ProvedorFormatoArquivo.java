@@ -0,0 +1,52 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Interface de provedor (SPI) de formatos de arquivo de backup.
+ * <p>
+ * Os formatos embutidos são registrados em {@link FormatosArquivo}. Formatos
+ * adicionais podem ser fornecidos por bibliotecas externas declarando a
+ * implementação em
+ * {@code META-INF/services/com.mycompany.ferramentadebackup.compactadorzip.ProvedorFormatoArquivo},
+ * sendo carregados por {@link java.util.ServiceLoader}.
+ */
+public interface ProvedorFormatoArquivo {
+
+    /**
+     * @return O nome único do formato, gravado na coluna
+     * {@code formato_arquivo} do agendamento (ex.: "ZIP", "TAR_GZ").
+     */
+    String getNome();
+
+    /**
+     * @return A descrição do formato exibida na interface.
+     */
+    String getDescricao();
+
+    /**
+     * @return A extensão dos arquivos gerados, com o ponto (ex.: ".tar.gz").
+     */
+    String getExtensao();
+
+    /**
+     * Cria um escritor que grava o arquivo na stream de destino.
+     *
+     * @param destino A stream onde o arquivo será gravado. O escritor passa a
+     * ser o responsável por fechá-la.
+     * @param nivel O nível de compressão inicial (0 a 9, ou -1 para o padrão).
+     * @return O escritor do formato.
+     * @throws IOException Se ocorrer um erro ao iniciar o arquivo.
+     */
+    EscritorArquivo criarEscritor(OutputStream destino, int nivel) throws IOException;
+
+    /**
+     * @return {@code true} se a posição de uma entrada no arquivo gravado
+     * permite lê-la sem processar as anteriores. Formatos comprimidos como um
+     * fluxo único (ex.: TAR.GZ) devem retornar {@code false}.
+     */
+    default boolean isAcessoAleatorio() {
+        return true;
+    }
+}
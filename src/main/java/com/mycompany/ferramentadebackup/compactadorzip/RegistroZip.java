@@ -0,0 +1,113 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Dados de uma entrada já gravada por {@link GravadorZip}, suficientes para
+ * escrever o seu registro no diretório central.
+ * <p>
+ * Os registros das entradas concluídas são guardados no diário de
+ * compactação ({@link DiarioCompactacao}), o que permite retomar um arquivo
+ * interrompido: as entradas já gravadas continuam no arquivo parcial e só o
+ * diretório central precisa ser reescrito.
+ */
+class RegistroZip {
+
+    final String nome;
+    final int flags;
+    final int metodo;
+    final int horaDos;
+    final long modificado;
+    final long crc;
+    final long tamanhoComprimido;
+    final long tamanho;
+    final long posicaoCabecalho;
+    final int tamanhoCabecalhoLocal;
+    final byte[] extra;
+
+    RegistroZip(String nome, int flags, int metodo, int horaDos, long modificado, long crc,
+            long tamanhoComprimido, long tamanho, long posicaoCabecalho, int tamanhoCabecalhoLocal, byte[] extra) {
+        this.nome = nome;
+        this.flags = flags;
+        this.metodo = metodo;
+        this.horaDos = horaDos;
+        this.modificado = modificado;
+        this.crc = crc;
+        this.tamanhoComprimido = tamanhoComprimido;
+        this.tamanho = tamanho;
+        this.posicaoCabecalho = posicaoCabecalho;
+        this.tamanhoCabecalhoLocal = tamanhoCabecalhoLocal;
+        this.extra = extra != null ? extra : new byte[0];
+    }
+
+    /**
+     * Monta o registro dos mesmos dados com outro nome e outra data de
+     * modificação, para copiá-los como uma nova entrada
+     * ({@link GravadorZip#copiarEntrada}).
+     *
+     * @param novoNome O nome da nova entrada.
+     * @param novoModificado A data de modificação da nova entrada.
+     * @return O novo registro, que aponta para os dados desta entrada.
+     */
+    RegistroZip renomear(String novoNome, long novoModificado) {
+        return new RegistroZip(novoNome, flags, metodo, GravadorZip.horaDos(novoModificado), novoModificado, crc,
+                tamanhoComprimido, tamanho, posicaoCabecalho, tamanhoCabecalhoLocal, extra);
+    }
+
+    /**
+     * @return A posição do primeiro byte dos dados da entrada, logo após o
+     * cabeçalho local.
+     */
+    long posicaoDados() {
+        return posicaoCabecalho + tamanhoCabecalhoLocal;
+    }
+
+    /**
+     * @return Se a entrada é um diretório (o nome termina com "/").
+     */
+    boolean isDiretorio() {
+        return nome.endsWith("/");
+    }
+
+    byte[] nomeBytes() {
+        return nome.getBytes(StandardCharsets.UTF_8);
+    }
+
+    void escrever(DataOutput saida) throws IOException {
+        byte[] nomeBytes = nomeBytes();
+        saida.writeShort(nomeBytes.length);
+        saida.write(nomeBytes);
+        saida.writeShort(flags);
+        saida.writeShort(metodo);
+        saida.writeInt(horaDos);
+        saida.writeLong(modificado);
+        saida.writeLong(crc);
+        saida.writeLong(tamanhoComprimido);
+        saida.writeLong(tamanho);
+        saida.writeLong(posicaoCabecalho);
+        saida.writeInt(tamanhoCabecalhoLocal);
+        saida.writeShort(extra.length);
+        saida.write(extra);
+    }
+
+    static RegistroZip ler(DataInput entrada) throws IOException {
+        byte[] nomeBytes = new byte[entrada.readUnsignedShort()];
+        entrada.readFully(nomeBytes);
+        int flags = entrada.readUnsignedShort();
+        int metodo = entrada.readUnsignedShort();
+        int horaDos = entrada.readInt();
+        long modificado = entrada.readLong();
+        long crc = entrada.readLong();
+        long tamanhoComprimido = entrada.readLong();
+        long tamanho = entrada.readLong();
+        long posicaoCabecalho = entrada.readLong();
+        int tamanhoCabecalhoLocal = entrada.readInt();
+        byte[] extra = new byte[entrada.readUnsignedShort()];
+        entrada.readFully(extra);
+        return new RegistroZip(new String(nomeBytes, StandardCharsets.UTF_8), flags, metodo, horaDos, modificado, crc,
+                tamanhoComprimido, tamanho, posicaoCabecalho, tamanhoCabecalhoLocal, extra);
+    }
+}
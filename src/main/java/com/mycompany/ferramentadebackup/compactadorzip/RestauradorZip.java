@@ -0,0 +1,594 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * Classe para restauração dos arquivos ZIP gerados pelo {@link CompactadorZip}.
+ * <p>
+ * O diretório central de cada ZIP é lido uma única vez (na abertura do
+ * {@link ArquivoZip}) e as entradas selecionadas são extraídas em paralelo por um
+ * pool de threads, começando pelas maiores para equilibrar a carga. Cada
+ * arquivo de destino é pré-alocado com o tamanho final antes da escrita.
+ * <p>
+ * A seleção usa somente o diretório central: para restaurar um único arquivo
+ * ou uma subárvore, as demais entradas não são lidas. Backups divididos em
+ * volumes ({@code nome.part001.zip}, ...) são restaurados a partir de
+ * qualquer um dos volumes. Um arquivo isolado localizado pelo catálogo de
+ * arquivos é restaurado com {@link #restaurarArquivo}, que também aceita
+ * arquivos TAR sem compressão.
+ * <p>
+ * Além das entradas convencionais, a restauração entende as entradas
+ * comprimidas com o dicionário compartilhado ({@link DicionarioDeflate}),
+ * conferindo o CRC-32 do conteúdo original de cada uma. Entradas internas da
+ * ferramenta (como o próprio dicionário) não são extraídas.
+ * <p>
+ * Os backups cifrados pela {@link Criptografia} são lidos por um
+ * {@link CanalDecifrado}, que decifra só os blocos de que cada leitura
+ * precisa: a restauração de um único arquivo decifra o diretório central e a
+ * entrada, não o backup inteiro. A restauração precisa da senha do job.
+ * <p>
+ * As entradas delta ({@link DeltaArquivo}) são reconstruídas a partir do
+ * backup anterior indicado na receita, que precisa estar no mesmo diretório
+ * do backup restaurado ({@link BasesDelta}). Os arquivos repetidos gravados
+ * como referência ({@link DuplicadosZip}) são extraídos da entrada original
+ * para o próprio caminho, com a própria data de modificação.
+ */
+public class RestauradorZip {
+
+    // Prefixo das entradas de controle gravadas pela ferramenta
+    public static final String PREFIXO_INTERNO = ".ferramentadebackup/";
+
+    private static final Pattern VOLUME = Pattern.compile("(.*)\\.part(\\d{3})(\\.zip)$");
+
+    private static final int TAMANHO_BUFFER = 256 * 1024;
+
+    private static final int BLOCO_TAR = 512;
+
+    private RestauradorZip() {
+    }
+
+    /**
+     * Restaura todas as entradas de um arquivo ZIP para um diretório.
+     *
+     * @param arquivoZip O caminho do arquivo ZIP (ou de um de seus volumes).
+     * @param diretorioDestino O diretório onde os arquivos serão restaurados.
+     * @return A quantidade de arquivos restaurados.
+     * @throws IOException Se ocorrer um erro de leitura, de escrita, se uma
+     * entrada tentar sair do diretório de destino ou se o CRC-32 de uma
+     * entrada não conferir.
+     */
+    public static long restaurar(String arquivoZip, String diretorioDestino) throws IOException {
+        return restaurar(arquivoZip, diretorioDestino, null);
+    }
+
+    /**
+     * Restaura as entradas selecionadas de um arquivo ZIP para um diretório,
+     * em paralelo.
+     * <p>
+     * O filtro seleciona um arquivo (nome exato da entrada) ou uma subárvore
+     * (todas as entradas que começam com {@code filtro + "/"}). Um filtro nulo
+     * ou vazio restaura tudo.
+     *
+     * @param arquivoZip O caminho do arquivo ZIP (ou de um de seus volumes).
+     * @param diretorioDestino O diretório onde os arquivos serão restaurados.
+     * @param filtro O arquivo ou diretório a restaurar, relativo à raiz do
+     * backup. Pode ser {@code null}.
+     * @return A quantidade de arquivos restaurados.
+     * @throws IOException Se ocorrer um erro na restauração.
+     */
+    public static long restaurar(String arquivoZip, String diretorioDestino, String filtro) throws IOException {
+        return restaurar(arquivoZip, diretorioDestino, filtro, null);
+    }
+
+    /**
+     * Restaura as entradas selecionadas de um arquivo ZIP, cifrado ou não,
+     * para um diretório, em paralelo.
+     *
+     * @param arquivoZip O caminho do arquivo ZIP (ou de um de seus volumes).
+     * @param diretorioDestino O diretório onde os arquivos serão restaurados.
+     * @param filtro O arquivo ou diretório a restaurar, relativo à raiz do
+     * backup. Pode ser {@code null}.
+     * @param senha A senha do job, se o backup for cifrado. Pode ser
+     * {@code null}.
+     * @return A quantidade de arquivos restaurados.
+     * @throws IOException Se ocorrer um erro na restauração, se o backup for
+     * cifrado e a senha não for informada ou não conferir.
+     */
+    public static long restaurar(String arquivoZip, String diretorioDestino, String filtro, char[] senha) throws IOException {
+        long inicio = System.nanoTime();
+        Path destino = Paths.get(diretorioDestino).toAbsolutePath().normalize();
+        Files.createDirectories(destino);
+        String filtroNormalizado = normalizarFiltro(filtro);
+
+        List<ArquivoZip> abertos = new ArrayList<>();
+        BasesDelta bases = new BasesDelta(Paths.get(arquivoZip).toAbsolutePath().getParent(), destino, senha);
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Tarefa> tarefas = new ArrayList<>();
+            for (Path volume : localizarVolumes(Paths.get(arquivoZip))) {
+                ArquivoZip zip = abrirZip(volume, senha);
+                abertos.add(zip);
+                byte[] dicionario = DicionarioDeflate.ler(zip);
+                for (RegistroZip entrada : zip.getRegistros()) {
+                    if (!entrada.isDiretorio() && !entrada.nome.startsWith(PREFIXO_INTERNO)
+                            && selecionada(entrada.nome, filtroNormalizado)) {
+                        tarefas.add(new Tarefa(zip, entrada, dicionario, resolverDestino(destino, entrada.nome), -1));
+                    }
+                }
+                for (DuplicadosZip.Referencia referencia : DuplicadosZip.ler(zip).values()) {
+                    if (selecionada(referencia.nome, filtroNormalizado)) {
+                        tarefas.add(new Tarefa(zip, entradaOriginal(zip, referencia), dicionario,
+                                resolverDestino(destino, referencia.nome), referencia.modificado));
+                    }
+                }
+            }
+            if (filtroNormalizado != null && tarefas.isEmpty()) {
+                throw new IOException("Nenhuma entrada corresponde a: " + filtro);
+            }
+
+            // As maiores primeiro, para que nenhuma thread fique com uma entrada grande no final
+            Collections.sort(tarefas, (a, b) -> Long.compare(tamanhoOriginal(b.entrada), tamanhoOriginal(a.entrada)));
+
+            List<Future<?>> futuros = new ArrayList<>();
+            for (Tarefa tarefa : tarefas) {
+                futuros.add(pool.submit(() -> {
+                    try {
+                        restaurarEntrada(tarefa.zip, tarefa.entrada, tarefa.dicionario, tarefa.arquivo, bases);
+                        if (tarefa.modificado >= 0) {
+                            Files.setLastModifiedTime(tarefa.arquivo, FileTime.fromMillis(tarefa.modificado));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            for (Future<?> futuro : futuros) {
+                aguardar(futuro);
+            }
+            System.out.println("Restauração concluída: " + tarefas.size() + " arquivo(s).");
+            return tarefas.size();
+        } finally {
+            pool.shutdownNow();
+            for (ArquivoZip zip : abertos) {
+                zip.close();
+            }
+            bases.close();
+            MetricasBackup.restauracaoConcluida(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Restaura um único arquivo de um backup a partir da sua localização no
+     * catálogo.
+     * <p>
+     * Em um ZIP (ou volume), a entrada é buscada diretamente no diretório
+     * central daquele arquivo. Em um TAR sem compressão, a leitura começa na
+     * posição do cabeçalho da entrada, sem percorrer as anteriores. O arquivo
+     * é gravado no diretório de destino com o seu caminho relativo.
+     *
+     * @param arquivo O arquivo de backup (ou volume) que contém a entrada.
+     * @param nome O caminho relativo da entrada.
+     * @param posicao A posição do cabeçalho da entrada, ou {@code -1} se o
+     * formato não permite acesso direto.
+     * @param crc O CRC-32 esperado do conteúdo, ou {@code -1} para não
+     * conferir.
+     * @param diretorioDestino O diretório onde o arquivo será restaurado.
+     * @return O caminho do arquivo restaurado.
+     * @throws IOException Se a entrada não for encontrada, se o formato não
+     * permitir acesso direto ou se ocorrer um erro na restauração.
+     */
+    public static Path restaurarArquivo(String arquivo, String nome, long posicao, long crc, String diretorioDestino) throws IOException {
+        return restaurarArquivo(arquivo, nome, posicao, crc, diretorioDestino, null);
+    }
+
+    /**
+     * Restaura um único arquivo de um backup, cifrado ou não, a partir da sua
+     * localização no catálogo. Em um backup cifrado, só são decifrados os
+     * blocos com o diretório central e a entrada.
+     *
+     * @param arquivo O arquivo de backup (ou volume) que contém a entrada.
+     * @param nome O caminho relativo da entrada.
+     * @param posicao A posição do cabeçalho da entrada no arquivo decifrado,
+     * ou {@code -1} se o formato não permite acesso direto.
+     * @param crc O CRC-32 esperado do conteúdo, ou {@code -1} para não
+     * conferir.
+     * @param diretorioDestino O diretório onde o arquivo será restaurado.
+     * @param senha A senha do job, se o backup for cifrado. Pode ser
+     * {@code null}.
+     * @return O caminho do arquivo restaurado.
+     * @throws IOException Se a entrada não for encontrada, se o formato não
+     * permitir acesso direto, se a senha faltar ou não conferir ou se
+     * ocorrer um erro na restauração.
+     */
+    public static Path restaurarArquivo(String arquivo, String nome, long posicao, long crc, String diretorioDestino, char[] senha)
+            throws IOException {
+        long inicio = System.nanoTime();
+        Path destino = Paths.get(diretorioDestino).toAbsolutePath().normalize();
+        Path saida = resolverDestino(destino, nome);
+        BasesDelta bases = new BasesDelta(Paths.get(arquivo).toAbsolutePath().getParent(), destino, senha);
+        try {
+            if (arquivo.toLowerCase().endsWith(".zip")) {
+                try (ArquivoZip zip = abrirZip(Paths.get(arquivo), senha)) {
+                    RegistroZip entrada = zip.getRegistro(nome);
+                    DuplicadosZip.Referencia referencia = entrada == null ? DuplicadosZip.ler(zip).get(nome) : null;
+                    if (referencia != null) {
+                        entrada = entradaOriginal(zip, referencia);
+                    }
+                    if (entrada == null) {
+                        throw new IOException("Entrada não encontrada em " + arquivo + ": " + nome);
+                    }
+                    restaurarEntrada(zip, entrada, DicionarioDeflate.ler(zip), saida, bases);
+                    if (referencia != null) {
+                        Files.setLastModifiedTime(saida, FileTime.fromMillis(referencia.modificado));
+                    }
+                }
+            } else if (posicao >= 0) {
+                try (SeekableByteChannel tar = abrirCanal(Paths.get(arquivo), senha)) {
+                    restaurarEntradaTar(tar, posicao, crc, saida);
+                }
+            } else {
+                throw new IOException("O formato de " + arquivo + " não permite restaurar um arquivo isolado.");
+            }
+            return saida;
+        } finally {
+            bases.close();
+            MetricasBackup.restauracaoConcluida(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Localiza a entrada com o conteúdo de um arquivo repetido.
+     *
+     * @param zip O arquivo ZIP aberto.
+     * @param referencia A referência ao arquivo.
+     * @return A entrada original.
+     * @throws ZipException Se a entrada original não existir.
+     */
+    static RegistroZip entradaOriginal(ArquivoZip zip, DuplicadosZip.Referencia referencia) throws ZipException {
+        RegistroZip entrada = zip.getRegistro(referencia.original);
+        if (entrada == null) {
+            throw new ZipException("Entrada original não encontrada para " + referencia.nome + ": " + referencia.original);
+        }
+        return entrada;
+    }
+
+    /**
+     * Abre um arquivo ZIP de backup, cifrado ou não.
+     *
+     * @param arquivo O arquivo de backup.
+     * @param senha A senha do job, ou {@code null}.
+     * @return O arquivo aberto.
+     * @throws IOException Se o arquivo for cifrado e a senha faltar ou não
+     * conferir, ou se não for um ZIP válido.
+     */
+    static ArquivoZip abrirZip(Path arquivo, char[] senha) throws IOException {
+        return new ArquivoZip(abrirCanal(arquivo, senha), arquivo.toString());
+    }
+
+    /**
+     * Abre um arquivo de backup para leitura. Um arquivo cifrado é aberto
+     * por um {@link CanalDecifrado}, que decifra os blocos à medida que são
+     * lidos.
+     *
+     * @param arquivo O arquivo de backup.
+     * @param senha A senha do job, ou {@code null}.
+     * @return Um canal com o conteúdo legível do arquivo.
+     * @throws IOException Se o arquivo for cifrado e a senha faltar ou não
+     * conferir, ou se não puder ser aberto.
+     */
+    static SeekableByteChannel abrirCanal(Path arquivo, char[] senha) throws IOException {
+        if (!Criptografia.isCifrado(arquivo)) {
+            return FileChannel.open(arquivo, StandardOpenOption.READ);
+        }
+        if (senha == null || senha.length == 0) {
+            throw new IOException("O backup " + arquivo.getFileName() + " é criptografado; informe a senha do job.");
+        }
+        return Criptografia.abrirDecifrado(arquivo, senha);
+    }
+
+    static void excluir(List<Path> temporarios) {
+        for (Path temporario : temporarios) {
+            try {
+                Files.deleteIfExists(temporario);
+            } catch (IOException e) {
+                System.out.println("Não foi possível excluir o temporário " + temporario + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Copia o conteúdo de uma entrada TAR a partir da posição do seu
+     * cabeçalho, tratando o cabeçalho estendido PAX gravado pelo
+     * {@link EscritorTar}.
+     */
+    private static void restaurarEntradaTar(SeekableByteChannel canal, long posicao, long crcEsperado, Path arquivo) throws IOException {
+        if (arquivo.getParent() != null) {
+            Files.createDirectories(arquivo.getParent());
+        }
+        ByteBuffer cabecalho = ByteBuffer.allocate(BLOCO_TAR);
+        lerCompleto(canal, cabecalho, posicao);
+        long tamanho = octal(cabecalho.array(), 124, 12);
+        long modificado = octal(cabecalho.array(), 136, 12) * 1000;
+        long dados = posicao + BLOCO_TAR;
+
+        if (cabecalho.get(156) == 'x') {
+            ByteBuffer pax = ByteBuffer.allocate((int) tamanho);
+            lerCompleto(canal, pax, dados);
+            Long tamanhoPax = tamanhoPax(new String(pax.array(), StandardCharsets.UTF_8));
+            long proximo = dados + (tamanho + BLOCO_TAR - 1) / BLOCO_TAR * BLOCO_TAR;
+            cabecalho.clear();
+            lerCompleto(canal, cabecalho, proximo);
+            tamanho = tamanhoPax != null ? tamanhoPax : octal(cabecalho.array(), 124, 12);
+            dados = proximo + BLOCO_TAR;
+        }
+
+        System.out.println("Restaurando: " + arquivo);
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(TAMANHO_BUFFER);
+        try (RandomAccessFile saida = new RandomAccessFile(arquivo.toFile(), "rw"); FileChannel canalSaida = saida.getChannel()) {
+            saida.setLength(tamanho);
+            long copiados = 0;
+            while (copiados < tamanho) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), tamanho - copiados));
+                lerCompleto(canal, buffer, dados + copiados);
+                crc.update(buffer.array(), 0, buffer.limit());
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    copiados += canalSaida.write(buffer, copiados);
+                }
+            }
+        }
+        if (crcEsperado != -1 && crc.getValue() != crcEsperado) {
+            throw new IOException("CRC-32 inválido no arquivo " + arquivo);
+        }
+        Files.setLastModifiedTime(arquivo, FileTime.fromMillis(modificado));
+    }
+
+    private static void lerCompleto(SeekableByteChannel canal, ByteBuffer buffer, long posicao) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (LeitorDiretorioZip.lerEm(canal, buffer, posicao + buffer.position()) < 0) {
+                throw new EOFException("Fim inesperado do arquivo TAR");
+            }
+        }
+    }
+
+    private static long octal(byte[] cabecalho, int posicao, int tamanho) {
+        long valor = 0;
+        for (int i = posicao; i < posicao + tamanho && cabecalho[i] >= '0' && cabecalho[i] <= '7'; i++) {
+            valor = valor * 8 + (cabecalho[i] - '0');
+        }
+        return valor;
+    }
+
+    private static Long tamanhoPax(String registros) {
+        for (String registro : registros.split("\n")) {
+            int igual = registro.indexOf("size=");
+            if (igual > 0 && registro.charAt(igual - 1) == ' ') {
+                return Long.parseLong(registro.substring(igual + 5).trim());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Localiza todos os volumes de um backup dividido a partir de um deles.
+     * Para um arquivo que não é volume, devolve apenas o próprio arquivo.
+     *
+     * @param arquivo O arquivo ZIP ou um de seus volumes.
+     * @return Os volumes em ordem.
+     * @throws IOException Se ocorrer um erro ao listar o diretório.
+     */
+    static List<Path> localizarVolumes(Path arquivo) throws IOException {
+        Matcher matcher = VOLUME.matcher(arquivo.getFileName().toString());
+        if (!matcher.matches()) {
+            return Collections.singletonList(arquivo);
+        }
+        String prefixo = matcher.group(1) + ".part";
+        List<Path> volumes = new ArrayList<>();
+        Path diretorio = arquivo.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> irmaos = Files.newDirectoryStream(diretorio, prefixo.replace("[", "\\[") + "*" + matcher.group(3))) {
+            for (Path irmao : irmaos) {
+                Matcher outro = VOLUME.matcher(irmao.getFileName().toString());
+                if (outro.matches() && outro.group(1).equals(matcher.group(1))) {
+                    volumes.add(irmao);
+                }
+            }
+        }
+        Collections.sort(volumes);
+        return volumes;
+    }
+
+    /**
+     * Calcula o caminho de destino de uma entrada, impedindo que nomes como
+     * "../x" gravem fora do diretório de restauração.
+     *
+     * @param destino O diretório de restauração, normalizado.
+     * @param nome O nome da entrada.
+     * @return O caminho do arquivo restaurado.
+     * @throws IOException Se o nome apontar para fora do destino.
+     */
+    static Path resolverDestino(Path destino, String nome) throws IOException {
+        Path arquivo = destino.resolve(nome.replace('\\', '/')).normalize();
+        if (!arquivo.startsWith(destino)) {
+            throw new IOException("Entrada fora do diretório de destino: " + nome);
+        }
+        return arquivo;
+    }
+
+    /**
+     * Extrai uma entrada para o arquivo informado, conferindo o CRC-32.
+     * <p>
+     * O arquivo de destino é pré-alocado com o tamanho original da entrada e
+     * escrito por um {@link FileChannel} com buffer grande. Uma entrada delta
+     * é reconstruída sobre a versão do arquivo no backup base.
+     *
+     * @param zip O arquivo ZIP aberto.
+     * @param entrada A entrada a ser extraída.
+     * @param dicionario O dicionário do ZIP, ou {@code null}.
+     * @param arquivo O arquivo de destino.
+     * @param bases Os backups base das entradas delta.
+     * @throws IOException Se ocorrer um erro de leitura ou escrita, se o
+     * CRC-32 não conferir ou se o backup base de uma entrada delta não
+     * estiver disponível.
+     */
+    static void restaurarEntrada(ArquivoZip zip, RegistroZip entrada, byte[] dicionario, Path arquivo, BasesDelta bases) throws IOException {
+        long[] extra = DicionarioDeflate.lerExtra(entrada);
+        long crcEsperado = extra != null ? extra[1] : entrada.crc;
+        long tamanho = tamanhoOriginal(entrada);
+
+        if (arquivo.getParent() != null) {
+            Files.createDirectories(arquivo.getParent());
+        }
+        System.out.println("Restaurando: " + entrada.nome);
+
+        long[] delta = DeltaArquivo.lerExtra(entrada);
+        if (delta != null) {
+            aplicarDelta(zip, entrada, delta, arquivo, bases);
+            Files.setLastModifiedTime(arquivo, FileTime.fromMillis(entrada.modificado));
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[TAMANHO_BUFFER];
+        ByteBuffer envelope = ByteBuffer.wrap(buffer);
+        try (InputStream entradaZip = DicionarioDeflate.abrirEntrada(zip, entrada, dicionario);
+                RandomAccessFile saida = new RandomAccessFile(arquivo.toFile(), "rw");
+                FileChannel canal = saida.getChannel()) {
+            if (tamanho >= 0) {
+                saida.setLength(tamanho);
+            }
+            long escritos = 0;
+            int lidos;
+            while ((lidos = entradaZip.readNBytes(buffer, 0, buffer.length)) > 0) {
+                crc.update(buffer, 0, lidos);
+                envelope.clear().limit(lidos);
+                while (envelope.hasRemaining()) {
+                    escritos += canal.write(envelope, escritos);
+                }
+            }
+            saida.setLength(escritos);
+        }
+        if (crcEsperado != -1 && crc.getValue() != crcEsperado) {
+            throw new IOException("CRC-32 inválido na entrada " + entrada.nome);
+        }
+        Files.setLastModifiedTime(arquivo, FileTime.fromMillis(entrada.modificado));
+    }
+
+    /**
+     * Reconstrói o arquivo de uma entrada delta, aplicando a receita sobre a
+     * versão do arquivo no backup base.
+     */
+    private static void aplicarDelta(ArquivoZip zip, RegistroZip entrada, long[] original, Path arquivo, BasesDelta bases) throws IOException {
+        CRC32 crc = new CRC32();
+        long escritos;
+        try (DataInputStream receita = new DataInputStream(new BufferedInputStream(zip.abrir(entrada), TAMANHO_BUFFER))) {
+            DeltaArquivo.Cabecalho cabecalho = DeltaArquivo.lerCabecalho(receita);
+            Path base = bases.materializar(cabecalho.arquivoBase, entrada.nome);
+            try (FileChannel canalBase = FileChannel.open(base, StandardOpenOption.READ);
+                    RandomAccessFile saida = new RandomAccessFile(arquivo.toFile(), "rw");
+                    FileChannel canal = saida.getChannel()) {
+                if (canalBase.size() != cabecalho.tamanhoBase) {
+                    throw new ZipException("O backup base " + cabecalho.arquivoBase + " não corresponde à entrada " + entrada.nome);
+                }
+                saida.setLength(original[0]);
+                escritos = DeltaArquivo.aplicar(receita, canalBase, canal, crc, new byte[TAMANHO_BUFFER]);
+                saida.setLength(escritos);
+            }
+        }
+        if (escritos != original[0] || crc.getValue() != original[1]) {
+            throw new IOException("CRC-32 inválido na entrada " + entrada.nome);
+        }
+    }
+
+    private static long tamanhoOriginal(RegistroZip entrada) {
+        long[] extra = DicionarioDeflate.lerExtra(entrada);
+        if (extra == null) {
+            extra = DeltaArquivo.lerExtra(entrada);
+        }
+        return extra != null ? extra[0] : entrada.tamanho;
+    }
+
+    private static String normalizarFiltro(String filtro) {
+        if (filtro == null) {
+            return null;
+        }
+        String normalizado = filtro.trim().replace('\\', '/');
+        while (normalizado.startsWith("/")) {
+            normalizado = normalizado.substring(1);
+        }
+        while (normalizado.endsWith("/")) {
+            normalizado = normalizado.substring(0, normalizado.length() - 1);
+        }
+        return normalizado.isEmpty() ? null : normalizado;
+    }
+
+    private static boolean selecionada(String nome, String filtro) {
+        if (filtro == null) {
+            return true;
+        }
+        String nomeNormalizado = nome.replace('\\', '/');
+        return nomeNormalizado.equals(filtro) || nomeNormalizado.startsWith(filtro + "/");
+    }
+
+    private static void aguardar(Future<?> futuro) throws IOException {
+        try {
+            futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Restauração interrompida", e);
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            throw causa instanceof IOException ? (IOException) causa : new IOException(causa);
+        }
+    }
+
+    /**
+     * Entrada selecionada para restauração.
+     */
+    private static class Tarefa {
+
+        final ArquivoZip zip;
+        final RegistroZip entrada;
+        final byte[] dicionario;
+        final Path arquivo;
+        // Data de modificação de um arquivo repetido, ou -1 para usar a da entrada
+        final long modificado;
+
+        Tarefa(ArquivoZip zip, RegistroZip entrada, byte[] dicionario, Path arquivo, long modificado) {
+            this.zip = zip;
+            this.entrada = entrada;
+            this.dicionario = dicionario;
+            this.arquivo = arquivo;
+            this.modificado = modificado;
+        }
+    }
+}
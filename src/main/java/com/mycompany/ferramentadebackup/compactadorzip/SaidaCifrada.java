@@ -0,0 +1,164 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.crypto.SecretKey;
+
+/**
+ * Fluxo de saída que cifra os bytes escritos em blocos independentes, no
+ * formato descrito em {@link Criptografia}.
+ * <p>
+ * Cada bloco completo é cifrado por uma thread do pool enquanto o próximo é
+ * preenchido, e os blocos cifrados são gravados no destino na ordem em que
+ * foram escritos. A quantidade de blocos em andamento é limitada a quatro por
+ * thread; os buffers são reaproveitados, e a cifragem é feita no próprio
+ * buffer, de modo que a memória usada fica fixa.
+ * <p>
+ * Um bloco só é enviado quando chegam bytes do bloco seguinte, pois somente
+ * em {@link #close()} se sabe qual é o último; {@link #flush()} grava os
+ * blocos já cifrados, sem encerrar o bloco em preenchimento.
+ */
+class SaidaCifrada extends OutputStream {
+
+    private final OutputStream destino;
+    private final SecretKey chave;
+    private final byte[] cabecalho;
+    private final int tamanhoBloco;
+    private final int maximoPendentes;
+    private final ExecutorService pool;
+    private final ArrayDeque<Bloco> pendentes = new ArrayDeque<>();
+    private final ArrayDeque<byte[]> livres = new ArrayDeque<>();
+
+    private byte[] buffer;
+    private int usados;
+    private long indice;
+    private boolean fechado;
+
+    /**
+     * Grava o cabeçalho no destino e prepara a cifragem.
+     *
+     * @param destino O fluxo que recebe o arquivo cifrado.
+     * @param chave A chave derivada da senha.
+     * @param cabecalho O cabeçalho do arquivo, autenticado em todos os blocos.
+     * @param tamanhoBloco O tamanho do conteúdo de cada bloco.
+     * @param threads A quantidade de threads de cifragem.
+     * @throws IOException Se o cabeçalho não puder ser gravado.
+     */
+    SaidaCifrada(OutputStream destino, SecretKey chave, byte[] cabecalho, int tamanhoBloco, int threads) throws IOException {
+        this.destino = destino;
+        this.chave = chave;
+        this.cabecalho = cabecalho;
+        this.tamanhoBloco = tamanhoBloco;
+        this.maximoPendentes = 4 * Math.max(1, threads);
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads), tarefa -> {
+            Thread thread = new Thread(tarefa, "cifrador");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.buffer = new byte[tamanhoBloco + Criptografia.TAMANHO_ETIQUETA];
+        destino.write(cabecalho);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (fechado) {
+            throw new IOException("O fluxo cifrado já foi fechado");
+        }
+        while (len > 0) {
+            if (usados == tamanhoBloco) {
+                cifrarBloco(false);
+            }
+            int copiar = Math.min(len, tamanhoBloco - usados);
+            System.arraycopy(b, off, buffer, usados, copiar);
+            usados += copiar;
+            off += copiar;
+            len -= copiar;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        while (!pendentes.isEmpty() && pendentes.peek().cifrado.isDone()) {
+            gravar(pendentes.poll());
+        }
+        destino.flush();
+    }
+
+    /**
+     * Cifra o último bloco, grava os pendentes e fecha o destino.
+     *
+     * @throws IOException Se algum bloco não puder ser cifrado ou gravado.
+     */
+    @Override
+    public void close() throws IOException {
+        if (fechado) {
+            return;
+        }
+        try {
+            cifrarBloco(true);
+            fechado = true;
+            while (!pendentes.isEmpty()) {
+                gravar(pendentes.poll());
+            }
+        } finally {
+            fechado = true;
+            try {
+                destino.close();
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private void cifrarBloco(boolean ultimo) throws IOException {
+        byte[] dados = buffer;
+        int tamanho = usados;
+        long numero = indice++;
+        pendentes.add(new Bloco(dados, pool.submit(() -> Criptografia.cifrarBloco(chave, cabecalho, numero, ultimo, dados, tamanho))));
+
+        while (pendentes.size() > maximoPendentes) {
+            gravar(pendentes.poll());
+        }
+        buffer = livres.isEmpty() ? new byte[tamanhoBloco + Criptografia.TAMANHO_ETIQUETA] : livres.poll();
+        usados = 0;
+    }
+
+    private void gravar(Bloco bloco) throws IOException {
+        int tamanho;
+        try {
+            tamanho = bloco.cifrado.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Cifragem interrompida");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? new IOException(e.getCause().getMessage(), e.getCause()) : new IOException(e.getCause());
+        }
+        destino.write(bloco.dados, 0, tamanho);
+        livres.add(bloco.dados);
+    }
+
+    /**
+     * Um bloco em cifragem e o buffer que ele ocupa.
+     */
+    private static class Bloco {
+
+        final byte[] dados;
+        final Future<Integer> cifrado;
+
+        Bloco(byte[] dados, Future<Integer> cifrado) {
+            this.dados = dados;
+            this.cifrado = cifrado;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream de saída que conta os bytes efetivamente escritos no destino.
+ * <p>
+ * Além de manter o total da compactação em andamento, repassa cada escrita
+ * para as métricas de bytes escritos, permitindo acompanhar a vazão enquanto
+ * o backup ainda está em execução. O tempo gasto nas escritas também é
+ * acumulado, servindo de medida da velocidade do destino para o
+ * {@link SeletorNivelAdaptativo}. Um {@link LimitadorTaxa} opcional limita a
+ * vazão de escrita; a espera no limitador não é contada como tempo de
+ * escrita.
+ */
+class SaidaContadora extends FilterOutputStream {
+
+    private final LimitadorTaxa limitador;
+
+    private long bytesEscritos;
+    private long nanosEscrita;
+
+    SaidaContadora(OutputStream destino) {
+        this(destino, 0, null);
+    }
+
+    /**
+     * @param destino A stream de destino.
+     * @param posicaoInicial A quantidade de bytes já existente no destino, ao
+     * continuar um arquivo interrompido.
+     * @param limitador O limitador de bytes escritos por segundo, ou
+     * {@code null}.
+     */
+    SaidaContadora(OutputStream destino, long posicaoInicial, LimitadorTaxa limitador) {
+        super(destino);
+        this.bytesEscritos = posicaoInicial;
+        this.limitador = limitador;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (limitador != null) {
+            limitador.adquirir(1);
+        }
+        long inicio = System.nanoTime();
+        out.write(b);
+        nanosEscrita += System.nanoTime() - inicio;
+        bytesEscritos++;
+        MetricasBackup.bytesEscritos(1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (limitador != null) {
+            limitador.adquirir(len);
+        }
+        long inicio = System.nanoTime();
+        out.write(b, off, len);
+        nanosEscrita += System.nanoTime() - inicio;
+        bytesEscritos += len;
+        MetricasBackup.bytesEscritos(len);
+    }
+
+    /**
+     * @return A quantidade de bytes escritos até o momento, somada à posição
+     * inicial.
+     */
+    long getBytesEscritos() {
+        return bytesEscritos;
+    }
+
+    /**
+     * @return O tempo acumulado gasto em escritas no destino, em
+     * nanossegundos.
+     */
+    long getNanosEscrita() {
+        return nanosEscrita;
+    }
+}
@@ -0,0 +1,46 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fluxo de saída que grava os bytes no arquivo principal e envia uma cópia
+ * de cada bloco para as {@link EspelhoDestino cópias} em outros destinos.
+ * <p>
+ * Cada bloco é copiado uma única vez e compartilhado entre as cópias, que o
+ * gravam cada uma na sua thread. {@link #close()} fecha somente o arquivo
+ * principal; as cópias são concluídas pelo {@link CompactadorZip}.
+ */
+class SaidaEspelhada extends FilterOutputStream {
+
+    private final List<EspelhoDestino> espelhos;
+
+    /**
+     * @param principal O fluxo do arquivo principal.
+     * @param espelhos As cópias que recebem os mesmos bytes.
+     */
+    SaidaEspelhada(OutputStream principal, List<EspelhoDestino> espelhos) {
+        super(principal);
+        this.espelhos = espelhos;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        out.write(b, off, len);
+        byte[] bloco = Arrays.copyOfRange(b, off, off + len);
+        for (EspelhoDestino espelho : espelhos) {
+            espelho.enviar(bloco);
+        }
+    }
+}
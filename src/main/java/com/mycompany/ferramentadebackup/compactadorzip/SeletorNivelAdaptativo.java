@@ -0,0 +1,114 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.util.zip.Deflater;
+
+/**
+ * Escolhe o nível do {@link Deflater} para cada entrada do ZIP com base nas
+ * medições feitas durante a própria compactação.
+ * <p>
+ * Para cada entrada são informados os bytes lidos, o tempo gasto lendo a
+ * origem, o tempo gasto escrevendo no destino e o tempo total. O tempo de
+ * compressão é o que sobra após descontar leitura e escrita. As medições são
+ * acumuladas em janelas de pelo menos {@link #BYTES_POR_JANELA} bytes, para
+ * que arquivos pequenos não causem oscilações.
+ * <p>
+ * Ao fim de cada janela:
+ * <ul>
+ * <li>se a vazão caiu em relação à janela anterior após uma mudança de nível,
+ * a mudança é desfeita;</li>
+ * <li>se a escrita no destino domina o tempo, o nível sobe (menos bytes para
+ * escrever);</li>
+ * <li>se a compressão domina o tempo, o nível desce (menos CPU por byte).</li>
+ * </ul>
+ * Instâncias não são seguras para uso concorrente; cada compactação usa a sua.
+ */
+class SeletorNivelAdaptativo {
+
+    // Quantidade mínima de bytes lidos antes de reavaliar o nível
+    static final long BYTES_POR_JANELA = 8L * 1024 * 1024;
+
+    // Margem para considerar que um dos lados domina o tempo
+    private static final double MARGEM_DOMINANCIA = 1.25;
+
+    // Queda de vazão que faz desfazer a última mudança de nível
+    private static final double MARGEM_PIORA = 0.95;
+
+    private int nivel;
+    private int nivelAnterior;
+    private double vazaoAnterior;
+    private boolean acabouDeMudar;
+
+    private long bytesJanela;
+    private long nanosCompressao;
+    private long nanosEscrita;
+    private long nanosTotal;
+
+    /**
+     * @param nivelInicial O nível inicial do deflate (1 a 9).
+     */
+    SeletorNivelAdaptativo(int nivelInicial) {
+        this.nivel = limitar(nivelInicial);
+        this.nivelAnterior = this.nivel;
+    }
+
+    /**
+     * @return O nível a ser usado na próxima entrada.
+     */
+    int getNivel() {
+        return nivel;
+    }
+
+    /**
+     * Registra as medições de uma entrada e, ao completar uma janela,
+     * reavalia o nível.
+     *
+     * @param bytesLidos Os bytes lidos da origem para a entrada.
+     * @param nanosLeitura O tempo gasto lendo a origem.
+     * @param nanosEscritaDestino O tempo gasto escrevendo no destino.
+     * @param nanosEntrada O tempo total da entrada.
+     */
+    void registrar(long bytesLidos, long nanosLeitura, long nanosEscritaDestino, long nanosEntrada) {
+        bytesJanela += bytesLidos;
+        nanosEscrita += nanosEscritaDestino;
+        nanosCompressao += Math.max(0, nanosEntrada - nanosLeitura - nanosEscritaDestino);
+        nanosTotal += nanosEntrada;
+
+        if (bytesJanela >= BYTES_POR_JANELA && nanosTotal > 0) {
+            reavaliar();
+            bytesJanela = 0;
+            nanosCompressao = 0;
+            nanosEscrita = 0;
+            nanosTotal = 0;
+        }
+    }
+
+    private void reavaliar() {
+        double vazao = bytesJanela / (double) nanosTotal;
+
+        if (acabouDeMudar && vazao < vazaoAnterior * MARGEM_PIORA) {
+            // A última mudança piorou a vazão de ponta a ponta: volta atrás
+            int piorNivel = nivel;
+            nivel = nivelAnterior;
+            nivelAnterior = piorNivel;
+            acabouDeMudar = false;
+            vazaoAnterior = vazao;
+            return;
+        }
+
+        int novoNivel = nivel;
+        if (nanosEscrita > nanosCompressao * MARGEM_DOMINANCIA) {
+            novoNivel = limitar(nivel + 1);
+        } else if (nanosCompressao > nanosEscrita * MARGEM_DOMINANCIA) {
+            novoNivel = limitar(nivel - 1);
+        }
+
+        acabouDeMudar = novoNivel != nivel;
+        nivelAnterior = nivel;
+        nivel = novoNivel;
+        vazaoAnterior = vazao;
+    }
+
+    private static int limitar(int nivel) {
+        return Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, nivel));
+    }
+}
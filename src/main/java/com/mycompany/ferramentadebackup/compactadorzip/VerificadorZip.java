@@ -0,0 +1,294 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Classe para verificação da integridade dos arquivos ZIP gerados pelo
+ * {@link CompactadorZip}.
+ * <p>
+ * Cada entrada é descomprimida e o CRC-32 do conteúdo é comparado com o valor
+ * registrado no diretório central (ou, nas entradas comprimidas com o
+ * dicionário compartilhado, com o CRC-32 original gravado no campo extra).
+ * <p>
+ * A verificação em segundo plano usa
+ * {@link #verificar(Path, int, LimitadorTaxa)}, que distribui as entradas entre
+ * threads de baixa prioridade e limita a leitura do disco. A conferência ao
+ * final de um backup ({@link #conferir(Path, Map, long, int)}) compara o
+ * conteúdo descomprimido com o CRC-32 e o tamanho calculados na leitura da
+ * origem, e não com os gravados pelo próprio compactador.
+ */
+public class VerificadorZip {
+
+    private VerificadorZip() {
+    }
+
+    /**
+     * Verifica o CRC-32 de todas as entradas de um arquivo ZIP.
+     *
+     * @param arquivoZip O arquivo ZIP a ser verificado.
+     * @return A quantidade de entradas verificadas.
+     * @throws IOException Se o arquivo não puder ser lido ou se alguma entrada
+     * estiver corrompida.
+     */
+    public static long verificar(Path arquivoZip) throws IOException {
+        return verificar(arquivoZip, null);
+    }
+
+    /**
+     * Verifica o CRC-32 de todas as entradas de um arquivo ZIP, com a leitura
+     * limitada pelos bytes comprimidos lidos do disco.
+     *
+     * @param arquivoZip O arquivo ZIP a ser verificado.
+     * @param limitador O limitador de bytes lidos por segundo, ou
+     * {@code null}.
+     * @return A quantidade de entradas verificadas.
+     * @throws IOException Se o arquivo não puder ser lido ou se alguma entrada
+     * estiver corrompida.
+     */
+    static long verificar(Path arquivoZip, LimitadorTaxa limitador) throws IOException {
+        long entradasVerificadas = 0;
+        try (ArquivoZip zip = ArquivoZip.abrir(arquivoZip)) {
+            byte[] dicionario = DicionarioDeflate.ler(zip);
+            byte[] buffer = new byte[64 * 1024];
+            for (RegistroZip entrada : zip.getRegistros()) {
+                if (!entrada.isDiretorio()) {
+                    verificarEntrada(zip, entrada, dicionario, buffer, limitador);
+                    entradasVerificadas++;
+                }
+            }
+        }
+        return entradasVerificadas;
+    }
+
+    /**
+     * Verifica o CRC-32 de todas as entradas de um arquivo ZIP em paralelo,
+     * com a leitura limitada.
+     * <p>
+     * As entradas são distribuídas entre threads de prioridade mínima. O
+     * limitador é consumido com os bytes comprimidos lidos do disco, de modo
+     * que a taxa configurada corresponda à carga de E/S. A verificação para
+     * na primeira entrada corrompida.
+     *
+     * @param arquivoZip O arquivo ZIP a ser verificado.
+     * @param threads A quantidade de threads.
+     * @param limitador O limitador de bytes lidos por segundo, ou
+     * {@code null}.
+     * @return A quantidade de entradas verificadas.
+     * @throws IOException Se o arquivo não puder ser lido ou se alguma entrada
+     * estiver corrompida.
+     */
+    public static long verificar(Path arquivoZip, int threads, LimitadorTaxa limitador) throws IOException {
+        try (ArquivoZip zip = ArquivoZip.abrir(arquivoZip)) {
+            byte[] dicionario = DicionarioDeflate.ler(zip);
+            List<RegistroZip> entradas = new ArrayList<>();
+            for (RegistroZip entrada : zip.getRegistros()) {
+                if (!entrada.isDiretorio()) {
+                    entradas.add(entrada);
+                }
+            }
+            emParalelo(entradas, threads, Thread.MIN_PRIORITY, "verificador-zip",
+                    (entrada, buffer) -> verificarEntrada(zip, entrada, dicionario, buffer, limitador));
+            return entradas.size();
+        }
+    }
+
+    /**
+     * Confere um arquivo ZIP recém-gravado com o CRC-32 e o tamanho
+     * calculados na leitura da origem.
+     * <p>
+     * As entradas gravadas nesta compactação são lidas de volta do arquivo e
+     * descomprimidas, em paralelo, e o CRC-32 e o tamanho do conteúdo obtido
+     * são comparados com os da origem; como o arquivo acabou de ser gravado,
+     * a leitura vem em geral do cache de páginas do sistema. Uma entrada
+     * delta só pode ser reconstruída com o backup base: dela são conferidos o
+     * CRC-32 da receita gravada e os valores da origem guardados no campo
+     * extra. As entradas anteriores a {@code inicioNovos}, mantidas de um
+     * arquivo existente sem serem regravadas, são conferidas só pelo
+     * diretório central.
+     *
+     * @param arquivoZip O arquivo ZIP gravado.
+     * @param esperados O tamanho e o CRC-32 de cada entrada, pelo nome da
+     * entrada.
+     * @param inicioNovos A posição a partir da qual as entradas foram
+     * gravadas nesta compactação.
+     * @param threads A quantidade de threads.
+     * @return A quantidade de entradas lidas de volta e descomprimidas.
+     * @throws IOException Se o arquivo não puder ser lido, se faltar ou sobrar
+     * alguma entrada ou se o CRC-32 ou o tamanho de alguma divergir.
+     */
+    static long conferir(Path arquivoZip, Map<String, long[]> esperados, long inicioNovos, int threads) throws IOException {
+        try (ArquivoZip zip = ArquivoZip.abrir(arquivoZip)) {
+            byte[] dicionario = DicionarioDeflate.ler(zip);
+            Set<String> conferidas = new HashSet<>();
+            List<RegistroZip> gravadas = new ArrayList<>();
+            for (RegistroZip entrada : zip.getRegistros()) {
+                if (entrada.isDiretorio() || entrada.nome.startsWith(RestauradorZip.PREFIXO_INTERNO)) {
+                    continue;
+                }
+                long[] esperado = esperados.get(entrada.nome);
+                if (esperado == null || !conferidas.add(entrada.nome)) {
+                    throw new IOException("Entrada inesperada no backup: " + entrada.nome + " em " + arquivoZip);
+                }
+                if (entrada.posicaoCabecalho >= inicioNovos) {
+                    gravadas.add(entrada);
+                } else {
+                    long[] extra = DicionarioDeflate.lerExtra(entrada);
+                    if (extra == null) {
+                        extra = DeltaArquivo.lerExtra(entrada);
+                    }
+                    conferirValores(entrada, esperado, extra != null ? extra[0] : entrada.tamanho, extra != null ? extra[1] : entrada.crc, zip);
+                }
+            }
+            if (conferidas.size() != esperados.size()) {
+                throw new IOException((esperados.size() - conferidas.size()) + " arquivo(s) da origem ausente(s) em " + arquivoZip);
+            }
+            emParalelo(gravadas, threads, Thread.NORM_PRIORITY, "conferencia-zip",
+                    (entrada, buffer) -> conferirEntrada(zip, entrada, dicionario, esperados.get(entrada.nome), buffer));
+            return gravadas.size();
+        }
+    }
+
+    /**
+     * Descomprime uma entrada lida de volta do arquivo e compara o conteúdo
+     * com os valores da origem.
+     */
+    private static void conferirEntrada(ArquivoZip zip, RegistroZip entrada, byte[] dicionario, long[] esperado, byte[] buffer) throws IOException {
+        long[] delta = DeltaArquivo.lerExtra(entrada);
+        if (delta != null) {
+            verificarEntrada(zip, entrada, dicionario, buffer, null);
+            conferirValores(entrada, esperado, delta[0], delta[1], zip);
+            return;
+        }
+        CRC32 crc = new CRC32();
+        long tamanho = ler(zip, entrada, dicionario, buffer, crc, -1, null);
+        conferirValores(entrada, esperado, tamanho, crc.getValue(), zip);
+    }
+
+    private static void conferirValores(RegistroZip entrada, long[] esperado, long tamanho, long crc, ArquivoZip zip) throws IOException {
+        if (tamanho != esperado[0] || crc != esperado[1]) {
+            throw new IOException("Entrada divergente da origem: " + entrada.nome + " em " + zip.getNome());
+        }
+    }
+
+    /**
+     * Executa uma tarefa para cada entrada, distribuindo as entradas entre
+     * threads. A execução para na primeira entrada que falhar.
+     */
+    private static void emParalelo(List<RegistroZip> entradas, int threads, int prioridade, String nomeThread, TarefaEntrada tarefa)
+            throws IOException {
+        AtomicInteger proxima = new AtomicInteger();
+        AtomicBoolean falhou = new AtomicBoolean();
+        int quantidade = Math.max(1, Math.min(threads, entradas.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(quantidade, execucao -> {
+            Thread thread = new Thread(execucao, nomeThread);
+            thread.setDaemon(true);
+            thread.setPriority(prioridade);
+            return thread;
+        });
+        try {
+            List<Future<?>> futuros = new ArrayList<>();
+            for (int i = 0; i < quantidade; i++) {
+                futuros.add(pool.submit(() -> {
+                    byte[] buffer = new byte[64 * 1024];
+                    int indice;
+                    while (!falhou.get() && (indice = proxima.getAndIncrement()) < entradas.size()) {
+                        try {
+                            tarefa.executar(entradas.get(indice), buffer);
+                        } catch (IOException e) {
+                            falhou.set(true);
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> futuro : futuros) {
+                try {
+                    futuro.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Verificação interrompida");
+                } catch (ExecutionException e) {
+                    Throwable causa = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                    throw causa instanceof IOException ? (IOException) causa : new IOException(causa);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Verifica o CRC-32 de uma entrada.
+     *
+     * @param zip O arquivo ZIP aberto.
+     * @param entrada A entrada a ser verificada.
+     * @param dicionario O dicionário do ZIP, ou {@code null}.
+     * @param buffer O buffer de leitura.
+     * @throws IOException Se a entrada não puder ser lida ou se o CRC-32 ou o
+     * tamanho não conferirem.
+     */
+    static void verificarEntrada(ArquivoZip zip, RegistroZip entrada, byte[] dicionario, byte[] buffer) throws IOException {
+        verificarEntrada(zip, entrada, dicionario, buffer, null);
+    }
+
+    /**
+     * Verifica o CRC-32 de uma entrada, consumindo do limitador a parte
+     * comprimida correspondente a cada bloco lido.
+     */
+    private static void verificarEntrada(ArquivoZip zip, RegistroZip entrada, byte[] dicionario, byte[] buffer, LimitadorTaxa limitador) throws IOException {
+        long[] extra = DicionarioDeflate.lerExtra(entrada);
+        long crcEsperado = extra != null ? extra[1] : entrada.crc;
+        long tamanhoEsperado = extra != null ? extra[0] : entrada.tamanho;
+
+        CRC32 crc = new CRC32();
+        long tamanho = ler(zip, entrada, dicionario, buffer, crc, tamanhoEsperado, limitador);
+        if ((crcEsperado != -1 && crc.getValue() != crcEsperado) || (tamanhoEsperado != -1 && tamanho != tamanhoEsperado)) {
+            throw new IOException("Entrada corrompida: " + entrada.nome + " em " + zip.getNome());
+        }
+    }
+
+    /**
+     * Descomprime uma entrada, acumulando o CRC-32 do conteúdo.
+     *
+     * @return O tamanho do conteúdo descomprimido.
+     */
+    private static long ler(ArquivoZip zip, RegistroZip entrada, byte[] dicionario, byte[] buffer, CRC32 crc, long tamanhoEsperado,
+            LimitadorTaxa limitador) throws IOException {
+        long tamanho = 0;
+        try (InputStream entradaZip = DicionarioDeflate.abrirEntrada(zip, entrada, dicionario)) {
+            int lidos;
+            while ((lidos = entradaZip.read(buffer)) > 0) {
+                crc.update(buffer, 0, lidos);
+                tamanho += lidos;
+                if (limitador != null) {
+                    limitador.adquirir(tamanhoEsperado > 0 ? lidos * entrada.tamanhoComprimido / tamanhoEsperado : lidos);
+                }
+            }
+        }
+        return tamanho;
+    }
+
+    /**
+     * Uma tarefa executada para cada entrada, com o buffer da thread.
+     */
+    private interface TarefaEntrada {
+
+        void executar(RegistroZip entrada, byte[] buffer) throws IOException;
+    }
+}
@@ -1,6 +1,8 @@
 package com.mycompany.ferramentadebackup.dao;
 
+import com.mycompany.ferramentadebackup.compactadorzip.Criptografia;
 import com.mycompany.ferramentadebackup.dto.BancoDeDadosDTO;
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -9,6 +11,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import javax.swing.JOptionPane;
 
@@ -30,6 +33,9 @@ import javax.swing.JOptionPane;
  * <li>{@link #editar(BancoDeDadosDTO)} - Atualiza um registro existente.</li>
  * <li>{@link #excluir(BancoDeDadosDTO)} - Exclui um registro específico.</li>
  * <li>{@link #listar()} - Lista todos os registros da tabela.</li>
+ * <li>{@link #buscarPorId(int)} - Busca um registro pelo ID.</li>
+ * <li>{@link #editarOpcoesAvancadas(BancoDeDadosDTO)} - Atualiza as opções
+ * avançadas de compactação de um registro.</li>
  * <li>{@link #verificarDataHoraAtual()} - Verifica se a data e hora atuais
  * correspondem a algum registro.</li>
  * <li>{@link #verificarDataHoraAtualArquivos()} - Busca um registro pela data e
@@ -65,8 +71,33 @@ public class BancoDeDadosDAO {
      * <li>desligar_pc - TEXT NOT NULL</li>
      * <li>nome_backup - TEXT NOT NULL</li>
      * <li>hora - TEXT NULL</li>
+     * <li>perfil_compressao - TEXT NOT NULL DEFAULT 'BALANCEADO'</li>
+     * <li>formato_arquivo - TEXT NOT NULL DEFAULT 'ZIP'</li>
+     * <li>dicionario_compressao - TEXT NOT NULL DEFAULT 'Não'</li>
+     * <li>tamanho_volume_mb - INTEGER NOT NULL DEFAULT 0</li>
+     * <li>verificar_backup - TEXT NOT NULL DEFAULT 'Não'</li>
+     * <li>limite_mbps - INTEGER NOT NULL DEFAULT 0</li>
+     * <li>limite_arquivos_segundo - INTEGER NOT NULL DEFAULT 0</li>
+     * <li>limite_somente_horario - TEXT NOT NULL DEFAULT 'Não'</li>
+     * <li>limite_inicio - TEXT NOT NULL DEFAULT '08:00'</li>
+     * <li>limite_fim - TEXT NOT NULL DEFAULT '18:00'</li>
+     * <li>destinos_adicionais - TEXT NOT NULL DEFAULT ''</li>
+     * <li>verificador_senha - TEXT NOT NULL DEFAULT ''</li>
+     * <li>retencao_ultimos - INTEGER NOT NULL DEFAULT 0</li>
+     * <li>retencao_diarios - INTEGER NOT NULL DEFAULT 0</li>
+     * <li>retencao_semanais - INTEGER NOT NULL DEFAULT 0</li>
+     * <li>retencao_mensais - INTEGER NOT NULL DEFAULT 0</li>
+     * <li>delta_arquivos_grandes - TEXT NOT NULL DEFAULT 'Não'</li>
+     * <li>deduplicar_arquivos - TEXT NOT NULL DEFAULT 'Não'</li>
+     * <li>backup_continuo - TEXT NOT NULL DEFAULT 'Não'</li>
      * </ul>
      * <p>
+     * As colunas das opções avançadas são acrescentadas com {@code ALTER TABLE}
+     * quando o banco de dados foi criado por uma versão anterior da aplicação.
+     * Um banco que ainda guarda as senhas de criptografia na coluna
+     * 'senha_criptografia' passa a guardar só o verificador de cada senha
+     * ({@link #migrarSenhasCriptografia(Connection, Statement)}).
+     * <p>
      * Em caso de falha na conexão com o banco de dados ou execução do SQL, uma
      * mensagem de erro é exibida para o usuário através de um JOptionPane.
      */
@@ -82,11 +113,34 @@ public class BancoDeDadosDAO {
                 + "nome_backup TEXT NOT NULL,"
                 + "hora TEXT NULL);";
 
+        long inicio = System.nanoTime();
         try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
 
             // Criar a tabela se ela não existir
             stmt.execute(sql);
 
+            // Acrescentar as colunas das opções avançadas em bancos antigos
+            adicionarColunaSeNecessario(stmt, "perfil_compressao", "TEXT NOT NULL DEFAULT 'BALANCEADO'");
+            adicionarColunaSeNecessario(stmt, "formato_arquivo", "TEXT NOT NULL DEFAULT 'ZIP'");
+            adicionarColunaSeNecessario(stmt, "dicionario_compressao", "TEXT NOT NULL DEFAULT 'Não'");
+            adicionarColunaSeNecessario(stmt, "tamanho_volume_mb", "INTEGER NOT NULL DEFAULT 0");
+            adicionarColunaSeNecessario(stmt, "verificar_backup", "TEXT NOT NULL DEFAULT 'Não'");
+            adicionarColunaSeNecessario(stmt, "limite_mbps", "INTEGER NOT NULL DEFAULT 0");
+            adicionarColunaSeNecessario(stmt, "limite_arquivos_segundo", "INTEGER NOT NULL DEFAULT 0");
+            adicionarColunaSeNecessario(stmt, "limite_somente_horario", "TEXT NOT NULL DEFAULT 'Não'");
+            adicionarColunaSeNecessario(stmt, "limite_inicio", "TEXT NOT NULL DEFAULT '08:00'");
+            adicionarColunaSeNecessario(stmt, "limite_fim", "TEXT NOT NULL DEFAULT '18:00'");
+            adicionarColunaSeNecessario(stmt, "destinos_adicionais", "TEXT NOT NULL DEFAULT ''");
+            adicionarColunaSeNecessario(stmt, "verificador_senha", "TEXT NOT NULL DEFAULT ''");
+            adicionarColunaSeNecessario(stmt, "retencao_ultimos", "INTEGER NOT NULL DEFAULT 0");
+            adicionarColunaSeNecessario(stmt, "retencao_diarios", "INTEGER NOT NULL DEFAULT 0");
+            adicionarColunaSeNecessario(stmt, "retencao_semanais", "INTEGER NOT NULL DEFAULT 0");
+            adicionarColunaSeNecessario(stmt, "retencao_mensais", "INTEGER NOT NULL DEFAULT 0");
+            adicionarColunaSeNecessario(stmt, "delta_arquivos_grandes", "TEXT NOT NULL DEFAULT 'Não'");
+            adicionarColunaSeNecessario(stmt, "deduplicar_arquivos", "TEXT NOT NULL DEFAULT 'Não'");
+            adicionarColunaSeNecessario(stmt, "backup_continuo", "TEXT NOT NULL DEFAULT 'Não'");
+            migrarSenhasCriptografia(conn, stmt);
+
             // Verificar se a tabela está vazia
             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) AS count FROM dados_backup");
             if (rs.next() && rs.getInt("count") == 0) {
@@ -97,6 +151,73 @@ public class BancoDeDadosDAO {
 
         } catch (SQLException e) {
             JOptionPane.showMessageDialog(null, "Error Método Verificar e Criar Banco de Dados" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Acrescenta uma coluna à tabela 'dados_backup' caso ela ainda não exista.
+     * <p>
+     * O SQLite não suporta {@code ADD COLUMN IF NOT EXISTS}, por isso as
+     * colunas existentes são consultadas com {@code PRAGMA table_info}.
+     *
+     * @param stmt O statement da conexão aberta.
+     * @param coluna O nome da coluna.
+     * @param definicao O tipo e as restrições da coluna.
+     * @throws SQLException Se ocorrer um erro ao consultar ou alterar a tabela.
+     */
+    private void adicionarColunaSeNecessario(Statement stmt, String coluna, String definicao) throws SQLException {
+        if (!existeColuna(stmt, coluna)) {
+            stmt.execute("ALTER TABLE dados_backup ADD COLUMN " + coluna + " " + definicao);
+        }
+    }
+
+    private boolean existeColuna(Statement stmt, String coluna) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(dados_backup)")) {
+            while (rs.next()) {
+                if (coluna.equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Substitui as senhas de criptografia gravadas por versões anteriores na
+     * coluna 'senha_criptografia' pelo verificador de cada uma e apaga a
+     * senha. A coluna continua na tabela, vazia, pois o SQLite usado não
+     * remove colunas; o {@code VACUUM} final regrava o arquivo do banco sem
+     * as páginas que ainda continham as senhas.
+     *
+     * @param conn A conexão com o banco de dados.
+     * @param stmt Um statement da conexão.
+     * @throws SQLException Se a migração falhar.
+     */
+    private void migrarSenhasCriptografia(Connection conn, Statement stmt) throws SQLException {
+        if (!existeColuna(stmt, "senha_criptografia")) {
+            return;
+        }
+        int migradas = 0;
+        try (ResultSet rs = stmt.executeQuery("SELECT id, senha_criptografia FROM dados_backup WHERE senha_criptografia <> ''");
+                PreparedStatement pstmt = conn.prepareStatement("UPDATE dados_backup SET verificador_senha = ?, senha_criptografia = '' WHERE id = ?")) {
+            while (rs.next()) {
+                char[] senha = rs.getString("senha_criptografia").toCharArray();
+                try {
+                    pstmt.setString(1, Criptografia.criarVerificador(senha));
+                } finally {
+                    Arrays.fill(senha, '\0');
+                }
+                pstmt.setInt(2, rs.getInt("id"));
+                pstmt.addBatch();
+                migradas++;
+            }
+            pstmt.executeBatch();
+        }
+        if (migradas > 0) {
+            stmt.execute("VACUUM");
+            System.out.println(migradas + " senha(s) de criptografia substituída(s) pelo verificador.");
         }
     }
 
@@ -126,6 +247,8 @@ public class BancoDeDadosDAO {
     public void cadastrar(BancoDeDadosDTO objBancoDeDadosDTO) {
         String sql = "INSERT INTO dados_backup (diretorio_origem, diretorio_destino, data, desligar_pc, nome_backup, hora) VALUES (?, ?, ?, ?, ?, ?)";
 
+        long inicio = System.nanoTime();
+        boolean gravado = false;
         try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, objBancoDeDadosDTO.getDiretorioOrigem());
             pstmt.setString(2, objBancoDeDadosDTO.getDiretorioDestino());
@@ -134,11 +257,15 @@ public class BancoDeDadosDAO {
             pstmt.setString(5, objBancoDeDadosDTO.getNomeBackup());
             pstmt.setString(6, objBancoDeDadosDTO.getHora());
             pstmt.executeUpdate();
-
-            JOptionPane.showMessageDialog(null, "Cadastro realizado!", "Informação", JOptionPane.INFORMATION_MESSAGE);
-
+            gravado = true;
         } catch (SQLException e) {
             JOptionPane.showMessageDialog(null, "Error Método Cadastrar" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+
+        if (gravado) {
+            JOptionPane.showMessageDialog(null, "Cadastro realizado!", "Informação", JOptionPane.INFORMATION_MESSAGE);
         }
     }
 
@@ -171,6 +298,8 @@ public class BancoDeDadosDAO {
     public void editar(BancoDeDadosDTO objBancoDeDadosDTO) {
         String sql = "UPDATE dados_backup SET diretorio_origem = ?, diretorio_destino = ?, data = ?, desligar_pc = ?, nome_backup = ?, hora = ? WHERE id = ?";
 
+        long inicio = System.nanoTime();
+        boolean gravado = false;
         try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, objBancoDeDadosDTO.getDiretorioOrigem());
             pstmt.setString(2, objBancoDeDadosDTO.getDiretorioDestino());
@@ -181,11 +310,15 @@ public class BancoDeDadosDAO {
             pstmt.setInt(7, objBancoDeDadosDTO.getId());
 
             pstmt.executeUpdate();
-
-            JOptionPane.showMessageDialog(null, "Agendamento de Buckup Atualizado!", "Informação", JOptionPane.INFORMATION_MESSAGE);
-
+            gravado = true;
         } catch (SQLException e) {
             JOptionPane.showMessageDialog(null, "Error Método Editar" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+
+        if (gravado) {
+            JOptionPane.showMessageDialog(null, "Agendamento de Buckup Atualizado!", "Informação", JOptionPane.INFORMATION_MESSAGE);
         }
     }
 
@@ -197,14 +330,20 @@ public class BancoDeDadosDAO {
     public void excluir(BancoDeDadosDTO objBancoDeDadosDTO) {
         String sql = "DELETE FROM dados_backup WHERE id = ?";
 
+        long inicio = System.nanoTime();
+        boolean gravado = false;
         try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, objBancoDeDadosDTO.getId());
             pstmt.executeUpdate();
-
-            JOptionPane.showMessageDialog(null, "Agendado de Backup Ecluído!", "Informação", JOptionPane.INFORMATION_MESSAGE);
-
+            gravado = true;
         } catch (SQLException e) {
             JOptionPane.showMessageDialog(null, "Error Método Excluir" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+
+        if (gravado) {
+            JOptionPane.showMessageDialog(null, "Agendado de Backup Ecluído!", "Informação", JOptionPane.INFORMATION_MESSAGE);
         }
     }
 
@@ -231,6 +370,7 @@ public class BancoDeDadosDAO {
     public ArrayList<BancoDeDadosDTO> listar() {
         String sql = "SELECT * FROM dados_backup";
 
+        long inicio = System.nanoTime();
         try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
@@ -245,17 +385,149 @@ public class BancoDeDadosDAO {
                 objBancoDeDadosDTO.setDesligarPC(rs.getString("desligar_pc"));
                 objBancoDeDadosDTO.setNomeBackup(rs.getString("nome_backup"));
                 objBancoDeDadosDTO.setHora(rs.getString("hora"));
+                mapearOpcoesAvancadas(rs, objBancoDeDadosDTO);
 
                 // Adiciona o objeto à lista 'lista'
                 lista.add(objBancoDeDadosDTO);
             }
         } catch (SQLException e) {
             JOptionPane.showMessageDialog(null, "Error Método Listar" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
         }
 
         return lista;
     }
 
+    /**
+     * Busca um registro da tabela 'dados_backup' pelo ID.
+     * <p>
+     * Estrutura da consulta SQL:
+     * <pre>
+     * SELECT * FROM dados_backup WHERE id = ?
+     * </pre>
+     *
+     * @param id O ID do agendamento.
+     * @return Um objeto {@link BancoDeDadosDTO} com todos os dados do
+     * registro, ou {@code null} se não houver registro com o ID ou em caso de
+     * erro na consulta.
+     */
+    public BancoDeDadosDTO buscarPorId(int id) {
+        String sql = "SELECT * FROM dados_backup WHERE id = ?";
+
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, id);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                BancoDeDadosDTO dto = new BancoDeDadosDTO();
+                dto.setId(rs.getInt("id"));
+                dto.setDiretorioOrigem(rs.getString("diretorio_origem"));
+                dto.setDiretorioDestino(rs.getString("diretorio_destino"));
+                dto.setData(rs.getString("data"));
+                dto.setDesligarPC(rs.getString("desligar_pc"));
+                dto.setNomeBackup(rs.getString("nome_backup"));
+                dto.setHora(rs.getString("hora"));
+                mapearOpcoesAvancadas(rs, dto);
+                return dto;
+            }
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Buscar por ID" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+        return null;
+    }
+
+    /**
+     * Atualiza as opções avançadas de compactação de um registro existente na
+     * tabela 'dados_backup'.
+     * <p>
+     * Estrutura da atualização SQL:
+     * <pre>
+     * UPDATE dados_backup SET perfil_compressao = ?, formato_arquivo = ?,
+     * dicionario_compressao = ?, tamanho_volume_mb = ?, verificar_backup = ?,
+     * limite_mbps = ?, limite_arquivos_segundo = ?, limite_somente_horario = ?,
+     * limite_inicio = ?, limite_fim = ?, destinos_adicionais = ?,
+     * verificador_senha = ?, retencao_ultimos = ?, retencao_diarios = ?,
+     * retencao_semanais = ?, retencao_mensais = ?, delta_arquivos_grandes = ?,
+     * deduplicar_arquivos = ?, backup_continuo = ? WHERE id = ?
+     * </pre>
+     *
+     * @param objBancoDeDadosDTO Objeto {@link BancoDeDadosDTO} contendo as
+     * opções avançadas e o ID do registro a ser editado.
+     */
+    public void editarOpcoesAvancadas(BancoDeDadosDTO objBancoDeDadosDTO) {
+        String sql = "UPDATE dados_backup SET perfil_compressao = ?, formato_arquivo = ?, dicionario_compressao = ?, tamanho_volume_mb = ?, verificar_backup = ?, limite_mbps = ?, limite_arquivos_segundo = ?, limite_somente_horario = ?, limite_inicio = ?, limite_fim = ?, destinos_adicionais = ?, verificador_senha = ?, retencao_ultimos = ?, retencao_diarios = ?, retencao_semanais = ?, retencao_mensais = ?, delta_arquivos_grandes = ?, deduplicar_arquivos = ?, backup_continuo = ? WHERE id = ?";
+
+        long inicio = System.nanoTime();
+        boolean gravado = false;
+        try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, objBancoDeDadosDTO.getPerfilCompressao());
+            pstmt.setString(2, objBancoDeDadosDTO.getFormatoArquivo());
+            pstmt.setString(3, objBancoDeDadosDTO.getDicionarioCompressao());
+            pstmt.setInt(4, objBancoDeDadosDTO.getTamanhoVolumeMB());
+            pstmt.setString(5, objBancoDeDadosDTO.getVerificarBackup());
+            pstmt.setInt(6, objBancoDeDadosDTO.getLimiteMBps());
+            pstmt.setInt(7, objBancoDeDadosDTO.getLimiteArquivosSegundo());
+            pstmt.setString(8, objBancoDeDadosDTO.getLimiteSomenteHorario());
+            pstmt.setString(9, objBancoDeDadosDTO.getLimiteInicio());
+            pstmt.setString(10, objBancoDeDadosDTO.getLimiteFim());
+            pstmt.setString(11, objBancoDeDadosDTO.getDestinosAdicionais());
+            pstmt.setString(12, objBancoDeDadosDTO.getVerificadorSenha());
+            pstmt.setInt(13, objBancoDeDadosDTO.getRetencaoUltimos());
+            pstmt.setInt(14, objBancoDeDadosDTO.getRetencaoDiarios());
+            pstmt.setInt(15, objBancoDeDadosDTO.getRetencaoSemanais());
+            pstmt.setInt(16, objBancoDeDadosDTO.getRetencaoMensais());
+            pstmt.setString(17, objBancoDeDadosDTO.getDeltaArquivosGrandes());
+            pstmt.setString(18, objBancoDeDadosDTO.getDeduplicarArquivos());
+            pstmt.setString(19, objBancoDeDadosDTO.getBackupContinuo());
+            pstmt.setInt(20, objBancoDeDadosDTO.getId());
+
+            pstmt.executeUpdate();
+            gravado = true;
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Editar Opções Avançadas" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+
+        if (gravado) {
+            JOptionPane.showMessageDialog(null, "Opções avançadas atualizadas!", "Informação", JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    /**
+     * Preenche no DTO as colunas das opções avançadas de compactação.
+     *
+     * @param rs O ResultSet posicionado no registro.
+     * @param dto O DTO a ser preenchido.
+     * @throws SQLException Se ocorrer um erro ao ler as colunas.
+     */
+    private void mapearOpcoesAvancadas(ResultSet rs, BancoDeDadosDTO dto) throws SQLException {
+        dto.setPerfilCompressao(rs.getString("perfil_compressao"));
+        dto.setFormatoArquivo(rs.getString("formato_arquivo"));
+        dto.setDicionarioCompressao(rs.getString("dicionario_compressao"));
+        dto.setTamanhoVolumeMB(rs.getInt("tamanho_volume_mb"));
+        dto.setVerificarBackup(rs.getString("verificar_backup"));
+        dto.setLimiteMBps(rs.getInt("limite_mbps"));
+        dto.setLimiteArquivosSegundo(rs.getInt("limite_arquivos_segundo"));
+        dto.setLimiteSomenteHorario(rs.getString("limite_somente_horario"));
+        dto.setLimiteInicio(rs.getString("limite_inicio"));
+        dto.setLimiteFim(rs.getString("limite_fim"));
+        dto.setDestinosAdicionais(rs.getString("destinos_adicionais"));
+        dto.setVerificadorSenha(rs.getString("verificador_senha"));
+        dto.setRetencaoUltimos(rs.getInt("retencao_ultimos"));
+        dto.setRetencaoDiarios(rs.getInt("retencao_diarios"));
+        dto.setRetencaoSemanais(rs.getInt("retencao_semanais"));
+        dto.setRetencaoMensais(rs.getInt("retencao_mensais"));
+        dto.setDeltaArquivosGrandes(rs.getString("delta_arquivos_grandes"));
+        dto.setDeduplicarArquivos(rs.getString("deduplicar_arquivos"));
+        dto.setBackupContinuo(rs.getString("backup_continuo"));
+    }
+
     /**
      * Verifica se a data e a hora atuais correspondem a algum registro na
      * tabela 'dados_backup'.
@@ -291,6 +563,7 @@ public class BancoDeDadosDAO {
         // SQL para verificar a data e hora no banco de dados
         String sql = "SELECT data, hora FROM dados_backup";
 
+        long inicio = System.nanoTime();
         try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
@@ -303,6 +576,8 @@ public class BancoDeDadosDAO {
             }
         } catch (SQLException e) {
             JOptionPane.showMessageDialog(null, "Erro ao verificar data e hora: " + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
         }
         return false; // Não encontrou nenhuma correspondência
     }
@@ -338,6 +613,7 @@ public class BancoDeDadosDAO {
 
         String sql = "SELECT * FROM dados_backup WHERE data = ? AND hora = ?";
 
+        long inicio = System.nanoTime();
         try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, dataAtual);
@@ -346,14 +622,17 @@ public class BancoDeDadosDAO {
 
             if (rs.next()) {
                 BancoDeDadosDTO dto = new BancoDeDadosDTO();
+                dto.setId(rs.getInt("id"));
                 dto.setDiretorioOrigem(rs.getString("diretorio_origem"));
                 dto.setDiretorioDestino(rs.getString("diretorio_destino"));
                 dto.setNomeBackup(rs.getString("nome_backup"));
-                // Adicione aqui a configuração de outros campos, se necessário
+                mapearOpcoesAvancadas(rs, dto);
                 return dto; // Retorna o objeto com os dados encontrados
             }
         } catch (SQLException e) {
             JOptionPane.showMessageDialog(null, "Erro ao verificar data e hora: " + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
         }
         return null; // Não encontrou nenhuma correspondência
     }
@@ -394,6 +673,7 @@ public class BancoDeDadosDAO {
         // SQL para verificar a data, hora e o campo desligar_pc no banco de dados
         String sql = "SELECT desligar_pc FROM dados_backup WHERE data = ? AND hora = ?";
 
+        long inicio = System.nanoTime();
         try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, dataAtual);
@@ -406,6 +686,8 @@ public class BancoDeDadosDAO {
             }
         } catch (SQLException e) {
             JOptionPane.showMessageDialog(null, "Erro ao verificar desligar_pc: " + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
         }
         return false; // Retorna false se não encontrar correspondência ou ocorrer um erro
     }
@@ -0,0 +1,202 @@
+package com.mycompany.ferramentadebackup.dao;
+
+import com.mycompany.ferramentadebackup.compactadorzip.CacheHashes;
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache persistente do hash do conteúdo dos arquivos de origem
+ * ({@link CacheHashes}), em um banco SQLite próprio.
+ * <p>
+ * O banco fica separado de 'dados_backup.db' para que as consultas da
+ * compactação não disputem o banco principal com o catálogo. A tabela
+ * 'hashes_conteudo' é {@code WITHOUT ROWID} e cada linha guarda só a chave e
+ * o hash (16 bytes cada) e o dia do último uso, o que dá cerca de 50 bytes
+ * por arquivo. O banco é aberto na primeira consulta, e as páginas são lidas
+ * sob demanda por E/S mapeada em memória ({@code PRAGMA mmap_size}), de modo
+ * que um cache com milhões de arquivos não precisa ser carregado.
+ * <p>
+ * Os hashes novos são gravados em lotes de até 1000 por transação. O dia do
+ * último uso é atualizado no máximo uma vez por semana para cada arquivo, e
+ * ao fechar o cache são apagadas as linhas não usadas há mais de 90 dias,
+ * que são de arquivos alterados ou excluídos.
+ * <p>
+ * Um erro no banco desativa o cache até o fim da execução, sem interromper o
+ * backup: o pior efeito é ler de novo os arquivos para calcular o hash.
+ */
+public class CacheHashesDAO implements CacheHashes, AutoCloseable {
+
+    private static final int TAMANHO_LOTE = 1000;
+    private static final int DIAS_ATUALIZACAO = 7;
+    private static final int DIAS_VALIDADE = 90;
+
+    // Tamanho máximo do mapeamento em memória do banco
+    private static final long TAMANHO_MAPEAMENTO = 1024L * 1024 * 1024;
+
+    private final String url;
+    private final long hoje = LocalDate.now().toEpochDay();
+    private final Map<ByteBuffer, byte[]> novos = new HashMap<>();
+    private final List<byte[]> usados = new ArrayList<>();
+    private Connection conn;
+    private PreparedStatement consulta;
+    private boolean falhou;
+
+    /**
+     * Cria o cache; o banco só é aberto na primeira consulta.
+     *
+     * @param arquivo O caminho do banco SQLite do cache.
+     */
+    public CacheHashesDAO(String arquivo) {
+        this.url = "jdbc:sqlite:" + arquivo;
+    }
+
+    @Override
+    public synchronized byte[] obter(byte[] chave) {
+        byte[] novo = novos.get(ByteBuffer.wrap(chave));
+        if (novo != null || !conectar()) {
+            return novo;
+        }
+        try {
+            consulta.setBytes(1, chave);
+            try (ResultSet rs = consulta.executeQuery()) {
+                if (!rs.next()) {
+                    MetricasBackup.consultaCacheHashes(false);
+                    return null;
+                }
+                if (hoje - rs.getLong(2) >= DIAS_ATUALIZACAO) {
+                    usados.add(chave);
+                    gravarSeNecessario();
+                }
+                MetricasBackup.consultaCacheHashes(true);
+                return rs.getBytes(1);
+            }
+        } catch (SQLException e) {
+            desativar(e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void registrar(byte[] chave, byte[] hash) {
+        if (falhou) {
+            return;
+        }
+        novos.put(ByteBuffer.wrap(chave), hash);
+        gravarSeNecessario();
+    }
+
+    /**
+     * Grava os hashes pendentes, apaga as linhas antigas e fecha o banco.
+     */
+    @Override
+    public synchronized void close() {
+        if (conn == null) {
+            return;
+        }
+        try {
+            gravar();
+            long inicio = System.nanoTime();
+            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM hashes_conteudo WHERE usado < ?")) {
+                pstmt.setLong(1, hoje - DIAS_VALIDADE);
+                int apagadas = pstmt.executeUpdate();
+                conn.commit();
+                if (apagadas > 0) {
+                    System.out.println("Cache de hashes: " + apagadas + " linha(s) antiga(s) apagada(s).");
+                }
+            } finally {
+                MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+            }
+        } catch (SQLException e) {
+            desativar(e);
+        } finally {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                System.out.println("Erro ao fechar o cache de hashes: " + e.getMessage());
+            }
+            conn = null;
+        }
+    }
+
+    private boolean conectar() {
+        if (conn != null || falhou) {
+            return conn != null;
+        }
+        try {
+            conn = DriverManager.getConnection(url);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA busy_timeout = 30000");
+                stmt.execute("PRAGMA journal_mode = WAL");
+                stmt.execute("PRAGMA synchronous = NORMAL");
+                stmt.execute("PRAGMA mmap_size = " + TAMANHO_MAPEAMENTO);
+                stmt.execute("CREATE TABLE IF NOT EXISTS hashes_conteudo ("
+                        + "chave BLOB PRIMARY KEY,"
+                        + "hash BLOB NOT NULL,"
+                        + "usado INTEGER NOT NULL) WITHOUT ROWID;");
+            }
+            conn.setAutoCommit(false);
+            consulta = conn.prepareStatement("SELECT hash, usado FROM hashes_conteudo WHERE chave = ?");
+            return true;
+        } catch (SQLException e) {
+            desativar(e);
+            return false;
+        }
+    }
+
+    private void gravarSeNecessario() {
+        if (novos.size() + usados.size() < TAMANHO_LOTE || !conectar()) {
+            return;
+        }
+        try {
+            gravar();
+        } catch (SQLException e) {
+            desativar(e);
+        }
+    }
+
+    private void gravar() throws SQLException {
+        if (novos.isEmpty() && usados.isEmpty()) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        try (PreparedStatement inserir = conn.prepareStatement("INSERT OR REPLACE INTO hashes_conteudo (chave, hash, usado) VALUES (?, ?, ?)");
+                PreparedStatement atualizar = conn.prepareStatement("UPDATE hashes_conteudo SET usado = ? WHERE chave = ?")) {
+            for (Map.Entry<ByteBuffer, byte[]> novo : novos.entrySet()) {
+                inserir.setBytes(1, novo.getKey().array());
+                inserir.setBytes(2, novo.getValue());
+                inserir.setLong(3, hoje);
+                inserir.addBatch();
+            }
+            inserir.executeBatch();
+            for (byte[] chave : usados) {
+                atualizar.setLong(1, hoje);
+                atualizar.setBytes(2, chave);
+                atualizar.addBatch();
+            }
+            atualizar.executeBatch();
+            conn.commit();
+        } finally {
+            novos.clear();
+            usados.clear();
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+    }
+
+    private void desativar(SQLException e) {
+        falhou = true;
+        novos.clear();
+        usados.clear();
+        System.out.println("Cache de hashes desativado: " + e.getMessage());
+    }
+}
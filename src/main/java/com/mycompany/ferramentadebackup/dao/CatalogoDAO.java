@@ -0,0 +1,419 @@
+package com.mycompany.ferramentadebackup.dao;
+
+import com.mycompany.ferramentadebackup.dto.BancoDeDadosDTO;
+import com.mycompany.ferramentadebackup.dto.EntradaCatalogoDTO;
+import com.mycompany.ferramentadebackup.dto.ExecucaoBackupDTO;
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import javax.swing.JOptionPane;
+
+/**
+ * Classe para manipulação do histórico de execuções e do catálogo de arquivos
+ * dos backups.
+ * <p>
+ * Cada execução de backup é registrada na tabela 'historico_execucoes' e cada
+ * arquivo gravado por ela na tabela 'catalogo_arquivos'. O catálogo guarda o
+ * arquivo de backup e a posição de cada entrada, de modo que localizar um
+ * arquivo em todos os backups e restaurar uma de suas versões sejam consultas
+ * indexadas. As entradas são gravadas em lote, fora da thread da compactação,
+ * pelo {@link GravadorCatalogo}.
+ * <p>
+ * Métodos disponíveis:
+ * <ul>
+ * <li>{@link #verificarECriarTabelas()} - Verifica e cria as tabelas e os
+ * índices.</li>
+ * <li>{@link #iniciarExecucao(BancoDeDadosDTO, String)} - Registra o início de
+ * uma execução.</li>
+ * <li>{@link #finalizarExecucao(int, String)} - Registra o término de uma
+ * execução.</li>
+ * <li>{@link #buscarArquivos(String)} - Localiza um arquivo em todos os
+ * backups.</li>
+ * <li>{@link #listarExecucoes(int)} - Lista as execuções de um
+ * agendamento.</li>
+ * <li>{@link #listarArquivosExecucao(int)} - Lista os arquivos de backup
+ * gravados por uma execução.</li>
+ * <li>{@link #listarMedicoes(String, int)} - Lista as execuções concluídas,
+ * com a quantidade e o tamanho dos arquivos gravados.</li>
+ * <li>{@link #marcarRemovidas(List)} - Registra a exclusão dos arquivos de
+ * execuções antigas.</li>
+ * </ul>
+ */
+public class CatalogoDAO {
+
+    // URL de conexão com o banco de dados SQLite
+    String url = "jdbc:sqlite:dados_backup.db";
+
+    // Quantidade máxima de resultados de uma busca no catálogo
+    private static final int LIMITE_BUSCA = 1000;
+
+    // Formato dos momentos gravados no histórico, que mantém a ordem cronológica na ordenação do texto
+    static final String FORMATO_DATA_HORA = "yyyy-MM-dd HH:mm:ss";
+
+    /**
+     * Verifica e cria as tabelas 'historico_execucoes' e 'catalogo_arquivos'
+     * no banco de dados SQLite se elas não existirem.
+     * <p>
+     * Estrutura da tabela 'historico_execucoes':
+     * <ul>
+     * <li>id - INTEGER PRIMARY KEY</li>
+     * <li>id_backup - INTEGER NOT NULL</li>
+     * <li>nome_backup - TEXT NOT NULL</li>
+     * <li>inicio - TEXT NOT NULL</li>
+     * <li>fim - TEXT NULL</li>
+     * <li>status - TEXT NOT NULL</li>
+     * <li>arquivo - TEXT NOT NULL</li>
+     * <li>id_base - INTEGER NULL</li>
+     * </ul>
+     * <p>
+     * A coluna {@code id_base} aponta a execução da qual uma execução depende
+     * para ser restaurada; a retenção nunca exclui uma execução base de outra
+     * que é mantida.
+     * <p>
+     * Estrutura da tabela 'catalogo_arquivos':
+     * <ul>
+     * <li>id - INTEGER PRIMARY KEY</li>
+     * <li>id_execucao - INTEGER NOT NULL</li>
+     * <li>caminho - TEXT NOT NULL</li>
+     * <li>nome_arquivo - TEXT NOT NULL COLLATE NOCASE</li>
+     * <li>tamanho - INTEGER NOT NULL</li>
+     * <li>modificado - INTEGER NOT NULL</li>
+     * <li>crc - INTEGER NOT NULL</li>
+     * <li>arquivo - TEXT NOT NULL</li>
+     * <li>posicao - INTEGER NOT NULL</li>
+     * </ul>
+     * <p>
+     * O índice em {@code nome_arquivo} usa a mesma colação da coluna para que
+     * as buscas por prefixo com {@code LIKE} sejam resolvidas pelo índice.
+     */
+    public void verificarECriarTabelas() {
+        String sqlHistorico = "CREATE TABLE IF NOT EXISTS historico_execucoes ("
+                + "id INTEGER PRIMARY KEY,"
+                + "id_backup INTEGER NOT NULL,"
+                + "nome_backup TEXT NOT NULL,"
+                + "inicio TEXT NOT NULL,"
+                + "fim TEXT NULL,"
+                + "status TEXT NOT NULL,"
+                + "arquivo TEXT NOT NULL,"
+                + "id_base INTEGER NULL);";
+
+        String sqlCatalogo = "CREATE TABLE IF NOT EXISTS catalogo_arquivos ("
+                + "id INTEGER PRIMARY KEY,"
+                + "id_execucao INTEGER NOT NULL,"
+                + "caminho TEXT NOT NULL,"
+                + "nome_arquivo TEXT NOT NULL COLLATE NOCASE,"
+                + "tamanho INTEGER NOT NULL,"
+                + "modificado INTEGER NOT NULL,"
+                + "crc INTEGER NOT NULL,"
+                + "arquivo TEXT NOT NULL,"
+                + "posicao INTEGER NOT NULL);";
+
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+            stmt.execute(sqlHistorico);
+            stmt.execute(sqlCatalogo);
+            adicionarColunaSeNecessario(stmt, "historico_execucoes", "id_base", "INTEGER NULL");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_historico_backup ON historico_execucoes (id_backup, inicio)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_catalogo_nome ON catalogo_arquivos (nome_arquivo)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_catalogo_caminho ON catalogo_arquivos (caminho)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_catalogo_execucao ON catalogo_arquivos (id_execucao)");
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Verificar e Criar Tabelas do Catálogo" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Acrescenta uma coluna a uma tabela caso ela ainda não exista, pois o
+     * SQLite não suporta {@code ADD COLUMN IF NOT EXISTS}.
+     */
+    private void adicionarColunaSeNecessario(Statement stmt, String tabela, String coluna, String definicao) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + tabela + ")")) {
+            while (rs.next()) {
+                if (coluna.equalsIgnoreCase(rs.getString("name"))) {
+                    return;
+                }
+            }
+        }
+        stmt.execute("ALTER TABLE " + tabela + " ADD COLUMN " + coluna + " " + definicao);
+    }
+
+    /**
+     * Registra o início de uma execução de backup com a situação
+     * "Em andamento".
+     *
+     * @param objBancoDeDadosDTO O agendamento executado.
+     * @param arquivo O caminho do arquivo de backup que será gerado.
+     * @return O ID da execução, ou {@code -1} se não foi possível registrá-la.
+     */
+    public int iniciarExecucao(BancoDeDadosDTO objBancoDeDadosDTO, String arquivo) {
+        String sql = "INSERT INTO historico_execucoes (id_backup, nome_backup, inicio, status, arquivo) VALUES (?, ?, ?, ?, ?)";
+
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, objBancoDeDadosDTO.getId());
+            pstmt.setString(2, objBancoDeDadosDTO.getNomeBackup());
+            pstmt.setString(3, new SimpleDateFormat(FORMATO_DATA_HORA).format(new Date()));
+            pstmt.setString(4, "Em andamento");
+            pstmt.setString(5, arquivo);
+            pstmt.executeUpdate();
+
+            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Iniciar Execução" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+        return -1;
+    }
+
+    /**
+     * Registra o término de uma execução de backup.
+     *
+     * @param idExecucao O ID da execução.
+     * @param status A situação final: "Concluído" ou "Falhou".
+     */
+    public void finalizarExecucao(int idExecucao, String status) {
+        String sql = "UPDATE historico_execucoes SET fim = ?, status = ? WHERE id = ?";
+
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, new SimpleDateFormat(FORMATO_DATA_HORA).format(new Date()));
+            pstmt.setString(2, status);
+            pstmt.setInt(3, idExecucao);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Finalizar Execução" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Registra a execução da qual uma execução depende, para que a retenção
+     * não exclua a base enquanto a execução dependente for mantida.
+     *
+     * @param idExecucao O ID da execução.
+     * @param idBase O ID da execução base.
+     */
+    public void definirBase(int idExecucao, int idBase) {
+        String sql = "UPDATE historico_execucoes SET id_base = ? WHERE id = ?";
+
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idBase);
+            pstmt.setInt(2, idExecucao);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Definir Base" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Localiza um arquivo em todos os backups pelo nome.
+     * <p>
+     * O termo é comparado com o início do nome do arquivo, sem diferenciar
+     * maiúsculas de minúsculas; o caractere "*" pode ser usado como curinga.
+     * As versões mais recentes são listadas primeiro. Somente as execuções
+     * concluídas são consideradas, pois uma execução que falhou não publica o
+     * arquivo de backup.
+     *
+     * @param termo O nome (ou início do nome) do arquivo.
+     * @return As versões encontradas, limitadas a 1000.
+     */
+    public ArrayList<EntradaCatalogoDTO> buscarArquivos(String termo) {
+        String sql = "SELECT c.*, h.inicio, h.nome_backup FROM catalogo_arquivos c "
+                + "JOIN historico_execucoes h ON h.id = c.id_execucao "
+                + "WHERE c.nome_arquivo LIKE ? ESCAPE '\\' AND h.status = 'Concluído' "
+                + "ORDER BY h.inicio DESC, c.caminho LIMIT " + LIMITE_BUSCA;
+
+        ArrayList<EntradaCatalogoDTO> resultado = new ArrayList<>();
+        String padrao = termo.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_").replace('*', '%') + "%";
+
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, padrao);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                EntradaCatalogoDTO dto = new EntradaCatalogoDTO();
+                dto.setId(rs.getInt("id"));
+                dto.setIdExecucao(rs.getInt("id_execucao"));
+                dto.setCaminho(rs.getString("caminho"));
+                dto.setNomeArquivo(rs.getString("nome_arquivo"));
+                dto.setTamanho(rs.getLong("tamanho"));
+                dto.setModificado(rs.getLong("modificado"));
+                dto.setCrc(rs.getLong("crc"));
+                dto.setArquivo(rs.getString("arquivo"));
+                dto.setPosicao(rs.getLong("posicao"));
+                dto.setDataExecucao(rs.getString("inicio"));
+                dto.setNomeBackup(rs.getString("nome_backup"));
+                resultado.add(dto);
+            }
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Buscar Arquivos no Catálogo" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+        return resultado;
+    }
+
+    /**
+     * Lista as execuções de um agendamento, das mais recentes para as mais
+     * antigas, em todas as situações.
+     *
+     * @param idBackup O ID do agendamento.
+     * @return As execuções do agendamento.
+     */
+    public ArrayList<ExecucaoBackupDTO> listarExecucoes(int idBackup) {
+        String sql = "SELECT * FROM historico_execucoes WHERE id_backup = ? ORDER BY inicio DESC, id DESC";
+
+        ArrayList<ExecucaoBackupDTO> resultado = new ArrayList<>();
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idBackup);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                ExecucaoBackupDTO dto = new ExecucaoBackupDTO();
+                dto.setId(rs.getInt("id"));
+                dto.setIdBackup(rs.getInt("id_backup"));
+                dto.setNomeBackup(rs.getString("nome_backup"));
+                dto.setInicio(rs.getString("inicio"));
+                dto.setFim(rs.getString("fim"));
+                dto.setStatus(rs.getString("status"));
+                dto.setArquivo(rs.getString("arquivo"));
+                int idBase = rs.getInt("id_base");
+                dto.setIdBase(rs.wasNull() ? null : idBase);
+                resultado.add(dto);
+            }
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Listar Execuções" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+        return resultado;
+    }
+
+    /**
+     * Lista as execuções concluídas mais recentes, com a quantidade e o
+     * tamanho original dos arquivos gravados por cada uma, para estimar os
+     * próximos backups.
+     *
+     * @param diretorioOrigem Se informado, só as execuções dos agendamentos
+     * com essa origem; se {@code null}, as de todos os agendamentos.
+     * @param limite A quantidade máxima de execuções.
+     * @return As execuções, das mais recentes para as mais antigas.
+     */
+    public ArrayList<ExecucaoBackupDTO> listarMedicoes(String diretorioOrigem, int limite) {
+        String sql = "SELECT h.*, COUNT(c.id) AS arquivos_origem, SUM(c.tamanho) AS bytes_origem "
+                + "FROM historico_execucoes h JOIN catalogo_arquivos c ON c.id_execucao = h.id "
+                + "WHERE h.status = 'Concluído' AND h.fim IS NOT NULL "
+                + "AND (? IS NULL OR h.id_backup IN (SELECT id FROM dados_backup WHERE diretorio_origem = ?)) "
+                + "GROUP BY h.id ORDER BY h.inicio DESC, h.id DESC LIMIT ?";
+
+        ArrayList<ExecucaoBackupDTO> resultado = new ArrayList<>();
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, diretorioOrigem);
+            pstmt.setString(2, diretorioOrigem);
+            pstmt.setInt(3, limite);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                ExecucaoBackupDTO dto = new ExecucaoBackupDTO();
+                dto.setId(rs.getInt("id"));
+                dto.setIdBackup(rs.getInt("id_backup"));
+                dto.setNomeBackup(rs.getString("nome_backup"));
+                dto.setInicio(rs.getString("inicio"));
+                dto.setFim(rs.getString("fim"));
+                dto.setStatus(rs.getString("status"));
+                dto.setArquivo(rs.getString("arquivo"));
+                dto.setArquivosOrigem(rs.getLong("arquivos_origem"));
+                dto.setBytesOrigem(rs.getLong("bytes_origem"));
+                resultado.add(dto);
+            }
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Listar Medições" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+        return resultado;
+    }
+
+    /**
+     * Lista os arquivos de backup em que uma execução gravou entradas, como os
+     * volumes de um backup dividido.
+     *
+     * @param idExecucao O ID da execução.
+     * @return Os caminhos dos arquivos de backup, sem repetição.
+     */
+    public ArrayList<String> listarArquivosExecucao(int idExecucao) {
+        String sql = "SELECT DISTINCT arquivo FROM catalogo_arquivos WHERE id_execucao = ?";
+
+        ArrayList<String> resultado = new ArrayList<>();
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, idExecucao);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                resultado.add(rs.getString("arquivo"));
+            }
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Listar Arquivos da Execução" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+        return resultado;
+    }
+
+    /**
+     * Registra, em uma única transação, que os arquivos das execuções foram
+     * excluídos: a situação passa a ser "Removido" e as entradas do catálogo
+     * são apagadas, pois já não podem ser restauradas.
+     *
+     * @param idsExecucao Os IDs das execuções removidas.
+     */
+    public void marcarRemovidas(List<Integer> idsExecucao) {
+        if (idsExecucao.isEmpty()) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement status = conn.prepareStatement("UPDATE historico_execucoes SET status = 'Removido' WHERE id = ?");
+                    PreparedStatement catalogo = conn.prepareStatement("DELETE FROM catalogo_arquivos WHERE id_execucao = ?")) {
+                for (int id : idsExecucao) {
+                    status.setInt(1, id);
+                    status.addBatch();
+                    catalogo.setInt(1, id);
+                    catalogo.addBatch();
+                }
+                status.executeBatch();
+                catalogo.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Marcar Execuções Removidas" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+    }
+}
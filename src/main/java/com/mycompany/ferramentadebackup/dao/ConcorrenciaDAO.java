@@ -0,0 +1,123 @@
+package com.mycompany.ferramentadebackup.dao;
+
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import javax.swing.JOptionPane;
+
+/**
+ * Classe para manipulação da quantidade de volumes gravados ao mesmo tempo
+ * escolhida para cada par de origem e destino, gravada na tabela
+ * 'concorrencia_destinos'.
+ * <p>
+ * O valor gravado ao fim de um backup dividido em volumes é o limite com a
+ * maior vazão medida pelo controle adaptativo, e serve de ponto de partida
+ * para a próxima execução com a mesma origem e o mesmo destino.
+ * <p>
+ * Métodos disponíveis:
+ * <ul>
+ * <li>{@link #verificarECriarTabela()} - Verifica e cria a tabela.</li>
+ * <li>{@link #consultar(String, String)} - Busca o limite de um par de origem
+ * e destino.</li>
+ * <li>{@link #registrar(String, String, int, double)} - Grava o limite de um
+ * par de origem e destino.</li>
+ * </ul>
+ */
+public class ConcorrenciaDAO {
+
+    // URL de conexão com o banco de dados SQLite
+    String url = "jdbc:sqlite:dados_backup.db";
+
+    /**
+     * Verifica e cria a tabela 'concorrencia_destinos' no banco de dados
+     * SQLite se ela não existir.
+     * <p>
+     * Estrutura da tabela 'concorrencia_destinos':
+     * <ul>
+     * <li>origem - TEXT NOT NULL</li>
+     * <li>destino - TEXT NOT NULL</li>
+     * <li>volumes - INTEGER NOT NULL</li>
+     * <li>vazao_bytes - REAL NOT NULL</li>
+     * <li>atualizado - TEXT NOT NULL</li>
+     * </ul>
+     * A chave primária é o par (origem, destino).
+     */
+    public void verificarECriarTabela() {
+        String sql = "CREATE TABLE IF NOT EXISTS concorrencia_destinos ("
+                + "origem TEXT NOT NULL,"
+                + "destino TEXT NOT NULL,"
+                + "volumes INTEGER NOT NULL,"
+                + "vazao_bytes REAL NOT NULL,"
+                + "atualizado TEXT NOT NULL,"
+                + "PRIMARY KEY (origem, destino));";
+
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Verificar e Criar Tabela de Concorrência" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Busca a quantidade de volumes gravados ao mesmo tempo escolhida para um
+     * par de origem e destino.
+     *
+     * @param origem O diretório de origem.
+     * @param destino O diretório de destino.
+     * @return A quantidade gravada, ou 0 se o par ainda não foi usado.
+     */
+    public int consultar(String origem, String destino) {
+        String sql = "SELECT volumes FROM concorrencia_destinos WHERE origem = ? AND destino = ?";
+
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, origem);
+            pstmt.setString(2, destino);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt("volumes") : 0;
+            }
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Consultar Concorrência" + e, "Error", JOptionPane.ERROR);
+            return 0;
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Grava a quantidade de volumes gravados ao mesmo tempo escolhida para um
+     * par de origem e destino, substituindo a anterior.
+     *
+     * @param origem O diretório de origem.
+     * @param destino O diretório de destino.
+     * @param volumes A quantidade de volumes ao mesmo tempo.
+     * @param vazaoBytes A vazão média medida com essa quantidade, em bytes por
+     * segundo.
+     */
+    public void registrar(String origem, String destino, int volumes, double vazaoBytes) {
+        String sql = "INSERT OR REPLACE INTO concorrencia_destinos (origem, destino, volumes, vazao_bytes, atualizado) VALUES (?, ?, ?, ?, ?)";
+
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, origem);
+            pstmt.setString(2, destino);
+            pstmt.setInt(3, volumes);
+            pstmt.setDouble(4, vazaoBytes);
+            pstmt.setString(5, new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Registrar Concorrência" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+    }
+}
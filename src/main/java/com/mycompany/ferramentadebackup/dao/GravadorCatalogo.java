@@ -0,0 +1,152 @@
+package com.mycompany.ferramentadebackup.dao;
+
+import com.mycompany.ferramentadebackup.compactadorzip.ObservadorEntradas;
+import com.mycompany.ferramentadebackup.dto.EntradaCatalogoDTO;
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+/**
+ * Grava no catálogo as entradas de uma execução de backup, em segundo plano.
+ * <p>
+ * A compactação apenas enfileira cada entrada ({@link #entradaGravada}); uma
+ * thread própria retira as entradas da fila e as insere na tabela
+ * 'catalogo_arquivos' em lotes de até 1000 linhas por transação. A fila é
+ * limitada: se o banco de dados ficar muito atrás da compactação, a
+ * compactação espera, em vez de acumular memória sem limite.
+ * <p>
+ * {@link #close()} aguarda a gravação das entradas pendentes.
+ */
+public class GravadorCatalogo implements ObservadorEntradas, AutoCloseable {
+
+    // URL de conexão com o banco de dados SQLite
+    String url = "jdbc:sqlite:dados_backup.db";
+
+    private static final int TAMANHO_LOTE = 1000;
+    private static final int CAPACIDADE_FILA = 50_000;
+
+    // Marca o fim da fila
+    private static final EntradaCatalogoDTO FIM = new EntradaCatalogoDTO();
+
+    private final int idExecucao;
+    private final BlockingQueue<EntradaCatalogoDTO> fila = new ArrayBlockingQueue<>(CAPACIDADE_FILA);
+    private final Thread thread;
+    private volatile boolean falhou;
+
+    /**
+     * Cria o gravador e inicia a sua thread.
+     *
+     * @param idExecucao O ID da execução em 'historico_execucoes'.
+     */
+    public GravadorCatalogo(int idExecucao) {
+        this.idExecucao = idExecucao;
+        this.thread = new Thread(this::gravar, "gravador-catalogo-" + idExecucao);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void entradaGravada(String arquivo, String nome, long tamanho, long modificado, long crc, long posicao) {
+        if (falhou) {
+            return;
+        }
+        try {
+            EntradaCatalogoDTO entrada = new EntradaCatalogoDTO();
+            entrada.setIdExecucao(idExecucao);
+            entrada.setArquivo(arquivo);
+            entrada.setCaminho(nome);
+            entrada.setNomeArquivo(nome.substring(nome.lastIndexOf('/') + 1));
+            entrada.setTamanho(tamanho);
+            entrada.setModificado(modificado);
+            entrada.setCrc(crc);
+            entrada.setPosicao(posicao);
+            fila.put(entrada);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Aguarda a gravação das entradas pendentes e encerra a thread.
+     */
+    @Override
+    public void close() {
+        try {
+            fila.put(FIM);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void gravar() {
+        String sql = "INSERT INTO catalogo_arquivos (id_execucao, caminho, nome_arquivo, tamanho, modificado, crc, arquivo, posicao) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        List<EntradaCatalogoDTO> lote = new ArrayList<>(TAMANHO_LOTE);
+        boolean concluido = false;
+        try (Connection conn = DriverManager.getConnection(url)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA busy_timeout = 30000");
+            }
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                boolean fim = false;
+                while (!fim) {
+                    lote.add(fila.take());
+                    fila.drainTo(lote, TAMANHO_LOTE - 1);
+                    if (lote.get(lote.size() - 1) == FIM) {
+                        lote.remove(lote.size() - 1);
+                        fim = true;
+                    }
+                    inserir(conn, pstmt, lote);
+                    lote.clear();
+                }
+            }
+            concluido = true;
+        } catch (SQLException | RuntimeException e) {
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Error Método Gravar Catálogo" + e, "Error", JOptionPane.ERROR));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Sem a thread, a fila não é mais consumida: a compactação deixa de enfileirar e não fica presa em uma fila cheia
+            if (!concluido) {
+                falhou = true;
+                fila.clear();
+            }
+        }
+    }
+
+    private void inserir(Connection conn, PreparedStatement pstmt, List<EntradaCatalogoDTO> lote) throws SQLException {
+        if (lote.isEmpty()) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        try {
+            for (EntradaCatalogoDTO entrada : lote) {
+                pstmt.setInt(1, entrada.getIdExecucao());
+                pstmt.setString(2, entrada.getCaminho());
+                pstmt.setString(3, entrada.getNomeArquivo());
+                pstmt.setLong(4, entrada.getTamanho());
+                pstmt.setLong(5, entrada.getModificado());
+                pstmt.setLong(6, entrada.getCrc());
+                pstmt.setString(7, entrada.getArquivo());
+                pstmt.setLong(8, entrada.getPosicao());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.mycompany.ferramentadebackup.dao;
+
+import com.mycompany.ferramentadebackup.dto.VerificacaoArquivoDTO;
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import javax.swing.JOptionPane;
+
+/**
+ * Classe para manipulação dos resultados das verificações de integridade dos
+ * arquivos de backup, gravados na tabela 'verificacao_arquivos'.
+ * <p>
+ * Métodos disponíveis:
+ * <ul>
+ * <li>{@link #verificarECriarTabela()} - Verifica e cria a tabela.</li>
+ * <li>{@link #registrar(VerificacaoArquivoDTO)} - Grava o resultado da
+ * verificação de um arquivo.</li>
+ * <li>{@link #buscarUltimasVerificacoes()} - Busca o momento da última
+ * verificação de cada arquivo.</li>
+ * </ul>
+ */
+public class VerificacaoDAO {
+
+    // URL de conexão com o banco de dados SQLite
+    String url = "jdbc:sqlite:dados_backup.db";
+
+    /**
+     * Verifica e cria a tabela 'verificacao_arquivos' no banco de dados SQLite
+     * se ela não existir.
+     * <p>
+     * Estrutura da tabela 'verificacao_arquivos':
+     * <ul>
+     * <li>arquivo - TEXT PRIMARY KEY</li>
+     * <li>ultima_verificacao - TEXT NOT NULL</li>
+     * <li>resultado - TEXT NOT NULL</li>
+     * <li>entradas - INTEGER NOT NULL</li>
+     * <li>mensagem - TEXT NULL</li>
+     * </ul>
+     */
+    public void verificarECriarTabela() {
+        String sql = "CREATE TABLE IF NOT EXISTS verificacao_arquivos ("
+                + "arquivo TEXT PRIMARY KEY,"
+                + "ultima_verificacao TEXT NOT NULL,"
+                + "resultado TEXT NOT NULL,"
+                + "entradas INTEGER NOT NULL,"
+                + "mensagem TEXT NULL);";
+
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Verificar e Criar Tabela de Verificações" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Grava o resultado da verificação de um arquivo, substituindo o
+     * resultado anterior.
+     *
+     * @param objVerificacaoArquivoDTO O resultado da verificação.
+     */
+    public void registrar(VerificacaoArquivoDTO objVerificacaoArquivoDTO) {
+        String sql = "INSERT OR REPLACE INTO verificacao_arquivos (arquivo, ultima_verificacao, resultado, entradas, mensagem) VALUES (?, ?, ?, ?, ?)";
+
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, objVerificacaoArquivoDTO.getArquivo());
+            pstmt.setString(2, objVerificacaoArquivoDTO.getUltimaVerificacao());
+            pstmt.setString(3, objVerificacaoArquivoDTO.getResultado());
+            pstmt.setLong(4, objVerificacaoArquivoDTO.getEntradas());
+            pstmt.setString(5, objVerificacaoArquivoDTO.getMensagem());
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Registrar Verificação" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Busca o momento da última verificação de cada arquivo já verificado.
+     *
+     * @return Um mapa do caminho do arquivo para o momento da última
+     * verificação, no formato yyyy-MM-dd HH:mm:ss.
+     */
+    public HashMap<String, String> buscarUltimasVerificacoes() {
+        String sql = "SELECT arquivo, ultima_verificacao FROM verificacao_arquivos";
+
+        HashMap<String, String> verificacoes = new HashMap<>();
+        long inicio = System.nanoTime();
+        try (Connection conn = DriverManager.getConnection(url); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                verificacoes.put(rs.getString("arquivo"), rs.getString("ultima_verificacao"));
+            }
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "Error Método Buscar Últimas Verificações" + e, "Error", JOptionPane.ERROR);
+        } finally {
+            MetricasBackup.latenciaBancoDeDados(System.nanoTime() - inicio);
+        }
+        return verificacoes;
+    }
+}
@@ -9,6 +9,7 @@ package com.mycompany.ferramentadebackup.dto;
  *   <li>Diretórios de origem e destino</li>
  *   <li>Data</li>
  *   <li>Opção de desligar o PC</li>
+ *   <li>Opções avançadas de compactação, como o perfil de compressão</li>
  * </ul>
  *
  * <p>Os métodos incluem:</p>
@@ -23,7 +24,20 @@ package com.mycompany.ferramentadebackup.dto;
 public class BancoDeDadosDTO {
 
     private String diretorioOrigem, diretorioDestino, data, desligarPC, nomeBackup, hora;
-    private int id;
+    private String perfilCompressao = "BALANCEADO";
+    private String formatoArquivo = "ZIP";
+    private String dicionarioCompressao = "Não";
+    private String verificarBackup = "Não";
+    private String limiteSomenteHorario = "Não";
+    private String limiteInicio = "08:00";
+    private String limiteFim = "18:00";
+    private String destinosAdicionais = "";
+    private String verificadorSenha = "";
+    private String deltaArquivosGrandes = "Não";
+    private String deduplicarArquivos = "Não";
+    private String backupContinuo = "Não";
+    private int id, tamanhoVolumeMB, limiteMBps, limiteArquivosSegundo;
+    private int retencaoUltimos, retencaoDiarios, retencaoSemanais, retencaoMensais;
 
     /**
      * Obtém o diretório de origem.
@@ -142,4 +156,361 @@ public class BancoDeDadosDTO {
     public void setHora(String hora) {
         this.hora = hora;
     }
+
+    /**
+     * Obtém o perfil de compressão do backup (RAPIDO, BALANCEADO, MENOR ou
+     * ADAPTATIVO).
+     *
+     * @return O nome do perfil de compressão.
+     */
+    public String getPerfilCompressao() {
+        return perfilCompressao;
+    }
+
+    /**
+     * Define o perfil de compressão do backup.
+     *
+     * @param perfilCompressao O nome do perfil de compressão.
+     */
+    public void setPerfilCompressao(String perfilCompressao) {
+        this.perfilCompressao = perfilCompressao;
+    }
+
+    /**
+     * Obtém o formato do arquivo de backup (ZIP, ZIP_SEM_COMPRESSAO, TAR,
+     * TAR_GZ ou outro formato registrado).
+     *
+     * @return O nome do formato do arquivo.
+     */
+    public String getFormatoArquivo() {
+        return formatoArquivo;
+    }
+
+    /**
+     * Define o formato do arquivo de backup.
+     *
+     * @param formatoArquivo O nome do formato do arquivo.
+     */
+    public void setFormatoArquivo(String formatoArquivo) {
+        this.formatoArquivo = formatoArquivo;
+    }
+
+    /**
+     * Obtém a opção de usar um dicionário de compressão compartilhado pelos
+     * arquivos pequenos ("Sim" ou "Não").
+     *
+     * @return A opção de dicionário de compressão.
+     */
+    public String getDicionarioCompressao() {
+        return dicionarioCompressao;
+    }
+
+    /**
+     * Define a opção de usar um dicionário de compressão compartilhado.
+     *
+     * @param dicionarioCompressao "Sim" ou "Não".
+     */
+    public void setDicionarioCompressao(String dicionarioCompressao) {
+        this.dicionarioCompressao = dicionarioCompressao;
+    }
+
+    /**
+     * Obtém o tamanho máximo de cada volume do backup, em MB.
+     *
+     * @return O tamanho do volume em MB, ou 0 para gravar um único arquivo.
+     */
+    public int getTamanhoVolumeMB() {
+        return tamanhoVolumeMB;
+    }
+
+    /**
+     * Define o tamanho máximo de cada volume do backup, em MB.
+     *
+     * @param tamanhoVolumeMB O tamanho do volume em MB, ou 0 para gravar um
+     * único arquivo.
+     */
+    public void setTamanhoVolumeMB(int tamanhoVolumeMB) {
+        this.tamanhoVolumeMB = tamanhoVolumeMB;
+    }
+
+    /**
+     * Obtém a opção de conferir o backup com a origem ao final da compactação.
+     *
+     * @return "Sim" se o backup deve ser conferido, ou "Não".
+     */
+    public String getVerificarBackup() {
+        return verificarBackup;
+    }
+
+    /**
+     * Define a opção de conferir o backup com a origem ao final da compactação.
+     *
+     * @param verificarBackup "Sim" ou "Não".
+     */
+    public void setVerificarBackup(String verificarBackup) {
+        this.verificarBackup = verificarBackup;
+    }
+
+    /**
+     * Obtém o limite de leitura e de escrita do backup, em MB/s.
+     *
+     * @return O limite em MB/s, ou 0 para não limitar.
+     */
+    public int getLimiteMBps() {
+        return limiteMBps;
+    }
+
+    /**
+     * Define o limite de leitura e de escrita do backup, em MB/s.
+     *
+     * @param limiteMBps O limite em MB/s, ou 0 para não limitar.
+     */
+    public void setLimiteMBps(int limiteMBps) {
+        this.limiteMBps = limiteMBps;
+    }
+
+    /**
+     * Obtém o limite de arquivos lidos por segundo no backup.
+     *
+     * @return O limite de arquivos por segundo, ou 0 para não limitar.
+     */
+    public int getLimiteArquivosSegundo() {
+        return limiteArquivosSegundo;
+    }
+
+    /**
+     * Define o limite de arquivos lidos por segundo no backup.
+     *
+     * @param limiteArquivosSegundo O limite de arquivos por segundo, ou 0
+     * para não limitar.
+     */
+    public void setLimiteArquivosSegundo(int limiteArquivosSegundo) {
+        this.limiteArquivosSegundo = limiteArquivosSegundo;
+    }
+
+    /**
+     * Obtém a opção de aplicar os limites de taxa somente no horário de
+     * limitação.
+     *
+     * @return "Sim" se os limites valem somente no horário, ou "Não" se valem
+     * o tempo todo.
+     */
+    public String getLimiteSomenteHorario() {
+        return limiteSomenteHorario;
+    }
+
+    /**
+     * Define a opção de aplicar os limites de taxa somente no horário de
+     * limitação.
+     *
+     * @param limiteSomenteHorario "Sim" ou "Não".
+     */
+    public void setLimiteSomenteHorario(String limiteSomenteHorario) {
+        this.limiteSomenteHorario = limiteSomenteHorario;
+    }
+
+    /**
+     * Obtém o início do horário de limitação.
+     *
+     * @return O início do horário de limitação, no formato HH:mm.
+     */
+    public String getLimiteInicio() {
+        return limiteInicio;
+    }
+
+    /**
+     * Define o início do horário de limitação.
+     *
+     * @param limiteInicio O início do horário de limitação, no formato HH:mm.
+     */
+    public void setLimiteInicio(String limiteInicio) {
+        this.limiteInicio = limiteInicio;
+    }
+
+    /**
+     * Obtém o fim do horário de limitação. Se for anterior ao início, o
+     * horário atravessa a meia-noite.
+     *
+     * @return O fim do horário de limitação, no formato HH:mm.
+     */
+    public String getLimiteFim() {
+        return limiteFim;
+    }
+
+    /**
+     * Define o fim do horário de limitação.
+     *
+     * @param limiteFim O fim do horário de limitação, no formato HH:mm.
+     */
+    public void setLimiteFim(String limiteFim) {
+        this.limiteFim = limiteFim;
+    }
+
+    /**
+     * Obtém os diretórios adicionais que recebem uma cópia do backup.
+     *
+     * @return Os diretórios adicionais, um por linha.
+     */
+    public String getDestinosAdicionais() {
+        return destinosAdicionais;
+    }
+
+    /**
+     * Define os diretórios adicionais que recebem uma cópia do backup.
+     *
+     * @param destinosAdicionais Os diretórios adicionais que recebem uma
+     * cópia do backup, um por linha.
+     */
+    public void setDestinosAdicionais(String destinosAdicionais) {
+        this.destinosAdicionais = destinosAdicionais;
+    }
+
+    /**
+     * Obtém o verificador da senha de criptografia do backup. A senha em si
+     * não é guardada no agendamento; o verificador só permite conferir a
+     * senha digitada.
+     *
+     * @return O verificador da senha, ou uma string vazia se o backup não
+     * for cifrado.
+     */
+    public String getVerificadorSenha() {
+        return verificadorSenha;
+    }
+
+    /**
+     * Define o verificador da senha de criptografia do backup.
+     *
+     * @param verificadorSenha O verificador criado por
+     * {@code Criptografia.criarVerificador}; vazio para gravar o backup sem
+     * criptografia.
+     */
+    public void setVerificadorSenha(String verificadorSenha) {
+        this.verificadorSenha = verificadorSenha;
+    }
+
+    /**
+     * Obtém a quantidade de execuções mais recentes mantidas pela retenção.
+     *
+     * @return A quantidade de execuções mais recentes, ou 0 para não usar este critério.
+     */
+    public int getRetencaoUltimos() {
+        return retencaoUltimos;
+    }
+
+    /**
+     * Define a quantidade de execuções mais recentes mantidas pela retenção.
+     *
+     * @param retencaoUltimos A quantidade de execuções mais recentes; 0 para não usar este critério.
+     */
+    public void setRetencaoUltimos(int retencaoUltimos) {
+        this.retencaoUltimos = retencaoUltimos;
+    }
+
+    /**
+     * Obtém a quantidade de dias dos quais a retenção mantém a última execução.
+     *
+     * @return A quantidade de dias, ou 0 para não usar este critério.
+     */
+    public int getRetencaoDiarios() {
+        return retencaoDiarios;
+    }
+
+    /**
+     * Define a quantidade de dias dos quais a retenção mantém a última execução.
+     *
+     * @param retencaoDiarios A quantidade de dias; 0 para não usar este critério.
+     */
+    public void setRetencaoDiarios(int retencaoDiarios) {
+        this.retencaoDiarios = retencaoDiarios;
+    }
+
+    /**
+     * Obtém a quantidade de semanas das quais a retenção mantém a última execução.
+     *
+     * @return A quantidade de semanas, ou 0 para não usar este critério.
+     */
+    public int getRetencaoSemanais() {
+        return retencaoSemanais;
+    }
+
+    /**
+     * Define a quantidade de semanas das quais a retenção mantém a última execução.
+     *
+     * @param retencaoSemanais A quantidade de semanas; 0 para não usar este critério.
+     */
+    public void setRetencaoSemanais(int retencaoSemanais) {
+        this.retencaoSemanais = retencaoSemanais;
+    }
+
+    /**
+     * Obtém a quantidade de meses dos quais a retenção mantém a última execução.
+     *
+     * @return A quantidade de meses, ou 0 para não usar este critério.
+     */
+    public int getRetencaoMensais() {
+        return retencaoMensais;
+    }
+
+    /**
+     * Define a quantidade de meses dos quais a retenção mantém a última execução.
+     *
+     * @param retencaoMensais A quantidade de meses; 0 para não usar este critério.
+     */
+    public void setRetencaoMensais(int retencaoMensais) {
+        this.retencaoMensais = retencaoMensais;
+    }
+
+    /**
+     * Obtém a opção de gravar os arquivos grandes alterados como delta do backup anterior.
+     *
+     * @return "Sim" se os arquivos grandes devem ser gravados como delta, ou "Não".
+     */
+    public String getDeltaArquivosGrandes() {
+        return deltaArquivosGrandes;
+    }
+
+    /**
+     * Define a opção de gravar os arquivos grandes alterados como delta do backup anterior.
+     *
+     * @param deltaArquivosGrandes "Sim" ou "Não".
+     */
+    public void setDeltaArquivosGrandes(String deltaArquivosGrandes) {
+        this.deltaArquivosGrandes = deltaArquivosGrandes;
+    }
+
+    /**
+     * Obtém a opção de gravar uma única vez os arquivos repetidos de cada backup.
+     *
+     * @return "Sim" se os arquivos repetidos devem ser gravados uma única vez, ou "Não".
+     */
+    public String getDeduplicarArquivos() {
+        return deduplicarArquivos;
+    }
+
+    /**
+     * Define a opção de gravar uma única vez os arquivos repetidos de cada backup.
+     *
+     * @param deduplicarArquivos "Sim" ou "Não".
+     */
+    public void setDeduplicarArquivos(String deduplicarArquivos) {
+        this.deduplicarArquivos = deduplicarArquivos;
+    }
+
+    /**
+     * Obtém a opção de gravar continuamente as alterações da origem.
+     *
+     * @return "Sim" se as alterações da origem devem ser gravadas continuamente, ou "Não".
+     */
+    public String getBackupContinuo() {
+        return backupContinuo;
+    }
+
+    /**
+     * Define a opção de gravar continuamente as alterações da origem.
+     *
+     * @param backupContinuo "Sim" ou "Não".
+     */
+    public void setBackupContinuo(String backupContinuo) {
+        this.backupContinuo = backupContinuo;
+    }
 }
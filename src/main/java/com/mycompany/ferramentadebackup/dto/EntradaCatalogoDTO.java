@@ -0,0 +1,215 @@
+package com.mycompany.ferramentadebackup.dto;
+
+/**
+ * <p>Classe DTO (Data Transfer Object) que representa um arquivo gravado em um
+ * backup, registrado na tabela 'catalogo_arquivos'.</p>
+ *
+ * <p>A entrada guarda onde o arquivo está (arquivo de backup e posição), de
+ * modo que a localização e a restauração de uma versão sejam consultas ao
+ * catálogo, sem abrir os backups. Nas consultas, a data da execução e o nome do
+ * backup também são preenchidos.</p>
+ */
+public class EntradaCatalogoDTO {
+
+    private int id, idExecucao;
+    private String caminho, nomeArquivo, arquivo, dataExecucao, nomeBackup;
+    private long tamanho, modificado, crc, posicao;
+
+    /**
+     * Obtém o ID da entrada.
+     *
+     * @return O ID da entrada.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Define o ID da entrada.
+     *
+     * @param id O ID a ser definido.
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Obtém o ID da execução que gravou a entrada.
+     *
+     * @return O ID da execução que gravou a entrada.
+     */
+    public int getIdExecucao() {
+        return idExecucao;
+    }
+
+    /**
+     * Define o ID da execução que gravou a entrada.
+     *
+     * @param idExecucao O ID da execução.
+     */
+    public void setIdExecucao(int idExecucao) {
+        this.idExecucao = idExecucao;
+    }
+
+    /**
+     * Obtém o caminho relativo do arquivo dentro do backup.
+     *
+     * @return O caminho relativo do arquivo dentro do backup.
+     */
+    public String getCaminho() {
+        return caminho;
+    }
+
+    /**
+     * Define o caminho relativo do arquivo dentro do backup.
+     *
+     * @param caminho O caminho relativo, separado por "/".
+     */
+    public void setCaminho(String caminho) {
+        this.caminho = caminho;
+    }
+
+    /**
+     * Obtém o nome do arquivo, sem os diretórios.
+     *
+     * @return O nome do arquivo, sem os diretórios.
+     */
+    public String getNomeArquivo() {
+        return nomeArquivo;
+    }
+
+    /**
+     * Define o nome do arquivo, sem os diretórios.
+     *
+     * @param nomeArquivo O nome do arquivo.
+     */
+    public void setNomeArquivo(String nomeArquivo) {
+        this.nomeArquivo = nomeArquivo;
+    }
+
+    /**
+     * Obtém o tamanho original do arquivo, em bytes.
+     *
+     * @return O tamanho original do arquivo, em bytes.
+     */
+    public long getTamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Define o tamanho original do arquivo, em bytes.
+     *
+     * @param tamanho O tamanho em bytes.
+     */
+    public void setTamanho(long tamanho) {
+        this.tamanho = tamanho;
+    }
+
+    /**
+     * Obtém o momento da última modificação do arquivo.
+     *
+     * @return O momento da última modificação do arquivo.
+     */
+    public long getModificado() {
+        return modificado;
+    }
+
+    /**
+     * Define o momento da última modificação do arquivo.
+     *
+     * @param modificado O momento em milissegundos desde a época.
+     */
+    public void setModificado(long modificado) {
+        this.modificado = modificado;
+    }
+
+    /**
+     * Obtém o CRC-32 do conteúdo do arquivo.
+     *
+     * @return O CRC-32 do conteúdo do arquivo.
+     */
+    public long getCrc() {
+        return crc;
+    }
+
+    /**
+     * Define o CRC-32 do conteúdo do arquivo.
+     *
+     * @param crc O CRC-32.
+     */
+    public void setCrc(long crc) {
+        this.crc = crc;
+    }
+
+    /**
+     * Obtém o caminho do arquivo de backup (ou volume) que contém a entrada.
+     *
+     * @return O caminho do arquivo de backup (ou volume) que contém a entrada.
+     */
+    public String getArquivo() {
+        return arquivo;
+    }
+
+    /**
+     * Define o caminho do arquivo de backup (ou volume) que contém a entrada.
+     *
+     * @param arquivo O caminho do arquivo de backup.
+     */
+    public void setArquivo(String arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    /**
+     * Obtém a posição da entrada no arquivo de backup.
+     *
+     * @return A posição da entrada no arquivo de backup.
+     */
+    public long getPosicao() {
+        return posicao;
+    }
+
+    /**
+     * Define a posição da entrada no arquivo de backup.
+     *
+     * @param posicao A posição em bytes, ou -1 se o formato não permite acesso direto.
+     */
+    public void setPosicao(long posicao) {
+        this.posicao = posicao;
+    }
+
+    /**
+     * Obtém o momento de início da execução que gravou a entrada.
+     *
+     * @return O momento de início da execução que gravou a entrada.
+     */
+    public String getDataExecucao() {
+        return dataExecucao;
+    }
+
+    /**
+     * Define o momento de início da execução que gravou a entrada.
+     *
+     * @param dataExecucao O momento no formato yyyy-MM-dd HH:mm:ss.
+     */
+    public void setDataExecucao(String dataExecucao) {
+        this.dataExecucao = dataExecucao;
+    }
+
+    /**
+     * Obtém o nome do backup que contém a entrada.
+     *
+     * @return O nome do backup que contém a entrada.
+     */
+    public String getNomeBackup() {
+        return nomeBackup;
+    }
+
+    /**
+     * Define o nome do backup que contém a entrada.
+     *
+     * @param nomeBackup O nome do backup.
+     */
+    public void setNomeBackup(String nomeBackup) {
+        this.nomeBackup = nomeBackup;
+    }
+}
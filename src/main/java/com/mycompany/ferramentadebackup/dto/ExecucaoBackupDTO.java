@@ -0,0 +1,201 @@
+package com.mycompany.ferramentadebackup.dto;
+
+/**
+ * <p>Classe DTO (Data Transfer Object) que representa uma execução de backup,
+ * registrada na tabela 'historico_execucoes'.</p>
+ *
+ * <p>Cada execução agrupa as entradas do catálogo de arquivos
+ * ({@link EntradaCatalogoDTO}) gravadas por ela.</p>
+ */
+public class ExecucaoBackupDTO {
+
+    private int id, idBackup;
+    private Integer idBase;
+    private String nomeBackup, inicio, fim, status, arquivo;
+    private long arquivosOrigem, bytesOrigem;
+
+    /**
+     * Obtém o ID da execução.
+     *
+     * @return O ID da execução.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Define o ID da execução.
+     *
+     * @param id O ID a ser definido.
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Obtém o ID do agendamento executado.
+     *
+     * @return O ID do agendamento executado.
+     */
+    public int getIdBackup() {
+        return idBackup;
+    }
+
+    /**
+     * Define o ID do agendamento executado.
+     *
+     * @param idBackup O ID do agendamento.
+     */
+    public void setIdBackup(int idBackup) {
+        this.idBackup = idBackup;
+    }
+
+    /**
+     * Obtém o ID da execução da qual esta depende para ser restaurada, como a
+     * execução completa de um backup incremental.
+     *
+     * @return O ID da execução base, ou {@code null} se a execução for
+     * independente.
+     */
+    public Integer getIdBase() {
+        return idBase;
+    }
+
+    /**
+     * Define o ID da execução da qual esta depende para ser restaurada.
+     *
+     * @param idBase O ID da execução base, ou {@code null}.
+     */
+    public void setIdBase(Integer idBase) {
+        this.idBase = idBase;
+    }
+
+    /**
+     * Obtém o nome do backup.
+     *
+     * @return O nome do backup.
+     */
+    public String getNomeBackup() {
+        return nomeBackup;
+    }
+
+    /**
+     * Define o nome do backup.
+     *
+     * @param nomeBackup O nome do backup.
+     */
+    public void setNomeBackup(String nomeBackup) {
+        this.nomeBackup = nomeBackup;
+    }
+
+    /**
+     * Obtém o momento de início da execução.
+     *
+     * @return O momento de início da execução.
+     */
+    public String getInicio() {
+        return inicio;
+    }
+
+    /**
+     * Define o momento de início da execução.
+     *
+     * @param inicio O início no formato yyyy-MM-dd HH:mm:ss.
+     */
+    public void setInicio(String inicio) {
+        this.inicio = inicio;
+    }
+
+    /**
+     * Obtém o momento de término da execução.
+     *
+     * @return O momento de término da execução.
+     */
+    public String getFim() {
+        return fim;
+    }
+
+    /**
+     * Define o momento de término da execução.
+     *
+     * @param fim O término no formato yyyy-MM-dd HH:mm:ss, ou null se a execução não terminou.
+     */
+    public void setFim(String fim) {
+        this.fim = fim;
+    }
+
+    /**
+     * Obtém a situação da execução.
+     *
+     * @return A situação da execução.
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Define a situação da execução.
+     *
+     * @param status A situação: "Em andamento", "Concluído", "Falhou" ou
+     * "Removido".
+     */
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    /**
+     * Obtém o caminho do arquivo de backup gerado.
+     *
+     * @return O caminho do arquivo de backup gerado.
+     */
+    public String getArquivo() {
+        return arquivo;
+    }
+
+    /**
+     * Define o caminho do arquivo de backup gerado.
+     *
+     * @param arquivo O caminho do arquivo de backup.
+     */
+    public void setArquivo(String arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    /**
+     * Obtém a quantidade de arquivos gravados pela execução, segundo o
+     * catálogo.
+     *
+     * @return A quantidade de arquivos gravados.
+     */
+    public long getArquivosOrigem() {
+        return arquivosOrigem;
+    }
+
+    /**
+     * Define a quantidade de arquivos gravados pela execução.
+     *
+     * @param arquivosOrigem A quantidade de arquivos gravados.
+     */
+    public void setArquivosOrigem(long arquivosOrigem) {
+        this.arquivosOrigem = arquivosOrigem;
+    }
+
+    /**
+     * Obtém o tamanho original, antes da compressão, dos arquivos gravados
+     * pela execução, segundo o catálogo.
+     *
+     * @return O tamanho original em bytes.
+     */
+    public long getBytesOrigem() {
+        return bytesOrigem;
+    }
+
+    /**
+     * Define o tamanho original dos arquivos gravados pela execução.
+     *
+     * @param bytesOrigem O tamanho original em bytes.
+     */
+    public void setBytesOrigem(long bytesOrigem) {
+        this.bytesOrigem = bytesOrigem;
+    }
+}
@@ -0,0 +1,102 @@
+package com.mycompany.ferramentadebackup.dto;
+
+/**
+ * <p>Classe DTO (Data Transfer Object) que representa o resultado da última
+ * verificação de integridade de um arquivo de backup, registrado na tabela
+ * 'verificacao_arquivos'.</p>
+ */
+public class VerificacaoArquivoDTO {
+
+    private String arquivo, ultimaVerificacao, resultado, mensagem;
+    private long entradas;
+
+    /**
+     * Obtém o caminho do arquivo de backup verificado.
+     *
+     * @return O caminho do arquivo de backup verificado.
+     */
+    public String getArquivo() {
+        return arquivo;
+    }
+
+    /**
+     * Define o caminho do arquivo de backup verificado.
+     *
+     * @param arquivo O caminho do arquivo de backup.
+     */
+    public void setArquivo(String arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    /**
+     * Obtém o momento da última verificação.
+     *
+     * @return O momento da última verificação.
+     */
+    public String getUltimaVerificacao() {
+        return ultimaVerificacao;
+    }
+
+    /**
+     * Define o momento da última verificação.
+     *
+     * @param ultimaVerificacao O momento no formato yyyy-MM-dd HH:mm:ss.
+     */
+    public void setUltimaVerificacao(String ultimaVerificacao) {
+        this.ultimaVerificacao = ultimaVerificacao;
+    }
+
+    /**
+     * Obtém o resultado da última verificação.
+     *
+     * @return O resultado da última verificação.
+     */
+    public String getResultado() {
+        return resultado;
+    }
+
+    /**
+     * Define o resultado da última verificação.
+     *
+     * @param resultado O resultado: "OK", "Corrompido" ou "Não verificado".
+     */
+    public void setResultado(String resultado) {
+        this.resultado = resultado;
+    }
+
+    /**
+     * Obtém a quantidade de entradas verificadas.
+     *
+     * @return A quantidade de entradas verificadas.
+     */
+    public long getEntradas() {
+        return entradas;
+    }
+
+    /**
+     * Define a quantidade de entradas verificadas.
+     *
+     * @param entradas A quantidade de entradas.
+     */
+    public void setEntradas(long entradas) {
+        this.entradas = entradas;
+    }
+
+    /**
+     * Obtém a mensagem de erro da última verificação.
+     *
+     * @return A mensagem de erro da última verificação.
+     */
+    public String getMensagem() {
+        return mensagem;
+    }
+
+    /**
+     * Define a mensagem de erro da última verificação.
+     *
+     * @param mensagem A mensagem de erro, ou null se o arquivo está íntegro.
+     */
+    public void setMensagem(String mensagem) {
+        this.mensagem = mensagem;
+    }
+}
@@ -0,0 +1,67 @@
+package com.mycompany.ferramentadebackup.metricas;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contador monotônico, seguro para uso concorrente.
+ * <p>
+ * Utiliza {@link LongAdder} para que várias threads de backup possam
+ * incrementar o mesmo contador sem disputa de travas.
+ */
+public class Contador implements Metrica {
+
+    private final String nome;
+    private final String ajuda;
+    private final LongAdder valor = new LongAdder();
+
+    Contador(String nome, String ajuda) {
+        this.nome = nome;
+        this.ajuda = ajuda;
+    }
+
+    /**
+     * Incrementa o contador em uma unidade.
+     */
+    public void incrementar() {
+        valor.increment();
+    }
+
+    /**
+     * Incrementa o contador no valor informado.
+     *
+     * @param quantidade A quantidade a ser somada. Valores negativos são
+     * ignorados, pois um contador nunca diminui.
+     */
+    public void incrementar(long quantidade) {
+        if (quantidade > 0) {
+            valor.add(quantidade);
+        }
+    }
+
+    /**
+     * @return O valor acumulado do contador.
+     */
+    public long getValor() {
+        return valor.sum();
+    }
+
+    @Override
+    public String getNome() {
+        return nome;
+    }
+
+    @Override
+    public String getAjuda() {
+        return ajuda;
+    }
+
+    @Override
+    public String getTipo() {
+        return "counter";
+    }
+
+    @Override
+    public void escreverAmostras(StringBuilder sb) {
+        sb.append(nome).append(' ').append(getValor()).append('\n');
+    }
+}
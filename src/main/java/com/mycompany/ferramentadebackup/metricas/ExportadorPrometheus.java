@@ -0,0 +1,95 @@
+package com.mycompany.ferramentadebackup.metricas;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grava periodicamente as métricas em um arquivo no formato texto do
+ * Prometheus, para ser lido pelo textfile collector do node_exporter.
+ * <p>
+ * O conteúdo é escrito primeiro em um arquivo temporário no mesmo diretório e
+ * depois movido atomicamente sobre o arquivo final, para que o coletor nunca
+ * leia um arquivo pela metade. Nenhuma porta de rede é aberta.
+ */
+public class ExportadorPrometheus {
+
+    private final RegistroMetricas registro;
+    private final Path arquivo;
+    private final long intervaloSegundos;
+    private ScheduledExecutorService agendador;
+
+    /**
+     * Cria um exportador para o arquivo informado.
+     *
+     * @param registro O registro de métricas a ser exportado.
+     * @param arquivo O arquivo .prom de destino.
+     * @param intervaloSegundos O intervalo entre as gravações, em segundos.
+     */
+    public ExportadorPrometheus(RegistroMetricas registro, Path arquivo, long intervaloSegundos) {
+        this.registro = registro;
+        this.arquivo = arquivo.toAbsolutePath();
+        this.intervaloSegundos = intervaloSegundos;
+    }
+
+    /**
+     * Inicia a gravação periódica em uma thread daemon de baixa prioridade.
+     * Chamadas repetidas não criam novas threads.
+     */
+    public synchronized void iniciar() {
+        if (agendador != null) {
+            return;
+        }
+        agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "exportador-prometheus");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        agendador.scheduleWithFixedDelay(this::gravarSemFalhar, 0, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Interrompe a gravação periódica, gravando o arquivo uma última vez.
+     */
+    public synchronized void parar() {
+        if (agendador != null) {
+            agendador.shutdown();
+            agendador = null;
+            gravarSemFalhar();
+        }
+    }
+
+    /**
+     * Grava imediatamente as métricas no arquivo de destino.
+     *
+     * @throws IOException Se ocorrer um erro ao gravar ou mover o arquivo.
+     */
+    public void gravar() throws IOException {
+        Path diretorio = arquivo.getParent();
+        if (diretorio != null) {
+            Files.createDirectories(diretorio);
+        }
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        Files.write(temporario, registro.formatarPrometheus().getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Alguns sistemas de arquivos não suportam ATOMIC_MOVE
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void gravarSemFalhar() {
+        try {
+            gravar();
+        } catch (IOException e) {
+            System.out.println("Erro ao gravar métricas em " + arquivo + ": " + e.getMessage());
+        }
+    }
+}
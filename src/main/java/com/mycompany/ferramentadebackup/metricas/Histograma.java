@@ -0,0 +1,127 @@
+package com.mycompany.ferramentadebackup.metricas;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências com limites fixos, no mesmo modelo de buckets
+ * cumulativos usado pelo Prometheus.
+ * <p>
+ * Cada observação incrementa apenas o primeiro bucket cujo limite é maior ou
+ * igual ao valor; os totais cumulativos são calculados somente na exportação.
+ */
+public class Histograma implements Metrica {
+
+    private final String nome;
+    private final String ajuda;
+    private final double[] limites;
+    private final LongAdder[] buckets;
+    private final LongAdder contagem = new LongAdder();
+    private final DoubleAdder soma = new DoubleAdder();
+
+    Histograma(String nome, String ajuda, double... limites) {
+        this.nome = nome;
+        this.ajuda = ajuda;
+        this.limites = limites.clone();
+        Arrays.sort(this.limites);
+        // O último bucket corresponde ao +Inf
+        this.buckets = new LongAdder[this.limites.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registra uma observação no histograma.
+     *
+     * @param valor O valor observado, normalmente em segundos.
+     */
+    public void observar(double valor) {
+        int indice = Arrays.binarySearch(limites, valor);
+        if (indice < 0) {
+            indice = -indice - 1;
+        }
+        buckets[indice].increment();
+        contagem.increment();
+        soma.add(valor);
+    }
+
+    /**
+     * Registra uma duração medida em nanossegundos, convertendo-a para
+     * segundos.
+     *
+     * @param nanos A duração em nanossegundos.
+     */
+    public void observarNanos(long nanos) {
+        observar(nanos / 1_000_000_000d);
+    }
+
+    /**
+     * @return A quantidade de observações registradas.
+     */
+    public long getContagem() {
+        return contagem.sum();
+    }
+
+    /**
+     * @return A soma de todas as observações registradas.
+     */
+    public double getSoma() {
+        return soma.sum();
+    }
+
+    /**
+     * Estima um quantil a partir dos buckets, devolvendo o limite superior do
+     * bucket onde o quantil cai.
+     *
+     * @param quantil O quantil desejado, entre 0 e 1 (ex.: 0.99).
+     * @return O limite superior estimado, ou {@code 0} se não houver
+     * observações. Se o quantil cair no bucket +Inf, devolve o maior limite
+     * configurado.
+     */
+    public double estimarQuantil(double quantil) {
+        long total = getContagem();
+        if (total == 0) {
+            return 0;
+        }
+        long alvo = (long) Math.ceil(total * quantil);
+        long acumulado = 0;
+        for (int i = 0; i < limites.length; i++) {
+            acumulado += buckets[i].sum();
+            if (acumulado >= alvo) {
+                return limites[i];
+            }
+        }
+        return limites.length > 0 ? limites[limites.length - 1] : 0;
+    }
+
+    @Override
+    public String getNome() {
+        return nome;
+    }
+
+    @Override
+    public String getAjuda() {
+        return ajuda;
+    }
+
+    @Override
+    public String getTipo() {
+        return "histogram";
+    }
+
+    @Override
+    public void escreverAmostras(StringBuilder sb) {
+        long acumulado = 0;
+        for (int i = 0; i < limites.length; i++) {
+            acumulado += buckets[i].sum();
+            sb.append(nome).append("_bucket{le=\"").append(RegistroMetricas.formatarNumero(limites[i]))
+                    .append("\"} ").append(acumulado).append('\n');
+        }
+        acumulado += buckets[limites.length].sum();
+        sb.append(nome).append("_bucket{le=\"+Inf\"} ").append(acumulado).append('\n');
+        sb.append(nome).append("_sum ").append(RegistroMetricas.formatarNumero(getSoma())).append('\n');
+        sb.append(nome).append("_count ").append(acumulado).append('\n');
+    }
+}
@@ -0,0 +1,86 @@
+package com.mycompany.ferramentadebackup.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Medidor (gauge) que representa um valor instantâneo, que pode subir ou
+ * descer, como a quantidade de jobs na fila ou o atraso do agendador.
+ * <p>
+ * O valor é guardado como os bits de um {@code double} dentro de um
+ * {@link AtomicLong}, permitindo atualizações atômicas sem sincronização.
+ */
+public class Medidor implements Metrica {
+
+    private final String nome;
+    private final String ajuda;
+    private final AtomicLong bits = new AtomicLong(Double.doubleToLongBits(0));
+
+    Medidor(String nome, String ajuda) {
+        this.nome = nome;
+        this.ajuda = ajuda;
+    }
+
+    /**
+     * Define o valor atual do medidor.
+     *
+     * @param valor O novo valor.
+     */
+    public void definir(double valor) {
+        bits.set(Double.doubleToLongBits(valor));
+    }
+
+    /**
+     * Soma o valor informado ao valor atual do medidor.
+     *
+     * @param delta O valor a ser somado (pode ser negativo).
+     */
+    public void somar(double delta) {
+        long atual;
+        long novo;
+        do {
+            atual = bits.get();
+            novo = Double.doubleToLongBits(Double.longBitsToDouble(atual) + delta);
+        } while (!bits.compareAndSet(atual, novo));
+    }
+
+    /**
+     * Incrementa o medidor em uma unidade.
+     */
+    public void incrementar() {
+        somar(1);
+    }
+
+    /**
+     * Decrementa o medidor em uma unidade.
+     */
+    public void decrementar() {
+        somar(-1);
+    }
+
+    /**
+     * @return O valor atual do medidor.
+     */
+    public double getValor() {
+        return Double.longBitsToDouble(bits.get());
+    }
+
+    @Override
+    public String getNome() {
+        return nome;
+    }
+
+    @Override
+    public String getAjuda() {
+        return ajuda;
+    }
+
+    @Override
+    public String getTipo() {
+        return "gauge";
+    }
+
+    @Override
+    public void escreverAmostras(StringBuilder sb) {
+        sb.append(nome).append(' ').append(RegistroMetricas.formatarNumero(getValor())).append('\n');
+    }
+}
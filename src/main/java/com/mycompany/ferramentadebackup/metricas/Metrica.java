@@ -0,0 +1,33 @@
+package com.mycompany.ferramentadebackup.metricas;
+
+/**
+ * Contrato comum das métricas mantidas pelo {@link RegistroMetricas}.
+ * <p>
+ * Cada métrica sabe escrever as suas próprias amostras no formato texto do
+ * Prometheus, o que permite ao registro exportar todas elas sem conhecer o
+ * tipo concreto de cada uma.
+ */
+interface Metrica {
+
+    /**
+     * @return O nome da métrica no formato Prometheus (ex.: backup_jobs_total).
+     */
+    String getNome();
+
+    /**
+     * @return O texto de ajuda exibido na linha {@code # HELP}.
+     */
+    String getAjuda();
+
+    /**
+     * @return O tipo Prometheus da métrica (counter, gauge ou histogram).
+     */
+    String getTipo();
+
+    /**
+     * Escreve as linhas de amostra da métrica, sem as linhas de cabeçalho.
+     *
+     * @param sb O buffer onde as amostras serão acrescentadas.
+     */
+    void escreverAmostras(StringBuilder sb);
+}
@@ -0,0 +1,339 @@
+package com.mycompany.ferramentadebackup.metricas;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Ponto central de instrumentação das operações de backup.
+ * <p>
+ * Esta classe concentra as métricas usadas pela aplicação (jobs executados e
+ * com falha, bytes lidos e escritos, arquivos por segundo, profundidade da
+ * fila, atraso do agendador e latência do banco de dados) e as expõe de duas
+ * formas, sem abrir nenhuma porta de rede:
+ * <ul>
+ * <li>como MBean JMX, registrado por {@link #iniciar()};</li>
+ * <li>como arquivo texto do Prometheus, regravado periodicamente pelo
+ * {@link ExportadorPrometheus}.</li>
+ * </ul>
+ * <p>
+ * O caminho do arquivo pode ser definido pela propriedade de sistema
+ * {@code ferramentadebackup.metricas.arquivo} (padrão:
+ * {@code metricas_backup.prom} no diretório de trabalho) e o intervalo de
+ * gravação pela propriedade {@code ferramentadebackup.metricas.intervalo}, em
+ * segundos (padrão: 15).
+ */
+public class MetricasBackup implements MetricasBackupMBean {
+
+    // Nome do MBean registrado no servidor JMX da plataforma
+    public static final String NOME_MBEAN = "com.mycompany.ferramentadebackup:type=MetricasBackup";
+
+    private static final RegistroMetricas REGISTRO = RegistroMetricas.getInstancia();
+
+    private static final Contador JOBS_EXECUTADOS = REGISTRO.contador("backup_jobs_executados_total", "Quantidade de jobs de backup executados.");
+    private static final Contador JOBS_FALHOS = REGISTRO.contador("backup_jobs_falhos_total", "Quantidade de jobs de backup que terminaram com erro.");
+    private static final Contador BYTES_LIDOS = REGISTRO.contador("backup_bytes_lidos_total", "Bytes lidos da origem durante a compactação.");
+    private static final Contador BYTES_ESCRITOS = REGISTRO.contador("backup_bytes_escritos_total", "Bytes escritos no destino durante a compactação.");
+    private static final Contador ARQUIVOS = REGISTRO.contador("backup_arquivos_total", "Quantidade de arquivos adicionados aos backups.");
+    private static final Contador VERIFICACOES = REGISTRO.contador("backup_verificacoes_total", "Quantidade de arquivos de backup verificados em segundo plano.");
+    private static final Contador VERIFICACOES_CORROMPIDAS = REGISTRO.contador("backup_verificacoes_corrompidas_total", "Quantidade de verificações que encontraram um arquivo corrompido.");
+    private static final Contador COPIAS = REGISTRO.contador("backup_copias_total", "Quantidade de cópias de backup gravadas nos destinos adicionais.");
+    private static final Contador COPIAS_FALHAS = REGISTRO.contador("backup_copias_falhas_total", "Quantidade de cópias de backup que não puderam ser gravadas nos destinos adicionais.");
+    private static final Contador EXECUCOES_REMOVIDAS = REGISTRO.contador("backup_execucoes_removidas_total", "Quantidade de execuções antigas excluídas pela retenção.");
+    private static final Contador BYTES_LIBERADOS = REGISTRO.contador("backup_bytes_liberados_total", "Bytes de arquivos de backup excluídos pela retenção.");
+    private static final Contador ARQUIVOS_DELTA = REGISTRO.contador("backup_delta_arquivos_total", "Quantidade de arquivos grandes gravados como delta do backup anterior.");
+    private static final Contador BYTES_REAPROVEITADOS = REGISTRO.contador("backup_delta_bytes_reaproveitados_total", "Bytes de arquivos delta copiados do backup anterior em vez de gravados.");
+    private static final Contador CACHE_HASHES_ACERTOS = REGISTRO.contador("backup_cache_hashes_acertos_total", "Consultas ao cache de hashes que encontraram o arquivo.");
+    private static final Contador CACHE_HASHES_FALTAS = REGISTRO.contador("backup_cache_hashes_faltas_total", "Consultas ao cache de hashes que não encontraram o arquivo.");
+    private static final Contador ARQUIVOS_DUPLICADOS = REGISTRO.contador("backup_duplicados_arquivos_total", "Quantidade de arquivos repetidos gravados como referência a outra entrada do mesmo backup.");
+    private static final Contador BYTES_DUPLICADOS = REGISTRO.contador("backup_duplicados_bytes_total", "Bytes de arquivos repetidos que não foram comprimidos de novo.");
+    private static final Contador GRAVACOES_CONTINUAS = REGISTRO.contador("backup_continuo_gravacoes_total", "Quantidade de lotes de alterações gravados pelo backup contínuo.");
+    private static final Contador ALTERACOES_CONTINUAS = REGISTRO.contador("backup_continuo_alteracoes_total", "Quantidade de alterações da origem gravadas pelo backup contínuo.");
+    private static final Contador VARREDURAS_CONTINUAS = REGISTRO.contador("backup_continuo_varreduras_total", "Gravações do backup contínuo que percorreram a origem inteira.");
+    private static final Medidor ARQUIVOS_POR_SEGUNDO = REGISTRO.medidor("backup_arquivos_por_segundo", "Taxa de arquivos por segundo da última compactação.");
+    private static final Medidor FILA = REGISTRO.medidor("backup_fila_jobs", "Jobs de backup aguardando ou em execução.");
+    private static final Medidor CONCORRENCIA = REGISTRO.medidor("backup_concorrencia_volumes", "Limite atual de volumes lidos e comprimidos ao mesmo tempo.");
+    private static final Medidor ATRASO_AGENDADOR = REGISTRO.medidor("backup_atraso_agendador_segundos", "Atraso do último disparo do agendador em relação ao intervalo esperado.");
+    private static final Histograma LATENCIA_BD = REGISTRO.histograma("backup_latencia_bd_segundos", "Latência das operações no banco de dados.",
+            0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5);
+    private static final Histograma DURACAO_JOB = REGISTRO.histograma("backup_duracao_job_segundos", "Duração dos jobs de backup.",
+            1, 5, 15, 60, 300, 900, 1800, 3600, 7200, 14400, 43200);
+    private static final Histograma DURACAO_RESTAURACAO = REGISTRO.histograma("backup_duracao_restauracao_segundos", "Duração das restaurações.",
+            1, 5, 15, 60, 300, 900, 1800, 3600, 7200, 14400, 43200);
+
+    private static ExportadorPrometheus exportador;
+
+    /**
+     * Registra o MBean JMX e inicia a gravação periódica do arquivo do
+     * Prometheus. Pode ser chamado mais de uma vez sem efeitos colaterais.
+     */
+    public static synchronized void iniciar() {
+        if (exportador != null) {
+            return;
+        }
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName nome = new ObjectName(NOME_MBEAN);
+            if (!servidor.isRegistered(nome)) {
+                servidor.registerMBean(new MetricasBackup(), nome);
+            }
+        } catch (JMException e) {
+            System.out.println("Erro ao registrar o MBean de métricas: " + e.getMessage());
+        }
+
+        String arquivo = System.getProperty("ferramentadebackup.metricas.arquivo", "metricas_backup.prom");
+        long intervalo = Long.getLong("ferramentadebackup.metricas.intervalo", 15L);
+        exportador = new ExportadorPrometheus(REGISTRO, Paths.get(arquivo), intervalo);
+        exportador.iniciar();
+    }
+
+    /**
+     * Registra que um job foi colocado na fila de execução.
+     */
+    public static void jobEnfileirado() {
+        FILA.incrementar();
+    }
+
+    /**
+     * Registra que um job saiu da fila, tendo terminado com sucesso ou não.
+     */
+    public static void jobFinalizado() {
+        FILA.decrementar();
+    }
+
+    /**
+     * Registra a conclusão bem-sucedida de um job de backup.
+     *
+     * @param duracaoNanos A duração do job em nanossegundos.
+     */
+    public static void jobConcluido(long duracaoNanos) {
+        JOBS_EXECUTADOS.incrementar();
+        DURACAO_JOB.observarNanos(duracaoNanos);
+    }
+
+    /**
+     * Registra um job de backup que terminou com erro.
+     *
+     * @param duracaoNanos A duração do job em nanossegundos.
+     */
+    public static void jobFalhou(long duracaoNanos) {
+        JOBS_EXECUTADOS.incrementar();
+        JOBS_FALHOS.incrementar();
+        DURACAO_JOB.observarNanos(duracaoNanos);
+    }
+
+    /**
+     * Registra um arquivo adicionado a um backup.
+     *
+     * @param bytesLidos A quantidade de bytes lidos da origem.
+     */
+    public static void arquivoAdicionado(long bytesLidos) {
+        ARQUIVOS.incrementar();
+        BYTES_LIDOS.incrementar(bytesLidos);
+    }
+
+    /**
+     * Registra bytes escritos no destino.
+     *
+     * @param bytes A quantidade de bytes escritos.
+     */
+    public static void bytesEscritos(long bytes) {
+        BYTES_ESCRITOS.incrementar(bytes);
+    }
+
+    /**
+     * Atualiza a taxa de arquivos por segundo ao final de uma compactação.
+     *
+     * @param arquivos A quantidade de arquivos compactados.
+     * @param duracaoNanos A duração da compactação em nanossegundos.
+     */
+    public static void compactacaoFinalizada(long arquivos, long duracaoNanos) {
+        if (duracaoNanos > 0) {
+            ARQUIVOS_POR_SEGUNDO.definir(arquivos / (duracaoNanos / 1_000_000_000d));
+        }
+    }
+
+    /**
+     * Registra a duração de uma restauração.
+     *
+     * @param duracaoNanos A duração da restauração em nanossegundos.
+     */
+    public static void restauracaoConcluida(long duracaoNanos) {
+        DURACAO_RESTAURACAO.observarNanos(duracaoNanos);
+    }
+
+    /**
+     * Registra o resultado da verificação de integridade de um arquivo de
+     * backup.
+     *
+     * @param integro {@code true} se todas as entradas conferiram.
+     */
+    public static void verificacaoConcluida(boolean integro) {
+        VERIFICACOES.incrementar();
+        if (!integro) {
+            VERIFICACOES_CORROMPIDAS.incrementar();
+        }
+    }
+
+    /**
+     * Registra a exclusão dos arquivos de uma execução antiga pela retenção.
+     *
+     * @param bytes O tamanho dos arquivos locais excluídos.
+     */
+    public static void execucaoRemovida(long bytes) {
+        EXECUCOES_REMOVIDAS.incrementar();
+        BYTES_LIBERADOS.incrementar(bytes);
+    }
+
+    /**
+     * Registra um arquivo grande gravado como delta do backup anterior.
+     *
+     * @param tamanho O tamanho do arquivo.
+     * @param bytesNovos Os bytes gravados como dados novos.
+     */
+    public static void arquivoDelta(long tamanho, long bytesNovos) {
+        ARQUIVOS_DELTA.incrementar();
+        BYTES_REAPROVEITADOS.incrementar(Math.max(0, tamanho - bytesNovos));
+    }
+
+    /**
+     * Registra um arquivo repetido gravado como referência a outra entrada.
+     *
+     * @param tamanho O tamanho do arquivo.
+     */
+    public static void arquivoDuplicado(long tamanho) {
+        ARQUIVOS_DUPLICADOS.incrementar();
+        BYTES_DUPLICADOS.incrementar(tamanho);
+    }
+
+    /**
+     * Registra uma consulta ao cache de hashes do conteúdo.
+     *
+     * @param acerto {@code true} se o arquivo estava no cache.
+     */
+    public static void consultaCacheHashes(boolean acerto) {
+        (acerto ? CACHE_HASHES_ACERTOS : CACHE_HASHES_FALTAS).incrementar();
+    }
+
+    /**
+     * Registra um lote de alterações gravado pelo backup contínuo.
+     *
+     * @param alteracoes A quantidade de alterações do lote.
+     * @param varredura {@code true} se a origem foi percorrida por inteiro.
+     */
+    public static void gravacaoContinua(int alteracoes, boolean varredura) {
+        GRAVACOES_CONTINUAS.incrementar();
+        ALTERACOES_CONTINUAS.incrementar(alteracoes);
+        if (varredura) {
+            VARREDURAS_CONTINUAS.incrementar();
+        }
+    }
+
+    /**
+     * Registra o resultado da gravação de uma cópia do backup em um destino
+     * adicional.
+     *
+     * @param gravada {@code true} se a cópia foi gravada.
+     */
+    public static void copiaConcluida(boolean gravada) {
+        COPIAS.incrementar();
+        if (!gravada) {
+            COPIAS_FALHAS.incrementar();
+        }
+    }
+
+    /**
+     * Registra um ajuste do limite de volumes processados ao mesmo tempo.
+     *
+     * @param limite O novo limite.
+     */
+    public static void concorrenciaAjustada(int limite) {
+        CONCORRENCIA.definir(limite);
+    }
+
+    /**
+     * @return {@code true} se houver algum job de backup aguardando ou em
+     * execução.
+     */
+    public static boolean isJobEmExecucao() {
+        return FILA.getValor() > 0;
+    }
+
+    /**
+     * Registra o atraso do agendador em relação ao momento esperado do
+     * disparo.
+     *
+     * @param atrasoMillis O atraso em milissegundos.
+     */
+    public static void atrasoAgendador(long atrasoMillis) {
+        ATRASO_AGENDADOR.definir(Math.max(0, atrasoMillis) / 1000d);
+    }
+
+    /**
+     * Registra a latência de uma operação no banco de dados.
+     *
+     * @param duracaoNanos A duração da operação em nanossegundos.
+     */
+    public static void latenciaBancoDeDados(long duracaoNanos) {
+        LATENCIA_BD.observarNanos(duracaoNanos);
+    }
+
+    @Override
+    public long getJobsExecutados() {
+        return JOBS_EXECUTADOS.getValor();
+    }
+
+    @Override
+    public long getJobsFalhos() {
+        return JOBS_FALHOS.getValor();
+    }
+
+    @Override
+    public long getBytesLidos() {
+        return BYTES_LIDOS.getValor();
+    }
+
+    @Override
+    public long getBytesEscritos() {
+        return BYTES_ESCRITOS.getValor();
+    }
+
+    @Override
+    public long getArquivosProcessados() {
+        return ARQUIVOS.getValor();
+    }
+
+    @Override
+    public double getArquivosPorSegundo() {
+        return ARQUIVOS_POR_SEGUNDO.getValor();
+    }
+
+    @Override
+    public double getProfundidadeFila() {
+        return FILA.getValor();
+    }
+
+    @Override
+    public double getAtrasoAgendadorSegundos() {
+        return ATRASO_AGENDADOR.getValor();
+    }
+
+    @Override
+    public double getLatenciaBancoDeDadosMediaSegundos() {
+        long contagem = LATENCIA_BD.getContagem();
+        return contagem == 0 ? 0 : LATENCIA_BD.getSoma() / contagem;
+    }
+
+    @Override
+    public double getLatenciaBancoDeDadosP99Segundos() {
+        return LATENCIA_BD.estimarQuantil(0.99);
+    }
+
+    @Override
+    public double getDuracaoJobMediaSegundos() {
+        long contagem = DURACAO_JOB.getContagem();
+        return contagem == 0 ? 0 : DURACAO_JOB.getSoma() / contagem;
+    }
+}
@@ -0,0 +1,32 @@
+package com.mycompany.ferramentadebackup.metricas;
+
+/**
+ * Interface de gerenciamento JMX das métricas de backup.
+ * <p>
+ * Os atributos ficam visíveis em ferramentas como JConsole e VisualVM sob o
+ * nome {@code com.mycompany.ferramentadebackup:type=MetricasBackup}.
+ */
+public interface MetricasBackupMBean {
+
+    long getJobsExecutados();
+
+    long getJobsFalhos();
+
+    long getBytesLidos();
+
+    long getBytesEscritos();
+
+    long getArquivosProcessados();
+
+    double getArquivosPorSegundo();
+
+    double getProfundidadeFila();
+
+    double getAtrasoAgendadorSegundos();
+
+    double getLatenciaBancoDeDadosMediaSegundos();
+
+    double getLatenciaBancoDeDadosP99Segundos();
+
+    double getDuracaoJobMediaSegundos();
+}
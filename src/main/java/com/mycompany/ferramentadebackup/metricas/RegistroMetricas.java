@@ -0,0 +1,116 @@
+package com.mycompany.ferramentadebackup.metricas;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Registro em memória das métricas da aplicação.
+ * <p>
+ * Mantém contadores, medidores e histogramas indexados pelo nome e sabe
+ * serializá-los no formato texto do Prometheus. Existe uma única instância
+ * por processo, obtida por {@link #getInstancia()}.
+ * <p>
+ * Métodos disponíveis:
+ * <ul>
+ * <li>{@link #contador(String, String)} - Obtém ou cria um contador.</li>
+ * <li>{@link #medidor(String, String)} - Obtém ou cria um medidor.</li>
+ * <li>{@link #histograma(String, String, double...)} - Obtém ou cria um
+ * histograma.</li>
+ * <li>{@link #formatarPrometheus()} - Exporta todas as métricas no formato
+ * texto do Prometheus.</li>
+ * </ul>
+ */
+public class RegistroMetricas {
+
+    private static final RegistroMetricas INSTANCIA = new RegistroMetricas();
+
+    // Métricas indexadas pelo nome; a ordem de exportação segue o nome
+    private final Map<String, Metrica> metricas = new ConcurrentHashMap<>();
+
+    private RegistroMetricas() {
+    }
+
+    /**
+     * @return A instância única do registro de métricas.
+     */
+    public static RegistroMetricas getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Obtém o contador com o nome informado, criando-o se necessário.
+     *
+     * @param nome O nome da métrica.
+     * @param ajuda O texto de ajuda.
+     * @return O contador registrado.
+     */
+    public Contador contador(String nome, String ajuda) {
+        return registrar(nome, Contador.class, n -> new Contador(n, ajuda));
+    }
+
+    /**
+     * Obtém o medidor com o nome informado, criando-o se necessário.
+     *
+     * @param nome O nome da métrica.
+     * @param ajuda O texto de ajuda.
+     * @return O medidor registrado.
+     */
+    public Medidor medidor(String nome, String ajuda) {
+        return registrar(nome, Medidor.class, n -> new Medidor(n, ajuda));
+    }
+
+    /**
+     * Obtém o histograma com o nome informado, criando-o se necessário.
+     *
+     * @param nome O nome da métrica.
+     * @param ajuda O texto de ajuda.
+     * @param limites Os limites superiores dos buckets.
+     * @return O histograma registrado.
+     */
+    public Histograma histograma(String nome, String ajuda, double... limites) {
+        return registrar(nome, Histograma.class, n -> new Histograma(n, ajuda, limites));
+    }
+
+    /**
+     * Exporta todas as métricas registradas no formato texto do Prometheus
+     * (versão 0.0.4), ordenadas pelo nome.
+     *
+     * @return O conteúdo pronto para ser gravado no arquivo do textfile
+     * collector.
+     */
+    public String formatarPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        metricas.values().stream()
+                .sorted((a, b) -> a.getNome().compareTo(b.getNome()))
+                .forEach(metrica -> {
+                    sb.append("# HELP ").append(metrica.getNome()).append(' ').append(metrica.getAjuda()).append('\n');
+                    sb.append("# TYPE ").append(metrica.getNome()).append(' ').append(metrica.getTipo()).append('\n');
+                    metrica.escreverAmostras(sb);
+                });
+        return sb.toString();
+    }
+
+    /**
+     * Formata um número no padrão aceito pelo Prometheus, sempre com ponto
+     * decimal e sem notação dependente de localidade.
+     *
+     * @param valor O valor a ser formatado.
+     * @return O valor formatado.
+     */
+    static String formatarNumero(double valor) {
+        if (valor == Math.rint(valor) && !Double.isInfinite(valor) && Math.abs(valor) < 1e15) {
+            return Long.toString((long) valor);
+        }
+        return String.format(Locale.ROOT, "%s", valor);
+    }
+
+    private <T extends Metrica> T registrar(String nome, Class<T> tipo, Function<String, T> fabrica) {
+        Metrica metrica = metricas.computeIfAbsent(nome, fabrica::apply);
+        if (!tipo.isInstance(metrica)) {
+            throw new IllegalArgumentException("A métrica '" + nome + "' já está registrada como " + metrica.getTipo());
+        }
+        return tipo.cast(metrica);
+    }
+}
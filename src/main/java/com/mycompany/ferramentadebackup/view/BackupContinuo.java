@@ -0,0 +1,240 @@
+package com.mycompany.ferramentadebackup.view;
+
+import com.mycompany.ferramentadebackup.armazenamento.Armazenamentos;
+import com.mycompany.ferramentadebackup.compactadorzip.CompactadorZip;
+import com.mycompany.ferramentadebackup.compactadorzip.DiarioAlteracoes;
+import com.mycompany.ferramentadebackup.compactadorzip.LimitesTaxa;
+import com.mycompany.ferramentadebackup.compactadorzip.MonitorAlteracoes;
+import com.mycompany.ferramentadebackup.compactadorzip.OpcoesCompactacao;
+import com.mycompany.ferramentadebackup.dao.BancoDeDadosDAO;
+import com.mycompany.ferramentadebackup.dao.CacheHashesDAO;
+import com.mycompany.ferramentadebackup.dto.BancoDeDadosDTO;
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backup contínuo dos agendamentos com a opção ativada: as alterações da
+ * origem são observadas enquanto o programa está aberto e gravadas
+ * periodicamente em um arquivo próprio do agendamento.
+ * <p>
+ * Para cada agendamento com destino local, um {@link MonitorAlteracoes}
+ * registra os arquivos criados, modificados e removidos em um
+ * {@link DiarioAlteracoes} persistente. A cada intervalo, as alterações
+ * pendentes são acrescentadas ao arquivo {@code nomeBackup-continuo.zip} no
+ * diretório de destino, lendo só os arquivos alterados; os arquivos removidos
+ * da origem continuam no arquivo. O lote só sai do diário depois de gravado,
+ * de modo que uma falha ou o fechamento do programa não perdem alterações.
+ * Cada gravação de um arquivo alterado deixa a versão anterior no arquivo,
+ * sem referência; quando essas versões passam do percentual do arquivo dado
+ * pela propriedade {@code ferramentadebackup.continuo.compactacao.percentual}
+ * (padrão 50), o arquivo é regravado só com as versões atuais.
+ * <p>
+ * O arquivo contínuo não é registrado no catálogo nem no histórico de
+ * execuções, e por isso nunca é excluído pela {@link PodaBackups retenção};
+ * os backups agendados continuam sendo feitos normalmente. Os agendamentos
+ * são relidos a cada intervalo, que pode ser ajustado com a propriedade de
+ * sistema {@code ferramentadebackup.continuo.intervalo.minutos} (padrão 5).
+ * Os diários ficam no diretório da propriedade
+ * {@code ferramentadebackup.continuo.diretorio} (padrão "alteracoes").
+ */
+public class BackupContinuo {
+
+    static final String SUFIXO_ARQUIVO = "-continuo";
+
+    private static Thread thread;
+
+    private final long intervaloMillis;
+    private final Path diretorioDiarios;
+    private final int percentualNaoReferenciado;
+    private final Map<Integer, Observacao> observacoes = new HashMap<>();
+
+    private BackupContinuo() {
+        this.intervaloMillis = TimeUnit.MINUTES.toMillis(Long.getLong("ferramentadebackup.continuo.intervalo.minutos", 5L));
+        this.diretorioDiarios = Paths.get(System.getProperty("ferramentadebackup.continuo.diretorio", "alteracoes"));
+        this.percentualNaoReferenciado = Integer.getInteger("ferramentadebackup.continuo.compactacao.percentual", 50);
+    }
+
+    /**
+     * Inicia a thread do backup contínuo. Pode ser chamado mais de uma vez
+     * sem efeitos colaterais.
+     */
+    public static synchronized void iniciar() {
+        if (thread != null) {
+            return;
+        }
+        BackupContinuo continuo = new BackupContinuo();
+        thread = new Thread(continuo::executar, "backup-continuo");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void executar() {
+        try {
+            while (true) {
+                atualizarObservacoes();
+                for (Observacao observacao : observacoes.values()) {
+                    gravar(observacao);
+                }
+                Thread.sleep(intervaloMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Observacao observacao : observacoes.values()) {
+                observacao.fechar();
+            }
+        }
+    }
+
+    /**
+     * Inicia a observação dos agendamentos que passaram a usar o backup
+     * contínuo e encerra a dos que deixaram de usar ou mudaram de origem ou
+     * de destino.
+     */
+    private void atualizarObservacoes() {
+        Set<Integer> ativos = new HashSet<>();
+        for (BancoDeDadosDTO dto : new BancoDeDadosDAO().listar()) {
+            if (!"Sim".equals(dto.getBackupContinuo()) || !Armazenamentos.isLocal(dto.getDiretorioDestino())
+                    || !Files.isDirectory(Paths.get(dto.getDiretorioOrigem()))) {
+                continue;
+            }
+            Observacao observacao = observacoes.get(dto.getId());
+            if (observacao != null && !observacao.isMesmaOrigem(dto)) {
+                observacao.fechar();
+                observacoes.remove(dto.getId());
+                observacao = null;
+            }
+            if (observacao == null) {
+                observacao = observar(dto);
+                if (observacao == null) {
+                    continue;
+                }
+                observacoes.put(dto.getId(), observacao);
+            }
+            observacao.dto = dto;
+            ativos.add(dto.getId());
+        }
+        for (Iterator<Map.Entry<Integer, Observacao>> it = observacoes.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Integer, Observacao> entrada = it.next();
+            if (!ativos.contains(entrada.getKey())) {
+                entrada.getValue().fechar();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Abre o diário do agendamento e inicia o monitor da origem.
+     *
+     * @return A observação, ou {@code null} se ela não puder ser iniciada.
+     */
+    private Observacao observar(BancoDeDadosDTO dto) {
+        DiarioAlteracoes diario = null;
+        try {
+            diario = DiarioAlteracoes.abrir(diretorioDiarios.resolve(dto.getId() + ".alteracoes"));
+            MonitorAlteracoes monitor = new MonitorAlteracoes(Paths.get(dto.getDiretorioOrigem()),
+                    Paths.get(dto.getDiretorioDestino()), diario);
+            System.out.println("Backup contínuo de " + dto.getNomeBackup() + ": " + monitor.getDiretorios() + " diretório(s) observado(s).");
+            return new Observacao(dto, diario, monitor);
+        } catch (IOException e) {
+            System.out.println("Não foi possível iniciar o backup contínuo de " + dto.getNomeBackup() + ": " + e.getMessage());
+            if (diario != null) {
+                try {
+                    diario.close();
+                } catch (IOException ex) {
+                    // Já informado acima
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Grava no arquivo contínuo as alterações pendentes de um agendamento.
+     * O job é contabilizado na fila das métricas, o que pausa a verificação
+     * e a retenção em segundo plano durante a gravação. Num agendamento
+     * criptografado, a senha é pedida uma vez; se o usuário não a informar,
+     * as alterações ficam no diário até a senha ser conhecida.
+     */
+    private void gravar(Observacao observacao) {
+        if (observacao.diario.isVazio()) {
+            return;
+        }
+        BancoDeDadosDTO dto = observacao.dto;
+        char[] senha = null;
+        if (SenhasCriptografia.isCriptografado(dto)) {
+            senha = SenhasCriptografia.obter(dto, false);
+            if (senha == null) {
+                return;
+            }
+        }
+        OpcoesCompactacao opcoes = FerramentaDeBackupView.criarOpcoesCompactacao(dto, senha);
+        if (senha != null) {
+            Arrays.fill(senha, '\0');
+        }
+        opcoes.setAcrescentar(true);
+        opcoes.setPercentualNaoReferenciado(percentualNaoReferenciado);
+        // Um arquivo dividido não pode receber acréscimos
+        opcoes.setTamanhoVolume(0);
+        String destino = Paths.get(dto.getDiretorioDestino(), dto.getNomeBackup() + SUFIXO_ARQUIVO + opcoes.getFormato().getExtensao()).toString();
+
+        DiarioAlteracoes.Lote lote = observacao.diario.retirar();
+        MetricasBackup.jobEnfileirado();
+        LimitesTaxa limites = ControleLimitesTaxa.registrar(dto);
+        try (CacheHashesDAO cacheHashes = FerramentaDeBackupView.abrirCacheHashes()) {
+            opcoes.setLimites(limites);
+            opcoes.setCacheHashes(cacheHashes);
+            CompactadorZip.compactarAlteracoes(dto.getDiretorioOrigem(), destino, lote, opcoes);
+            observacao.diario.confirmar();
+            MetricasBackup.gravacaoContinua(lote.getAlteracoes().size(), lote.isReescanear());
+            System.out.println("Backup contínuo de " + dto.getNomeBackup() + ": "
+                    + (lote.isReescanear() ? "origem percorrida" : lote.getAlteracoes().size() + " alteração(ões) gravada(s)") + ".");
+        } catch (IOException | RuntimeException e) {
+            observacao.diario.devolver(lote);
+            System.out.println("Erro no backup contínuo de " + dto.getNomeBackup() + ": " + e.getMessage());
+        } finally {
+            ControleLimitesTaxa.remover(limites);
+            MetricasBackup.jobFinalizado();
+        }
+    }
+
+    /**
+     * O monitor e o diário de um agendamento observado.
+     */
+    private static class Observacao {
+
+        private BancoDeDadosDTO dto;
+        private final DiarioAlteracoes diario;
+        private final MonitorAlteracoes monitor;
+
+        Observacao(BancoDeDadosDTO dto, DiarioAlteracoes diario, MonitorAlteracoes monitor) {
+            this.dto = dto;
+            this.diario = diario;
+            this.monitor = monitor;
+        }
+
+        boolean isMesmaOrigem(BancoDeDadosDTO outro) {
+            return dto.getDiretorioOrigem().equals(outro.getDiretorioOrigem())
+                    && dto.getDiretorioDestino().equals(outro.getDiretorioDestino());
+        }
+
+        void fechar() {
+            try {
+                monitor.close();
+                diario.close();
+            } catch (IOException e) {
+                System.out.println("Erro ao encerrar o backup contínuo de " + dto.getNomeBackup() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.mycompany.ferramentadebackup.view;
+
+import com.mycompany.ferramentadebackup.compactadorzip.LimitesTaxa;
+import com.mycompany.ferramentadebackup.dao.BancoDeDadosDAO;
+import com.mycompany.ferramentadebackup.dto.BancoDeDadosDTO;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aplica aos backups em execução os limites de taxa definidos nos seus
+ * agendamentos.
+ * <p>
+ * Cada backup registra os seus {@link LimitesTaxa} ao iniciar. Uma thread de
+ * segundo plano reavalia os limites periodicamente, o que aplica as mudanças
+ * do horário de limitação (por exemplo, sem limite à noite e limitado no
+ * horário comercial) ao job em andamento. {@link #atualizar()} também é
+ * chamado quando as opções avançadas são salvas, para que a alteração valha
+ * imediatamente.
+ */
+public class ControleLimitesTaxa {
+
+    private static final long INTERVALO_SEGUNDOS = 15;
+
+    // Limites de cada backup em execução, com o ID do agendamento
+    private static final Map<LimitesTaxa, Integer> EM_EXECUCAO = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService agendador;
+
+    private ControleLimitesTaxa() {
+    }
+
+    /**
+     * Cria os limites de um backup que está iniciando, já com os valores do
+     * agendamento, e passa a reavaliá-los enquanto o backup estiver
+     * registrado.
+     *
+     * @param dto O agendamento do backup.
+     * @return Os limites a serem usados na compactação.
+     */
+    public static LimitesTaxa registrar(BancoDeDadosDTO dto) {
+        LimitesTaxa limites = new LimitesTaxa();
+        aplicar(dto, limites);
+        EM_EXECUCAO.put(limites, dto.getId());
+        iniciarAgendador();
+        return limites;
+    }
+
+    /**
+     * Deixa de reavaliar os limites de um backup que terminou.
+     *
+     * @param limites Os limites devolvidos por
+     * {@link #registrar(BancoDeDadosDTO)}.
+     */
+    public static void remover(LimitesTaxa limites) {
+        EM_EXECUCAO.remove(limites);
+    }
+
+    /**
+     * Relê do banco de dados os agendamentos dos backups em execução e aplica
+     * os limites vigentes.
+     */
+    public static void atualizar() {
+        if (EM_EXECUCAO.isEmpty()) {
+            return;
+        }
+        BancoDeDadosDAO dao = new BancoDeDadosDAO();
+        for (Map.Entry<LimitesTaxa, Integer> backup : EM_EXECUCAO.entrySet()) {
+            BancoDeDadosDTO dto = dao.buscarPorId(backup.getValue());
+            if (dto != null) {
+                aplicar(dto, backup.getKey());
+            }
+        }
+    }
+
+    /**
+     * Aplica os limites do agendamento, considerando o horário de limitação.
+     * A mudança dos valores é registrada no console.
+     *
+     * @param dto O agendamento do backup.
+     * @param limites Os limites do backup em execução.
+     */
+    static void aplicar(BancoDeDadosDTO dto, LimitesTaxa limites) {
+        boolean ativo = !"Sim".equals(dto.getLimiteSomenteHorario())
+                || dentroDoHorario(dto.getLimiteInicio(), dto.getLimiteFim(), LocalTime.now());
+        long bytesPorSegundo = ativo ? Math.max(0, dto.getLimiteMBps()) * 1024L * 1024L : 0;
+        int arquivosPorSegundo = ativo ? Math.max(0, dto.getLimiteArquivosSegundo()) : 0;
+
+        if (bytesPorSegundo != limites.getBytesPorSegundo() || arquivosPorSegundo != limites.getArquivosPorSegundo()) {
+            limites.definir(bytesPorSegundo, arquivosPorSegundo);
+            System.out.println("Limites do backup " + dto.getNomeBackup() + ": "
+                    + (bytesPorSegundo > 0 ? dto.getLimiteMBps() + " MB/s" : "sem limite de MB/s") + ", "
+                    + (arquivosPorSegundo > 0 ? arquivosPorSegundo + " arquivos/s" : "sem limite de arquivos/s"));
+        }
+    }
+
+    /**
+     * Verifica se um momento está dentro do horário de limitação. Se o fim
+     * for anterior ao início, o horário atravessa a meia-noite; se os dois
+     * forem iguais, o horário abrange o dia inteiro.
+     *
+     * @param inicio O início do horário, no formato HH:mm.
+     * @param fim O fim do horário, no formato HH:mm.
+     * @param agora O momento a verificar.
+     * @return {@code true} se o momento estiver dentro do horário. Um horário
+     * inválido é tratado como sempre ativo.
+     */
+    static boolean dentroDoHorario(String inicio, String fim, LocalTime agora) {
+        LocalTime horaInicio;
+        LocalTime horaFim;
+        try {
+            horaInicio = LocalTime.parse(inicio);
+            horaFim = LocalTime.parse(fim);
+        } catch (DateTimeParseException e) {
+            System.out.println("Horário de limitação inválido (" + inicio + " - " + fim + "); os limites serão aplicados o tempo todo.");
+            return true;
+        }
+        if (horaInicio.equals(horaFim)) {
+            return true;
+        }
+        if (horaInicio.isBefore(horaFim)) {
+            return !agora.isBefore(horaInicio) && agora.isBefore(horaFim);
+        }
+        return !agora.isBefore(horaInicio) || agora.isBefore(horaFim);
+    }
+
+    private static synchronized void iniciarAgendador() {
+        if (agendador != null) {
+            return;
+        }
+        agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "controle-limites-taxa");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agendador.scheduleWithFixedDelay(() -> {
+            try {
+                atualizar();
+            } catch (RuntimeException e) {
+                System.out.println("Erro ao atualizar os limites de taxa: " + e.getMessage());
+            }
+        }, INTERVALO_SEGUNDOS, INTERVALO_SEGUNDOS, TimeUnit.SECONDS);
+    }
+}
@@ -1,19 +1,47 @@
 package com.mycompany.ferramentadebackup.view;
 
+import com.mycompany.ferramentadebackup.armazenamento.ArmazenamentoBackup;
+import com.mycompany.ferramentadebackup.armazenamento.ArmazenamentoLocal;
+import com.mycompany.ferramentadebackup.armazenamento.Armazenamentos;
 import com.mycompany.ferramentadebackup.dao.BancoDeDadosDAO;
+import com.mycompany.ferramentadebackup.dao.CacheHashesDAO;
+import com.mycompany.ferramentadebackup.dao.CatalogoDAO;
+import com.mycompany.ferramentadebackup.dao.ConcorrenciaDAO;
+import com.mycompany.ferramentadebackup.dao.GravadorCatalogo;
 import com.mycompany.ferramentadebackup.dto.BancoDeDadosDTO;
+import com.mycompany.ferramentadebackup.dto.EntradaCatalogoDTO;
+import com.mycompany.ferramentadebackup.dto.ExecucaoBackupDTO;
+import com.mycompany.ferramentadebackup.compactadorzip.AssinaturasDelta;
 import com.mycompany.ferramentadebackup.compactadorzip.CompactadorZip;
+import com.mycompany.ferramentadebackup.compactadorzip.ConsolidadorZip;
+import com.mycompany.ferramentadebackup.compactadorzip.ControleConcorrencia;
+import com.mycompany.ferramentadebackup.compactadorzip.Criptografia;
+import com.mycompany.ferramentadebackup.compactadorzip.FormatosArquivo;
+import com.mycompany.ferramentadebackup.compactadorzip.LimitesTaxa;
+import com.mycompany.ferramentadebackup.compactadorzip.OpcoesCompactacao;
+import com.mycompany.ferramentadebackup.compactadorzip.PerfilCompressao;
+import com.mycompany.ferramentadebackup.compactadorzip.RestauradorZip;
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import javax.swing.table.DefaultTableModel;
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
 import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
 /**
  *
@@ -27,6 +55,10 @@ public class FerramentaDeBackupView extends javax.swing.JFrame {
     public FerramentaDeBackupView() {
         initComponents();
 
+        // O destino pode ser digitado para informar um bucket S3
+        txtDiretorio.setEditable(true);
+        txtDiretorio.setToolTipText("Diretório local ou s3://bucket/prefixo");
+
         verificarBancoDeDados();
 
         iconeJanela();
@@ -38,6 +70,16 @@ public class FerramentaDeBackupView extends javax.swing.JFrame {
 
         formatarJSpinner();
 
+        configurarMenus();
+
+        MetricasBackup.iniciar();
+
+        VerificadorSegundoPlano.iniciar();
+
+        PodaBackups.iniciar();
+
+        BackupContinuo.iniciar();
+
         new Timer(delay, taskPerformer).start();
 
     }
@@ -605,6 +647,10 @@ public class FerramentaDeBackupView extends javax.swing.JFrame {
      * Este método utiliza a classe {@link BancoDeDadosDAO} para verificar se o
      * banco de dados já existe. Se o banco de dados não existir, ele é criado
      * por meio do método {@link BancoDeDadosDAO#verificarECriarBancoDeDados()}.
+     * As tabelas do histórico de execuções e do catálogo de arquivos são
+     * criadas por {@link CatalogoDAO#verificarECriarTabelas()}, e a da
+     * quantidade de volumes gravados ao mesmo tempo, por
+     * {@link ConcorrenciaDAO#verificarECriarTabela()}.
      * </p>
      *
      * <p>
@@ -617,6 +663,12 @@ public class FerramentaDeBackupView extends javax.swing.JFrame {
 
         BancoDeDadosDAO objBancoDeDadosDAO = new BancoDeDadosDAO();
         objBancoDeDadosDAO.verificarECriarBancoDeDados();
+
+        CatalogoDAO objCatalogoDAO = new CatalogoDAO();
+        objCatalogoDAO.verificarECriarTabelas();
+
+        ConcorrenciaDAO objConcorrenciaDAO = new ConcorrenciaDAO();
+        objConcorrenciaDAO.verificarECriarTabela();
     }
 
     /**
@@ -715,6 +767,10 @@ public class FerramentaDeBackupView extends javax.swing.JFrame {
     * 6. Desabilita campos e configura os botões na interface de acordo com a lógica.
     * 7. Atualiza a tabela de agendamento de backup na interface.
     * </p>
+    * <p>
+    * Antes de salvar, a estimativa do backup é exibida para confirmação
+    * ({@link #confirmarEstimativa(String, Runnable)}); os passos 2 a 7 só são executados depois dela.
+    * </p>
     */
     public void salvarAgendamentoBackup() {
 
@@ -724,6 +780,14 @@ public class FerramentaDeBackupView extends javax.swing.JFrame {
             return;
         }
 
+        confirmarEstimativa(txtArquivoDiretorio.getText(), this::gravarAgendamentoBackup);
+    }
+
+    /**
+    * Grava no banco de dados o agendamento preenchido nos campos, depois de confirmada a estimativa.
+    */
+    private void gravarAgendamentoBackup() {
+
         String arquivoDiretorio = txtArquivoDiretorio.getText();
         String diretorioDestino = txtDiretorio.getText();
 
@@ -847,6 +911,61 @@ public class FerramentaDeBackupView extends javax.swing.JFrame {
         //jsHora.setValue(new Date());
     }
 
+    /**
+    * Exibe a estimativa da quantidade de arquivos, do tamanho, do tamanho compactado e da duração do
+    * backup da origem ({@link PrevisaoBackup}) e pede a confirmação do usuário. A varredura da origem
+    * dura no máximo o prazo da propriedade de sistema {@code ferramentadebackup.estimativa.prazo.segundos}
+    * (padrão 2), mais o mesmo tempo de amostragem em árvores grandes; com o valor 0, a estimativa não é
+    * exibida.
+    * <p>
+    * A estimativa é calculada por um {@link SwingWorker}, fora da thread da interface, que continua
+    * sendo redesenhada; a janela fica desabilitada até a confirmação ser exibida.
+    * </p>
+    *
+    * @param origem O diretório ou arquivo de origem.
+    * @param salvar A gravação do agendamento, executada na thread da interface se o usuário confirmar
+    * ou se não houver estimativa.
+    */
+    private void confirmarEstimativa(String origem, Runnable salvar) {
+
+        long prazoSegundos = Long.getLong("ferramentadebackup.estimativa.prazo.segundos", 2L);
+        if (prazoSegundos <= 0 || !Files.exists(Paths.get(origem))) {
+            salvar.run();
+            return;
+        }
+
+        setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<PrevisaoBackup, Void>() {
+            @Override
+            protected PrevisaoBackup doInBackground() throws IOException {
+                return PrevisaoBackup.calcular(origem, prazoSegundos * 1000, new CatalogoDAO());
+            }
+
+            @Override
+            protected void done() {
+                FerramentaDeBackupView.this.setCursor(Cursor.getDefaultCursor());
+                FerramentaDeBackupView.this.setEnabled(true);
+
+                PrevisaoBackup previsao;
+                try {
+                    previsao = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwable causa = e.getCause() != null ? e.getCause() : e;
+                    System.out.println("Não foi possível estimar o backup de " + origem + ": " + causa.getMessage());
+                    salvar.run();
+                    return;
+                }
+
+                int opcao = JOptionPane.showConfirmDialog(null, previsao.descrever() + "\n\nSalvar o agendamento?",
+                        "Estimativa do backup", JOptionPane.YES_NO_OPTION, JOptionPane.INFORMATION_MESSAGE);
+                if (opcao == JOptionPane.YES_OPTION) {
+                    salvar.run();
+                }
+            }
+        }.execute();
+    }
+
     /**
     * Verifica se os campos de entrada de dados obrigatórios estão preenchidos.
     *
@@ -935,12 +1054,20 @@ public class FerramentaDeBackupView extends javax.swing.JFrame {
     */
     private void atualizarAgendamentoBuckup() {
 
-        try {
+        if (verificarCampos()) {
 
-            if (verificarCampos()) {
+            return;
+        }
 
-                return;
-            }
+        confirmarEstimativa(txtArquivoDiretorio.getText(), this::gravarAtualizacaoAgendamento);
+    }
+
+    /**
+    * Grava no banco de dados o agendamento editado nos campos, depois de confirmada a estimativa.
+    */
+    private void gravarAtualizacaoAgendamento() {
+
+        try {
 
             //Atribuição dos valores as váriaveis
             int ID = Integer.parseInt(txtID.getText());
@@ -1036,12 +1163,393 @@ public class FerramentaDeBackupView extends javax.swing.JFrame {
         jsHora.setEditor(editor);
     }
 
+    /**
+    * Acrescenta à barra de menus o menu "Agendamento", com as ações que não fazem parte do formulário
+    * principal, como a edição das opções avançadas de compactação.
+    */
+    private void configurarMenus() {
+        JMenu menuAgendamento = new JMenu("Agendamento");
+
+        JMenuItem itemOpcoesAvancadas = new JMenuItem("Opções avançadas...");
+        itemOpcoesAvancadas.addActionListener(evt -> editarOpcoesAvancadas());
+        menuAgendamento.add(itemOpcoesAvancadas);
+
+        menuAgendamento.addSeparator();
+
+        JMenuItem itemRestaurar = new JMenuItem("Restaurar backup...");
+        itemRestaurar.addActionListener(evt -> restaurarBackup());
+        menuAgendamento.add(itemRestaurar);
+
+        JMenuItem itemLocalizar = new JMenuItem("Localizar arquivo nos backups...");
+        itemLocalizar.addActionListener(evt -> localizarArquivo());
+        menuAgendamento.add(itemLocalizar);
+
+        JMenuItem itemConsolidar = new JMenuItem("Consolidar backups...");
+        itemConsolidar.addActionListener(evt -> consolidarBackups());
+        menuAgendamento.add(itemConsolidar);
+
+        jMenuBar1.add(menuAgendamento);
+    }
+
+    /**
+    * Restaura um backup ZIP escolhido pelo usuário.
+    * 
+    * O usuário seleciona o arquivo ZIP (ou um de seus volumes), o diretório de destino e,
+    * opcionalmente, um arquivo ou pasta do backup a restaurar. Se o backup for criptografado,
+    * a senha do job é pedida antes. A restauração é feita em segundo plano pelo
+    * {@link RestauradorZip} e o resultado é informado ao final.
+    */
+    private void restaurarBackup() {
+        JFileChooser seletorArquivo = new JFileChooser();
+        seletorArquivo.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        seletorArquivo.setDialogTitle("Selecione o backup");
+        if (seletorArquivo.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        String arquivoZip = seletorArquivo.getSelectedFile().getAbsolutePath();
+        char[] senha = null;
+        if (Criptografia.isCifrado(Paths.get(arquivoZip))) {
+            senha = pedirSenha();
+            if (senha == null) {
+                return;
+            }
+        }
+        char[] senhaRestauracao = senha;
+
+        JFileChooser seletorDestino = new JFileChooser();
+        seletorDestino.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        seletorDestino.setDialogTitle("Selecione o diretório de destino");
+        if (seletorDestino.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        String destino = seletorDestino.getSelectedFile().getAbsolutePath();
+
+        String filtro = JOptionPane.showInputDialog(this, "Arquivo ou pasta a restaurar (deixe vazio para restaurar tudo):",
+                "Restaurar backup", JOptionPane.QUESTION_MESSAGE);
+        if (filtro == null) {
+            return;
+        }
+
+        new Thread(() -> {
+            try {
+                long arquivos = RestauradorZip.restaurar(arquivoZip, destino, filtro, senhaRestauracao);
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                        arquivos + " arquivo(s) restaurado(s) em " + destino, "Informação", JOptionPane.INFORMATION_MESSAGE));
+            } catch (IOException | RuntimeException e) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                        "Erro ao restaurar o backup: " + e.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE));
+            } finally {
+                if (senhaRestauracao != null) {
+                    Arrays.fill(senhaRestauracao, '\0');
+                }
+            }
+        }).start();
+    }
+
+    /**
+    * Exibe e salva as opções avançadas de compactação do agendamento selecionado na tabela.
+    * 
+    * O agendamento é recarregado do banco de dados pelo ID, as opções são editadas no
+    * {@link OpcoesAvancadasPainel} e, se o usuário confirmar, gravadas com
+    * {@link BancoDeDadosDAO#editarOpcoesAvancadas(BancoDeDadosDTO)}. Os novos limites de taxa
+    * são aplicados imediatamente aos backups em execução. Uma nova senha de criptografia fica
+    * só em memória ({@link SenhasCriptografia}); o agendamento recebe o verificador dela.
+    */
+    private void editarOpcoesAvancadas() {
+        int setar = jtTabela.getSelectedRow();
+        Object valorID = setar != -1 ? jtTabela.getModel().getValueAt(setar, 0) : null;
+
+        if (valorID == null) {
+            JOptionPane.showMessageDialog(null, "Favor Selecionar um agendamento de backup!", "Informação", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        BancoDeDadosDAO objBancoDeDadosDAO = new BancoDeDadosDAO();
+        BancoDeDadosDTO objBancoDeDadosDTO = objBancoDeDadosDAO.buscarPorId(Integer.parseInt(valorID.toString()));
+        if (objBancoDeDadosDTO == null) {
+            return;
+        }
+
+        OpcoesAvancadasPainel painel = new OpcoesAvancadasPainel();
+        painel.carregar(objBancoDeDadosDTO);
+
+        while (true) {
+            int opcao = JOptionPane.showConfirmDialog(this, painel, "Opções avançadas - " + objBancoDeDadosDTO.getNomeBackup(),
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+            if (opcao != JOptionPane.OK_OPTION) {
+                return;
+            }
+            String erro = painel.validarSenha();
+            if (erro == null) {
+                break;
+            }
+            JOptionPane.showMessageDialog(this, erro, "Informação", JOptionPane.INFORMATION_MESSAGE);
+        }
+
+        char[] novaSenha = painel.getNovaSenha();
+        painel.aplicar(objBancoDeDadosDTO);
+        objBancoDeDadosDAO.editarOpcoesAvancadas(objBancoDeDadosDTO);
+        if (novaSenha != null) {
+            SenhasCriptografia.guardar(objBancoDeDadosDTO.getId(), novaSenha);
+            Arrays.fill(novaSenha, '\0');
+        } else if (!SenhasCriptografia.isCriptografado(objBancoDeDadosDTO)) {
+            SenhasCriptografia.esquecer(objBancoDeDadosDTO.getId());
+        }
+        ControleLimitesTaxa.atualizar();
+    }
+
+    /**
+    * Localiza um arquivo no catálogo dos backups e restaura a versão escolhida.
+    * 
+    * A busca é feita no {@link LocalizarArquivoPainel}. A versão selecionada é restaurada
+    * em segundo plano por {@link RestauradorZip#restaurarArquivo}, que lê somente a entrada
+    * indicada pelo catálogo. Um backup criptografado é decifrado com a senha pedida ao usuário.
+    */
+    private void localizarArquivo() {
+        LocalizarArquivoPainel painel = new LocalizarArquivoPainel();
+        Object[] opcoes = {"Restaurar", "Fechar"};
+
+        int opcao = JOptionPane.showOptionDialog(this, painel, "Localizar arquivo nos backups",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, opcoes, opcoes[1]);
+        if (opcao != 0) {
+            return;
+        }
+
+        EntradaCatalogoDTO entrada = painel.getSelecionada();
+        if (entrada == null) {
+            JOptionPane.showMessageDialog(null, "Favor Selecionar uma versão do arquivo!", "Informação", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        char[] senha = null;
+        if (Criptografia.isCifrado(Paths.get(entrada.getArquivo()))) {
+            senha = pedirSenha();
+            if (senha == null) {
+                return;
+            }
+        }
+        char[] senhaRestauracao = senha;
+
+        JFileChooser seletorDestino = new JFileChooser();
+        seletorDestino.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        seletorDestino.setDialogTitle("Selecione o diretório de destino");
+        if (seletorDestino.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        String destino = seletorDestino.getSelectedFile().getAbsolutePath();
+
+        new Thread(() -> {
+            try {
+                java.nio.file.Path restaurado = RestauradorZip.restaurarArquivo(entrada.getArquivo(), entrada.getCaminho(),
+                        entrada.getPosicao(), entrada.getCrc(), destino, senhaRestauracao);
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                        "Arquivo restaurado em " + restaurado, "Informação", JOptionPane.INFORMATION_MESSAGE));
+            } catch (IOException | RuntimeException e) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                        "Erro ao restaurar o arquivo: " + e.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE));
+            } finally {
+                if (senhaRestauracao != null) {
+                    Arrays.fill(senhaRestauracao, '\0');
+                }
+            }
+        }).start();
+    }
+
+    /**
+    * Consolida a cadeia do backup mais recente do agendamento selecionado em um novo backup completo.
+    * 
+    * A cadeia é montada pelo histórico de execuções ({@link #montarCadeia(List)}) e gravada por
+    * {@link ConsolidadorZip} no diretório de destino, em segundo plano, sem ler a origem. O novo
+    * arquivo é registrado no histórico e no catálogo como uma execução independente; em seguida, a
+    * retenção do agendamento é aplicada pelo {@link PodaBackups}. Enquanto a consolidação roda, ela
+    * conta como um job em execução, o que pausa a verificação e a retenção em segundo plano.
+    */
+    private void consolidarBackups() {
+        int setar = jtTabela.getSelectedRow();
+        Object valorID = setar != -1 ? jtTabela.getModel().getValueAt(setar, 0) : null;
+
+        if (valorID == null) {
+            JOptionPane.showMessageDialog(null, "Favor Selecionar um agendamento de backup!", "Informação", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        BancoDeDadosDTO dto = new BancoDeDadosDAO().buscarPorId(Integer.parseInt(valorID.toString()));
+        if (dto == null) {
+            return;
+        }
+        if (!Armazenamentos.isLocal(dto.getDiretorioDestino())) {
+            JOptionPane.showMessageDialog(null, "A consolidação só está disponível para destinos locais.", "Informação", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        List<ExecucaoBackupDTO> cadeia = montarCadeia(new CatalogoDAO().listarExecucoes(dto.getId()));
+        if (cadeia.size() < 2) {
+            JOptionPane.showMessageDialog(null, "O backup mais recente deste agendamento não depende de outros backups; não há o que consolidar.",
+                    "Informação", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        char[] senha = null;
+        if (SenhasCriptografia.isCriptografado(dto)) {
+            senha = SenhasCriptografia.obter(dto, true);
+            if (senha == null) {
+                return;
+            }
+        }
+        char[] senhaConsolidacao = senha;
+
+        MetricasBackup.jobEnfileirado();
+        new Thread(() -> {
+            try {
+                String arquivo = consolidar(dto, cadeia, senhaConsolidacao);
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                        cadeia.size() + " backup(s) consolidado(s) em " + arquivo, "Informação", JOptionPane.INFORMATION_MESSAGE));
+            } catch (IOException | RuntimeException e) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                        "Erro ao consolidar os backups: " + e.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE));
+            } finally {
+                if (senhaConsolidacao != null) {
+                    Arrays.fill(senhaConsolidacao, '\0');
+                }
+                MetricasBackup.jobFinalizado();
+            }
+        }).start();
+    }
+
+    /**
+    * Grava o backup completo sintético de uma cadeia e o registra no histórico e no catálogo.
+    *
+    * @param dto O agendamento de backup.
+    * @param cadeia As execuções da cadeia, da completa para a mais recente.
+    * @param senha A senha de criptografia do agendamento, ou {@code null} se ele não for criptografado.
+    * @return O caminho do novo arquivo de backup.
+    * @throws IOException Se a consolidação falhar.
+    */
+    private String consolidar(BancoDeDadosDTO dto, List<ExecucaoBackupDTO> cadeia, char[] senha) throws IOException {
+        SimpleDateFormat sdf = new SimpleDateFormat("-dd-MM-yyyy-HH_mm_ss");
+        OpcoesCompactacao opcoes = criarOpcoesCompactacao(dto, senha);
+        Path destino = Paths.get(dto.getDiretorioDestino(), dto.getNomeBackup() + sdf.format(new Date()) + ".zip");
+        List<Path> arquivos = new ArrayList<>();
+        for (ExecucaoBackupDTO execucao : cadeia) {
+            arquivos.add(Paths.get(execucao.getArquivo()));
+        }
+        CatalogoDAO catalogoDAO = new CatalogoDAO();
+        int idExecucao = catalogoDAO.iniciarExecucao(dto, destino.toString());
+        String status = "Falhou";
+        LimitesTaxa limites = ControleLimitesTaxa.registrar(dto);
+        try (GravadorCatalogo gravador = new GravadorCatalogo(idExecucao)) {
+            opcoes.setObservador(gravador);
+            opcoes.setLimites(limites);
+            ConsolidadorZip.consolidar(arquivos, senha, destino, opcoes);
+            status = "Concluído";
+        } finally {
+            ControleLimitesTaxa.remover(limites);
+            catalogoDAO.finalizarExecucao(idExecucao, status);
+            if ("Concluído".equals(status)) {
+                PodaBackups.solicitar(dto.getId());
+            }
+        }
+        return destino.toString();
+    }
+
+    /**
+    * Monta a cadeia da execução concluída mais recente seguindo a execução base de cada uma.
+    *
+    * @param execucoes As execuções do agendamento, das mais recentes para as mais antigas.
+    * @return As execuções da cadeia, da completa para a mais recente, ou uma lista vazia se não
+    * houver execução concluída ou se alguma execução base não estiver disponível.
+    */
+    static List<ExecucaoBackupDTO> montarCadeia(List<ExecucaoBackupDTO> execucoes) {
+        Map<Integer, ExecucaoBackupDTO> porId = new HashMap<>();
+        ExecucaoBackupDTO atual = null;
+        for (ExecucaoBackupDTO execucao : execucoes) {
+            porId.put(execucao.getId(), execucao);
+            if (atual == null && "Concluído".equals(execucao.getStatus())) {
+                atual = execucao;
+            }
+        }
+        List<ExecucaoBackupDTO> cadeia = new ArrayList<>();
+        while (atual != null) {
+            if (!"Concluído".equals(atual.getStatus()) || cadeia.contains(atual)) {
+                return new ArrayList<>();
+            }
+            cadeia.add(atual);
+            atual = atual.getIdBase() != null ? porId.get(atual.getIdBase()) : null;
+            if (atual == null && cadeia.get(cadeia.size() - 1).getIdBase() != null) {
+                return new ArrayList<>();
+            }
+        }
+        Collections.reverse(cadeia);
+        return cadeia;
+    }
+
+    /**
+    * Pede ao usuário a senha de um backup criptografado.
+    *
+    * @return A senha digitada, ou {@code null} se o usuário cancelar.
+    */
+    private char[] pedirSenha() {
+        JPasswordField txtSenha = new JPasswordField(20);
+        int opcao = JOptionPane.showConfirmDialog(this, txtSenha, "Senha do backup criptografado",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        return opcao == JOptionPane.OK_OPTION ? txtSenha.getPassword() : null;
+    }
+
+    /**
+    * Converte as opções avançadas gravadas no agendamento para as opções usadas pelo {@link CompactadorZip}.
+    * O atraso máximo das cópias nos destinos adicionais pode ser ajustado com a propriedade de sistema
+    * {@code ferramentadebackup.destinos.atraso.mb} (padrão 64 MB). Com uma senha de criptografia,
+    * os arquivos são cifrados com uma chave derivada dela.
+    *
+    * @param dto O agendamento de backup.
+    * @param senha A senha de criptografia do agendamento ({@link SenhasCriptografia}), ou
+    * {@code null} para gravar sem criptografia.
+    * @return As opções de compactação correspondentes.
+    */
+    static OpcoesCompactacao criarOpcoesCompactacao(BancoDeDadosDTO dto, char[] senha) {
+        OpcoesCompactacao opcoes = new OpcoesCompactacao();
+        opcoes.setPerfilCompressao(PerfilCompressao.deNome(dto.getPerfilCompressao()));
+        opcoes.setFormato(FormatosArquivo.obter(dto.getFormatoArquivo()));
+        opcoes.setUsarDicionario("Sim".equals(dto.getDicionarioCompressao()));
+        opcoes.setTamanhoVolume(dto.getTamanhoVolumeMB() * 1024L * 1024L);
+        opcoes.setVerificar("Sim".equals(dto.getVerificarBackup()));
+        opcoes.setDeduplicar("Sim".equals(dto.getDeduplicarArquivos()));
+        opcoes.setDestinosAdicionais(listarDestinosAdicionais(dto));
+        opcoes.setAtrasoMaximoDestinos(Long.getLong("ferramentadebackup.destinos.atraso.mb", 64L) * 1024L * 1024L);
+        opcoes.setTamanhoMinimoDelta(Long.getLong("ferramentadebackup.delta.tamanho.minimo.mb", 64L) * 1024L * 1024L);
+        opcoes.setOrdenarLeitura(Boolean.getBoolean("ferramentadebackup.leitura.ordenada"));
+        opcoes.setLoteLeitura(Integer.getInteger("ferramentadebackup.leitura.lote", 4096));
+        if (senha != null) {
+            opcoes.setCriptografia(new Criptografia(senha));
+        }
+        return opcoes;
+    }
+
+    /**
+    * Lê os diretórios adicionais do agendamento, gravados um por linha.
+    *
+    * @param dto O agendamento de backup.
+    * @return Os diretórios adicionais, sem as linhas em branco.
+    */
+    static List<Path> listarDestinosAdicionais(BancoDeDadosDTO dto) {
+        List<Path> destinos = new ArrayList<>();
+        if (dto.getDestinosAdicionais() == null) {
+            return destinos;
+        }
+        for (String linha : dto.getDestinosAdicionais().split("\\R")) {
+            if (!linha.trim().isEmpty()) {
+                destinos.add(Paths.get(linha.trim()));
+            }
+        }
+        return destinos;
+    }
+
 // Criar uma instância da classe BancoDeDadosDAO
     BancoDeDadosDAO bancoDeDadosDAO = new BancoDeDadosDAO();
 
 // Tempo em milissegundos (45 segundos)
     int delay = 50000;
 
+// Momento do último disparo do agendador, usado para medir o seu atraso
+    long ultimoDisparo = System.currentTimeMillis();
+
     /**
     * Um ActionListener que executa ações em resposta a eventos ActionEvent.
     * 
@@ -1052,14 +1560,25 @@ public class FerramentaDeBackupView extends javax.swing.JFrame {
     * 2. Verifica se o `bancoDeDadosDAO` indica que o PC deve ser desligado e, se sim, chama o método `desligarPC()`.
     * 
     * Esse ActionListener é usado para agendar a execução das ações com base em eventos e condições específicas.
+    * A cada disparo também é registrado o atraso do agendador e, enquanto o backup não termina, o job é
+    * contabilizado na profundidade da fila das métricas.
     */
     ActionListener taskPerformer = new ActionListener() {
         public void actionPerformed(ActionEvent evt) {
+            long agora = System.currentTimeMillis();
+            MetricasBackup.atrasoAgendador(agora - ultimoDisparo - delay);
+            ultimoDisparo = agora;
+
             if (bancoDeDadosDAO.verificarDataHoraAtual()) {
+                MetricasBackup.jobEnfileirado();
                 new Thread(() -> {
-                    backup();
-                    if (bancoDeDadosDAO.verificarDesligarPC()) {
-                        desligarPC();
+                    try {
+                        backup();
+                        if (bancoDeDadosDAO.verificarDesligarPC()) {
+                            desligarPC();
+                        }
+                    } finally {
+                        MetricasBackup.jobFinalizado();
                     }
                 }).start();
             }
@@ -1082,7 +1601,37 @@ public class FerramentaDeBackupView extends javax.swing.JFrame {
      *
      * <p>
      * Em caso de falha na compactação, as exceções são capturadas e registradas
-     * no console.</p>
+     * no console. O resultado e a duração de cada execução são registrados nas
+     * métricas de backup e no histórico de execuções, e cada arquivo gravado é
+     * registrado no catálogo por um {@link GravadorCatalogo} em segundo plano.
+     * O hash do conteúdo dos arquivos lidos é guardado no cache de hashes
+     * ({@link #abrirCacheHashes()}).</p>
+     *
+     * <p>
+     * Se uma execução anterior do mesmo backup foi interrompida, o arquivo
+     * dela é reaproveitado e a compactação continua do último ponto de
+     * controle. A leitura e a escrita respeitam os limites de taxa do
+     * agendamento, mantidos pelo {@link ControleLimitesTaxa}.</p>
+     *
+     * <p>
+     * O destino pode ser um diretório local ou um bucket compatível com S3
+     * ({@code s3://bucket/prefixo}); o armazenamento é escolhido por
+     * {@link Armazenamentos#obter(String)}.</p>
+     *
+     * <p>
+     * Com a opção de delta e destino local, os arquivos grandes alterados são
+     * gravados como delta do backup anterior do agendamento, a partir das
+     * assinaturas guardadas por {@link #gravarAssinaturasDelta}.</p>
+     *
+     * <p>
+     * Num backup dividido em volumes, a quantidade de volumes gravados ao
+     * mesmo tempo é ajustada durante a execução
+     * ({@link #criarControleConcorrencia}), e a melhor quantidade medida é
+     * gravada para a próxima execução com a mesma origem e o mesmo destino.</p>
+     *
+     * <p>
+     * Ao término de um backup concluído, a retenção do agendamento é aplicada
+     * em segundo plano pelo {@link PodaBackups}.</p>
      *
      */
     public void backup() {
@@ -1090,18 +1639,220 @@ public class FerramentaDeBackupView extends javax.swing.JFrame {
         BancoDeDadosDTO dto = dao.verificarDataHoraAtualArquivos();
         SimpleDateFormat sdf = new SimpleDateFormat("-dd-MM-yyyy-HH_mm_ss");
 
+        long inicio = System.nanoTime();
+        char[] senha = null;
+        if (SenhasCriptografia.isCriptografado(dto)) {
+            senha = SenhasCriptografia.obter(dto, true);
+            if (senha == null) {
+                System.out.println("Backup " + dto.getNomeBackup() + " não executado: a senha de criptografia não foi informada.");
+                MetricasBackup.jobFalhou(System.nanoTime() - inicio);
+                return;
+            }
+        }
+        OpcoesCompactacao opcoes = criarOpcoesCompactacao(dto, senha);
+        if (senha != null) {
+            Arrays.fill(senha, '\0');
+        }
+        ArmazenamentoBackup armazenamento = Armazenamentos.obter(dto.getDiretorioDestino());
+        String nomeArquivo = dto.getNomeBackup() + sdf.format(new Date()) + opcoes.getFormato().getExtensao();
+        if (armazenamento instanceof ArmazenamentoLocal) {
+            String interrompido = localizarBackupInterrompido(dto, opcoes.getFormato().getExtensao());
+            if (interrompido != null) {
+                nomeArquivo = new File(interrompido).getName();
+            }
+        }
+        String destinoZip = armazenamento.getLocalizacao(nomeArquivo);
 
-        try {
-            String destinoZip = dto.getDiretorioDestino() + File.separator + dto.getNomeBackup() + sdf.format(new Date()) + ".zip";
+        ConcorrenciaDAO concorrenciaDAO = new ConcorrenciaDAO();
+        if (opcoes.getTamanhoVolume() > 0) {
+            opcoes.setConcorrencia(criarControleConcorrencia(dto, concorrenciaDAO));
+        }
+
+        CatalogoDAO catalogoDAO = new CatalogoDAO();
+        Path arquivoAssinaturas = null;
+        if ("Sim".equals(dto.getDeltaArquivosGrandes()) && armazenamento instanceof ArmazenamentoLocal) {
+            arquivoAssinaturas = arquivoAssinaturas(dto);
+            opcoes.setAssinaturasDelta(new AssinaturasDelta());
+            opcoes.setBaseDelta(carregarBaseDelta(dto, arquivoAssinaturas, destinoZip, catalogoDAO));
+        }
+        int idExecucao = catalogoDAO.iniciarExecucao(dto, destinoZip);
+        String status = "Falhou";
+        LimitesTaxa limites = ControleLimitesTaxa.registrar(dto);
+        try (GravadorCatalogo gravador = new GravadorCatalogo(idExecucao); CacheHashesDAO cacheHashes = abrirCacheHashes()) {
+            opcoes.setObservador(gravador);
+            opcoes.setLimites(limites);
+            opcoes.setCacheHashes(cacheHashes);
             System.out.println("Origem: " + dto.getDiretorioOrigem());
             System.out.println("Destino ZIP: " + destinoZip);
 
-            CompactadorZip.compactarParaZip(dto.getDiretorioOrigem(), destinoZip, null);
+            CompactadorZip.compactar(dto.getDiretorioOrigem(), armazenamento, nomeArquivo, opcoes);
+            status = "Concluído";
             System.out.println("Compactação concluída com sucesso!");
-        } catch (IOException e) {
+            ControleConcorrencia concorrencia = opcoes.getConcorrencia();
+            if (concorrencia != null && concorrencia.getJanelas() > 0) {
+                concorrenciaDAO.registrar(dto.getDiretorioOrigem(), dto.getDiretorioDestino(), concorrencia.getRecomendado(),
+                        concorrencia.getVazaoRecomendado());
+            }
+            if (arquivoAssinaturas != null && idExecucao > 0) {
+                gravarAssinaturasDelta(opcoes, arquivoAssinaturas, idExecucao, nomeArquivo, catalogoDAO);
+            }
+        } catch (IOException | RuntimeException e) {
             e.printStackTrace();
             System.out.println("Erro ao compactar: " + e.getMessage());
+        } finally {
+            // O resultado é registrado uma única vez: um erro depois de o arquivo estar gravado não desfaz o backup
+            if ("Concluído".equals(status)) {
+                MetricasBackup.jobConcluido(System.nanoTime() - inicio);
+            } else {
+                MetricasBackup.jobFalhou(System.nanoTime() - inicio);
+            }
+            ControleLimitesTaxa.remover(limites);
+            catalogoDAO.finalizarExecucao(idExecucao, status);
+            if ("Concluído".equals(status)) {
+                PodaBackups.solicitar(dto.getId());
+            }
+        }
+    }
+
+    /**
+    * Cria o controle adaptativo da quantidade de volumes gravados ao mesmo tempo, começando da
+    * quantidade gravada na última execução com a mesma origem e o mesmo destino. Os limites podem
+    * ser ajustados com as propriedades de sistema {@code ferramentadebackup.concorrencia.minimo}
+    * (padrão 1) e {@code ferramentadebackup.concorrencia.maximo} (padrão, a quantidade de
+    * processadores).
+    *
+    * @param dto O agendamento de backup.
+    * @param concorrenciaDAO O acesso às quantidades gravadas.
+    * @return O controle de concorrência.
+    */
+    static ControleConcorrencia criarControleConcorrencia(BancoDeDadosDTO dto, ConcorrenciaDAO concorrenciaDAO) {
+        int minimo = Integer.getInteger("ferramentadebackup.concorrencia.minimo", 1);
+        int maximo = Integer.getInteger("ferramentadebackup.concorrencia.maximo", Runtime.getRuntime().availableProcessors());
+        int anterior = concorrenciaDAO.consultar(dto.getDiretorioOrigem(), dto.getDiretorioDestino());
+        return new ControleConcorrencia(minimo, maximo, anterior);
+    }
+
+    /**
+    * Abre o cache de hashes do conteúdo dos arquivos de origem, compartilhado por todos os
+    * agendamentos. O banco do cache pode ser alterado com a propriedade de sistema
+    * {@code ferramentadebackup.hashes.arquivo} (padrão "cache_hashes.db"); com o valor vazio, o cache
+    * fica desativado.
+    *
+    * @return O cache, ou {@code null} se ele estiver desativado.
+    */
+    static CacheHashesDAO abrirCacheHashes() {
+        String arquivo = System.getProperty("ferramentadebackup.hashes.arquivo", "cache_hashes.db").trim();
+        return arquivo.isEmpty() ? null : new CacheHashesDAO(arquivo);
+    }
+
+    /**
+    * Caminho do arquivo local com as assinaturas dos arquivos grandes do último backup do agendamento.
+    * O diretório pode ser alterado com a propriedade de sistema {@code ferramentadebackup.delta.diretorio}
+    * (padrão "assinaturas").
+    *
+    * @param dto O agendamento de backup.
+    * @return O arquivo de assinaturas do agendamento.
+    */
+    static Path arquivoAssinaturas(BancoDeDadosDTO dto) {
+        return Paths.get(System.getProperty("ferramentadebackup.delta.diretorio", "assinaturas"), dto.getId() + ".assinaturas");
+    }
+
+    /**
+    * Carrega as assinaturas do último backup do agendamento, que serve de base para as entradas delta.
+    * A base só é usada se a execução ainda estiver concluída (não removida pela retenção) e no mesmo
+    * diretório do novo backup. Depois de {@code ferramentadebackup.delta.cadeia.maxima} execuções delta
+    * seguidas (padrão 7), os arquivos grandes são gravados inteiros, o que encerra a cadeia.
+    *
+    * @param dto O agendamento de backup.
+    * @param arquivoAssinaturas O arquivo de assinaturas do agendamento.
+    * @param destinoZip O caminho do novo backup.
+    * @param catalogoDAO O acesso ao histórico de execuções.
+    * @return As assinaturas da base, ou {@code null} se os arquivos grandes devem ser gravados inteiros.
+    */
+    private AssinaturasDelta carregarBaseDelta(BancoDeDadosDTO dto, Path arquivoAssinaturas, String destinoZip, CatalogoDAO catalogoDAO) {
+        AssinaturasDelta base;
+        try {
+            base = AssinaturasDelta.carregar(arquivoAssinaturas);
+        } catch (IOException e) {
+            System.out.println("Assinaturas do backup anterior ignoradas: " + e.getMessage());
+            return null;
+        }
+        if (base.isVazia()) {
+            return null;
+        }
+        if (base.getProfundidade() >= Integer.getInteger("ferramentadebackup.delta.cadeia.maxima", 7)) {
+            System.out.println("Cadeia de deltas completa; os arquivos grandes serão gravados inteiros.");
+            return null;
+        }
+        for (ExecucaoBackupDTO execucao : catalogoDAO.listarExecucoes(dto.getId())) {
+            if (execucao.getId() == base.getIdExecucao()) {
+                Path diretorioBase = Paths.get(execucao.getArquivo()).toAbsolutePath().getParent();
+                boolean disponivel = "Concluído".equals(execucao.getStatus())
+                        && diretorioBase.equals(Paths.get(destinoZip).toAbsolutePath().getParent());
+                return disponivel ? base : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+    * Grava as assinaturas do backup concluído, que passa a ser a base do próximo, e registra no
+    * histórico a execução da qual ele depende, se algum arquivo foi gravado como delta.
+    *
+    * @param opcoes As opções da compactação concluída.
+    * @param arquivoAssinaturas O arquivo de assinaturas do agendamento.
+    * @param idExecucao O ID da execução concluída.
+    * @param nomeArquivo O nome do arquivo de backup gravado.
+    * @param catalogoDAO O acesso ao histórico de execuções.
+    */
+    private void gravarAssinaturasDelta(OpcoesCompactacao opcoes, Path arquivoAssinaturas, int idExecucao, String nomeArquivo,
+            CatalogoDAO catalogoDAO) {
+        AssinaturasDelta novas = opcoes.getAssinaturasDelta();
+        try {
+            int profundidade = 0;
+            if (novas.getEntradasDelta() > 0) {
+                // Uma retomada pode trazer entradas delta mesmo sem base nesta execução
+                AssinaturasDelta base = opcoes.getBaseDelta() != null ? opcoes.getBaseDelta() : AssinaturasDelta.carregar(arquivoAssinaturas);
+                catalogoDAO.definirBase(idExecucao, base.getIdExecucao());
+                profundidade = base.getProfundidade() + 1;
+            }
+            novas.gravar(arquivoAssinaturas, idExecucao, nomeArquivo, profundidade);
+        } catch (IOException e) {
+            System.out.println("Não foi possível gravar as assinaturas dos arquivos grandes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Procura no diretório de destino o arquivo de uma execução interrompida
+     * deste backup que possa ser retomada.
+     *
+     * @param dto O agendamento de backup.
+     * @param extensao A extensão do formato do arquivo.
+     * @return O caminho final do backup interrompido mais recente, ou
+     * {@code null} se não houver nenhum.
+     */
+    private String localizarBackupInterrompido(BancoDeDadosDTO dto, String extensao) {
+        String sufixo = extensao + CompactadorZip.EXTENSAO_PARCIAL;
+        File[] parciais = new File(dto.getDiretorioDestino()).listFiles((diretorio, nome)
+                -> nome.startsWith(dto.getNomeBackup() + "-") && nome.endsWith(sufixo));
+        if (parciais == null) {
+            return null;
+        }
+
+        String retomada = null;
+        long modificado = Long.MIN_VALUE;
+        for (File parcial : parciais) {
+            String caminho = parcial.getPath();
+            String destino = caminho.substring(0, caminho.length() - CompactadorZip.EXTENSAO_PARCIAL.length());
+            if (CompactadorZip.isRetomavel(destino) && parcial.lastModified() > modificado) {
+                retomada = destino;
+                modificado = parcial.lastModified();
+            }
+        }
+        if (retomada != null) {
+            System.out.println("Backup interrompido encontrado: " + retomada);
         }
+        return retomada;
     }
 
     /**
@@ -0,0 +1,104 @@
+package com.mycompany.ferramentadebackup.view;
+
+import com.mycompany.ferramentadebackup.dao.CatalogoDAO;
+import com.mycompany.ferramentadebackup.dto.EntradaCatalogoDTO;
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * Painel de busca de arquivos no catálogo dos backups.
+ * <p>
+ * O painel é exibido dentro de um {@link javax.swing.JOptionPane} a partir do
+ * menu "Agendamento" da tela principal. A busca é feita pelo início do nome do
+ * arquivo com {@link CatalogoDAO#buscarArquivos(String)} e cada linha da tabela
+ * é uma versão do arquivo em um backup. A versão escolhida é obtida com
+ * {@link #getSelecionada()}.
+ *
+ * @author Giuliano Vianna
+ */
+public class LocalizarArquivoPainel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    private final JTextField txtNomeArquivo = new JTextField(30);
+    private final JButton btnBuscar = new JButton("Buscar");
+    private final DefaultTableModel modelo = new DefaultTableModel(
+            new Object[]{"Backup", "Execução", "Caminho", "Tamanho (bytes)", "Modificado em"}, 0) {
+        @Override
+        public boolean isCellEditable(int linha, int coluna) {
+            return false;
+        }
+    };
+    private final JTable jtResultado = new JTable(modelo);
+
+    private ArrayList<EntradaCatalogoDTO> resultado = new ArrayList<>();
+
+    /**
+     * Cria o painel com o campo de busca e a tabela de resultados.
+     */
+    public LocalizarArquivoPainel() {
+        super(new BorderLayout(4, 4));
+
+        JPanel busca = new JPanel(new BorderLayout(4, 4));
+        JLabel label = new JLabel("Nome do arquivo (use * como curinga)");
+        label.setFont(new Font("Segoe UI", 0, 14)); // NOI18N
+        txtNomeArquivo.setFont(new Font("Segoe UI", 0, 14)); // NOI18N
+        busca.add(label, BorderLayout.NORTH);
+        busca.add(txtNomeArquivo, BorderLayout.CENTER);
+        busca.add(btnBuscar, BorderLayout.EAST);
+        add(busca, BorderLayout.NORTH);
+
+        jtResultado.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        JScrollPane rolagem = new JScrollPane(jtResultado);
+        rolagem.setPreferredSize(new Dimension(820, 320));
+        add(rolagem, BorderLayout.CENTER);
+
+        btnBuscar.addActionListener(evt -> buscar());
+        txtNomeArquivo.addActionListener(evt -> buscar());
+    }
+
+    /**
+     * @return A versão selecionada na tabela, ou {@code null} se nenhuma linha
+     * estiver selecionada.
+     */
+    public EntradaCatalogoDTO getSelecionada() {
+        int linha = jtResultado.getSelectedRow();
+        return linha != -1 ? resultado.get(jtResultado.convertRowIndexToModel(linha)) : null;
+    }
+
+    /**
+     * Consulta o catálogo com o nome informado e preenche a tabela.
+     */
+    private void buscar() {
+        String termo = txtNomeArquivo.getText().trim();
+        modelo.setRowCount(0);
+        if (termo.isEmpty()) {
+            resultado = new ArrayList<>();
+            return;
+        }
+
+        resultado = new CatalogoDAO().buscarArquivos(termo);
+        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
+        for (EntradaCatalogoDTO entrada : resultado) {
+            modelo.addRow(new Object[]{
+                entrada.getNomeBackup(),
+                entrada.getDataExecucao(),
+                entrada.getCaminho(),
+                entrada.getTamanho(),
+                sdf.format(new Date(entrada.getModificado()))
+            });
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.mycompany.ferramentadebackup.view;
+
+import com.mycompany.ferramentadebackup.compactadorzip.Criptografia;
+import com.mycompany.ferramentadebackup.compactadorzip.FormatosArquivo;
+import com.mycompany.ferramentadebackup.compactadorzip.PerfilCompressao;
+import com.mycompany.ferramentadebackup.compactadorzip.ProvedorFormatoArquivo;
+import com.mycompany.ferramentadebackup.dto.BancoDeDadosDTO;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JPasswordField;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTextArea;
+import javax.swing.SpinnerDateModel;
+import javax.swing.SpinnerNumberModel;
+
+/**
+ * Painel com as opções avançadas de compactação de um agendamento de backup.
+ * <p>
+ * O painel é exibido dentro de um {@link javax.swing.JOptionPane} a partir do
+ * menu "Agendamento" da tela principal. Os valores são carregados de um
+ * {@link BancoDeDadosDTO} com {@link #carregar(BancoDeDadosDTO)} e devolvidos
+ * ao mesmo DTO com {@link #aplicar(BancoDeDadosDTO)}. Os limites de taxa
+ * salvos valem também para um backup do agendamento que já esteja em
+ * execução ({@link ControleLimitesTaxa}). Os destinos adicionais recebem uma
+ * cópia de cada arquivo gravado, a partir de uma única leitura da origem.
+ * Com a criptografia, os arquivos são gravados cifrados; a senha não é
+ * exibida nem guardada no agendamento, que recebe só o verificador dela
+ * ({@link SenhasCriptografia}). A
+ * retenção define quantos backups antigos são mantidos ({@link PodaBackups}).
+ * Com a opção de delta, os arquivos grandes alterados guardam só os blocos
+ * que mudaram desde o backup anterior. Com o backup contínuo, as alterações
+ * da origem são gravadas em um arquivo próprio do agendamento
+ * ({@link BackupContinuo}).
+ *
+ * @author Giuliano Vianna
+ */
+public class OpcoesAvancadasPainel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    private final JComboBox<PerfilCompressao> cbPerfilCompressao = new JComboBox<>(PerfilCompressao.values());
+    private final JComboBox<ProvedorFormatoArquivo> cbFormatoArquivo = new JComboBox<>(FormatosArquivo.listar().toArray(new ProvedorFormatoArquivo[0]));
+    private final JCheckBox chkDicionario = new JCheckBox("Dicionário compartilhado para arquivos pequenos (somente ZIP)");
+    private final JCheckBox chkVerificar = new JCheckBox("Conferir o backup com a origem ao final (somente ZIP)");
+    private final JCheckBox chkDelta = new JCheckBox("Gravar só os blocos alterados dos arquivos grandes (somente ZIP)");
+    private final JCheckBox chkDuplicados = new JCheckBox("Gravar uma única vez os arquivos repetidos (somente ZIP)");
+    private final JCheckBox chkContinuo = new JCheckBox("Gravar as alterações da origem continuamente (somente ZIP)");
+    private final JSpinner jsTamanhoVolume = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 100));
+    private final JSpinner jsLimiteMBps = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 10));
+    private final JSpinner jsLimiteArquivos = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 50));
+    private final JCheckBox chkSomenteHorario = new JCheckBox("Somente das");
+    private final JSpinner jsLimiteInicio = criarSpinnerHora();
+    private final JSpinner jsLimiteFim = criarSpinnerHora();
+    private final JTextArea txtDestinosAdicionais = new JTextArea(3, 30);
+    private final JCheckBox chkCriptografar = new JCheckBox("Gravar os backups criptografados");
+    private final JPasswordField txtSenhaCriptografia = new JPasswordField(20);
+    private final JPasswordField txtConfirmacaoSenha = new JPasswordField(20);
+    private final JSpinner jsRetencaoUltimos = new JSpinner(new SpinnerNumberModel(0, 0, 9999, 1));
+    private final JSpinner jsRetencaoDiarios = new JSpinner(new SpinnerNumberModel(0, 0, 9999, 1));
+    private final JSpinner jsRetencaoSemanais = new JSpinner(new SpinnerNumberModel(0, 0, 9999, 1));
+    private final JSpinner jsRetencaoMensais = new JSpinner(new SpinnerNumberModel(0, 0, 9999, 1));
+
+    private static final String FORMATO_HORA = "HH:mm";
+
+    private int linha;
+    private String verificadorAtual = "";
+
+    /**
+     * Cria o painel com todos os campos das opções avançadas.
+     */
+    public OpcoesAvancadasPainel() {
+        super(new GridBagLayout());
+        adicionarLinha("Perfil de compressão", cbPerfilCompressao);
+        adicionarLinha("Formato do arquivo", cbFormatoArquivo);
+        adicionarLinha("Compressão", chkDicionario);
+        adicionarLinha("Tamanho do volume em MB (0 = sem divisão)", jsTamanhoVolume);
+        adicionarLinha("Verificação", chkVerificar);
+        adicionarLinha("Arquivos grandes", chkDelta);
+        adicionarLinha("Arquivos repetidos", chkDuplicados);
+        adicionarLinha("Backup contínuo", chkContinuo);
+        adicionarLinha("Limite de leitura e escrita em MB/s (0 = sem limite)", jsLimiteMBps);
+        adicionarLinha("Limite de arquivos por segundo (0 = sem limite)", jsLimiteArquivos);
+        adicionarLinha("Horário dos limites", criarPainelHorario());
+        adicionarLinha("Cópias em outros diretórios (um por linha)", criarPainelDestinos());
+        adicionarLinha("Criptografia", chkCriptografar);
+        adicionarLinha("Nova senha de criptografia (vazia = manter a atual)", txtSenhaCriptografia);
+        adicionarLinha("Confirmação da nova senha", txtConfirmacaoSenha);
+        adicionarLinha("Retenção (0 = manter todos)", criarPainelRetencao());
+    }
+
+    /**
+     * Preenche os campos do painel com as opções avançadas do agendamento.
+     *
+     * @param dto O agendamento de backup.
+     */
+    public void carregar(BancoDeDadosDTO dto) {
+        cbPerfilCompressao.setSelectedItem(PerfilCompressao.deNome(dto.getPerfilCompressao()));
+        cbFormatoArquivo.setSelectedItem(FormatosArquivo.obter(dto.getFormatoArquivo()));
+        chkDicionario.setSelected("Sim".equals(dto.getDicionarioCompressao()));
+        jsTamanhoVolume.setValue(dto.getTamanhoVolumeMB());
+        chkVerificar.setSelected("Sim".equals(dto.getVerificarBackup()));
+        chkDelta.setSelected("Sim".equals(dto.getDeltaArquivosGrandes()));
+        chkDuplicados.setSelected("Sim".equals(dto.getDeduplicarArquivos()));
+        chkContinuo.setSelected("Sim".equals(dto.getBackupContinuo()));
+        jsLimiteMBps.setValue(dto.getLimiteMBps());
+        jsLimiteArquivos.setValue(dto.getLimiteArquivosSegundo());
+        chkSomenteHorario.setSelected("Sim".equals(dto.getLimiteSomenteHorario()));
+        jsLimiteInicio.setValue(lerHora(dto.getLimiteInicio(), "08:00"));
+        jsLimiteFim.setValue(lerHora(dto.getLimiteFim(), "18:00"));
+        txtDestinosAdicionais.setText(dto.getDestinosAdicionais() != null ? dto.getDestinosAdicionais() : "");
+        verificadorAtual = dto.getVerificadorSenha() != null ? dto.getVerificadorSenha() : "";
+        chkCriptografar.setSelected(!verificadorAtual.isEmpty());
+        jsRetencaoUltimos.setValue(dto.getRetencaoUltimos());
+        jsRetencaoDiarios.setValue(dto.getRetencaoDiarios());
+        jsRetencaoSemanais.setValue(dto.getRetencaoSemanais());
+        jsRetencaoMensais.setValue(dto.getRetencaoMensais());
+    }
+
+    /**
+     * Confere os campos da senha de criptografia antes de
+     * {@link #aplicar(BancoDeDadosDTO)}.
+     *
+     * @return A mensagem a ser exibida ao usuário, ou {@code null} se os
+     * campos estiverem corretos.
+     */
+    public String validarSenha() {
+        if (!chkCriptografar.isSelected()) {
+            return null;
+        }
+        char[] senha = txtSenhaCriptografia.getPassword();
+        char[] confirmacao = txtConfirmacaoSenha.getPassword();
+        try {
+            if (senha.length == 0 && verificadorAtual.isEmpty()) {
+                return "Informe a senha de criptografia.";
+            }
+            if (!Arrays.equals(senha, confirmacao)) {
+                return "A confirmação não confere com a nova senha de criptografia.";
+            }
+            return null;
+        } finally {
+            Arrays.fill(senha, '\0');
+            Arrays.fill(confirmacao, '\0');
+        }
+    }
+
+    /**
+     * Obtém a nova senha de criptografia digitada, para ser guardada em
+     * memória depois de o agendamento ser salvo.
+     *
+     * @return A nova senha, ou {@code null} se a criptografia estiver
+     * desmarcada ou a senha atual for mantida.
+     */
+    public char[] getNovaSenha() {
+        char[] senha = txtSenhaCriptografia.getPassword();
+        if (chkCriptografar.isSelected() && senha.length > 0) {
+            return senha;
+        }
+        Arrays.fill(senha, '\0');
+        return null;
+    }
+
+    /**
+     * Copia os valores dos campos do painel para o agendamento. Com uma nova
+     * senha de criptografia, o agendamento recebe o verificador dela.
+     *
+     * @param dto O agendamento de backup a ser atualizado.
+     */
+    public void aplicar(BancoDeDadosDTO dto) {
+        dto.setPerfilCompressao(((PerfilCompressao) cbPerfilCompressao.getSelectedItem()).name());
+        dto.setFormatoArquivo(((ProvedorFormatoArquivo) cbFormatoArquivo.getSelectedItem()).getNome());
+        dto.setDicionarioCompressao(chkDicionario.isSelected() ? "Sim" : "Não");
+        dto.setTamanhoVolumeMB((Integer) jsTamanhoVolume.getValue());
+        dto.setVerificarBackup(chkVerificar.isSelected() ? "Sim" : "Não");
+        dto.setDeltaArquivosGrandes(chkDelta.isSelected() ? "Sim" : "Não");
+        dto.setDeduplicarArquivos(chkDuplicados.isSelected() ? "Sim" : "Não");
+        dto.setBackupContinuo(chkContinuo.isSelected() ? "Sim" : "Não");
+        dto.setLimiteMBps((Integer) jsLimiteMBps.getValue());
+        dto.setLimiteArquivosSegundo((Integer) jsLimiteArquivos.getValue());
+        dto.setLimiteSomenteHorario(chkSomenteHorario.isSelected() ? "Sim" : "Não");
+        dto.setLimiteInicio(new SimpleDateFormat(FORMATO_HORA).format((Date) jsLimiteInicio.getValue()));
+        dto.setLimiteFim(new SimpleDateFormat(FORMATO_HORA).format((Date) jsLimiteFim.getValue()));
+        dto.setDestinosAdicionais(txtDestinosAdicionais.getText().trim());
+        char[] novaSenha = getNovaSenha();
+        if (!chkCriptografar.isSelected()) {
+            dto.setVerificadorSenha("");
+        } else if (novaSenha != null) {
+            dto.setVerificadorSenha(Criptografia.criarVerificador(novaSenha));
+            Arrays.fill(novaSenha, '\0');
+        } else {
+            dto.setVerificadorSenha(verificadorAtual);
+        }
+        dto.setRetencaoUltimos((Integer) jsRetencaoUltimos.getValue());
+        dto.setRetencaoDiarios((Integer) jsRetencaoDiarios.getValue());
+        dto.setRetencaoSemanais((Integer) jsRetencaoSemanais.getValue());
+        dto.setRetencaoMensais((Integer) jsRetencaoMensais.getValue());
+    }
+
+    /**
+     * Acrescenta uma linha ao painel com um rótulo e o respectivo campo.
+     *
+     * @param rotulo O texto do rótulo.
+     * @param campo O componente de edição.
+     */
+    private void adicionarLinha(String rotulo, JComponent campo) {
+        JLabel label = new JLabel(rotulo);
+        label.setFont(new Font("Segoe UI", 0, 14)); // NOI18N
+        campo.setFont(new Font("Segoe UI", 0, 14)); // NOI18N
+
+        GridBagConstraints restricoes = new GridBagConstraints();
+        restricoes.gridy = linha++;
+        restricoes.insets = new Insets(4, 4, 4, 4);
+        restricoes.anchor = GridBagConstraints.WEST;
+
+        restricoes.gridx = 0;
+        add(label, restricoes);
+
+        restricoes.gridx = 1;
+        restricoes.fill = GridBagConstraints.HORIZONTAL;
+        restricoes.weightx = 1;
+        add(campo, restricoes);
+    }
+
+    /**
+     * Monta a linha do horário dos limites: "Somente das [início] às [fim]".
+     * Sem a opção marcada, os limites valem o tempo todo.
+     */
+    private JPanel criarPainelHorario() {
+        JPanel painel = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        for (JComponent componente : new JComponent[]{chkSomenteHorario, jsLimiteInicio, new JLabel("às"), jsLimiteFim}) {
+            componente.setFont(new Font("Segoe UI", 0, 14)); // NOI18N
+            painel.add(componente);
+        }
+        return painel;
+    }
+
+    /**
+     * Monta o campo dos destinos adicionais, com um botão que acrescenta um
+     * diretório escolhido ao final da lista.
+     */
+    private JPanel criarPainelDestinos() {
+        JButton btnAdicionar = new JButton("Adicionar...");
+        btnAdicionar.setFont(new Font("Segoe UI", 0, 14)); // NOI18N
+        txtDestinosAdicionais.setFont(new Font("Segoe UI", 0, 14)); // NOI18N
+        btnAdicionar.addActionListener(evt -> {
+            JFileChooser escolha = new JFileChooser();
+            escolha.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (escolha.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                String texto = txtDestinosAdicionais.getText().trim();
+                txtDestinosAdicionais.setText((texto.isEmpty() ? "" : texto + "\n") + escolha.getSelectedFile().getAbsolutePath());
+            }
+        });
+
+        JPanel painel = new JPanel(new BorderLayout(4, 0));
+        painel.add(new JScrollPane(txtDestinosAdicionais), BorderLayout.CENTER);
+        painel.add(btnAdicionar, BorderLayout.EAST);
+        return painel;
+    }
+
+    /**
+     * Monta a linha da retenção: "últimos [n] diários [n] semanais [n]
+     * mensais [n]". Com todos os valores zerados, nenhum backup é excluído.
+     */
+    private JPanel criarPainelRetencao() {
+        JPanel painel = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        for (JComponent componente : new JComponent[]{new JLabel("últimos"), jsRetencaoUltimos, new JLabel("diários"), jsRetencaoDiarios,
+            new JLabel("semanais"), jsRetencaoSemanais, new JLabel("mensais"), jsRetencaoMensais}) {
+            componente.setFont(new Font("Segoe UI", 0, 14)); // NOI18N
+            painel.add(componente);
+        }
+        return painel;
+    }
+
+    private static JSpinner criarSpinnerHora() {
+        JSpinner spinner = new JSpinner(new SpinnerDateModel());
+        spinner.setEditor(new JSpinner.DateEditor(spinner, FORMATO_HORA));
+        return spinner;
+    }
+
+    /**
+     * Converte uma hora no formato HH:mm, usando o valor padrão se ela for
+     * inválida.
+     */
+    private static Date lerHora(String hora, String padrao) {
+        try {
+            return new SimpleDateFormat(FORMATO_HORA).parse(hora != null ? hora : padrao);
+        } catch (ParseException e) {
+            return lerHora(padrao, padrao);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.mycompany.ferramentadebackup.view;
+
+import com.mycompany.ferramentadebackup.armazenamento.Armazenamentos;
+import com.mycompany.ferramentadebackup.compactadorzip.FormatosArquivo;
+import com.mycompany.ferramentadebackup.compactadorzip.ProvedorFormatoArquivo;
+import com.mycompany.ferramentadebackup.dao.BancoDeDadosDAO;
+import com.mycompany.ferramentadebackup.dao.CatalogoDAO;
+import com.mycompany.ferramentadebackup.dto.BancoDeDadosDTO;
+import com.mycompany.ferramentadebackup.dto.ExecucaoBackupDTO;
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exclusão, em segundo plano, dos backups antigos segundo a
+ * {@link PoliticaRetencao} de cada agendamento.
+ * <p>
+ * Ao término de cada backup, o agendamento é colocado na fila com
+ * {@link #solicitar(int)}; além disso, todos os agendamentos são avaliados
+ * periodicamente. Para cada execução selecionada, são excluídos o arquivo de
+ * backup, os volumes de um backup dividido (os registrados no catálogo e os
+ * {@code .partNNN} seguintes, procurados pelo nome, sem listar o diretório) e
+ * as cópias nos destinos adicionais; destinos S3 são excluídos pelo
+ * respectivo armazenamento. As execuções cujos arquivos foram todos
+ * excluídos são então registradas como "Removido" de uma só vez, com
+ * {@link CatalogoDAO#marcarRemovidas(List)}; se algum arquivo não puder ser
+ * excluído, a execução é tentada de novo na próxima avaliação.
+ * <p>
+ * Assim como a {@link VerificadorSegundoPlano verificação}, a exclusão roda
+ * em uma thread de prioridade mínima e fica parada enquanto houver um job de
+ * backup em execução. O intervalo entre as avaliações completas pode ser
+ * ajustado com a propriedade de sistema
+ * {@code ferramentadebackup.retencao.intervalo.horas} (padrão 6).
+ */
+public class PodaBackups {
+
+    private static final long ESPERA_JOB_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static Thread thread;
+    private static final BlockingQueue<Integer> FILA = new LinkedBlockingQueue<>();
+
+    private final long intervaloMillis;
+    private final CatalogoDAO catalogoDAO = new CatalogoDAO();
+
+    private PodaBackups() {
+        this.intervaloMillis = TimeUnit.HOURS.toMillis(Long.getLong("ferramentadebackup.retencao.intervalo.horas", 6L));
+    }
+
+    /**
+     * Inicia a thread de exclusão. Pode ser chamado mais de uma vez sem
+     * efeitos colaterais.
+     */
+    public static synchronized void iniciar() {
+        if (thread != null) {
+            return;
+        }
+        PodaBackups poda = new PodaBackups();
+        thread = new Thread(poda::executar, "poda-backups");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Coloca um agendamento na fila para a aplicação da sua retenção.
+     *
+     * @param idBackup O ID do agendamento.
+     */
+    public static void solicitar(int idBackup) {
+        FILA.offer(idBackup);
+    }
+
+    private void executar() {
+        try {
+            long proximaAvaliacao = 0;
+            while (true) {
+                Set<Integer> agendamentos = new LinkedHashSet<>();
+                Integer solicitado = FILA.poll(Math.max(0, proximaAvaliacao - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (solicitado != null) {
+                    agendamentos.add(solicitado);
+                    FILA.drainTo(agendamentos);
+                }
+                boolean completa = System.currentTimeMillis() >= proximaAvaliacao;
+
+                while (MetricasBackup.isJobEmExecucao()) {
+                    Thread.sleep(ESPERA_JOB_MILLIS);
+                }
+                for (BancoDeDadosDTO dto : new BancoDeDadosDAO().listar()) {
+                    if (completa || agendamentos.contains(dto.getId())) {
+                        aplicar(dto);
+                    }
+                }
+                if (completa) {
+                    proximaAvaliacao = System.currentTimeMillis() + intervaloMillis;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Aplica a retenção de um agendamento: exclui os arquivos das execuções
+     * selecionadas e registra as que foram removidas.
+     *
+     * @param dto O agendamento de backup.
+     */
+    void aplicar(BancoDeDadosDTO dto) {
+        PoliticaRetencao politica = new PoliticaRetencao(dto);
+        if (!politica.isAtiva()) {
+            return;
+        }
+        List<Integer> removidas = new ArrayList<>();
+        for (ExecucaoBackupDTO execucao : politica.selecionarRemovidas(catalogoDAO.listarExecucoes(dto.getId()))) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (excluirArquivos(execucao, FerramentaDeBackupView.listarDestinosAdicionais(dto))) {
+                removidas.add(execucao.getId());
+            }
+        }
+        catalogoDAO.marcarRemovidas(removidas);
+        if (!removidas.isEmpty()) {
+            System.out.println("Retenção de " + dto.getNomeBackup() + ": " + removidas.size() + " backup(s) antigo(s) excluído(s).");
+        }
+    }
+
+    /**
+     * Exclui o arquivo, os volumes e as cópias de uma execução.
+     *
+     * @return {@code true} se todos os arquivos foram excluídos ou já não
+     * existiam.
+     */
+    private boolean excluirArquivos(ExecucaoBackupDTO execucao, List<Path> destinosAdicionais) {
+        Set<String> arquivos = new LinkedHashSet<>();
+        arquivos.add(execucao.getArquivo());
+        arquivos.addAll(catalogoDAO.listarArquivosExecucao(execucao.getId()));
+        if (Armazenamentos.isLocal(execucao.getArquivo())) {
+            arquivos.addAll(procurarVolumes(Paths.get(execucao.getArquivo())));
+        }
+
+        boolean sucesso = true;
+        long bytes = 0;
+        for (String arquivo : arquivos) {
+            List<String> copias = new ArrayList<>();
+            copias.add(arquivo);
+            String nome = Armazenamentos.isLocal(arquivo) ? Paths.get(arquivo).getFileName().toString() : arquivo.substring(arquivo.lastIndexOf('/') + 1);
+            for (Path adicional : destinosAdicionais) {
+                copias.add(adicional.resolve(nome).toString());
+            }
+            for (String copia : copias) {
+                try {
+                    bytes += excluir(copia);
+                } catch (IOException e) {
+                    sucesso = false;
+                    System.out.println("Não foi possível excluir o backup antigo " + copia + ": " + e.getMessage());
+                }
+            }
+        }
+        if (sucesso) {
+            MetricasBackup.execucaoRemovida(bytes);
+        }
+        return sucesso;
+    }
+
+    /**
+     * Procura os volumes {@code base.part001.ext}, {@code base.part002.ext},
+     * ... de um backup dividido, parando no primeiro que não existe.
+     */
+    private static List<String> procurarVolumes(Path arquivo) {
+        List<String> volumes = new ArrayList<>();
+        String nome = arquivo.getFileName().toString();
+        String extensao = "";
+        for (ProvedorFormatoArquivo formato : FormatosArquivo.listar()) {
+            if (nome.endsWith(formato.getExtensao()) && formato.getExtensao().length() > extensao.length()) {
+                extensao = formato.getExtensao();
+            }
+        }
+        String base = nome.substring(0, nome.length() - extensao.length());
+        for (int numero = 1;; numero++) {
+            Path volume = arquivo.resolveSibling(String.format("%s.part%03d%s", base, numero, extensao));
+            if (!Files.exists(volume)) {
+                return volumes;
+            }
+            volumes.add(volume.toString());
+        }
+    }
+
+    /**
+     * Exclui um arquivo local ou remoto.
+     *
+     * @return O tamanho do arquivo local excluído, ou 0.
+     */
+    private static long excluir(String arquivo) throws IOException {
+        if (Armazenamentos.isLocal(arquivo)) {
+            Path caminho = Paths.get(arquivo).toAbsolutePath();
+            long tamanho = Files.exists(caminho) ? Files.size(caminho) : 0;
+            Armazenamentos.obter(caminho.getParent().toString()).excluir(caminho.getFileName().toString());
+            return tamanho;
+        }
+        int barra = arquivo.lastIndexOf('/');
+        Armazenamentos.obter(arquivo.substring(0, barra)).excluir(arquivo.substring(barra + 1));
+        return 0;
+    }
+}
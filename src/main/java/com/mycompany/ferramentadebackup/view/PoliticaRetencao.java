@@ -0,0 +1,151 @@
+package com.mycompany.ferramentadebackup.view;
+
+import com.mycompany.ferramentadebackup.dto.BancoDeDadosDTO;
+import com.mycompany.ferramentadebackup.dto.ExecucaoBackupDTO;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Política de retenção dos backups de um agendamento, no esquema
+ * avô-pai-filho (GFS).
+ * <p>
+ * A política é avaliada sobre o histórico de execuções do banco de dados, e
+ * não sobre a listagem do diretório de destino. Somente as execuções
+ * concluídas podem ser excluídas; as que falharam ou ainda estão em andamento
+ * nunca são tocadas, pois podem ter um arquivo parcial que será retomado. Das
+ * execuções concluídas, são mantidas:
+ * <ul>
+ * <li>as {@code N} mais recentes;</li>
+ * <li>a mais recente de cada um dos últimos dias, semanas ISO e meses em que
+ * houve backup, até as quantidades configuradas;</li>
+ * <li>sempre a mais recente de todas;</li>
+ * <li>as execuções das quais uma execução mantida depende
+ * ({@link ExecucaoBackupDTO#getIdBase()}), de forma transitiva, para que
+ * nenhuma cadeia de backups fique incompleta.</li>
+ * </ul>
+ * Com todas as quantidades zeradas, a retenção fica desativada e nada é
+ * excluído.
+ */
+public class PoliticaRetencao {
+
+    private final int ultimos, diarios, semanais, mensais;
+
+    /**
+     * Cria a política com as quantidades configuradas no agendamento.
+     *
+     * @param dto O agendamento de backup.
+     */
+    public PoliticaRetencao(BancoDeDadosDTO dto) {
+        this(dto.getRetencaoUltimos(), dto.getRetencaoDiarios(), dto.getRetencaoSemanais(), dto.getRetencaoMensais());
+    }
+
+    /**
+     * Cria a política com as quantidades informadas; zero desativa o
+     * critério.
+     */
+    public PoliticaRetencao(int ultimos, int diarios, int semanais, int mensais) {
+        this.ultimos = Math.max(0, ultimos);
+        this.diarios = Math.max(0, diarios);
+        this.semanais = Math.max(0, semanais);
+        this.mensais = Math.max(0, mensais);
+    }
+
+    /**
+     * @return {@code true} se algum critério de retenção estiver configurado.
+     */
+    public boolean isAtiva() {
+        return ultimos + diarios + semanais + mensais > 0;
+    }
+
+    /**
+     * Seleciona as execuções cujos arquivos devem ser excluídos.
+     *
+     * @param execucoes As execuções do agendamento, das mais recentes para as
+     * mais antigas, como devolvidas por
+     * {@link com.mycompany.ferramentadebackup.dao.CatalogoDAO#listarExecucoes(int)}.
+     * @return As execuções a excluir, na mesma ordem.
+     */
+    public List<ExecucaoBackupDTO> selecionarRemovidas(List<ExecucaoBackupDTO> execucoes) {
+        List<ExecucaoBackupDTO> removidas = new ArrayList<>();
+        if (!isAtiva()) {
+            return removidas;
+        }
+
+        List<ExecucaoBackupDTO> concluidas = new ArrayList<>();
+        for (ExecucaoBackupDTO execucao : execucoes) {
+            if ("Concluído".equals(execucao.getStatus())) {
+                concluidas.add(execucao);
+            }
+        }
+
+        Set<Integer> mantidas = new HashSet<>();
+        for (int i = 0; i < concluidas.size() && i < Math.max(1, ultimos); i++) {
+            mantidas.add(concluidas.get(i).getId());
+        }
+        manterUmaPorPeriodo(concluidas, diarios, dia -> dia.toString(), mantidas);
+        manterUmaPorPeriodo(concluidas, semanais, dia -> dia.get(IsoFields.WEEK_BASED_YEAR) + "-W" + dia.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR), mantidas);
+        manterUmaPorPeriodo(concluidas, mensais, dia -> dia.getYear() + "-" + dia.getMonthValue(), mantidas);
+
+        // As execuções em andamento também podem depender de uma base
+        Map<Integer, ExecucaoBackupDTO> porId = new HashMap<>();
+        List<Integer> pendentes = new ArrayList<>(mantidas);
+        for (ExecucaoBackupDTO execucao : execucoes) {
+            porId.put(execucao.getId(), execucao);
+            if ("Em andamento".equals(execucao.getStatus())) {
+                pendentes.add(execucao.getId());
+            }
+        }
+        while (!pendentes.isEmpty()) {
+            ExecucaoBackupDTO execucao = porId.get(pendentes.remove(pendentes.size() - 1));
+            if (execucao != null && execucao.getIdBase() != null && mantidas.add(execucao.getIdBase())) {
+                pendentes.add(execucao.getIdBase());
+            }
+        }
+
+        for (ExecucaoBackupDTO execucao : concluidas) {
+            if (!mantidas.contains(execucao.getId())) {
+                removidas.add(execucao);
+            }
+        }
+        return removidas;
+    }
+
+    /**
+     * Mantém a execução mais recente de cada um dos últimos períodos com
+     * backup, até a quantidade informada.
+     */
+    private static void manterUmaPorPeriodo(List<ExecucaoBackupDTO> concluidas, int quantidade, Function<LocalDate, String> periodo, Set<Integer> mantidas) {
+        Set<String> periodos = new HashSet<>();
+        for (ExecucaoBackupDTO execucao : concluidas) {
+            if (periodos.size() >= quantidade) {
+                return;
+            }
+            LocalDate dia = lerDia(execucao.getInicio());
+            if (dia != null && periodos.add(periodo.apply(dia))) {
+                mantidas.add(execucao.getId());
+            }
+        }
+    }
+
+    /**
+     * Lê o dia do início de uma execução, gravado como
+     * {@code yyyy-MM-dd HH:mm:ss}.
+     *
+     * @return O dia, ou {@code null} se o valor for inválido.
+     */
+    private static LocalDate lerDia(String inicio) {
+        try {
+            return inicio != null && inicio.length() >= 10 ? LocalDate.parse(inicio.substring(0, 10)) : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
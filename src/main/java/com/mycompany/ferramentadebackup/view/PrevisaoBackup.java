@@ -0,0 +1,195 @@
+package com.mycompany.ferramentadebackup.view;
+
+import com.mycompany.ferramentadebackup.armazenamento.Armazenamentos;
+import com.mycompany.ferramentadebackup.compactadorzip.EstimativaOrigem;
+import com.mycompany.ferramentadebackup.compactadorzip.PerfilCompressao;
+import com.mycompany.ferramentadebackup.dao.CatalogoDAO;
+import com.mycompany.ferramentadebackup.dto.ExecucaoBackupDTO;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Previsão do tamanho e da duração de um backup, exibida antes de salvar um
+ * agendamento.
+ * <p>
+ * A quantidade e o tamanho dos arquivos vêm de uma {@link EstimativaOrigem}
+ * da origem. O tamanho compactado e a duração são previstos pelas medianas da
+ * taxa de compressão e da vazão das últimas execuções concluídas com a mesma
+ * origem ou, se não houver nenhuma, das de todos os agendamentos, segundo o
+ * histórico e o catálogo ({@link CatalogoDAO#listarMedicoes(String, int)}).
+ * Sem execuções anteriores, são usadas a taxa e a vazão da amostra
+ * comprimida pela estimativa, que não contam o tempo de leitura do disco.
+ */
+class PrevisaoBackup {
+
+    // Quantidade de execuções anteriores consideradas
+    private static final int EXECUCOES = 20;
+
+    private static final String FORMATO_DATA_HORA = "yyyy-MM-dd HH:mm:ss";
+
+    private final EstimativaOrigem estimativa;
+    private double taxaCompressao;
+    private double vazao;
+    private int execucoes;
+    private boolean mesmaOrigem;
+
+    private PrevisaoBackup(EstimativaOrigem estimativa) {
+        this.estimativa = estimativa;
+    }
+
+    /**
+     * Calcula a previsão de um backup.
+     *
+     * @param diretorioOrigem O diretório ou arquivo de origem.
+     * @param prazoMillis O tempo máximo da varredura da origem.
+     * @param catalogoDAO O acesso ao histórico e ao catálogo.
+     * @return A previsão.
+     * @throws IOException Se a origem não puder ser lida.
+     */
+    static PrevisaoBackup calcular(String diretorioOrigem, long prazoMillis, CatalogoDAO catalogoDAO) throws IOException {
+        PrevisaoBackup previsao = new PrevisaoBackup(EstimativaOrigem.calcular(Paths.get(diretorioOrigem), prazoMillis,
+                PerfilCompressao.BALANCEADO.getNivel()));
+
+        List<ExecucaoBackupDTO> execucoes = catalogoDAO.listarMedicoes(diretorioOrigem, EXECUCOES);
+        previsao.mesmaOrigem = !execucoes.isEmpty();
+        if (execucoes.isEmpty()) {
+            execucoes = catalogoDAO.listarMedicoes(null, EXECUCOES);
+        }
+        List<Double> taxas = new ArrayList<>();
+        List<Double> vazoes = new ArrayList<>();
+        for (ExecucaoBackupDTO execucao : execucoes) {
+            if (execucao.getBytesOrigem() <= 0) {
+                continue;
+            }
+            long compactado = tamanhoCompactado(execucao, catalogoDAO);
+            if (compactado > 0) {
+                taxas.add((double) compactado / execucao.getBytesOrigem());
+            }
+            long segundos = duracaoSegundos(execucao);
+            if (segundos > 0) {
+                vazoes.add((double) execucao.getBytesOrigem() / segundos);
+            }
+        }
+        previsao.execucoes = Math.max(taxas.size(), vazoes.size());
+        previsao.taxaCompressao = taxas.isEmpty() ? previsao.estimativa.getTaxaCompressao() : mediana(taxas);
+        previsao.vazao = vazoes.isEmpty() ? previsao.estimativa.getVazaoCompressao() : mediana(vazoes);
+        return previsao;
+    }
+
+    /**
+     * @return O tamanho compactado previsto, em bytes.
+     */
+    long getBytesCompactados() {
+        double taxa = taxaCompressao > 0 ? taxaCompressao : 1;
+        return Math.round(estimativa.getBytes() * taxa);
+    }
+
+    /**
+     * @return A duração prevista em segundos, ou -1 se não há como prever.
+     */
+    long getDuracaoSegundos() {
+        return vazao > 0 ? Math.round(estimativa.getBytes() / vazao) : -1;
+    }
+
+    /**
+     * @return O texto da previsão, uma informação por linha.
+     */
+    String descrever() {
+        StringBuilder texto = new StringBuilder();
+        texto.append("Arquivos: ").append(String.format(Locale.getDefault(), "%,d", estimativa.getArquivos()));
+        if (estimativa.isAmostrada()) {
+            texto.append(" (estimado por amostragem)");
+        }
+        texto.append("\nTamanho: ").append(formatarBytes(estimativa.getBytes()));
+        texto.append("\nTamanho compactado: ~").append(formatarBytes(getBytesCompactados()));
+        long duracao = getDuracaoSegundos();
+        texto.append("\nDuração: ").append(duracao < 0 ? "desconhecida" : "~" + formatarDuracao(duracao));
+        if (execucoes > 0) {
+            texto.append("\n\nBaseado em ").append(execucoes).append(" execução(ões) anterior(es) ")
+                    .append(mesmaOrigem ? "da mesma origem." : "de outros agendamentos.");
+        } else {
+            texto.append("\n\nSem execuções anteriores: baseado na compressão de uma amostra,"
+                    + " sem contar o tempo de leitura do disco.");
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Soma o tamanho dos arquivos locais de uma execução, inclusive os
+     * volumes.
+     *
+     * @return O tamanho, ou 0 se algum arquivo já foi excluído ou não é
+     * local.
+     */
+    private static long tamanhoCompactado(ExecucaoBackupDTO execucao, CatalogoDAO catalogoDAO) {
+        Set<String> arquivos = new LinkedHashSet<>(catalogoDAO.listarArquivosExecucao(execucao.getId()));
+        arquivos.add(execucao.getArquivo());
+        long tamanho = 0;
+        for (String arquivo : arquivos) {
+            if (!Armazenamentos.isLocal(arquivo)) {
+                return 0;
+            }
+            Path caminho = Paths.get(arquivo);
+            try {
+                if (Files.exists(caminho)) {
+                    tamanho += Files.size(caminho);
+                } else if (!arquivo.equals(execucao.getArquivo())) {
+                    return 0;
+                }
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+        return tamanho;
+    }
+
+    private static long duracaoSegundos(ExecucaoBackupDTO execucao) {
+        try {
+            SimpleDateFormat formato = new SimpleDateFormat(FORMATO_DATA_HORA);
+            return (formato.parse(execucao.getFim()).getTime() - formato.parse(execucao.getInicio()).getTime()) / 1000;
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    private static double mediana(List<Double> valores) {
+        List<Double> ordenados = new ArrayList<>(valores);
+        Collections.sort(ordenados);
+        int meio = ordenados.size() / 2;
+        return ordenados.size() % 2 == 1 ? ordenados.get(meio) : (ordenados.get(meio - 1) + ordenados.get(meio)) / 2;
+    }
+
+    static String formatarBytes(long bytes) {
+        String[] unidades = {"bytes", "KB", "MB", "GB", "TB"};
+        double valor = bytes;
+        int unidade = 0;
+        while (valor >= 1024 && unidade < unidades.length - 1) {
+            valor /= 1024;
+            unidade++;
+        }
+        return unidade == 0 ? bytes + " bytes" : String.format(Locale.getDefault(), "%.1f %s", valor, unidades[unidade]);
+    }
+
+    static String formatarDuracao(long segundos) {
+        if (segundos < 1) {
+            return "menos de 1 s";
+        }
+        if (segundos < 60) {
+            return segundos + " s";
+        }
+        if (segundos < 3600) {
+            return (segundos / 60) + " min " + (segundos % 60) + " s";
+        }
+        return (segundos / 3600) + " h " + (segundos % 3600 / 60) + " min";
+    }
+}
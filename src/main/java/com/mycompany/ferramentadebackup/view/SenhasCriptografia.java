@@ -0,0 +1,152 @@
+package com.mycompany.ferramentadebackup.view;
+
+import com.mycompany.ferramentadebackup.compactadorzip.Criptografia;
+import com.mycompany.ferramentadebackup.dto.BancoDeDadosDTO;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.JOptionPane;
+import javax.swing.JPasswordField;
+import javax.swing.SwingUtilities;
+
+/**
+ * Senhas de criptografia dos agendamentos, guardadas somente na memória
+ * enquanto o programa está aberto.
+ * <p>
+ * O banco de dados guarda apenas o verificador de cada senha
+ * ({@link Criptografia#criarVerificador(char[])}). Na primeira vez em que um
+ * agendamento criptografado precisa da senha, ela é pedida ao usuário,
+ * conferida com o verificador e mantida aqui até o programa ser fechado. A
+ * verificação em segundo plano usa só as senhas já informadas, sem
+ * perguntar.
+ * <p>
+ * As senhas são sempre devolvidas em cópias, que quem as recebe deve apagar
+ * depois do uso.
+ */
+final class SenhasCriptografia {
+
+    private static final int TENTATIVAS = 3;
+
+    private static final Map<Integer, char[]> SENHAS = new HashMap<>();
+    // Agendamentos cuja senha o usuário deixou de informar; o backup contínuo não pergunta de novo
+    private static final Set<Integer> RECUSADAS = new HashSet<>();
+
+    private SenhasCriptografia() {
+    }
+
+    /**
+     * @param dto O agendamento de backup.
+     * @return {@code true} se o agendamento grava os backups criptografados.
+     */
+    static boolean isCriptografado(BancoDeDadosDTO dto) {
+        return dto.getVerificadorSenha() != null && !dto.getVerificadorSenha().isEmpty();
+    }
+
+    /**
+     * Obtém a senha já informada de um agendamento, sem perguntar ao
+     * usuário.
+     *
+     * @param idAgendamento O ID do agendamento.
+     * @return Uma cópia da senha, ou {@code null} se ela ainda não foi
+     * informada.
+     */
+    static synchronized char[] emMemoria(int idAgendamento) {
+        char[] senha = SENHAS.get(idAgendamento);
+        return senha != null ? senha.clone() : null;
+    }
+
+    /**
+     * Guarda a senha de um agendamento, por exemplo depois de o usuário
+     * defini-la nas opções avançadas.
+     *
+     * @param idAgendamento O ID do agendamento.
+     * @param senha A senha; uma cópia é guardada.
+     */
+    static synchronized void guardar(int idAgendamento, char[] senha) {
+        esquecer(idAgendamento);
+        SENHAS.put(idAgendamento, senha.clone());
+    }
+
+    /**
+     * Apaga a senha guardada de um agendamento.
+     *
+     * @param idAgendamento O ID do agendamento.
+     */
+    static synchronized void esquecer(int idAgendamento) {
+        char[] anterior = SENHAS.remove(idAgendamento);
+        if (anterior != null) {
+            Arrays.fill(anterior, '\0');
+        }
+        RECUSADAS.remove(idAgendamento);
+    }
+
+    /**
+     * Obtém a senha de um agendamento criptografado, pedindo-a ao usuário se
+     * ela ainda não foi informada. A senha digitada é conferida com o
+     * verificador do agendamento; depois de três senhas incorretas, ou se o
+     * usuário cancelar, nenhuma senha é devolvida.
+     *
+     * @param dto O agendamento de backup.
+     * @param insistir {@code false} para não perguntar de novo quando o
+     * usuário já deixou de informar a senha deste agendamento.
+     * @return Uma cópia da senha, ou {@code null} se ela não foi informada.
+     */
+    static char[] obter(BancoDeDadosDTO dto, boolean insistir) {
+        synchronized (SenhasCriptografia.class) {
+            char[] senha = emMemoria(dto.getId());
+            if (senha != null || (!insistir && RECUSADAS.contains(dto.getId()))) {
+                return senha;
+            }
+        }
+
+        // O diálogo é exibido sem manter o bloqueio, pois a thread de eventos também consulta as senhas
+        char[] senha = pedirNaThreadDeEventos(dto);
+        synchronized (SenhasCriptografia.class) {
+            if (senha == null) {
+                RECUSADAS.add(dto.getId());
+                return null;
+            }
+            guardar(dto.getId(), senha);
+            return senha;
+        }
+    }
+
+    private static char[] pedirNaThreadDeEventos(BancoDeDadosDTO dto) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            return pedir(dto);
+        }
+        AtomicReference<char[]> senha = new AtomicReference<>();
+        try {
+            SwingUtilities.invokeAndWait(() -> senha.set(pedir(dto)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            System.out.println("Erro ao pedir a senha de criptografia: " + e.getCause());
+        }
+        return senha.get();
+    }
+
+    private static char[] pedir(BancoDeDadosDTO dto) {
+        for (int tentativa = 0; tentativa < TENTATIVAS; tentativa++) {
+            JPasswordField txtSenha = new JPasswordField(20);
+            Object[] mensagem = {"Informe a senha de criptografia do agendamento \"" + dto.getNomeBackup() + "\":", txtSenha};
+            int opcao = JOptionPane.showConfirmDialog(null, mensagem, "Senha de criptografia",
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+            char[] senha = txtSenha.getPassword();
+            if (opcao != JOptionPane.OK_OPTION) {
+                Arrays.fill(senha, '\0');
+                return null;
+            }
+            if (Criptografia.conferirVerificador(senha, dto.getVerificadorSenha())) {
+                return senha;
+            }
+            Arrays.fill(senha, '\0');
+            JOptionPane.showMessageDialog(null, "Senha incorreta.", "Erro", JOptionPane.ERROR_MESSAGE);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,224 @@
+package com.mycompany.ferramentadebackup.view;
+
+import com.mycompany.ferramentadebackup.armazenamento.Armazenamentos;
+import com.mycompany.ferramentadebackup.compactadorzip.Criptografia;
+import com.mycompany.ferramentadebackup.compactadorzip.LimitadorTaxa;
+import com.mycompany.ferramentadebackup.compactadorzip.VerificadorZip;
+import com.mycompany.ferramentadebackup.dao.BancoDeDadosDAO;
+import com.mycompany.ferramentadebackup.dao.VerificacaoDAO;
+import com.mycompany.ferramentadebackup.dto.BancoDeDadosDTO;
+import com.mycompany.ferramentadebackup.dto.VerificacaoArquivoDTO;
+import com.mycompany.ferramentadebackup.metricas.MetricasBackup;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verificação contínua, em segundo plano, da integridade dos arquivos de
+ * backup.
+ * <p>
+ * Uma thread de prioridade mínima percorre os arquivos ZIP dos diretórios de
+ * destino locais dos agendamentos, inclusive os destinos adicionais,
+ * verifica o CRC-32 de todas as entradas com
+ * {@link VerificadorZip#verificar(Path, int, LimitadorTaxa)} e grava o
+ * resultado com {@link VerificacaoDAO}. Os arquivos nunca verificados vêm
+ * primeiro, seguidos pelos que foram verificados há mais tempo; um arquivo só
+ * é verificado novamente depois do intervalo mínimo. Nos backups
+ * criptografados, a etiqueta de autenticação de cada bloco é conferida com a
+ * senha do agendamento dono do diretório
+ * ({@link Criptografia#verificar(Path, char[], int, LimitadorTaxa)}), e a
+ * quantidade de blocos é registrada no lugar da quantidade de entradas. A
+ * senha só é conhecida depois de informada pelo usuário nesta sessão
+ * ({@link SenhasCriptografia}); até lá, o arquivo fica como não verificado.
+ * <p>
+ * Para não competir com os backups, a leitura é limitada e a verificação fica
+ * parada enquanto houver um job de backup em execução. Arquivos modificados
+ * nos últimos minutos são ignorados, pois podem estar sendo gravados.
+ * <p>
+ * A carga pode ser ajustada com as propriedades de sistema
+ * {@code ferramentadebackup.verificacao.mbps} (padrão 20 MB/s, 0 desativa o
+ * limite), {@code ferramentadebackup.verificacao.threads} (padrão 2) e
+ * {@code ferramentadebackup.verificacao.intervalo.horas} (padrão 24).
+ */
+public class VerificadorSegundoPlano {
+
+    private static final long ESPERA_OCIOSA_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long ESPERA_JOB_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long PAUSA_ENTRE_ARQUIVOS_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long IDADE_MINIMA_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static Thread thread;
+
+    private final LimitadorTaxa limitador;
+    private final int threads;
+    private final long intervaloMillis;
+    private final VerificacaoDAO verificacaoDAO = new VerificacaoDAO();
+    private final Map<Path, char[]> senhas = new HashMap<>();
+
+    private VerificadorSegundoPlano() {
+        double mbps = Double.parseDouble(System.getProperty("ferramentadebackup.verificacao.mbps", "20"));
+        this.limitador = new LimitadorTaxa(mbps * 1024 * 1024);
+        this.threads = Integer.getInteger("ferramentadebackup.verificacao.threads", 2);
+        this.intervaloMillis = TimeUnit.HOURS.toMillis(Long.getLong("ferramentadebackup.verificacao.intervalo.horas", 24L));
+    }
+
+    /**
+     * Cria a tabela de resultados e inicia a thread de verificação. Pode ser
+     * chamado mais de uma vez sem efeitos colaterais.
+     */
+    public static synchronized void iniciar() {
+        if (thread != null) {
+            return;
+        }
+        VerificadorSegundoPlano verificador = new VerificadorSegundoPlano();
+        verificador.verificacaoDAO.verificarECriarTabela();
+
+        thread = new Thread(verificador::executar, "verificador-segundo-plano");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private void executar() {
+        try {
+            while (true) {
+                if (MetricasBackup.isJobEmExecucao()) {
+                    Thread.sleep(ESPERA_JOB_MILLIS);
+                    continue;
+                }
+                Path proximo = escolherProximo();
+                if (proximo == null) {
+                    Thread.sleep(ESPERA_OCIOSA_MILLIS);
+                    continue;
+                }
+                verificar(proximo);
+                Thread.sleep(PAUSA_ENTRE_ARQUIVOS_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Escolhe o arquivo que está há mais tempo sem verificação, respeitando o
+     * intervalo mínimo entre verificações do mesmo arquivo.
+     *
+     * @return O arquivo a verificar, ou {@code null} se não houver nenhum.
+     */
+    private Path escolherProximo() {
+        HashMap<String, String> verificacoes = verificacaoDAO.buscarUltimasVerificacoes();
+        String limite = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(System.currentTimeMillis() - intervaloMillis));
+
+        Path escolhido = null;
+        String ultimaEscolhido = null;
+        for (Path arquivo : listarArquivos()) {
+            String ultima = verificacoes.get(arquivo.toString());
+            if (ultima == null) {
+                return arquivo;
+            }
+            if (ultima.compareTo(limite) <= 0 && (ultimaEscolhido == null || ultima.compareTo(ultimaEscolhido) < 0)) {
+                escolhido = arquivo;
+                ultimaEscolhido = ultima;
+            }
+        }
+        return escolhido;
+    }
+
+    /**
+     * Lista os arquivos ZIP concluídos dos diretórios de destino de todos os
+     * agendamentos e guarda a senha de criptografia já informada de cada
+     * diretório.
+     */
+    private List<Path> listarArquivos() {
+        Set<String> diretorios = new LinkedHashSet<>();
+        for (char[] senha : senhas.values()) {
+            Arrays.fill(senha, '\0');
+        }
+        senhas.clear();
+        for (BancoDeDadosDTO dto : new BancoDeDadosDAO().listar()) {
+            List<String> doAgendamento = new ArrayList<>();
+            if (Armazenamentos.isLocal(dto.getDiretorioDestino())) {
+                doAgendamento.add(dto.getDiretorioDestino());
+            }
+            for (Path adicional : FerramentaDeBackupView.listarDestinosAdicionais(dto)) {
+                doAgendamento.add(adicional.toString());
+            }
+            for (String diretorio : doAgendamento) {
+                diretorios.add(diretorio);
+                char[] senha = SenhasCriptografia.emMemoria(dto.getId());
+                char[] anterior = senha != null ? senhas.put(Paths.get(diretorio).toAbsolutePath().normalize(), senha) : null;
+                if (anterior != null) {
+                    Arrays.fill(anterior, '\0');
+                }
+            }
+        }
+
+        List<Path> arquivos = new ArrayList<>();
+        long limiteModificacao = System.currentTimeMillis() - IDADE_MINIMA_MILLIS;
+        for (String diretorio : diretorios) {
+            Path caminho = Paths.get(diretorio);
+            if (!Files.isDirectory(caminho)) {
+                continue;
+            }
+            try (DirectoryStream<Path> zips = Files.newDirectoryStream(caminho, "*.zip")) {
+                for (Path zip : zips) {
+                    if (Files.isRegularFile(zip) && Files.getLastModifiedTime(zip).toMillis() < limiteModificacao) {
+                        arquivos.add(zip.toAbsolutePath());
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Erro ao listar os backups de " + diretorio + ": " + e.getMessage());
+            }
+        }
+        return arquivos;
+    }
+
+    private void verificar(Path arquivo) {
+        VerificacaoArquivoDTO resultado = new VerificacaoArquivoDTO();
+        resultado.setArquivo(arquivo.toString());
+
+        boolean cifrado = Criptografia.isCifrado(arquivo);
+        char[] senha = senhas.get(arquivo.getParent().normalize());
+        if (cifrado && senha == null) {
+            // Registrado para não ser escolhido de novo antes do intervalo
+            resultado.setResultado("Não verificado");
+            resultado.setMensagem("Backup criptografado; a senha do agendamento ainda não foi informada");
+            resultado.setUltimaVerificacao(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+            verificacaoDAO.registrar(resultado);
+            return;
+        }
+
+        System.out.println("Verificando a integridade de: " + arquivo);
+        try {
+            if (cifrado) {
+                resultado.setEntradas(Criptografia.verificar(arquivo, senha, threads, limitador));
+            } else {
+                resultado.setEntradas(VerificadorZip.verificar(arquivo, threads, limitador));
+            }
+            resultado.setResultado("OK");
+        } catch (IOException e) {
+            if (Thread.currentThread().isInterrupted() || !Files.exists(arquivo)) {
+                // Interrompida ou arquivo removido durante a verificação: nada a registrar
+                return;
+            }
+            resultado.setResultado("Corrompido");
+            resultado.setMensagem(e.getMessage());
+            System.out.println("Backup corrompido: " + arquivo + " - " + e.getMessage());
+        }
+        resultado.setUltimaVerificacao(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+        verificacaoDAO.registrar(resultado);
+        MetricasBackup.verificacaoConcluida("OK".equals(resultado.getResultado()));
+    }
+}
@@ -0,0 +1,215 @@
+package com.mycompany.ferramentadebackup.armazenamento;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Envio em partes para um servidor compatível com S3 simulado no próprio
+ * processo: início, envio das partes e conclusão, a repetição de uma parte
+ * recusada com erro 5xx e o cancelamento do envio quando uma parte falha.
+ */
+class ArmazenamentoS3Test {
+
+    private static final int TAMANHO_PARTE = 5 * 1024 * 1024;
+    private static final Pattern PARTE = Pattern.compile("<PartNumber>(\\d+)</PartNumber><ETag>&quot;([^&]+)&quot;</ETag>");
+
+    private HttpServer servidor;
+    private ArmazenamentoS3 armazenamento;
+
+    // Estado do servidor simulado
+    private final Map<String, byte[]> partes = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> objetos = new ConcurrentHashMap<>();
+    private final List<String> requisicoes = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger falhasParte2 = new AtomicInteger();
+
+    @BeforeEach
+    void iniciarServidor() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        servidor.createContext("/", this::responder);
+        servidor.start();
+        URI endpoint = URI.create("http://127.0.0.1:" + servidor.getAddress().getPort());
+        armazenamento = new ArmazenamentoS3(endpoint, "us-east-1", "chave", "segredo", "backups", "diario", TAMANHO_PARTE, 2);
+    }
+
+    @AfterEach
+    void pararServidor() {
+        servidor.stop(0);
+    }
+
+    @Test
+    void enviaObjetoEmPartes() throws IOException {
+        byte[] conteudo = aleatorio(2 * TAMANHO_PARTE + 1_000);
+
+        gravar(conteudo);
+
+        assertArrayEquals(conteudo, objetos.get("/backups/diario/backup.zip"));
+        assertEquals(List.of("POST uploads", "PUT 1", "PUT 2", "PUT 3", "POST uploadId"), semRepeticoes());
+        assertEquals("s3://backups/diario/backup.zip", armazenamento.getLocalizacao("backup.zip"));
+    }
+
+    @Test
+    void repeteParteRecusadaComErroDoServidor() throws IOException {
+        falhasParte2.set(1);
+        byte[] conteudo = aleatorio(2 * TAMANHO_PARTE + 1_000);
+
+        gravar(conteudo);
+
+        assertArrayEquals(conteudo, objetos.get("/backups/diario/backup.zip"));
+        assertEquals(2, Collections.frequency(requisicoes, "PUT 2"));
+        assertFalse(requisicoes.contains("DELETE uploadId"));
+    }
+
+    @Test
+    void cancelaEnvioQuandoUmaParteFalha() {
+        falhasParte2.set(Integer.MAX_VALUE);
+
+        assertThrows(IOException.class, () -> gravar(aleatorio(2 * TAMANHO_PARTE + 1_000)));
+
+        assertTrue(objetos.isEmpty());
+        // Três tentativas da parte recusada antes do cancelamento
+        assertEquals(3, Collections.frequency(requisicoes, "PUT 2"));
+        assertTrue(requisicoes.contains("DELETE uploadId"), requisicoes.toString());
+        assertFalse(requisicoes.contains("POST uploadId"));
+    }
+
+    private void gravar(byte[] conteudo) throws IOException {
+        try (GravacaoArmazenamento gravacao = armazenamento.criar("backup.zip")) {
+            OutputStream saida = gravacao.getSaida();
+            for (int posicao = 0; posicao < conteudo.length; posicao += 100_000) {
+                saida.write(conteudo, posicao, Math.min(100_000, conteudo.length - posicao));
+            }
+            gravacao.concluir();
+        }
+    }
+
+    private List<String> semRepeticoes() {
+        List<String> distintas = new ArrayList<>();
+        synchronized (requisicoes) {
+            requisicoes.stream().distinct().sorted((a, b) -> ordem(a) - ordem(b)).forEach(distintas::add);
+        }
+        return distintas;
+    }
+
+    // As partes são enviadas em paralelo; a ordem entre elas não é fixa
+    private static int ordem(String requisicao) {
+        switch (requisicao) {
+            case "POST uploads":
+                return 0;
+            case "POST uploadId":
+                return 100;
+            default:
+                return Integer.parseInt(requisicao.substring(4));
+        }
+    }
+
+    private void responder(HttpExchange troca) throws IOException {
+        byte[] corpo = troca.getRequestBody().readAllBytes();
+        String metodo = troca.getRequestMethod();
+        String caminho = troca.getRequestURI().getPath();
+        Map<String, String> parametros = parametros(troca.getRequestURI().getRawQuery());
+
+        // Toda requisição é assinada e traz o hash do próprio corpo
+        String hash = troca.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (troca.getRequestHeaders().getFirst("Authorization") == null || !sha256(corpo).equals(hash)) {
+            responder(troca, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>");
+            return;
+        }
+
+        if (metodo.equals("POST") && parametros.containsKey("uploads")) {
+            requisicoes.add("POST uploads");
+            responder(troca, 200, "<InitiateMultipartUploadResult><UploadId>envio-1</UploadId></InitiateMultipartUploadResult>");
+        } else if (metodo.equals("PUT") && "envio-1".equals(parametros.get("uploadId"))) {
+            String numero = parametros.get("partNumber");
+            requisicoes.add("PUT " + numero);
+            if (numero.equals("2") && falhasParte2.getAndDecrement() > 0) {
+                responder(troca, 503, "<Error><Code>SlowDown</Code></Error>");
+                return;
+            }
+            partes.put(numero, corpo);
+            troca.getResponseHeaders().add("ETag", "\"" + sha256(corpo) + "\"");
+            responder(troca, 200, "");
+        } else if (metodo.equals("POST") && "envio-1".equals(parametros.get("uploadId"))) {
+            requisicoes.add("POST uploadId");
+            ByteArrayOutputStream objeto = new ByteArrayOutputStream();
+            Matcher parte = PARTE.matcher(new String(corpo, StandardCharsets.UTF_8));
+            while (parte.find()) {
+                byte[] dados = partes.get(parte.group(1));
+                assertEquals(sha256(dados), parte.group(2));
+                objeto.write(dados);
+            }
+            objetos.put(caminho, objeto.toByteArray());
+            responder(troca, 200, "<CompleteMultipartUploadResult><Key>" + caminho + "</Key></CompleteMultipartUploadResult>");
+        } else if (metodo.equals("DELETE") && "envio-1".equals(parametros.get("uploadId"))) {
+            requisicoes.add("DELETE uploadId");
+            partes.clear();
+            responder(troca, 204, "");
+        } else {
+            responder(troca, 400, "<Error><Code>InvalidRequest</Code></Error>");
+        }
+    }
+
+    private static void responder(HttpExchange troca, int status, String corpo) throws IOException {
+        byte[] bytes = corpo.getBytes(StandardCharsets.UTF_8);
+        troca.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream saida = troca.getResponseBody()) {
+            saida.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parametros(String consulta) {
+        Map<String, String> parametros = new HashMap<>();
+        if (consulta != null) {
+            for (String parametro : consulta.split("&")) {
+                int igual = parametro.indexOf('=');
+                parametros.put(igual < 0 ? parametro : parametro.substring(0, igual), igual < 0 ? "" : parametro.substring(igual + 1));
+            }
+        }
+        return parametros;
+    }
+
+    private static String sha256(byte[] dados) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(dados)) {
+                hex.append(String.format("%02x", b & 0xFF));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] aleatorio(int tamanho) {
+        byte[] dados = new byte[tamanho];
+        new Random(1).nextBytes(dados);
+        return dados;
+    }
+}
@@ -0,0 +1,152 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.aleatorio;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.assertMesmaArvore;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.gravar;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Acréscimo de entradas a um arquivo ZIP existente: a ida e volta do
+ * acréscimo, o retorno ao arquivo anterior quando ele falha ou é
+ * interrompido e a compactação do conteúdo sem referência.
+ */
+class AcrescimoZipTest {
+
+    @TempDir
+    Path temporario;
+
+    private Path origem;
+    private Path destino;
+    private byte[] anterior;
+
+    @BeforeEach
+    void gravarBackupInicial() throws IOException {
+        origem = temporario.resolve("origem");
+        gravar(origem.resolve("mantido.txt"), "mantido".getBytes(StandardCharsets.UTF_8));
+        gravar(origem.resolve("alterado.txt"), "versão anterior".getBytes(StandardCharsets.UTF_8));
+        gravar(origem.resolve("dados/grande.bin"), aleatorio(1, 300_000));
+        destino = temporario.resolve("backup.zip");
+        CompactadorZip.compactarParaZip(origem.toString(), destino.toString(), null, new OpcoesCompactacao());
+        anterior = Files.readAllBytes(destino);
+    }
+
+    @Test
+    void acrescentaSemRegravarEntradasExistentes() throws IOException {
+        long inicioCentral = inicioCentral(destino);
+        alterarOrigem();
+
+        CompactadorZip.compactarParaZip(origem.toString(), destino.toString(), null, opcoes());
+
+        byte[] atual = Files.readAllBytes(destino);
+        assertTrue(atual.length > anterior.length);
+        assertArrayEquals(Arrays.copyOf(anterior, (int) inicioCentral), Arrays.copyOf(atual, (int) inicioCentral));
+        assertFalse(Files.exists(AcrescimoZip.caminhoDiretorio(destino)));
+        assertRestauraOrigem();
+    }
+
+    @Test
+    void desfazAcrescimoQueFalha() throws IOException {
+        alterarOrigem();
+        OpcoesCompactacao opcoes = opcoes();
+        opcoes.setObservador((arquivo, nome, tamanho, modificado, crc, posicao) -> {
+            throw new IllegalStateException("Falha simulada");
+        });
+
+        assertThrows(IllegalStateException.class,
+                () -> CompactadorZip.compactarParaZip(origem.toString(), destino.toString(), null, opcoes));
+
+        assertArrayEquals(anterior, Files.readAllBytes(destino));
+        assertFalse(Files.exists(AcrescimoZip.caminhoDiretorio(destino)));
+    }
+
+    @Test
+    void desfazAcrescimoInterrompidoNaProximaExecucao() throws IOException {
+        // Uma queda logo depois de o diretório central ser copiado e o arquivo truncado
+        AcrescimoZip.abrir(destino);
+        assertTrue(Files.size(destino) < anterior.length);
+        assertTrue(Files.exists(AcrescimoZip.caminhoDiretorio(destino)));
+
+        alterarOrigem();
+        CompactadorZip.compactarParaZip(origem.toString(), destino.toString(), null, opcoes());
+
+        assertFalse(Files.exists(AcrescimoZip.caminhoDiretorio(destino)));
+        assertRestauraOrigem();
+    }
+
+    @Test
+    void compactaQuandoOConteudoSemReferenciaPassaDoPercentual() throws IOException {
+        Path grande = origem.resolve("dados/grande.bin");
+        long tamanhoInicial = Files.size(destino);
+
+        // Sem limite, cada versão substituída continua no arquivo
+        OpcoesCompactacao semCompactacao = opcoes();
+        semCompactacao.setPercentualNaoReferenciado(100);
+        substituir(grande, 2);
+        CompactadorZip.compactarParaZip(origem.toString(), destino.toString(), null, semCompactacao);
+        assertTrue(Files.size(destino) > tamanhoInicial + 250_000);
+
+        // Com o limite padrão, a próxima substituição regrava o arquivo sem as versões antigas
+        substituir(grande, 3);
+        CompactadorZip.compactarParaZip(origem.toString(), destino.toString(), null, opcoes());
+        assertTrue(Files.size(destino) < tamanhoInicial + 1_000, "arquivo com " + Files.size(destino) + " bytes");
+        assertFalse(Files.exists(DiarioCompactacao.caminhoParcial(destino)));
+        assertRestauraOrigem(3);
+
+        // O arquivo compactado continua recebendo acréscimos
+        alterarOrigem();
+        CompactadorZip.compactarParaZip(origem.toString(), destino.toString(), null, opcoes());
+        assertRestauraOrigem(4);
+    }
+
+    private OpcoesCompactacao opcoes() {
+        OpcoesCompactacao opcoes = new OpcoesCompactacao();
+        opcoes.setAcrescentar(true);
+        return opcoes;
+    }
+
+    private void alterarOrigem() throws IOException {
+        Path alterado = origem.resolve("alterado.txt");
+        FileTime modificado = Files.getLastModifiedTime(alterado);
+        Files.write(alterado, "versão nova, com outro tamanho".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(alterado, FileTime.fromMillis(modificado.toMillis() + 60_000));
+        gravar(origem.resolve("dados/novo.bin"), aleatorio(2, 200_000));
+    }
+
+    private static void substituir(Path arquivo, long semente) throws IOException {
+        FileTime modificado = Files.getLastModifiedTime(arquivo);
+        Files.write(arquivo, aleatorio(semente, 300_000));
+        Files.setLastModifiedTime(arquivo, FileTime.fromMillis(modificado.toMillis() + 60_000));
+    }
+
+    private void assertRestauraOrigem() throws IOException {
+        assertRestauraOrigem(4);
+    }
+
+    private void assertRestauraOrigem(int arquivos) throws IOException {
+        Path restaurado = Files.createTempDirectory(temporario, "restaurado");
+        assertEquals(arquivos, RestauradorZip.restaurar(destino.toString(), restaurado.toString()));
+        assertMesmaArvore(origem, restaurado);
+    }
+
+    private static long inicioCentral(Path zip) throws IOException {
+        try (FileChannel canal = FileChannel.open(zip, StandardOpenOption.READ)) {
+            return LeitorDiretorioZip.inicioDiretorio(canal);
+        }
+    }
+}
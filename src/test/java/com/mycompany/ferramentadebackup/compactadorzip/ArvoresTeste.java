@@ -0,0 +1,58 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Utilitários dos testes que gravam uma origem, compactam e conferem a
+ * restauração.
+ */
+final class ArvoresTeste {
+
+    private ArvoresTeste() {
+    }
+
+    /**
+     * @return Bytes pseudoaleatórios, sempre os mesmos para a mesma semente.
+     */
+    static byte[] aleatorio(long semente, int tamanho) {
+        byte[] dados = new byte[tamanho];
+        new Random(semente).nextBytes(dados);
+        return dados;
+    }
+
+    /**
+     * Grava um arquivo, criando os diretórios que faltarem.
+     */
+    static Path gravar(Path arquivo, byte[] conteudo) throws IOException {
+        Files.createDirectories(arquivo.getParent());
+        return Files.write(arquivo, conteudo);
+    }
+
+    /**
+     * Confere se duas árvores têm os mesmos arquivos, com o mesmo conteúdo.
+     */
+    static void assertMesmaArvore(Path esperada, Path obtida) throws IOException {
+        TreeSet<String> arquivos = listar(esperada);
+        assertEquals(arquivos, listar(obtida));
+        for (String arquivo : arquivos) {
+            assertArrayEquals(Files.readAllBytes(esperada.resolve(arquivo)), Files.readAllBytes(obtida.resolve(arquivo)), arquivo);
+        }
+    }
+
+    private static TreeSet<String> listar(Path raiz) throws IOException {
+        try (Stream<Path> itens = Files.walk(raiz)) {
+            return itens.filter(Files::isRegularFile)
+                    .map(item -> raiz.relativize(item).toString().replace('\\', '/'))
+                    .collect(Collectors.toCollection(TreeSet::new));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.aleatorio;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.assertMesmaArvore;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.gravar;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Ida e volta das entradas delta: um backup completo, um backup delta de um
+ * arquivo grande com inserções, remoções e o final deslocado, e a
+ * restauração do delta a partir do backup base.
+ */
+class CodificadorDeltaTest {
+
+    private static final int TAMANHO_GRANDE = 4 * 1024 * 1024;
+
+    @TempDir
+    Path temporario;
+
+    @Test
+    void restauraArquivoAlteradoAPartirDaBase() throws IOException {
+        idaEVolta(null);
+    }
+
+    @Test
+    void restauraDeltaDeBackupsCifrados() throws IOException {
+        idaEVolta("senha do job".toCharArray());
+    }
+
+    private void idaEVolta(char[] senha) throws IOException {
+        Path origem = temporario.resolve("origem");
+        Path backups = temporario.resolve("backups");
+        Files.createDirectories(backups);
+        byte[] original = aleatorio(1, TAMANHO_GRANDE);
+        Path grande = gravar(origem.resolve("dados/grande.pst"), original);
+        gravar(origem.resolve("leia-me.txt"), "inalterado".getBytes(StandardCharsets.UTF_8));
+
+        OpcoesCompactacao completo = opcoes(senha);
+        CompactadorZip.compactarParaZip(origem.toString(), backups.resolve("base.zip").toString(), null, completo);
+        Path assinaturas = temporario.resolve("assinaturas.bin");
+        completo.getAssinaturasDelta().gravar(assinaturas, 1, "base.zip", 0);
+
+        Files.write(grande, alterar(original));
+        Files.setLastModifiedTime(grande, FileTime.fromMillis(Files.getLastModifiedTime(grande).toMillis() + 60_000));
+        OpcoesCompactacao delta = opcoes(senha);
+        delta.setBaseDelta(AssinaturasDelta.carregar(assinaturas));
+        Path incremental = backups.resolve("delta.zip");
+        CompactadorZip.compactarParaZip(origem.toString(), incremental.toString(), null, delta);
+
+        assertEquals(1, delta.getAssinaturasDelta().getEntradasDelta());
+        assertTrue(Files.size(incremental) < TAMANHO_GRANDE / 8, "delta com " + Files.size(incremental) + " bytes");
+
+        Path restaurado = temporario.resolve("restaurado");
+        assertEquals(2, RestauradorZip.restaurar(incremental.toString(), restaurado.toString(), null, senha));
+        assertMesmaArvore(origem, restaurado);
+    }
+
+    private static OpcoesCompactacao opcoes(char[] senha) {
+        OpcoesCompactacao opcoes = new OpcoesCompactacao();
+        opcoes.setAssinaturasDelta(new AssinaturasDelta());
+        opcoes.setTamanhoMinimoDelta(1024 * 1024);
+        if (senha != null) {
+            opcoes.setCriptografia(new Criptografia(senha));
+        }
+        return opcoes;
+    }
+
+    /**
+     * Insere bytes perto do início, remove um trecho no meio, troca alguns
+     * bytes e acrescenta um final novo; tudo o que vem depois da inserção
+     * fica deslocado em relação aos blocos da base.
+     */
+    private static byte[] alterar(byte[] original) {
+        ByteArrayOutputStream alterado = new ByteArrayOutputStream(original.length + 64 * 1024);
+        alterado.write(original, 0, 500_000);
+        alterado.writeBytes(aleatorio(2, 3_001));
+        alterado.write(original, 500_000, 1_500_000);
+        // Remove 7.000 bytes
+        alterado.write(original, 2_007_000, 1_000_000);
+        alterado.writeBytes(aleatorio(3, 100));
+        alterado.write(original, 3_007_100, original.length - 3_007_100);
+        alterado.writeBytes(aleatorio(4, 50_000));
+        return alterado.toByteArray();
+    }
+}
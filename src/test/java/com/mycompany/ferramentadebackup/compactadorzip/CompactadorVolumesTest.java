@@ -0,0 +1,91 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.aleatorio;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.assertMesmaArvore;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.gravar;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Backups divididos em volumes: a restauração a partir de um dos volumes e o
+ * descarte de todos os volumes, inclusive as cópias nos destinos adicionais,
+ * quando um deles falha.
+ */
+class CompactadorVolumesTest {
+
+    private static final long TAMANHO_VOLUME = 300_000;
+
+    @TempDir
+    Path temporario;
+
+    private Path origem;
+    private Path backups;
+    private Path adicional;
+
+    @BeforeEach
+    void gravarOrigem() throws IOException {
+        origem = temporario.resolve("origem");
+        for (int i = 0; i < 10; i++) {
+            gravar(origem.resolve(String.format("dados/f%02d.bin", i)), aleatorio(i, 100_000));
+        }
+        backups = Files.createDirectories(temporario.resolve("backups"));
+        adicional = Files.createDirectories(temporario.resolve("adicional"));
+    }
+
+    @Test
+    void restauraBackupDeQualquerVolume() throws IOException {
+        CompactadorZip.compactarParaZip(origem.toString(), backups.resolve("backup.zip").toString(), null, opcoes());
+
+        List<Path> volumes = listar(backups);
+        assertEquals(5, volumes.size(), volumes.toString());
+        for (Path volume : volumes) {
+            assertTrue(Files.size(volume) <= TAMANHO_VOLUME, volume + " com " + Files.size(volume) + " bytes");
+        }
+        assertEquals(5, listar(adicional).size());
+
+        Path restaurado = temporario.resolve("restaurado");
+        assertEquals(10, RestauradorZip.restaurar(volumes.get(2).toString(), restaurado.toString()));
+        assertMesmaArvore(origem, restaurado);
+    }
+
+    @Test
+    void descartaTodosOsVolumesQuandoUmFalha() throws IOException {
+        OpcoesCompactacao opcoes = opcoes();
+        // Falha no quarto volume, depois de os anteriores estarem completos
+        opcoes.setObservador((arquivo, nome, tamanho, modificado, crc, posicao) -> {
+            if (nome.equals("dados/f07.bin")) {
+                throw new IllegalStateException("Falha simulada");
+            }
+        });
+
+        assertThrows(IOException.class,
+                () -> CompactadorZip.compactarParaZip(origem.toString(), backups.resolve("backup.zip").toString(), null, opcoes));
+
+        assertEquals(List.of(), listar(backups));
+        assertEquals(List.of(), listar(adicional));
+    }
+
+    private OpcoesCompactacao opcoes() {
+        OpcoesCompactacao opcoes = new OpcoesCompactacao();
+        opcoes.setTamanhoVolume(TAMANHO_VOLUME);
+        opcoes.setDestinosAdicionais(List.of(adicional));
+        return opcoes;
+    }
+
+    private static List<Path> listar(Path diretorio) throws IOException {
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            return arquivos.sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.aleatorio;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.assertMesmaArvore;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.gravar;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Backup completo sintético: a consolidação de uma cadeia restaura a mesma
+ * árvore que a execução mais recente da cadeia, sem depender dos backups
+ * anteriores.
+ */
+class ConsolidadorZipTest {
+
+    @TempDir
+    Path temporario;
+
+    @Test
+    void consolidaCadeiaComEntradasDelta() throws IOException {
+        cadeiaDelta(null);
+    }
+
+    @Test
+    void consolidaCadeiaCifrada() throws IOException {
+        cadeiaDelta("senha do job".toCharArray());
+    }
+
+    @Test
+    void consolidaCadeiaComArquivosRemovidos() throws IOException {
+        Path origem = temporario.resolve("origem");
+        Path backups = Files.createDirectories(temporario.resolve("backups"));
+        gravar(origem.resolve("mantido.txt"), "mantido".getBytes(StandardCharsets.UTF_8));
+        gravar(origem.resolve("alterado.txt"), "versão anterior".getBytes(StandardCharsets.UTF_8));
+        gravar(origem.resolve("dados/removido.bin"), aleatorio(1, 50_000));
+        Path completo = backups.resolve("completo.zip");
+        CompactadorZip.compactarParaZip(origem.toString(), completo.toString(), null, new OpcoesCompactacao());
+
+        // Execução seguinte com apenas o que mudou e a lista dos arquivos excluídos
+        gravar(origem.resolve("alterado.txt"), "versão nova".getBytes(StandardCharsets.UTF_8));
+        gravar(origem.resolve("dados/novo.bin"), aleatorio(2, 50_000));
+        Files.delete(origem.resolve("dados/removido.bin"));
+        Path alteracoes = temporario.resolve("alteracoes");
+        Files.createDirectories(alteracoes.resolve("dados"));
+        Files.copy(origem.resolve("alterado.txt"), alteracoes.resolve("alterado.txt"));
+        Files.copy(origem.resolve("dados/novo.bin"), alteracoes.resolve("dados/novo.bin"));
+        gravar(alteracoes.resolve(ConsolidadorZip.ENTRADA_REMOVIDOS), "dados/removido.bin\n".getBytes(StandardCharsets.UTF_8));
+        Path incremental = backups.resolve("incremental.zip");
+        CompactadorZip.compactarParaZip(alteracoes.toString(), incremental.toString(), null, new OpcoesCompactacao());
+
+        Path consolidado = temporario.resolve("consolidado.zip");
+        assertEquals(3, ConsolidadorZip.consolidar(List.of(completo, incremental), null, consolidado, new OpcoesCompactacao()));
+
+        Path restaurado = temporario.resolve("restaurado");
+        assertEquals(3, RestauradorZip.restaurar(consolidado.toString(), restaurado.toString()));
+        assertMesmaArvore(origem, restaurado);
+    }
+
+    private void cadeiaDelta(char[] senha) throws IOException {
+        Path origem = temporario.resolve("origem");
+        Path backups = Files.createDirectories(temporario.resolve("backups"));
+        byte[] original = aleatorio(1, 2 * 1024 * 1024);
+        Path grande = gravar(origem.resolve("dados/grande.pst"), original);
+        gravar(origem.resolve("leia-me.txt"), "inalterado".getBytes(StandardCharsets.UTF_8));
+        gravar(origem.resolve("copias/a.bin"), aleatorio(3, 100_000));
+        gravar(origem.resolve("copias/b.bin"), aleatorio(3, 100_000));
+
+        OpcoesCompactacao completo = opcoes(senha);
+        Path base = backups.resolve("base.zip");
+        CompactadorZip.compactarParaZip(origem.toString(), base.toString(), null, completo);
+        Path assinaturas = temporario.resolve("assinaturas.bin");
+        completo.getAssinaturasDelta().gravar(assinaturas, 1, "base.zip", 0);
+
+        // Um trecho alterado no meio e um final novo
+        byte[] alterado = original.clone();
+        System.arraycopy(aleatorio(4, 1_000), 0, alterado, 1_000_000, 1_000);
+        Files.write(grande, alterado);
+        Files.write(grande, aleatorio(5, 10_000), StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(grande, FileTime.fromMillis(Files.getLastModifiedTime(grande).toMillis() + 60_000));
+        OpcoesCompactacao delta = opcoes(senha);
+        delta.setBaseDelta(AssinaturasDelta.carregar(assinaturas));
+        Path incremental = backups.resolve("delta.zip");
+        CompactadorZip.compactarParaZip(origem.toString(), incremental.toString(), null, delta);
+        assertEquals(1, delta.getAssinaturasDelta().getEntradasDelta());
+
+        Path consolidado = temporario.resolve("consolidado.zip");
+        assertEquals(4, ConsolidadorZip.consolidar(List.of(base, incremental), senha, consolidado, opcoes(senha)));
+
+        // O backup consolidado não tem entradas delta e é restaurado sem a base
+        Files.delete(base);
+        Files.delete(incremental);
+        try (ArquivoZip zip = RestauradorZip.abrirZip(consolidado, senha)) {
+            for (RegistroZip registro : zip.getRegistros()) {
+                assertNull(DeltaArquivo.lerExtra(registro.metodo, registro.extra), registro.nome);
+            }
+        }
+        Path restaurado = temporario.resolve("restaurado");
+        assertEquals(4, RestauradorZip.restaurar(consolidado.toString(), restaurado.toString(), null, senha));
+        assertMesmaArvore(origem, restaurado);
+    }
+
+    private static OpcoesCompactacao opcoes(char[] senha) {
+        OpcoesCompactacao opcoes = new OpcoesCompactacao();
+        opcoes.setAssinaturasDelta(new AssinaturasDelta());
+        opcoes.setTamanhoMinimoDelta(1024 * 1024);
+        opcoes.setDeduplicar(true);
+        if (senha != null) {
+            opcoes.setCriptografia(new Criptografia(senha));
+        }
+        return opcoes;
+    }
+}
@@ -0,0 +1,158 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.aleatorio;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.assertMesmaArvore;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.gravar;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Criptografia dos backups: ida e volta pela {@link SaidaCifrada} e pelo
+ * {@link CanalDecifrado}, e a recusa de arquivos com um bloco alterado, sem
+ * o último bloco ou abertos com a senha errada.
+ */
+class CriptografiaTest {
+
+    private static final char[] SENHA = "senha do job".toCharArray();
+    // Cinco blocos de 64 KiB e um último bloco parcial
+    private static final int TAMANHO = 5 * 64 * 1024 + 1_000;
+    private static final int TAMANHO_BLOCO_CIFRADO = 64 * 1024 + Criptografia.TAMANHO_ETIQUETA;
+
+    @TempDir
+    Path temporario;
+
+    private byte[] original;
+    private Path cifrado;
+
+    @BeforeEach
+    void cifrar() throws IOException {
+        original = aleatorio(1, TAMANHO);
+        cifrado = temporario.resolve("dados.cifrado");
+        try (OutputStream saida = new Criptografia(SENHA).cifrar(Files.newOutputStream(cifrado))) {
+            // Escritas de tamanhos variados, que atravessam os limites dos blocos
+            for (int posicao = 0, passo = 1; posicao < original.length; posicao += passo, passo = passo * 3 + 7) {
+                saida.write(original, posicao, Math.min(passo, original.length - posicao));
+            }
+        }
+    }
+
+    @Test
+    void decifraArquivoInteiroEEmQualquerPosicao() throws IOException {
+        assertTrue(Criptografia.isCifrado(cifrado));
+        assertEquals(Criptografia.TAMANHO_CABECALHO + 5L * TAMANHO_BLOCO_CIFRADO + 1_000 + Criptografia.TAMANHO_ETIQUETA, Files.size(cifrado));
+        assertArrayEquals(original, decifrar());
+
+        try (CanalDecifrado canal = Criptografia.abrirDecifrado(cifrado, SENHA)) {
+            assertEquals(TAMANHO, canal.size());
+            ByteBuffer trecho = ByteBuffer.allocate(70_000);
+            canal.position(100_000);
+            while (trecho.hasRemaining() && canal.read(trecho) > 0) {
+                // Lê até completar o trecho, que atravessa dois blocos
+            }
+            assertArrayEquals(Arrays.copyOfRange(original, 100_000, 170_000), trecho.array());
+        }
+        assertEquals(6, Criptografia.verificar(cifrado, SENHA, 2, null));
+    }
+
+    @Test
+    void recusaBlocoAlterado() throws IOException {
+        alterarByte(Criptografia.TAMANHO_CABECALHO + 2L * TAMANHO_BLOCO_CIFRADO + 10);
+
+        assertThrows(IOException.class, this::decifrar);
+        assertThrows(IOException.class, () -> Criptografia.verificar(cifrado, SENHA, 2, null));
+        try (CanalDecifrado canal = Criptografia.abrirDecifrado(cifrado, SENHA)) {
+            // Os outros blocos continuam legíveis; o alterado não
+            assertEquals(1_000, canal.read(ByteBuffer.allocate(1_000), 0));
+            assertThrows(IOException.class, () -> canal.read(ByteBuffer.allocate(1_000), 2L * 64 * 1024));
+        }
+    }
+
+    @Test
+    void recusaArquivoSemOUltimoBloco() throws IOException {
+        truncar(Criptografia.TAMANHO_CABECALHO + 5L * TAMANHO_BLOCO_CIFRADO);
+
+        // O bloco que passou a ser o último foi cifrado sem a marca de último bloco
+        assertThrows(IOException.class, this::decifrar);
+        assertThrows(IOException.class, () -> Criptografia.verificar(cifrado, SENHA, 2, null));
+    }
+
+    @Test
+    void recusaUltimoBlocoIncompleto() throws IOException {
+        truncar(Files.size(cifrado) - 100);
+
+        assertThrows(IOException.class, this::decifrar);
+    }
+
+    @Test
+    void recusaSenhaErrada() {
+        assertThrows(IOException.class, () -> Criptografia.verificar(cifrado, "outra senha".toCharArray(), 2, null));
+        assertThrows(IOException.class, () -> Criptografia.decifrar(cifrado, temporario.resolve("errado"), "outra senha".toCharArray(), 2));
+    }
+
+    @Test
+    void restauraBackupCifradoSoComASenhaCerta() throws IOException {
+        Path origem = temporario.resolve("origem");
+        gravar(origem.resolve("a.txt"), aleatorio(2, 1_000));
+        gravar(origem.resolve("b/c.bin"), aleatorio(3, 300_000));
+        Path backup = temporario.resolve("backup.zip");
+        OpcoesCompactacao opcoes = new OpcoesCompactacao();
+        opcoes.setCriptografia(new Criptografia(SENHA));
+        CompactadorZip.compactarParaZip(origem.toString(), backup.toString(), null, opcoes);
+        assertTrue(Criptografia.isCifrado(backup));
+
+        Path errado = temporario.resolve("errado");
+        assertThrows(IOException.class, () -> RestauradorZip.restaurar(backup.toString(), errado.toString(), null, "outra".toCharArray()));
+
+        Path restaurado = temporario.resolve("restaurado");
+        assertEquals(2, RestauradorZip.restaurar(backup.toString(), restaurado.toString(), null, SENHA));
+        assertMesmaArvore(origem, restaurado);
+    }
+
+    @Test
+    void verificadorConfereSoASenhaCerta() {
+        String verificador = Criptografia.criarVerificador(SENHA);
+
+        assertFalse(verificador.contains(new String(SENHA)));
+        assertTrue(Criptografia.conferirVerificador(SENHA, verificador));
+        assertFalse(Criptografia.conferirVerificador("outra senha".toCharArray(), verificador));
+        assertFalse(Criptografia.conferirVerificador(SENHA, "pbkdf2-sha256$abc"));
+        // O sal é aleatório: a mesma senha não gera o mesmo verificador
+        assertFalse(verificador.equals(Criptografia.criarVerificador(SENHA)));
+    }
+
+    private byte[] decifrar() throws IOException {
+        Path destino = temporario.resolve("dados.decifrado");
+        Criptografia.decifrar(cifrado, destino, SENHA, 2);
+        return Files.readAllBytes(destino);
+    }
+
+    private void alterarByte(long posicao) throws IOException {
+        try (FileChannel canal = FileChannel.open(cifrado, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.allocate(1);
+            canal.read(bytes, posicao);
+            bytes.put(0, (byte) (bytes.get(0) ^ 1)).rewind();
+            canal.write(bytes, posicao);
+        }
+    }
+
+    private void truncar(long tamanho) throws IOException {
+        try (FileChannel canal = FileChannel.open(cifrado, StandardOpenOption.WRITE)) {
+            canal.truncate(tamanho);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.aleatorio;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.assertMesmaArvore;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.gravar;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Retomada de uma compactação interrompida a partir do último ponto de
+ * controle do diário.
+ */
+class DiarioCompactacaoTest {
+
+    // Arquivos incompressíveis suficientes para passar do intervalo de 64 MB entre os pontos de controle
+    private static final int ARQUIVOS = 9;
+    private static final int TAMANHO_ARQUIVO = 8 * 1024 * 1024;
+
+    @TempDir
+    Path temporario;
+
+    @Test
+    void retomaCompactacaoInterrompida() throws IOException {
+        Path origem = temporario.resolve("origem");
+        for (int i = 0; i < ARQUIVOS; i++) {
+            gravar(origem.resolve("arquivo" + i + ".bin"), aleatorio(i, TAMANHO_ARQUIVO));
+        }
+        Path destino = temporario.resolve("backup.zip");
+
+        // Interrompe no último arquivo, depois do ponto de controle gravado ao passar de 64 MB
+        List<String> gravadas = Collections.synchronizedList(new ArrayList<>());
+        OpcoesCompactacao interrompida = opcoes();
+        interrompida.setObservador((arquivo, nome, tamanho, modificado, crc, posicao) -> {
+            if (gravadas.size() == ARQUIVOS - 1) {
+                throw new IllegalStateException("Interrupção simulada");
+            }
+            gravadas.add(nome);
+        });
+        assertThrows(IllegalStateException.class,
+                () -> CompactadorZip.compactarParaZip(origem.toString(), destino.toString(), null, interrompida));
+        assertTrue(CompactadorZip.isRetomavel(destino.toString()));
+        assertFalse(Files.exists(destino));
+
+        // Uma entrada do ponto de controle é reaproveitada sem reler o arquivo, pois tamanho e data
+        // não mudaram; outra tem a data alterada e precisa ser gravada de novo
+        Path reaproveitado = origem.resolve(gravadas.get(0));
+        byte[] conteudoReaproveitado = Files.readAllBytes(reaproveitado);
+        trocarConteudo(reaproveitado, 100, false);
+        Path alterado = origem.resolve(gravadas.get(1));
+        trocarConteudo(alterado, 200, true);
+
+        CompactadorZip.compactarParaZip(origem.toString(), destino.toString(), null, opcoes());
+        assertFalse(CompactadorZip.isRetomavel(destino.toString()));
+
+        Path restaurado = temporario.resolve("restaurado");
+        assertEquals(ARQUIVOS, RestauradorZip.restaurar(destino.toString(), restaurado.toString()));
+        assertArrayEquals(conteudoReaproveitado, Files.readAllBytes(restaurado.resolve(gravadas.get(0))));
+        Files.write(reaproveitado, conteudoReaproveitado);
+        assertMesmaArvore(origem, restaurado);
+    }
+
+    private static OpcoesCompactacao opcoes() {
+        OpcoesCompactacao opcoes = new OpcoesCompactacao();
+        opcoes.setPerfilCompressao(PerfilCompressao.RAPIDO);
+        return opcoes;
+    }
+
+    /**
+     * Regrava um arquivo com outro conteúdo do mesmo tamanho, mantendo ou
+     * não a data de modificação.
+     */
+    private static void trocarConteudo(Path arquivo, long semente, boolean alterarData) throws IOException {
+        FileTime modificado = Files.getLastModifiedTime(arquivo);
+        Files.write(arquivo, aleatorio(semente, TAMANHO_ARQUIVO));
+        Files.setLastModifiedTime(arquivo, alterarData ? FileTime.fromMillis(modificado.toMillis() + 60_000) : modificado);
+    }
+}
@@ -0,0 +1,100 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.aleatorio;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.assertMesmaArvore;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.gravar;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Entradas pequenas comprimidas com o dicionário compartilhado: o método e o
+ * campo extra gravados, o ganho sobre o deflate comum e a restauração.
+ */
+class DicionarioDeflateTest {
+
+    private static final int ARQUIVOS_PEQUENOS = 300;
+
+    @TempDir
+    Path temporario;
+
+    private Path origem;
+
+    @BeforeEach
+    void gravarOrigem() throws IOException {
+        origem = temporario.resolve("origem");
+        for (int i = 0; i < ARQUIVOS_PEQUENOS; i++) {
+            String json = "{\n  \"tipo\": \"registro-de-auditoria\",\n  \"sistema\": \"ferramenta-de-backup\",\n"
+                    + "  \"id\": " + i + ",\n  \"usuario\": \"usuario" + (i % 17) + "\",\n"
+                    + "  \"acao\": \"" + (i % 2 == 0 ? "inclusao" : "exclusao") + "\",\n  \"versao\": \"1.4.2\"\n}\n";
+            gravar(origem.resolve(String.format("registros/%03d.json", i)), json.getBytes(StandardCharsets.UTF_8));
+        }
+        // Acima do limite de arquivo pequeno: deflate comum
+        gravar(origem.resolve("dados/grande.bin"), aleatorio(1, (int) DicionarioDeflate.LIMITE_ARQUIVO_PEQUENO + 1));
+    }
+
+    @Test
+    void comprimeEntradasPequenasComODicionario() throws IOException {
+        Path comDicionario = compactar("com.zip", true);
+        Path semDicionario = compactar("sem.zip", false);
+
+        try (ArquivoZip zip = ArquivoZip.abrir(comDicionario)) {
+            byte[] dicionario = DicionarioDeflate.ler(zip);
+            assertNotNull(dicionario);
+            int pequenas = 0;
+            for (RegistroZip registro : zip.getRegistros()) {
+                long[] extra = DicionarioDeflate.lerExtra(registro);
+                if (registro.nome.startsWith("registros/")) {
+                    assertEquals(DicionarioDeflate.METODO, registro.metodo, registro.nome);
+                    byte[] original = Files.readAllBytes(origem.resolve(registro.nome));
+                    CRC32 crc = new CRC32();
+                    crc.update(original);
+                    assertArrayEquals(new long[]{original.length, crc.getValue(), DicionarioDeflate.identificador(dicionario)}, extra);
+                    try (InputStream conteudo = DicionarioDeflate.abrirEntrada(zip, registro, dicionario)) {
+                        assertArrayEquals(original, conteudo.readAllBytes(), registro.nome);
+                    }
+                    pequenas++;
+                } else if (registro.nome.equals("dados/grande.bin")) {
+                    assertNull(extra);
+                }
+            }
+            assertEquals(ARQUIVOS_PEQUENOS, pequenas);
+        }
+        assertTrue(Files.size(comDicionario) < Files.size(semDicionario),
+                Files.size(comDicionario) + " bytes com dicionário, " + Files.size(semDicionario) + " sem");
+    }
+
+    @Test
+    void restauraEntradasComDicionario() throws IOException {
+        Path backup = compactar("com.zip", true);
+
+        Path restaurado = temporario.resolve("restaurado");
+        assertEquals(ARQUIVOS_PEQUENOS + 1, RestauradorZip.restaurar(backup.toString(), restaurado.toString()));
+        assertMesmaArvore(origem, restaurado);
+
+        // Um arquivo isolado também lê o dicionário do arquivo
+        Path isolado = temporario.resolve("isolado");
+        assertEquals(1, RestauradorZip.restaurar(backup.toString(), isolado.toString(), "registros/123.json"));
+        assertArrayEquals(Files.readAllBytes(origem.resolve("registros/123.json")), Files.readAllBytes(isolado.resolve("registros/123.json")));
+    }
+
+    private Path compactar(String nome, boolean usarDicionario) throws IOException {
+        Path destino = temporario.resolve(nome);
+        OpcoesCompactacao opcoes = new OpcoesCompactacao();
+        opcoes.setUsarDicionario(usarDicionario);
+        CompactadorZip.compactarParaZip(origem.toString(), destino.toString(), null, opcoes);
+        return destino;
+    }
+}
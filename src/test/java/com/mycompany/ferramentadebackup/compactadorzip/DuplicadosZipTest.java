@@ -0,0 +1,88 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.aleatorio;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.assertMesmaArvore;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.gravar;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Arquivos repetidos gravados como referências: o backup guarda o conteúdo
+ * uma única vez e a restauração recria todas as cópias.
+ */
+class DuplicadosZipTest {
+
+    private static final int TAMANHO = 300_000;
+
+    @TempDir
+    Path temporario;
+
+    private Path origem;
+    private Path backup;
+
+    @BeforeEach
+    void gravarBackup() throws IOException {
+        origem = temporario.resolve("origem");
+        byte[] repetido = aleatorio(1, TAMANHO);
+        gravar(origem.resolve("original.bin"), repetido);
+        gravar(origem.resolve("copias/a.bin"), repetido);
+        gravar(origem.resolve("copias/b/c.bin"), repetido);
+        // Mesmo tamanho e conteúdo diferente, e uma cópia pequena demais para virar referência
+        gravar(origem.resolve("outro.bin"), aleatorio(2, TAMANHO));
+        gravar(origem.resolve("pequeno1.txt"), new byte[100]);
+        gravar(origem.resolve("pequeno2.txt"), new byte[100]);
+
+        backup = temporario.resolve("backup.zip");
+        OpcoesCompactacao opcoes = new OpcoesCompactacao();
+        opcoes.setDeduplicar(true);
+        CompactadorZip.compactarParaZip(origem.toString(), backup.toString(), null, opcoes);
+    }
+
+    @Test
+    void gravaCopiasComoReferencias() throws IOException {
+        Set<String> copias = new TreeSet<>(List.of("original.bin", "copias/a.bin", "copias/b/c.bin"));
+        try (ArquivoZip zip = ArquivoZip.abrir(backup)) {
+            // A primeira cópia encontrada na varredura é gravada; as outras duas apontam para ela
+            Map<String, DuplicadosZip.Referencia> referencias = DuplicadosZip.ler(zip);
+            assertEquals(2, referencias.size());
+            Set<String> originais = new TreeSet<>(copias);
+            originais.removeAll(referencias.keySet());
+            assertEquals(1, originais.size());
+            for (DuplicadosZip.Referencia referencia : referencias.values()) {
+                assertTrue(copias.contains(referencia.nome), referencia.nome);
+                assertEquals(originais.iterator().next(), referencia.original);
+                assertEquals(Files.getLastModifiedTime(origem.resolve(referencia.nome)).toMillis(), referencia.modificado);
+            }
+        }
+        assertTrue(Files.size(backup) < 2 * TAMANHO + 20_000, "backup com " + Files.size(backup) + " bytes");
+    }
+
+    @Test
+    void restauraTodasAsCopias() throws IOException {
+        Path restaurado = temporario.resolve("restaurado");
+
+        assertEquals(6, RestauradorZip.restaurar(backup.toString(), restaurado.toString()));
+        assertMesmaArvore(origem, restaurado);
+    }
+
+    @Test
+    void restauraCopiaSemOOriginalNoFiltro() throws IOException {
+        Path restaurado = temporario.resolve("restaurado");
+
+        assertEquals(2, RestauradorZip.restaurar(backup.toString(), restaurado.toString(), "copias"));
+        assertArrayEquals(Files.readAllBytes(origem.resolve("original.bin")), Files.readAllBytes(restaurado.resolve("copias/b/c.bin")));
+        assertTrue(Files.notExists(restaurado.resolve("original.bin")));
+    }
+}
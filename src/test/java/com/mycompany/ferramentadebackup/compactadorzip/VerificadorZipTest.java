@@ -0,0 +1,94 @@
+package com.mycompany.ferramentadebackup.compactadorzip;
+
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.aleatorio;
+import static com.mycompany.ferramentadebackup.compactadorzip.ArvoresTeste.gravar;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Conferência do backup com a origem: as entradas são lidas de volta do
+ * arquivo gravado, e não apenas comparadas com o diretório central.
+ */
+class VerificadorZipTest {
+
+    @TempDir
+    Path temporario;
+
+    private Path origem;
+    private Path destino;
+    private Map<String, long[]> esperados;
+
+    @BeforeEach
+    void gravarBackup() throws IOException {
+        origem = temporario.resolve("origem");
+        gravar(origem.resolve("texto.txt"), "conteúdo de texto\n".repeat(1000).getBytes(StandardCharsets.UTF_8));
+        gravar(origem.resolve("dados/aleatorio.bin"), aleatorio(1, 200_000));
+        destino = temporario.resolve("backup.zip");
+        OpcoesCompactacao opcoes = new OpcoesCompactacao();
+        opcoes.setVerificar(true);
+        CompactadorZip.compactarParaZip(origem.toString(), destino.toString(), null, opcoes);
+
+        esperados = new HashMap<>();
+        esperados.put("texto.txt", valores(origem.resolve("texto.txt")));
+        esperados.put("dados/aleatorio.bin", valores(origem.resolve("dados/aleatorio.bin")));
+    }
+
+    @Test
+    void confereBackupIntacto() throws IOException {
+        assertEquals(2, VerificadorZip.conferir(destino, esperados, 0, 2));
+    }
+
+    @Test
+    void detectaDadosAlteradosNoArquivoGravado() throws IOException {
+        // O diretório central continua com o CRC-32 da origem; só os dados gravados mudam
+        RegistroZip registro = registro("dados/aleatorio.bin");
+        try (FileChannel canal = FileChannel.open(destino, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long posicao = registro.posicaoDados() + registro.tamanhoComprimido / 2;
+            ByteBuffer bytes = ByteBuffer.allocate(1);
+            canal.read(bytes, posicao);
+            bytes.put(0, (byte) (bytes.get(0) ^ 0x55)).rewind();
+            canal.write(bytes, posicao);
+        }
+
+        assertThrows(IOException.class, () -> VerificadorZip.conferir(destino, esperados, 0, 2));
+    }
+
+    @Test
+    void detectaArquivoDaOrigemAusente() {
+        esperados.put("removido.txt", new long[]{1, 0});
+
+        assertThrows(IOException.class, () -> VerificadorZip.conferir(destino, esperados, 0, 2));
+    }
+
+    private RegistroZip registro(String nome) throws IOException {
+        try (ArquivoZip zip = ArquivoZip.abrir(destino)) {
+            for (RegistroZip registro : zip.getRegistros()) {
+                if (registro.nome.equals(nome)) {
+                    return registro;
+                }
+            }
+        }
+        throw new IOException("Entrada não encontrada: " + nome);
+    }
+
+    private static long[] valores(Path arquivo) throws IOException {
+        byte[] conteudo = Files.readAllBytes(arquivo);
+        CRC32 crc = new CRC32();
+        crc.update(conteudo);
+        return new long[]{conteudo.length, crc.getValue()};
+    }
+}
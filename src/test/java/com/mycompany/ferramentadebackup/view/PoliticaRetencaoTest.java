@@ -0,0 +1,88 @@
+package com.mycompany.ferramentadebackup.view;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.mycompany.ferramentadebackup.dto.ExecucaoBackupDTO;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Seleção das execuções excluídas pela retenção: os critérios avô-pai-filho,
+ * as bases das quais uma execução mantida depende e as execuções que falharam
+ * ou ainda estão em andamento.
+ */
+class PoliticaRetencaoTest {
+
+    @Test
+    void mantemAsUltimasEUmaPorPeriodo() {
+        List<ExecucaoBackupDTO> execucoes = new ArrayList<>();
+        // Duas execuções por dia, de 2024-03-20 (quarta-feira) para trás, até 2024-01-29
+        int id = 100;
+        for (int dia = 0; dia < 52; dia++) {
+            String data = LocalDate.of(2024, 3, 20).minusDays(dia).toString();
+            execucoes.add(execucao(id--, data + " 18:00:00", "Concluído", null));
+            execucoes.add(execucao(id--, data + " 08:00:00", "Concluído", null));
+        }
+
+        List<Integer> mantidas = ids(execucoes);
+        mantidas.removeAll(ids(new PoliticaRetencao(3, 2, 2, 2).selecionarRemovidas(execucoes)));
+
+        // 100 a 98: as últimas, que já cobrem os dias 20 e 19; 94: a semana anterior, no domingo 17;
+        // 60: o mês de fevereiro, no dia 29
+        assertEquals(List.of(100, 99, 98, 94, 60), mantidas);
+    }
+
+    @Test
+    void mantemAsBasesDasExecucoesMantidas() {
+        List<ExecucaoBackupDTO> execucoes = List.of(
+                execucao(6, "2024-03-06 08:00:00", "Concluído", 5),
+                execucao(5, "2024-03-05 08:00:00", "Concluído", 4),
+                execucao(4, "2024-03-04 08:00:00", "Concluído", null),
+                execucao(3, "2024-03-03 08:00:00", "Concluído", 2),
+                execucao(2, "2024-03-02 08:00:00", "Concluído", null),
+                execucao(1, "2024-03-01 08:00:00", "Concluído", null));
+
+        // Só a mais recente pelo critério, mas a cadeia inteira dela continua restaurável
+        assertEquals(List.of(3, 2, 1), ids(new PoliticaRetencao(1, 0, 0, 0).selecionarRemovidas(execucoes)));
+    }
+
+    @Test
+    void naoExcluiExecucoesEmAndamentoNemAsSuasBases() {
+        List<ExecucaoBackupDTO> execucoes = List.of(
+                execucao(7, "2024-03-07 08:00:00", "Em andamento", 3),
+                execucao(6, "2024-03-06 08:00:00", "Falhou", null),
+                execucao(5, "2024-03-05 08:00:00", "Concluído", null),
+                execucao(4, "2024-03-04 08:00:00", "Concluído", null),
+                execucao(3, "2024-03-03 08:00:00", "Concluído", 2),
+                execucao(2, "2024-03-02 08:00:00", "Concluído", null),
+                execucao(1, "2024-03-01 08:00:00", "Concluído", null));
+
+        // A execução em andamento depende de 3, que depende de 2
+        assertEquals(List.of(4, 1), ids(new PoliticaRetencao(1, 0, 0, 0).selecionarRemovidas(execucoes)));
+    }
+
+    @Test
+    void naoExcluiNadaSemCriterios() {
+        List<ExecucaoBackupDTO> execucoes = List.of(
+                execucao(2, "2024-03-02 08:00:00", "Concluído", null),
+                execucao(1, "2024-03-01 08:00:00", "Concluído", null));
+
+        assertEquals(List.of(), new PoliticaRetencao(0, 0, 0, 0).selecionarRemovidas(execucoes));
+    }
+
+    private static ExecucaoBackupDTO execucao(int id, String inicio, String status, Integer idBase) {
+        ExecucaoBackupDTO execucao = new ExecucaoBackupDTO();
+        execucao.setId(id);
+        execucao.setInicio(inicio);
+        execucao.setStatus(status);
+        execucao.setIdBase(idBase);
+        return execucao;
+    }
+
+    private static List<Integer> ids(List<ExecucaoBackupDTO> execucoes) {
+        return execucoes.stream().map(ExecucaoBackupDTO::getId).collect(Collectors.toList());
+    }
+}